@@ -40,12 +40,15 @@ import com.yahoo.bard.webservice.data.DruidResponseParser;
 import com.yahoo.bard.webservice.data.HttpResponseMaker;
 import com.yahoo.bard.webservice.data.PartialDataHandler;
 import com.yahoo.bard.webservice.data.PreResponseDeserializer;
+import com.yahoo.bard.webservice.data.QueryPlanCache;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.data.cache.HashDataCache;
+import com.yahoo.bard.webservice.data.cache.LocalTupleDataCache;
 import com.yahoo.bard.webservice.data.cache.MemDataCache;
 import com.yahoo.bard.webservice.data.cache.MemTupleDataCache;
 import com.yahoo.bard.webservice.data.cache.StubDataCache;
+import com.yahoo.bard.webservice.data.cache.TieredTupleDataCache;
 import com.yahoo.bard.webservice.data.config.ConfigurationLoader;
 import com.yahoo.bard.webservice.data.config.DefaultConfigurationLoader;
 import com.yahoo.bard.webservice.data.config.ResourceDictionaries;
@@ -94,6 +97,7 @@ import com.yahoo.bard.webservice.metadata.RequestedIntervalsFunction;
 import com.yahoo.bard.webservice.metadata.SegmentIntervalsHashIdGenerator;
 import com.yahoo.bard.webservice.table.LogicalTableDictionary;
 import com.yahoo.bard.webservice.table.PhysicalTableDictionary;
+import com.yahoo.bard.webservice.table.availability.AvailabilityCache;
 import com.yahoo.bard.webservice.table.resolver.DefaultPhysicalTableResolver;
 import com.yahoo.bard.webservice.table.resolver.PhysicalTableResolver;
 import com.yahoo.bard.webservice.util.DefaultingDictionary;
@@ -144,8 +148,10 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.RatioGauge;
 import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.HealthCheckRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.asynchttpclient.Response;
 import org.glassfish.hk2.api.TypeLiteral;
 import org.glassfish.hk2.utilities.Binder;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
@@ -161,6 +167,7 @@ import org.slf4j.LoggerFactory;
 import rx.subjects.PublishSubject;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.lang.management.ManagementFactory;
 import java.time.Clock;
 import java.time.ZoneId;
@@ -174,6 +181,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -199,6 +207,8 @@ public abstract class AbstractBinderFactory implements BinderFactory {
     private static final String METER_CACHE_HIT_RATIO = "queries.meter.cache.hit_ratio";
     private static final String METER_SPLITS_TOTAL_RATIO = "queries.meter.split_queries.total_ratio";
     private static final String METER_SPLITS_RATIO = "queries.meter.split_queries.ratio";
+    private static final String GAUGE_AVAILABILITY_CACHE_HIT_RATIO = "availability.gauge.cache.hit_ratio";
+    private static final String GAUGE_QUERY_PLAN_CACHE_HIT_RATIO = "queries.gauge.query_plan_cache.hit_ratio";
 
     private static final String JVM_UPTIME = "jvm.uptime";
 
@@ -234,6 +244,11 @@ public abstract class AbstractBinderFactory implements BinderFactory {
             0
     );
 
+    public static final long DRUID_CACHE_LOCAL_MAX_BYTES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_local_max_bytes"),
+            0
+    );
+
     public static final String SYSTEM_CONFIG_TIMEZONE_KEY = "timezone";
 
     private ObjectMappersSuite objectMappers;
@@ -789,6 +804,20 @@ public abstract class AbstractBinderFactory implements BinderFactory {
             );
         }
 
+        if (!metrics.containsKey(GAUGE_AVAILABILITY_CACHE_HIT_RATIO)) {
+            metricRegistry.register(
+                    GAUGE_AVAILABILITY_CACHE_HIT_RATIO,
+                    (Gauge<Double>) AvailabilityCache::getHitRatio
+            );
+        }
+
+        if (!metrics.containsKey(GAUGE_QUERY_PLAN_CACHE_HIT_RATIO)) {
+            metricRegistry.register(
+                    GAUGE_QUERY_PLAN_CACHE_HIT_RATIO,
+                    (Gauge<Double>) QueryPlanCache::getHitRatio
+            );
+        }
+
         if (!metrics.containsKey(JVM_UPTIME)) {
             metricRegistry.register(
                     JVM_UPTIME,
@@ -968,7 +997,8 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         DruidDimensionValueLoader druidDimensionRowProvider = new DruidDimensionValueLoader(
                 physicalTableDictionary,
                 dimensionDictionary,
-                webService
+                webService,
+                loaderScheduler
         );
         return new DimensionValueLoadTask(Collections.singletonList(druidDimensionRowProvider));
     }
@@ -1069,7 +1099,7 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         try {
             MemTupleDataCache<Long, String> cache = new MemTupleDataCache<>();
             LOG.info("MemcachedClient Version 2 started {}", cache);
-            return cache;
+            return withLocalCache(cache);
         } catch (IOException e) {
             LOG.error("MemcachedClient Version 2 failed to start {}", e);
             throw new IllegalStateException(e);
@@ -1106,13 +1136,32 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         try {
             MemTupleDataCache<String, String> cache = new MemTupleDataCache<>();
             LOG.info("MemcachedClient Version 2 started {}", cache);
-            return cache;
+            return withLocalCache(cache);
         } catch (IOException e) {
             LOG.error("MemcachedClient Version 2 failed to start {}", e);
             throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * Put an in-process cache in front of a shared tuple cache, if a local cache size has been configured.
+     *
+     * @param sharedCache  The shared cache
+     * @param <M>  The meta data type of the cache.
+     * @param <V>  The raw data type of the cache.
+     *
+     * @return the shared cache, fronted by a local cache of at most druid_cache_local_max_bytes bytes if set
+     */
+    protected <M extends Serializable, V extends Serializable> TupleDataCache<String, M, V> withLocalCache(
+            TupleDataCache<String, M, V> sharedCache
+    ) {
+        if (DRUID_CACHE_LOCAL_MAX_BYTES <= 0) {
+            return sharedCache;
+        }
+        LOG.info("Local cache of {} bytes started in front of {}", DRUID_CACHE_LOCAL_MAX_BYTES, sharedCache);
+        return new TieredTupleDataCache<>(new LocalTupleDataCache<>(DRUID_CACHE_LOCAL_MAX_BYTES), sharedCache);
+    }
+
     /**
      * Asks for the valid feature flags that are expected to be defined in the system.
      * This method is also provided as an extension point for classes that need to add their own feature flags.
@@ -1318,17 +1367,36 @@ public abstract class AbstractBinderFactory implements BinderFactory {
      * @return A DruidWebService
      */
     protected DruidWebService buildDruidWebService(DruidServiceConfig druidServiceConfig, ObjectMapper mapper) {
+        return buildDruidWebService(
+                druidServiceConfig,
+                mapper,
+                AsyncDruidWebServiceImpl.DEFAULT_JSON_NODE_BUILDER_STRATEGY
+        );
+    }
+
+    /**
+     * Create a DruidWebService which builds response JSON using the given strategy.
+     *
+     * @param druidServiceConfig  Configuration for the Druid Service
+     * @param mapper shared instance of {@link com.fasterxml.jackson.databind.ObjectMapper}
+     * @param jsonNodeBuilderStrategy  The strategy to build JSON nodes from the response body
+     *
+     * @return A DruidWebService
+     */
+    protected DruidWebService buildDruidWebService(
+            DruidServiceConfig druidServiceConfig,
+            ObjectMapper mapper,
+            Function<Response, JsonNode> jsonNodeBuilderStrategy
+    ) {
         Supplier<Map<String, String>> supplier = buildDruidWebServiceHeaderSupplier();
-        return DRUID_UNCOVERED_INTERVAL_LIMIT > 0
-                ? new AsyncDruidWebServiceImpl(
-                    druidServiceConfig,
-                    mapper,
-                    supplier,
-                    new HeaderNestingJsonBuilderStrategy(
-                            AsyncDruidWebServiceImpl.DEFAULT_JSON_NODE_BUILDER_STRATEGY
-                    )
-            )
-                : new AsyncDruidWebServiceImpl(druidServiceConfig, mapper, supplier);
+        return new AsyncDruidWebServiceImpl(
+                druidServiceConfig,
+                mapper,
+                supplier,
+                DRUID_UNCOVERED_INTERVAL_LIMIT > 0
+                        ? new HeaderNestingJsonBuilderStrategy(jsonNodeBuilderStrategy)
+                        : jsonNodeBuilderStrategy
+        );
     }
 
     /**
@@ -1367,6 +1435,13 @@ public abstract class AbstractBinderFactory implements BinderFactory {
      * @return A DruidWebService
      */
     protected DruidWebService buildDruidWebService(ObjectMapper mapper) {
+        if (BardFeatureFlag.STREAMING_RESPONSE_PARSING.isOn()) {
+            return buildDruidWebService(
+                    DruidClientConfigHelper.getServiceConfig(),
+                    mapper,
+                    AsyncDruidWebServiceImpl.RAW_JSON_NODE_BUILDER_STRATEGY
+            );
+        }
         return buildDruidWebService(DruidClientConfigHelper.getServiceConfig(), mapper);
     }
 
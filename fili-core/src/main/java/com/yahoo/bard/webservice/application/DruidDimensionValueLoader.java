@@ -6,12 +6,14 @@ import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.time.AllGranularity;
 import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.client.impl.RawJsonResponseNode;
 import com.yahoo.bard.webservice.druid.model.datasource.DataSource;
 import com.yahoo.bard.webservice.druid.model.datasource.TableDataSource;
 import com.yahoo.bard.webservice.druid.model.query.DruidSearchQuery;
@@ -21,22 +23,48 @@ import com.yahoo.bard.webservice.table.PhysicalTableDictionary;
 import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint;
 import com.yahoo.bard.webservice.web.handlers.RequestContext;
 
+import com.codahale.metrics.MetricRegistry;
+
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * The DruidDimensionRowProvider sends requests to the druid search query interface to get a list of dimension
  * values to add to the dimension cache.
+ * <p>
+ * At most {@code druid_dim_loader_max_concurrent_queries} search queries are in flight at once. Further queries are
+ * queued rather than blocking the thread loading the dimensions, and each query completing sends the next one. The
+ * values found for a dimension in all its datasources are gathered, and once its last query completes the values the
+ * dimension does not have yet are added as one batch of empty rows. The batch is applied on the executor given to
+ * the loader, such as the {@link TaskScheduler} running the loader, rather than on the threads handling the druid
+ * responses.
+ * <p>
+ * The time taken to load each dimension and the number of new values found are reported as the
+ * {@code dimensions.timer.druid_loader.<dimension>} timer and the
+ * {@code dimensions.meter.druid_loader.new_values.<dimension>} meter.
  */
 public class DruidDimensionValueLoader implements DimensionValueLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(DruidDimensionValueLoader.class);
     private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
 
     public static final String DRUID_DIM_LOADER_DIMENSIONS =
             SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_dimensions");
@@ -45,9 +73,19 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
 
     public static final String DRUID_DIM_LOADER_LOOKBACK_PERIOD =
             SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_lookback_period");
+    public static final String DRUID_DIM_LOADER_MAX_CONCURRENT_QUERIES =
+            SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_max_concurrent_queries");
+
+    public static final String LOAD_TIMER_PREFIX = "dimensions.timer.druid_loader.";
+    public static final String NEW_VALUES_METER_PREFIX = "dimensions.meter.druid_loader.new_values.";
 
     private static final Integer ROW_LIMIT = SYSTEM_CONFIG.getIntProperty(DRUID_DIM_LOADER_ROW_LIMIT, 1000);
 
+    private static final int MAX_CONCURRENT_QUERIES = SYSTEM_CONFIG.getIntProperty(
+            DRUID_DIM_LOADER_MAX_CONCURRENT_QUERIES,
+            4
+    );
+
     private static final Period LOOKBACK = new Period(SYSTEM_CONFIG.getStringProperty(
             DRUID_DIM_LOADER_LOOKBACK_PERIOD,
             "P10Y"
@@ -59,6 +97,10 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
     private final DruidWebService druidWebService;
     private final LinkedHashSet<Dimension> dimensions;
     private final LinkedHashSet<DataSource> dataSources;
+    private final Executor batchExecutor;
+    private final Semaphore queryPermits;
+    private final Queue<Runnable> queuedQueries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sendRequests = new AtomicInteger();
 
     private HttpErrorCallback errorCallback;
     private FailureCallback failureCallback;
@@ -100,6 +142,64 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
             List<String> dimensionsToLoad,
             DruidWebService druidWebService
     ) {
+        this(
+                physicalTableDictionary,
+                dimensionDictionary,
+                dimensionsToLoad,
+                druidWebService,
+                Runnable::run,
+                MAX_CONCURRENT_QUERIES
+        );
+    }
+
+    /**
+     * DruidDimensionRowProvider fetches data from Druid and adds it to the dimension cache.
+     * The dimensions loaded are taken from the system config, and the batches of new rows are applied on an executor.
+     *
+     * @param physicalTableDictionary  The physical tables
+     * @param dimensionDictionary  The dimensions to update
+     * @param druidWebService  The druid webservice to query
+     * @param batchExecutor  The executor applying the new rows of each dimension
+     */
+    public DruidDimensionValueLoader(
+            PhysicalTableDictionary physicalTableDictionary,
+            DimensionDictionary dimensionDictionary,
+            DruidWebService druidWebService,
+            Executor batchExecutor
+    ) {
+        this(
+                physicalTableDictionary,
+                dimensionDictionary,
+                SYSTEM_CONFIG.getListProperty(DRUID_DIM_LOADER_DIMENSIONS),
+                druidWebService,
+                batchExecutor,
+                MAX_CONCURRENT_QUERIES
+        );
+    }
+
+    /**
+     * DruidDimensionRowProvider fetches data from Druid and adds it to the dimension cache.
+     *
+     * @param physicalTableDictionary  The physical tables
+     * @param dimensionDictionary  The dimension dictionary to load dimensions from.
+     * @param dimensionsToLoad  The dimensions to use.
+     * @param druidWebService  The druid webservice to query.
+     * @param batchExecutor  The executor applying the new rows of each dimension
+     * @param maxConcurrentQueries  The maximum number of search queries in flight at once
+     */
+    public DruidDimensionValueLoader(
+            PhysicalTableDictionary physicalTableDictionary,
+            DimensionDictionary dimensionDictionary,
+            List<String> dimensionsToLoad,
+            DruidWebService druidWebService,
+            Executor batchExecutor,
+            int maxConcurrentQueries
+    ) {
+        if (maxConcurrentQueries <= 0) {
+            String message = "Maximum concurrent dimension loader queries must be positive: " + maxConcurrentQueries;
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
         this.dimensions = dimensionsToLoad.stream()
                 .map(dimensionDictionary::findByApiName)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
@@ -110,6 +210,8 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
                 .collect(Collectors.toCollection(LinkedHashSet::new));
 
         this.druidWebService = druidWebService;
+        this.batchExecutor = batchExecutor;
+        this.queryPermits = new Semaphore(maxConcurrentQueries);
     }
 
     @Override
@@ -132,11 +234,71 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
         return dataSources;
     }
 
+    /**
+     * Queries a dimension in all the datasources which have it, and adds the values found in any of them which the
+     * dimension does not have yet as a single batch.
+     *
+     * @param dimension  The dimension to load values for.
+     */
+    @Override
+    public void queryDimension(Dimension dimension) {
+        List<DataSource> dimensionDataSources = getDataSources().stream()
+                .filter(dataSource -> dimensionExistsInDataSource(dimension, dataSource))
+                .collect(Collectors.toList());
+        if (dimensionDataSources.isEmpty()) {
+            return;
+        }
+        DimensionLoad load = new DimensionLoad(dimension, dimensionDataSources.size());
+        dimensionDataSources.forEach(dataSource -> query(load, dataSource));
+    }
+
     @Override
     public void query(Dimension dimension, DataSource dataSource) {
-        // Success callback will update the dimension cache
-        SuccessCallback success = buildDruidDimensionsSuccessCallback(dimension);
+        query(new DimensionLoad(dimension, 1), dataSource);
+    }
+
+    /**
+     * Queue the search query for the values of a dimension in a datasource, and send it if fewer than the maximum
+     * number of queries are in flight.
+     *
+     * @param load  The load of the dimension the query is part of
+     * @param dataSource  The datasource to query values for
+     */
+    private void query(DimensionLoad load, DataSource dataSource) {
+        queuedQueries.add(() -> sendQuery(load, dataSource));
+        sendQueuedQueries();
+    }
 
+    /**
+     * Send queued queries while fewer than the maximum number of queries are in flight.
+     * <p>
+     * Only one thread sends at a time. A thread asking to send while another one is sending leaves it to that thread,
+     * which checks the queue again before it stops, so responses handled on the sending thread do not recurse.
+     */
+    private void sendQueuedQueries() {
+        if (sendRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (!queuedQueries.isEmpty() && queryPermits.tryAcquire()) {
+                Runnable next = queuedQueries.poll();
+                if (next == null) {
+                    queryPermits.release();
+                } else {
+                    next.run();
+                }
+            }
+        } while (sendRequests.decrementAndGet() != 0);
+    }
+
+    /**
+     * Send the search query for the values of a dimension in a datasource, holding a permit until it completes.
+     *
+     * @param load  The load of the dimension the query is part of
+     * @param dataSource  The datasource to query values for
+     */
+    private void sendQuery(DimensionLoad load, DataSource dataSource) {
+        Dimension dimension = load.dimension;
         Interval interval = new Interval(LOOKBACK, DateTime.now());
 
         DruidSearchQuery druidSearchQuery = new DruidSearchQuery(
@@ -151,35 +313,180 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
         );
 
         RequestContext requestContext = new RequestContext(null, false);
-        druidWebService.postDruidQuery(
-                requestContext,
-                success,
-                errorCallback,
-                failureCallback,
-                druidSearchQuery
-        );
+        try {
+            druidWebService.postDruidQuery(
+                    requestContext,
+                    buildDruidDimensionsSuccessCallback(load),
+                    buildErrorCallback(load),
+                    buildFailureCallback(load),
+                    druidSearchQuery
+            );
+        } catch (RuntimeException e) {
+            LOG.error("Failed to query values of dimension {}", dimension.getApiName(), e);
+            finishQuery(load, false);
+        }
     }
 
     /**
      * Build the callback to handle the successful druid query response.
      *
-     * @param dimension  Dimension for which we are getting values
+     * @param load  The load of the dimension for which we are getting values
      *
      * @return the callback
      */
-    private SuccessCallback buildDruidDimensionsSuccessCallback(Dimension dimension) {
+    private SuccessCallback buildDruidDimensionsSuccessCallback(DimensionLoad load) {
         return rootNode -> {
-            rootNode.forEach(intervalNode -> {
-                intervalNode.get("result").forEach(dim -> {
-                    String value = dim.get("value").asText();
-                    if (dimension.findDimensionRowByKeyValue(value) == null) {
-                        DimensionRow dimRow = dimension.createEmptyDimensionRow(value);
-                        updateDimensionWithValue(dimension, dimRow);
-                    }
+            boolean succeeded = false;
+            try {
+                RawJsonResponseNode.materialize(rootNode).forEach(intervalNode -> {
+                    intervalNode.get("result").forEach(dim -> load.values.add(dim.get("value").asText()));
                 });
-            });
+                succeeded = true;
+            } finally {
+                finishQuery(load, succeeded);
+            }
+        };
+    }
+
+    /**
+     * Build the callback to handle a druid http error, which completes the query before delegating.
+     *
+     * @param load  The load of the dimension for which we are getting values
+     *
+     * @return the callback
+     */
+    private HttpErrorCallback buildErrorCallback(DimensionLoad load) {
+        return (statusCode, reasonPhrase, responseBody) -> {
+            try {
+                if (errorCallback != null) {
+                    errorCallback.invoke(statusCode, reasonPhrase, responseBody);
+                }
+            } finally {
+                finishQuery(load, false);
+            }
+        };
+    }
 
-            updateDimension(dimension);
+    /**
+     * Build the callback to handle a failed druid query, which completes the query before delegating.
+     *
+     * @param load  The load of the dimension for which we are getting values
+     *
+     * @return the callback
+     */
+    private FailureCallback buildFailureCallback(DimensionLoad load) {
+        return error -> {
+            try {
+                if (failureCallback != null) {
+                    failureCallback.invoke(error);
+                }
+            } finally {
+                finishQuery(load, false);
+            }
         };
     }
+
+    /**
+     * Release the permit of a query which was sent, complete it and send the next queued query.
+     *
+     * @param load  The load of the dimension the query is part of
+     * @param succeeded  Whether the query found values
+     */
+    private void finishQuery(DimensionLoad load, boolean succeeded) {
+        queryPermits.release();
+        completeQuery(load, succeeded);
+        sendQueuedQueries();
+    }
+
+    /**
+     * Complete a query of a dimension load, applying the values found once all its queries are complete.
+     *
+     * @param load  The load of the dimension the query is part of
+     * @param succeeded  Whether the query found values
+     */
+    private void completeQuery(DimensionLoad load, boolean succeeded) {
+        if (succeeded) {
+            load.succeeded = true;
+        }
+        if (load.pendingQueries.decrementAndGet() == 0) {
+            batchExecutor.execute(() -> addNewValues(load));
+        }
+    }
+
+    /**
+     * Add empty rows for the values of a completed dimension load which the dimension does not have yet.
+     * <p>
+     * The values found are diffed in one pass against the key values of all the rows of the dimension, and the new
+     * rows are added in a single batch. The dimension is marked as updated if any of its queries succeeded.
+     *
+     * @param load  The completed load of a dimension
+     */
+    private void addNewValues(DimensionLoad load) {
+        Dimension dimension = load.dimension;
+        if (!load.succeeded) {
+            LOG.warn("No values were loaded for dimension {}", dimension.getApiName());
+            return;
+        }
+
+        Set<String> newValues = new LinkedHashSet<>(load.values);
+        newValues.removeAll(dimension.getSearchProvider().findAllDimensionKeys());
+        if (!newValues.isEmpty()) {
+            dimension.addAllDimensionRows(newValues.stream()
+                    .map(value -> buildEmptyDimensionRow(dimension, value))
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
+        }
+        updateDimension(dimension);
+
+        long elapsedNanos = System.nanoTime() - load.startNanos;
+        REGISTRY.timer(LOAD_TIMER_PREFIX + dimension.getApiName()).update(elapsedNanos, TimeUnit.NANOSECONDS);
+        REGISTRY.meter(NEW_VALUES_METER_PREFIX + dimension.getApiName()).mark(newValues.size());
+        LOG.debug(
+                "Loaded {} values of dimension {}, {} new, in {} ms",
+                load.values.size(),
+                dimension.getApiName(),
+                newValues.size(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+        );
+    }
+
+    /**
+     * Build a row of a dimension with a key value and empty values for the other fields.
+     * <p>
+     * Unlike {@link Dimension#createEmptyDimensionRow(String)}, this does not look up whether the row exists.
+     *
+     * @param dimension  The dimension of the row
+     * @param keyValue  The key value of the row
+     *
+     * @return the empty row
+     */
+    private static DimensionRow buildEmptyDimensionRow(Dimension dimension, String keyValue) {
+        Map<DimensionField, String> fieldValues = new LinkedHashMap<>();
+        for (DimensionField dimensionField : dimension.getDimensionFields()) {
+            fieldValues.put(dimensionField, "");
+        }
+        fieldValues.put(dimension.getKey(), keyValue);
+        return new DimensionRow(dimension.getKey(), fieldValues);
+    }
+
+    /**
+     * The queries for the values of a dimension in its datasources and the values they found.
+     */
+    private static final class DimensionLoad {
+        private final Dimension dimension;
+        private final AtomicInteger pendingQueries;
+        private final Set<String> values = ConcurrentHashMap.newKeySet();
+        private final long startNanos = System.nanoTime();
+        private volatile boolean succeeded;
+
+        /**
+         * Constructor.
+         *
+         * @param dimension  The dimension being loaded
+         * @param queries  The number of queries for its values
+         */
+        DimensionLoad(Dimension dimension, int queries) {
+            this.dimension = dimension;
+            this.pendingQueries = new AtomicInteger(queries);
+        }
+    }
 }
@@ -36,7 +36,13 @@ public enum BardFeatureFlag implements FeatureFlag {
     DEFAULT_IN_FILTER("default_in_filter_enabled"),
     REQUIRE_METRICS_QUERY("require_metrics_in_query"),
     POJO_DARI_REQUIRE_ALL_STAGES_CALLED("require_all_data_request_building_stages_called"),
-    METRIC_TYPE_IN_META_BLOCK("metric_type_in_meta_block")
+    METRIC_TYPE_IN_META_BLOCK("metric_type_in_meta_block"),
+    /** If true, Druid data responses are stream parsed into result sets rather than read into a JSON tree first. */
+    STREAMING_RESPONSE_PARSING("streaming_response_parsing_enabled"),
+    /** If true, Druid responses are stream parsed through primitive backed columnar result sets. */
+    COLUMNAR_RESULT_SET("columnar_result_set_enabled"),
+    /** If true, identical Druid queries in flight at the same time are sent to Druid once. */
+    QUERY_COALESCING("query_coalescing_enabled")
     ;
 
     static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
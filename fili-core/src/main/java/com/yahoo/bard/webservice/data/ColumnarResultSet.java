@@ -0,0 +1,770 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A read only result set which stores its rows by column in primitive arrays.
+ * <p>
+ * Timestamps are stored as epoch millis, numeric metrics as longs or doubles with a null bitmap, and dimension values
+ * as ids into a dictionary of the distinct dimension rows in the response. Hot paths can read the columns directly
+ * through the columnar accessors, and everything else through a read only list of {@link Result} views, which are
+ * built on access. Result set mappers and response writers work on row based result sets, which
+ * {@link #toResultSet()} copies the rows into.
+ */
+public class ColumnarResultSet {
+
+    private final ResultSetSchema schema;
+    private final int size;
+    private final long[] timestamps;
+    private final DateTimeZone dateTimeZone;
+
+    private final DimensionColumn[] dimensionColumns;
+    private final Map<DimensionColumn, Integer> dimensionIndexes;
+    private final int[][] dimensionIds;
+    private final DimensionRow[][] dimensionDictionaries;
+
+    private final MetricColumn[] metricColumns;
+    private final Map<MetricColumn, Integer> metricIndexes;
+    private final MetricValues[] metricValues;
+
+    private final List<Result> rows = new ResultView(this);
+
+    /**
+     * Constructor.
+     *
+     * @param builder  The builder holding the columns of the result set
+     */
+    ColumnarResultSet(@NotNull Builder builder) {
+        this.schema = builder.schema;
+        this.size = builder.size;
+        this.timestamps = Arrays.copyOf(builder.timestamps, size);
+        this.dateTimeZone = builder.dateTimeZone;
+
+        this.dimensionColumns = builder.dimensionColumns;
+        this.dimensionIndexes = builder.dimensionIndexes;
+        this.dimensionIds = new int[dimensionColumns.length][];
+        this.dimensionDictionaries = new DimensionRow[dimensionColumns.length][];
+        for (int i = 0; i < dimensionColumns.length; i++) {
+            dimensionIds[i] = Arrays.copyOf(builder.dimensionIds[i], size);
+            dimensionDictionaries[i] = builder.dimensionDictionaries.get(i).toArray(new DimensionRow[0]);
+        }
+
+        this.metricColumns = builder.metricColumns;
+        this.metricIndexes = builder.metricIndexes;
+        this.metricValues = builder.metricValues;
+        for (MetricValues values : metricValues) {
+            values.trim(size);
+        }
+    }
+
+    /**
+     * Get the timestamp of a row in epoch millis.
+     *
+     * @param row  The index of the row
+     *
+     * @return the timestamp of the row
+     */
+    public long getTimestampMillis(int row) {
+        checkRow(row);
+        return timestamps[row];
+    }
+
+    /**
+     * Get the time zone the timestamps of this result set are expressed in.
+     *
+     * @return the time zone of the result set
+     */
+    public DateTimeZone getDateTimeZone() {
+        return dateTimeZone;
+    }
+
+    /**
+     * Get the dictionary id of the value of a dimension in a row.
+     * <p>
+     * Rows with the same id have the same dimension row, so ids can be compared and grouped on directly.
+     *
+     * @param column  The dimension column
+     * @param row  The index of the row
+     *
+     * @return the id of the dimension row, or -1 if the row has no value for the column
+     */
+    public int getDimensionId(DimensionColumn column, int row) {
+        checkRow(row);
+        return dimensionIds[dimensionIndex(column)][row];
+    }
+
+    /**
+     * Get the dimension row of a dimension in a row.
+     *
+     * @param column  The dimension column
+     * @param row  The index of the row
+     *
+     * @return the dimension row, or null if the row has no value for the column
+     */
+    public DimensionRow getDimensionRow(DimensionColumn column, int row) {
+        int index = dimensionIndex(column);
+        checkRow(row);
+        int id = dimensionIds[index][row];
+        return id < 0 ? null : dimensionDictionaries[index][id];
+    }
+
+    /**
+     * Get the distinct dimension rows of a dimension column, indexed by dictionary id.
+     *
+     * @param column  The dimension column
+     *
+     * @return the dictionary of dimension rows for the column
+     */
+    public List<DimensionRow> getDimensionDictionary(DimensionColumn column) {
+        return Collections.unmodifiableList(Arrays.asList(dimensionDictionaries[dimensionIndex(column)]));
+    }
+
+    /**
+     * Check whether a metric has a primitive numeric value in a row.
+     *
+     * @param column  The metric column
+     * @param row  The index of the row
+     *
+     * @return true if the value can be read with {@link #getMetricValueAsLong} or {@link #getMetricValueAsDouble}
+     */
+    public boolean isNumeric(MetricColumn column, int row) {
+        checkRow(row);
+        return metricValues[metricIndex(column)].isNumeric(row);
+    }
+
+    /**
+     * Get the value of a numeric metric in a row as a double, without boxing.
+     *
+     * @param column  The metric column
+     * @param row  The index of the row
+     *
+     * @return the value of the metric
+     *
+     * @throws IllegalStateException if the metric does not have a numeric value in the row
+     */
+    public double getMetricValueAsDouble(MetricColumn column, int row) {
+        checkRow(row);
+        return metricValues[metricIndex(column)].getDouble(row);
+    }
+
+    /**
+     * Get the value of a numeric metric in a row as a long, without boxing.
+     *
+     * @param column  The metric column
+     * @param row  The index of the row
+     *
+     * @return the value of the metric, truncated if it is stored as a double
+     *
+     * @throws IllegalStateException if the metric does not have a numeric value in the row
+     */
+    public long getMetricValueAsLong(MetricColumn column, int row) {
+        checkRow(row);
+        return metricValues[metricIndex(column)].getLong(row);
+    }
+
+    /**
+     * Get the value of a metric in a row, as it would appear in a {@link Result}.
+     *
+     * @param column  The metric column
+     * @param row  The index of the row
+     *
+     * @return the value of the metric, null if the value is null or missing
+     */
+    public Object getMetricValue(MetricColumn column, int row) {
+        checkRow(row);
+        return metricValues[metricIndex(column)].getValue(row);
+    }
+
+    /**
+     * Build the result view of a row.
+     *
+     * @param row  The index of the row
+     *
+     * @return a result holding the values of the row
+     */
+    private Result buildResult(int row) {
+        LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
+        for (int i = 0; i < dimensionColumns.length; i++) {
+            int id = dimensionIds[i][row];
+            if (id >= 0) {
+                dimensionRows.put(dimensionColumns[i], dimensionDictionaries[i][id]);
+            }
+        }
+
+        LinkedHashMap<MetricColumn, Object> metrics = new LinkedHashMap<>();
+        for (int i = 0; i < metricColumns.length; i++) {
+            if (metricValues[i].isPresent(row)) {
+                metrics.put(metricColumns[i], metricValues[i].getValue(row));
+            }
+        }
+
+        return new Result(dimensionRows, metrics, new DateTime(timestamps[row], dateTimeZone));
+    }
+
+    /**
+     * Find the position of a dimension column.
+     *
+     * @param column  The dimension column
+     *
+     * @return the position of the column
+     */
+    private int dimensionIndex(DimensionColumn column) {
+        Integer index = dimensionIndexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Dimension column " + column + " is not in the result set schema");
+        }
+        return index;
+    }
+
+    /**
+     * Find the position of a metric column.
+     *
+     * @param column  The metric column
+     *
+     * @return the position of the column
+     */
+    private int metricIndex(MetricColumn column) {
+        Integer index = metricIndexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Metric column " + column + " is not in the result set schema");
+        }
+        return index;
+    }
+
+    /**
+     * Check that a row index is in range.
+     *
+     * @param row  The index of the row
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Getter for the result set schema.
+     *
+     * @return The schema associated with this result set
+     */
+    public ResultSetSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a view of a row as a result.
+     *
+     * @param row  The index of the row
+     *
+     * @return a result holding the values of the row, built on each call
+     */
+    public Result get(int row) {
+        checkRow(row);
+        return buildResult(row);
+    }
+
+    /**
+     * Get a read only list of views of the rows as results.
+     *
+     * @return the rows as results, each built when it is accessed
+     */
+    public List<Result> asList() {
+        return rows;
+    }
+
+    /**
+     * Copy the rows into a row based result set, for the result set mappers and response writers.
+     *
+     * @return a result set holding the rows of this one
+     */
+    public ResultSet toResultSet() {
+        return new ResultSet(schema, rows);
+    }
+
+    @Override
+    public String toString() {
+        return "Schema: " + schema + ", rows: " + size;
+    }
+
+    /**
+     * The read only list of result views of the rows of the result set.
+     */
+    private static final class ResultView extends AbstractList<Result> {
+        private final ColumnarResultSet resultSet;
+
+        /**
+         * Constructor.
+         *
+         * @param resultSet  The result set viewed
+         */
+        ResultView(@NotNull ColumnarResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Result get(int index) {
+            return resultSet.get(index);
+        }
+
+        @Override
+        public int size() {
+            return resultSet.size;
+        }
+    }
+
+    /**
+     * The values of one metric column.
+     * <p>
+     * A column stores longs or doubles depending on the first value written to it. If a value of another kind is
+     * written later, the column falls back to storing the exact values it would report as objects.
+     */
+    private static final class MetricValues {
+
+        private long[] longs;
+        private double[] doubles;
+        private Object[] objects;
+        private final BitSet nulls = new BitSet();
+        private final BitSet present = new BitSet();
+
+        /**
+         * Store a long value.
+         *
+         * @param row  The index of the row
+         * @param value  The value
+         */
+        private void setLong(int row, long value) {
+            present.set(row);
+            if (objects == null && doubles == null) {
+                longs = ensureCapacity(longs, row);
+                longs[row] = value;
+            } else {
+                setObject(row, BigDecimal.valueOf(value));
+            }
+        }
+
+        /**
+         * Store a double value.
+         *
+         * @param row  The index of the row
+         * @param value  The value
+         */
+        private void setDouble(int row, double value) {
+            present.set(row);
+            if (objects == null && longs == null) {
+                doubles = ensureCapacity(doubles, row);
+                doubles[row] = value;
+            } else {
+                setObject(row, BigDecimal.valueOf(value));
+            }
+        }
+
+        /**
+         * Store an arbitrary value, moving the column to object storage if it held primitives.
+         *
+         * @param row  The index of the row
+         * @param value  The value
+         */
+        private void setObject(int row, Object value) {
+            present.set(row);
+            if (value == null) {
+                nulls.set(row);
+                return;
+            }
+            if (objects == null) {
+                Object[] values = new Object[Math.max(row + 1, 16)];
+                for (int i = present.nextSetBit(0); i >= 0 && i < row; i = present.nextSetBit(i + 1)) {
+                    values[i] = getValue(i);
+                }
+                objects = values;
+                longs = null;
+                doubles = null;
+            }
+            objects = ensureCapacity(objects, row);
+            objects[row] = value;
+        }
+
+        /**
+         * Check whether a row has a value, possibly null, for this column.
+         *
+         * @param row  The index of the row
+         *
+         * @return true if the row has a value
+         */
+        private boolean isPresent(int row) {
+            return present.get(row);
+        }
+
+        /**
+         * Check whether a row has a primitive value for this column.
+         *
+         * @param row  The index of the row
+         *
+         * @return true if the row has a long or double value
+         */
+        private boolean isNumeric(int row) {
+            return present.get(row) && !nulls.get(row) && objects == null;
+        }
+
+        /**
+         * Get the value of a row as a double.
+         *
+         * @param row  The index of the row
+         *
+         * @return the value
+         */
+        private double getDouble(int row) {
+            if (!isNumeric(row)) {
+                throw new IllegalStateException("Row " + row + " does not have a numeric value");
+            }
+            return longs != null ? longs[row] : doubles[row];
+        }
+
+        /**
+         * Get the value of a row as a long.
+         *
+         * @param row  The index of the row
+         *
+         * @return the value
+         */
+        private long getLong(int row) {
+            if (!isNumeric(row)) {
+                throw new IllegalStateException("Row " + row + " does not have a numeric value");
+            }
+            return longs != null ? longs[row] : (long) doubles[row];
+        }
+
+        /**
+         * Get the value of a row as it appears in a {@link Result}.
+         *
+         * @param row  The index of the row
+         *
+         * @return the value, null if it is missing or null
+         */
+        private Object getValue(int row) {
+            if (!present.get(row) || nulls.get(row)) {
+                return null;
+            }
+            if (objects != null) {
+                return objects[row];
+            }
+            return longs != null ? BigDecimal.valueOf(longs[row]) : BigDecimal.valueOf(doubles[row]);
+        }
+
+        /**
+         * Release any unused capacity once the column is complete.
+         *
+         * @param size  The number of rows in the column
+         */
+        private void trim(int size) {
+            if (longs != null) {
+                longs = Arrays.copyOf(longs, size);
+            }
+            if (doubles != null) {
+                doubles = Arrays.copyOf(doubles, size);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, size);
+            }
+        }
+
+        /**
+         * Grow an array so that it can hold the given row.
+         *
+         * @param array  The array, or null if it has not been allocated
+         * @param row  The index of the row
+         *
+         * @return an array large enough to hold the row
+         */
+        private static long[] ensureCapacity(long[] array, int row) {
+            if (array == null) {
+                return new long[Math.max(row + 1, 16)];
+            }
+            return row < array.length ? array : Arrays.copyOf(array, Math.max(row + 1, array.length * 2));
+        }
+
+        /**
+         * Grow an array so that it can hold the given row.
+         *
+         * @param array  The array, or null if it has not been allocated
+         * @param row  The index of the row
+         *
+         * @return an array large enough to hold the row
+         */
+        private static double[] ensureCapacity(double[] array, int row) {
+            if (array == null) {
+                return new double[Math.max(row + 1, 16)];
+            }
+            return row < array.length ? array : Arrays.copyOf(array, Math.max(row + 1, array.length * 2));
+        }
+
+        /**
+         * Grow an array so that it can hold the given row.
+         *
+         * @param array  The array
+         * @param row  The index of the row
+         *
+         * @return an array large enough to hold the row
+         */
+        private static Object[] ensureCapacity(Object[] array, int row) {
+            return row < array.length ? array : Arrays.copyOf(array, Math.max(row + 1, array.length * 2));
+        }
+    }
+
+    /**
+     * Builds a columnar result set one row at a time.
+     * <p>
+     * Call {@link #addRow()} to start each row, then set the timestamp and the column values of that row. Dimension
+     * values are dictionary encoded as they are added, so each distinct key value is only resolved to a dimension row
+     * once per result set.
+     */
+    public static class Builder {
+
+        private final ResultSetSchema schema;
+        private final DateTimeZone dateTimeZone;
+
+        private final DimensionColumn[] dimensionColumns;
+        private final Map<DimensionColumn, Integer> dimensionIndexes;
+        private final int[][] dimensionIds;
+        private final List<List<DimensionRow>> dimensionDictionaries;
+        private final List<Map<String, Integer>> dimensionKeyIds;
+
+        private final MetricColumn[] metricColumns;
+        private final Map<MetricColumn, Integer> metricIndexes;
+        private final MetricValues[] metricValues;
+
+        private long[] timestamps = new long[16];
+        private int size = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param schema  The schema of the result set
+         * @param dateTimeZone  The time zone of the result timestamps
+         */
+        public Builder(ResultSetSchema schema, DateTimeZone dateTimeZone) {
+            this.schema = schema;
+            this.dateTimeZone = dateTimeZone;
+
+            this.dimensionColumns = schema.getColumns(DimensionColumn.class).toArray(new DimensionColumn[0]);
+            this.dimensionIndexes = new HashMap<>();
+            this.dimensionIds = new int[dimensionColumns.length][];
+            this.dimensionDictionaries = new ArrayList<>(dimensionColumns.length);
+            this.dimensionKeyIds = new ArrayList<>(dimensionColumns.length);
+            for (int i = 0; i < dimensionColumns.length; i++) {
+                dimensionIndexes.put(dimensionColumns[i], i);
+                dimensionIds[i] = new int[timestamps.length];
+                Arrays.fill(dimensionIds[i], -1);
+                dimensionDictionaries.add(new ArrayList<>());
+                dimensionKeyIds.add(new HashMap<>());
+            }
+
+            this.metricColumns = schema.getColumns(MetricColumn.class).toArray(new MetricColumn[0]);
+            this.metricIndexes = new HashMap<>();
+            this.metricValues = new MetricValues[metricColumns.length];
+            for (int i = 0; i < metricColumns.length; i++) {
+                metricIndexes.put(metricColumns[i], i);
+                metricValues[i] = new MetricValues();
+            }
+        }
+
+        /**
+         * Start a new row, which becomes the current row.
+         *
+         * @return the index of the new row
+         */
+        public int addRow() {
+            if (size == timestamps.length) {
+                int capacity = timestamps.length * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                for (int i = 0; i < dimensionIds.length; i++) {
+                    dimensionIds[i] = Arrays.copyOf(dimensionIds[i], capacity);
+                    Arrays.fill(dimensionIds[i], size, capacity, -1);
+                }
+            }
+            return size++;
+        }
+
+        /**
+         * Set the timestamp of a row.
+         *
+         * @param row  The index of the row
+         * @param timestampMillis  The timestamp in epoch millis
+         *
+         * @return the builder
+         */
+        public Builder setTimestamp(int row, long timestampMillis) {
+            checkRow(row);
+            timestamps[row] = timestampMillis;
+            return this;
+        }
+
+        /**
+         * Set the value of a dimension in the current row by its key value.
+         * <p>
+         * The key is resolved to a dimension row the first time it is seen, using an empty dimension row if the
+         * dimension doesn't know the key.
+         *
+         * @param column  The dimension column
+         * @param keyValue  The key value of the dimension row
+         *
+         * @return the builder
+         */
+        public Builder setDimensionValue(DimensionColumn column, String keyValue) {
+            int index = dimensionIndex(column);
+            Integer id = dimensionKeyIds.get(index).get(keyValue);
+            if (id == null) {
+                Dimension dimension = column.getDimension();
+                DimensionRow dimensionRow = dimension.findDimensionRowByKeyValue(keyValue);
+                if (dimensionRow == null) {
+                    dimensionRow = dimension.createEmptyDimensionRow(keyValue);
+                }
+                List<DimensionRow> dictionary = dimensionDictionaries.get(index);
+                id = dictionary.size();
+                dictionary.add(dimensionRow);
+                dimensionKeyIds.get(index).put(keyValue, id);
+            }
+            dimensionIds[index][currentRow()] = id;
+            return this;
+        }
+
+        /**
+         * Set the value of a metric in the current row.
+         *
+         * @param column  The metric column
+         * @param value  The value
+         *
+         * @return the builder
+         */
+        public Builder setMetricValue(MetricColumn column, long value) {
+            metricValues[metricIndex(column)].setLong(currentRow(), value);
+            return this;
+        }
+
+        /**
+         * Set the value of a metric in the current row.
+         *
+         * @param column  The metric column
+         * @param value  The value
+         *
+         * @return the builder
+         */
+        public Builder setMetricValue(MetricColumn column, double value) {
+            metricValues[metricIndex(column)].setDouble(currentRow(), value);
+            return this;
+        }
+
+        /**
+         * Set a non primitive value, such as a string, boolean, null or JsonNode, of a metric in the current row.
+         *
+         * @param column  The metric column
+         * @param value  The value
+         *
+         * @return the builder
+         */
+        public Builder setMetricValue(MetricColumn column, Object value) {
+            metricValues[metricIndex(column)].setObject(currentRow(), value);
+            return this;
+        }
+
+        /**
+         * Get the number of rows added so far.
+         *
+         * @return the number of rows
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Build the result set.
+         *
+         * @return a columnar result set holding the rows added to the builder
+         */
+        public ColumnarResultSet build() {
+            return new ColumnarResultSet(this);
+        }
+
+        /**
+         * Get the index of the current row.
+         *
+         * @return the index of the most recently added row
+         */
+        private int currentRow() {
+            if (size == 0) {
+                throw new IllegalStateException("No row has been added to the result set");
+            }
+            return size - 1;
+        }
+
+        /**
+         * Check that a row index refers to a row that has been added.
+         *
+         * @param row  The index of the row
+         */
+        private void checkRow(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+            }
+        }
+
+        /**
+         * Find the position of a dimension column.
+         *
+         * @param column  The dimension column
+         *
+         * @return the position of the column
+         */
+        private int dimensionIndex(DimensionColumn column) {
+            Integer index = dimensionIndexes.get(column);
+            if (index == null) {
+                throw new IllegalArgumentException("Dimension column " + column + " is not in the result set schema");
+            }
+            return index;
+        }
+
+        /**
+         * Find the position of a metric column.
+         *
+         * @param column  The metric column
+         *
+         * @return the position of the column
+         */
+        private int metricIndex(MetricColumn column) {
+            Integer index = metricIndexes.get(column);
+            if (index == null) {
+                throw new IllegalArgumentException("Metric column " + column + " is not in the result set schema");
+            }
+            return index;
+        }
+    }
+}
@@ -5,11 +5,13 @@ package com.yahoo.bard.webservice.data;
 import static com.yahoo.bard.webservice.web.ErrorMessageFormat.TOP_N_UNSORTED;
 
 import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.data.QueryPlanCache.QueryPlan;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.FilterBuilderException;
 import com.yahoo.bard.webservice.data.dimension.VirtualDimension;
 import com.yahoo.bard.webservice.data.metric.TemplateDruidQuery;
 import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
 import com.yahoo.bard.webservice.druid.model.builders.DruidFilterBuilder;
 import com.yahoo.bard.webservice.druid.model.builders.DruidHavingBuilder;
 import com.yahoo.bard.webservice.druid.model.datasource.DataSource;
@@ -28,11 +30,13 @@ import com.yahoo.bard.webservice.druid.model.query.TopNQuery;
 import com.yahoo.bard.webservice.table.ConstrainedTable;
 import com.yahoo.bard.webservice.table.LogicalTable;
 import com.yahoo.bard.webservice.table.LogicalTableDictionary;
+import com.yahoo.bard.webservice.table.PhysicalTable;
 import com.yahoo.bard.webservice.table.TableGroup;
 import com.yahoo.bard.webservice.table.TableIdentifier;
 import com.yahoo.bard.webservice.table.resolver.NoMatchFoundException;
 import com.yahoo.bard.webservice.table.resolver.PhysicalTableResolver;
 import com.yahoo.bard.webservice.table.resolver.QueryPlanningConstraint;
+import com.yahoo.bard.webservice.table.resolver.TableResolutionContext;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 import com.yahoo.bard.webservice.web.filters.ApiFilters;
 
@@ -43,6 +47,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -60,6 +65,7 @@ public class DruidQueryBuilder {
     protected final PhysicalTableResolver resolver;
     protected final DruidFilterBuilder druidFilterBuilder;
     protected final DruidHavingBuilder druidHavingBuilder;
+    protected final QueryPlanCache queryPlanCache;
 
     /**
      * Constructor.
@@ -75,11 +81,31 @@ public class DruidQueryBuilder {
             PhysicalTableResolver resolver,
             DruidFilterBuilder druidFilterBuilder,
             DruidHavingBuilder druidHavingBuilder
+    ) {
+        this(tableDictionary, resolver, druidFilterBuilder, druidHavingBuilder, new QueryPlanCache());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param tableDictionary  Dictionary of logical tables used to look up table groups
+     * @param resolver  Strategy for resolving the physical table
+     * @param druidFilterBuilder  A factory methods for druid filters
+     * @param druidHavingBuilder  A factory methods for druid havings
+     * @param queryPlanCache  Cache of the tables resolved and queries built for the shapes of requests
+     */
+    public DruidQueryBuilder(
+            LogicalTableDictionary tableDictionary,
+            PhysicalTableResolver resolver,
+            DruidFilterBuilder druidFilterBuilder,
+            DruidHavingBuilder druidHavingBuilder,
+            QueryPlanCache queryPlanCache
     ) {
         this.tableDictionary = tableDictionary;
         this.resolver = resolver;
         this.druidFilterBuilder = druidFilterBuilder;
         this.druidHavingBuilder = druidHavingBuilder;
+        this.queryPlanCache = queryPlanCache;
         LOG.trace("Table dictionary: {} \nPhysical table resolver: {}", tableDictionary, resolver);
     }
 
@@ -140,9 +166,24 @@ public class DruidQueryBuilder {
                         .orElseGet(request::getApiFilters)
         );
 
-        // Resolve the table from the the group, the combined dimensions in request, and template time grain
         QueryPlanningConstraint constraint = new QueryPlanningConstraint(tableFilteredRequest, template);
-        ConstrainedTable table = resolver.resolve(group.getPhysicalTables(), constraint).withConstraint(constraint);
+        DefaultQueryType queryType = getQueryType(tableFilteredRequest, template, druidTopNMetric);
+
+        // Reuse the plan of an earlier request of the same shape, substituting the filter and intervals of this one
+        Set<PhysicalTable> candidates = group.getPhysicalTables();
+        TableResolutionContext context = resolver.buildContext(constraint);
+        List<Object> planKey = getPlanKey(tableFilteredRequest, template, context, candidates, queryType);
+        QueryPlan plan = queryPlanCache.get(planKey);
+        if (plan != null) {
+            return withFilterAndIntervals(
+                    plan.getQuery(),
+                    druidFilterBuilder.buildFilters(tableFilteredRequest.getApiFilters()),
+                    tableFilteredRequest.getIntervals()
+            );
+        }
+
+        // Resolve the table from the the group, the combined dimensions in request, and template time grain
+        ConstrainedTable table = resolver.resolve(candidates, context).withConstraint(constraint);
 
 
         Filter filter = druidFilterBuilder.buildFilters(tableFilteredRequest.getApiFilters());
@@ -151,7 +192,7 @@ public class DruidQueryBuilder {
                 .filter(dim -> ! (dim instanceof VirtualDimension))
                 .collect(Collectors.toCollection(LinkedHashSet::new));
 
-        return druidTopNMetric != null ?
+        DruidAggregationQuery<?> query = queryType == DefaultQueryType.TOP_N ?
             buildTopNQuery(
                     template,
                     table,
@@ -163,7 +204,7 @@ public class DruidQueryBuilder {
                     druidTopNMetric,
                     tableFilteredRequest.getTopN().get()
             ) :
-             canOptimizeTimeSeries(tableFilteredRequest, template) ?
+             queryType == DefaultQueryType.TIMESERIES ?
                 buildTimeSeriesQuery(
                         template,
                         table,
@@ -183,6 +224,82 @@ public class DruidQueryBuilder {
                         tableFilteredRequest.getIntervals(),
                         druidOrderBy
                 );
+
+        queryPlanCache.put(planKey, new QueryPlan(table, query));
+        return query;
+    }
+
+    /**
+     * Choose the type of the druid query for a request.
+     *
+     * @param request  The request, with the filters of its logical table
+     * @param template  The template query of the request
+     * @param druidTopNMetric  The metric a topN query is sorted by, or null if the request is not a topN query
+     *
+     * @return the query type
+     */
+    private DefaultQueryType getQueryType(
+            DataApiRequest request,
+            TemplateDruidQuery template,
+            TopNMetric druidTopNMetric
+    ) {
+        if (druidTopNMetric != null) {
+            return DefaultQueryType.TOP_N;
+        }
+        return canOptimizeTimeSeries(request, template) ? DefaultQueryType.TIMESERIES : DefaultQueryType.GROUP_BY;
+    }
+
+    /**
+     * Build the key of the plan for a request, if plans are cached.
+     *
+     * @param request  The request, with the filters of its logical table
+     * @param template  The template query of the request
+     * @param context  The context the physical table is resolved in
+     * @param candidates  The physical tables of the logical table
+     * @param queryType  The type of the druid query built for the request
+     *
+     * @return the plan key, or null if the plan of the request is not cached
+     */
+    private List<Object> getPlanKey(
+            DataApiRequest request,
+            TemplateDruidQuery template,
+            TableResolutionContext context,
+            Set<PhysicalTable> candidates,
+            DefaultQueryType queryType
+    ) {
+        return queryPlanCache.isEnabled() ?
+                QueryPlanCache.planKey(request, template, context, candidates, queryType) :
+                null;
+    }
+
+    /**
+     * Copy a planned query with the filter and intervals of another request.
+     * <p>
+     * The filter is only set on the innermost query, as when the query is built, and each level of the copy gets a
+     * new context for the current request.
+     *
+     * @param query  The planned query, possibly nested
+     * @param filter  The filter of the request
+     * @param intervals  The intervals of the request
+     *
+     * @return a copy of the query for the request
+     */
+    protected DruidAggregationQuery<?> withFilterAndIntervals(
+            DruidAggregationQuery<?> query,
+            Filter filter,
+            List<Interval> intervals
+    ) {
+        Optional<? extends DruidAggregationQuery> innerQuery = query.getInnerQuery();
+        DruidAggregationQuery<?> substituted;
+        if (innerQuery.isPresent()) {
+            DruidAggregationQuery<?> inner = withFilterAndIntervals(innerQuery.get(), filter, intervals);
+            substituted = query.withDataSource(new QueryDataSource(inner));
+        } else {
+            substituted = query.withFilter(filter);
+        }
+        substituted = substituted.withIntervals(intervals);
+        // A null context is replaced by a new one for the current request, as when the query is built
+        return substituted.withContext(null);
     }
 
     /**
@@ -12,6 +12,9 @@ import com.yahoo.bard.webservice.druid.model.QueryType;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.table.Column;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import org.joda.time.DateTime;
@@ -19,9 +22,15 @@ import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -36,6 +45,10 @@ public class DruidResponseParser {
 
     private static final Logger LOG = LoggerFactory.getLogger(DruidResponseParser.class);
 
+    private static final String TIMESTAMP = "timestamp";
+    private static final String EVENT = "event";
+    private static final String RESULT = "result";
+
     /**
      * Parse Druid GroupBy result into ResultSet.
      *
@@ -89,6 +102,170 @@ public class DruidResponseParser {
         return new ResultSet(schema, results);
     }
 
+    /**
+     * Parse a Druid response into a ResultSet by reading it token by token, without building a JSON tree first.
+     * <p>
+     * The parser should be bound to an {@link com.fasterxml.jackson.databind.ObjectMapper} so that non-scalar metric
+     * values can be read as trees, matching the values produced by {@link #parse(JsonNode, ResultSetSchema,
+     * QueryType, DateTimeZone)}.
+     *
+     * @param parser  A parser positioned before the start of the Druid response body
+     * @param schema  Schema for results
+     * @param queryType  the type of query, note that this implementation only supports instances of
+     * {@link DefaultQueryType}
+     * @param dateTimeZone the time zone used for format the results
+     *
+     * @return the set of results
+     *
+     * @throws IOException if the response body cannot be read or is not a well formed Druid response
+     */
+    public ResultSet parse(
+            JsonParser parser,
+            ResultSetSchema schema,
+            QueryType queryType,
+            DateTimeZone dateTimeZone
+    ) throws IOException {
+
+        LOG.trace("Stream parsing druid query {} using schema: {}", queryType, schema);
+
+        ResultListSink sink = new ResultListSink(new StreamingRowReader(
+                getStreamedDimensionColumns(schema, queryType),
+                schema.getColumns(MetricColumn.class)
+        ));
+        streamRecords(parser, queryType, dateTimeZone, sink);
+
+        LOG.trace("Stream parsed druid query {} results: {}", queryType, sink.results);
+        return new ResultSet(schema, sink.results);
+    }
+
+    /**
+     * Parse a Druid response into a {@link ColumnarResultSet} by reading it token by token.
+     * <p>
+     * Numeric metrics are stored as primitives and each distinct dimension key value is resolved to a dimension row
+     * only once per response. Its rows read the same as the result set produced by
+     * {@link #parse(JsonParser, ResultSetSchema, QueryType, DateTimeZone)}.
+     *
+     * @param parser  A parser positioned before the start of the Druid response body
+     * @param schema  Schema for results
+     * @param queryType  the type of query, note that this implementation only supports instances of
+     * {@link DefaultQueryType}
+     * @param dateTimeZone the time zone used for format the results
+     *
+     * @return the set of results
+     *
+     * @throws IOException if the response body cannot be read or is not a well formed Druid response
+     */
+    public ColumnarResultSet parseColumnar(
+            JsonParser parser,
+            ResultSetSchema schema,
+            QueryType queryType,
+            DateTimeZone dateTimeZone
+    ) throws IOException {
+
+        LOG.trace("Stream parsing druid query {} into columns using schema: {}", queryType, schema);
+
+        ColumnarSink sink = new ColumnarSink(
+                new ColumnarResultSet.Builder(schema, dateTimeZone),
+                getStreamedDimensionColumns(schema, queryType),
+                schema.getColumns(MetricColumn.class)
+        );
+        streamRecords(parser, queryType, dateTimeZone, sink);
+
+        ColumnarResultSet resultSet = sink.builder.build();
+        LOG.trace("Stream parsed druid query {} into {} rows", queryType, resultSet.size());
+        return resultSet;
+    }
+
+    /**
+     * Get the dimension columns which are read from the rows of a query type.
+     *
+     * @param schema  Schema for results
+     * @param queryType  the type of query
+     *
+     * @return the dimension columns of the schema, or no columns for a timeseries query
+     */
+    private Set<DimensionColumn> getStreamedDimensionColumns(ResultSetSchema schema, QueryType queryType) {
+        return queryType == DefaultQueryType.TIMESERIES ?
+                Collections.emptySet() :
+                schema.getColumns(DimensionColumn.class);
+    }
+
+    /**
+     * Walk the records of a Druid response, handing each row to a sink.
+     *
+     * @param parser  A parser positioned before the start of the Druid response body
+     * @param queryType  the type of query, note that this implementation only supports instances of
+     * {@link DefaultQueryType}
+     * @param dateTimeZone the time zone used for format the results
+     * @param sink  The sink which reads the rows
+     *
+     * @throws IOException if the response body cannot be read or is not a well formed Druid response
+     */
+    private void streamRecords(
+            JsonParser parser,
+            QueryType queryType,
+            DateTimeZone dateTimeZone,
+            StreamedRowSink sink
+    ) throws IOException {
+        if (!(queryType instanceof DefaultQueryType)) {
+            // Throw an exception for unsupported query types
+            unsupportedQueryType(queryType);
+        }
+        DefaultQueryType defaultQueryType = (DefaultQueryType) queryType;
+
+        String rowFieldName = null;
+        boolean multipleRowsPerRecord = false;
+        switch (defaultQueryType) {
+            case GROUP_BY:
+                rowFieldName = EVENT;
+                break;
+            case TOP_N:
+                rowFieldName = RESULT;
+                multipleRowsPerRecord = true;
+                break;
+            case TIMESERIES:
+            case LOOKBACK:
+                rowFieldName = RESULT;
+                break;
+            default:
+                // Throw an exception for unsupported query types
+                unsupportedQueryType(queryType);
+        }
+
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array of Druid result records");
+        }
+
+        /* loop over all records */
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String timestamp = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if (TIMESTAMP.equals(fieldName)) {
+                    timestamp = parser.getText();
+                } else if (!rowFieldName.equals(fieldName)) {
+                    parser.skipChildren();
+                } else if (multipleRowsPerRecord && valueToken == JsonToken.START_ARRAY) {
+                    /* loop over records per timebucket */
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        sink.readRow(parser);
+                    }
+                } else if (!multipleRowsPerRecord && valueToken == JsonToken.START_OBJECT) {
+                    sink.readRow(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (timestamp == null) {
+                throw new JsonParseException(parser, "Druid result record is missing a timestamp");
+            }
+            sink.endRecord(new DateTime(timestamp, dateTimeZone));
+        }
+    }
+
     /**
      * Log an error message and throw an exception for an unsupported query type.
      *
@@ -257,16 +434,28 @@ public class DruidResponseParser {
                 fieldValue = fieldNode.asText("");
             }
 
-            DimensionRow drow = dc.getDimension().findDimensionRowByKeyValue(fieldValue);
-            if (drow == null) {
-                drow = dc.getDimension().createEmptyDimensionRow(fieldValue);
-            }
-            dimensionRows.put(dc, drow);
+            dimensionRows.put(dc, resolveDimensionRow(dc, fieldValue));
         }
 
         return dimensionRows;
     }
 
+    /**
+     * Find the dimension row for a key value, or create an empty one if the dimension doesn't know the value.
+     *
+     * @param dimensionColumn  The column whose dimension holds the row
+     * @param fieldValue  The key value returned by Druid
+     *
+     * @return the dimension row for the value
+     */
+    private static DimensionRow resolveDimensionRow(DimensionColumn dimensionColumn, String fieldValue) {
+        DimensionRow drow = dimensionColumn.getDimension().findDimensionRowByKeyValue(fieldValue);
+        if (drow == null) {
+            drow = dimensionColumn.getDimension().createEmptyDimensionRow(fieldValue);
+        }
+        return drow;
+    }
+
     /**
      * Extract the metric values for a json object given the set of all available metric columns and the json object.
      *
@@ -309,6 +498,286 @@ public class DruidResponseParser {
                 node;
     }
 
+    /**
+     * Reads the current scalar value from a parser, producing the same values as {@link #getNodeValue(JsonNode)}.
+     *
+     * @param parser  The parser positioned on the value
+     * @param token  The token of the value
+     *
+     * @return the value as a BigDecimal if the token is a number, the value as a String if the token is textual,
+     * the value as a boolean if the token is a boolean, null if the token is null, and a JsonNode otherwise.
+     *
+     * @throws IOException if the value cannot be read
+     */
+    private static Object getTokenValue(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+                return parser.getDecimalValue();
+            case VALUE_NUMBER_FLOAT:
+                // Match the double backed nodes built by the tree parser
+                return BigDecimal.valueOf(parser.getDoubleValue());
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.readValueAsTree();
+        }
+    }
+
+    /**
+     * The dimension rows and metric values of one streamed row, waiting for the timestamp of its record.
+     */
+    private static final class StreamedRow {
+        private final LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows;
+        private final LinkedHashMap<MetricColumn, Object> metricValues;
+
+        /**
+         * Constructor.
+         *
+         * @param dimensionRows  The dimension rows of the row
+         * @param metricValues  The metric values of the row
+         */
+        private StreamedRow(
+                LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows,
+                LinkedHashMap<MetricColumn, Object> metricValues
+        ) {
+            this.dimensionRows = dimensionRows;
+            this.metricValues = metricValues;
+        }
+    }
+
+    /**
+     * Receives the rows of a Druid response as it is streamed.
+     * <p>
+     * A record's timestamp may follow its rows, so sinks are told the timestamp of the rows read since the previous
+     * record once each record ends.
+     */
+    private interface StreamedRowSink {
+
+        /**
+         * Read a row object, leaving the parser on its closing token.
+         *
+         * @param parser  The parser positioned on the start of the row object
+         *
+         * @throws IOException if the row cannot be read
+         */
+        void readRow(JsonParser parser) throws IOException;
+
+        /**
+         * End the current record.
+         *
+         * @param timeStamp  The timestamp of the rows read since the previous record
+         */
+        void endRecord(DateTime timeStamp);
+    }
+
+    /**
+     * A sink which builds a list of results.
+     */
+    private static final class ResultListSink implements StreamedRowSink {
+        private final StreamingRowReader rowReader;
+        private final List<Result> results = new ArrayList<>();
+        private final List<StreamedRow> pendingRows = new ArrayList<>();
+
+        /**
+         * Constructor.
+         *
+         * @param rowReader  The reader for the row objects
+         */
+        private ResultListSink(StreamingRowReader rowReader) {
+            this.rowReader = rowReader;
+        }
+
+        @Override
+        public void readRow(JsonParser parser) throws IOException {
+            pendingRows.add(rowReader.readRow(parser));
+        }
+
+        @Override
+        public void endRecord(DateTime timeStamp) {
+            pendingRows.forEach(row -> results.add(new Result(row.dimensionRows, row.metricValues, timeStamp)));
+            pendingRows.clear();
+        }
+    }
+
+    /**
+     * A sink which writes rows straight into the columns of a {@link ColumnarResultSet}.
+     */
+    private static final class ColumnarSink implements StreamedRowSink {
+        private final ColumnarResultSet.Builder builder;
+        private final Map<String, DimensionColumn> dimensionColumns = new LinkedHashMap<>();
+        private final Map<String, MetricColumn> metricColumns = new LinkedHashMap<>();
+        private final Set<DimensionColumn> dimensionsFound = new HashSet<>();
+        private final Set<MetricColumn> metricsFound = new HashSet<>();
+        private int firstPendingRow = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param builder  The builder of the result set
+         * @param dimensionColumns  set of dimension columns
+         * @param metricColumns  set of metric columns
+         */
+        private ColumnarSink(
+                ColumnarResultSet.Builder builder,
+                Set<DimensionColumn> dimensionColumns,
+                Set<MetricColumn> metricColumns
+        ) {
+            this.builder = builder;
+            dimensionColumns.forEach(column -> this.dimensionColumns.put(column.getName(), column));
+            metricColumns.forEach(column -> this.metricColumns.put(column.getName(), column));
+        }
+
+        @Override
+        public void readRow(JsonParser parser) throws IOException {
+            builder.addRow();
+            dimensionsFound.clear();
+            metricsFound.clear();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                DimensionColumn dimensionColumn = dimensionColumns.get(fieldName);
+                MetricColumn metricColumn = metricColumns.get(fieldName);
+
+                if (dimensionColumn != null) {
+                    builder.setDimensionValue(
+                            dimensionColumn,
+                            token.isScalarValue() && token != JsonToken.VALUE_NULL ? parser.getText() : ""
+                    );
+                    dimensionsFound.add(dimensionColumn);
+                }
+                if (metricColumn == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                metricsFound.add(metricColumn);
+                if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    builder.setMetricValue(metricColumn, parser.getDoubleValue());
+                } else if (token == JsonToken.VALUE_NUMBER_INT
+                        && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                    builder.setMetricValue(metricColumn, parser.getLongValue());
+                } else {
+                    builder.setMetricValue(metricColumn, getTokenValue(parser, token));
+                }
+            }
+
+            for (DimensionColumn dimensionColumn : dimensionColumns.values()) {
+                if (!dimensionsFound.contains(dimensionColumn)) {
+                    builder.setDimensionValue(dimensionColumn, "");
+                }
+            }
+            for (MetricColumn metricColumn : metricColumns.values()) {
+                if (!metricsFound.contains(metricColumn)) {
+                    LOG.warn("Found null node for metric column {}", metricColumn.getName());
+                }
+            }
+        }
+
+        @Override
+        public void endRecord(DateTime timeStamp) {
+            long millis = timeStamp.getMillis();
+            for (int row = firstPendingRow; row < builder.size(); row++) {
+                builder.setTimestamp(row, millis);
+            }
+            firstPendingRow = builder.size();
+        }
+    }
+
+    /**
+     * Reads the columns of a schema out of streamed row objects, skipping every field the schema doesn't use.
+     */
+    private static final class StreamingRowReader {
+        private final DimensionColumn[] dimensionColumns;
+        private final MetricColumn[] metricColumns;
+        private final Map<String, Integer> dimensionIndexes;
+        private final Map<String, Integer> metricIndexes;
+
+        /**
+         * Constructor.
+         *
+         * @param dimensionColumns  set of dimension columns
+         * @param metricColumns  set of metric columns
+         */
+        private StreamingRowReader(Set<DimensionColumn> dimensionColumns, Set<MetricColumn> metricColumns) {
+            this.dimensionColumns = dimensionColumns.toArray(new DimensionColumn[0]);
+            this.metricColumns = metricColumns.toArray(new MetricColumn[0]);
+            this.dimensionIndexes = indexByName(this.dimensionColumns);
+            this.metricIndexes = indexByName(this.metricColumns);
+        }
+
+        /**
+         * Build a map from column name to the position of the column.
+         *
+         * @param columns  The columns to index
+         *
+         * @return the index of each column name
+         */
+        private static Map<String, Integer> indexByName(Column[] columns) {
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                indexes.put(columns[i].getName(), i);
+            }
+            return indexes;
+        }
+
+        /**
+         * Read a row object, leaving the parser on its closing token.
+         *
+         * @param parser  The parser positioned on the start of the row object
+         *
+         * @return the dimension rows and metric values of the row, in schema order
+         *
+         * @throws IOException if the row cannot be read
+         */
+        private StreamedRow readRow(JsonParser parser) throws IOException {
+            String[] dimensionValues = new String[dimensionColumns.length];
+            Object[] metricValues = new Object[metricColumns.length];
+            boolean[] metricFound = new boolean[metricColumns.length];
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                Integer dimensionIndex = dimensionIndexes.get(fieldName);
+                Integer metricIndex = metricIndexes.get(fieldName);
+
+                if (dimensionIndex != null) {
+                    dimensionValues[dimensionIndex] = token.isScalarValue() && token != JsonToken.VALUE_NULL ?
+                            parser.getText() :
+                            "";
+                }
+                if (metricIndex != null) {
+                    metricValues[metricIndex] = getTokenValue(parser, token);
+                    metricFound[metricIndex] = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
+            for (int i = 0; i < dimensionColumns.length; i++) {
+                String fieldValue = dimensionValues[i] == null ? "" : dimensionValues[i];
+                dimensionRows.put(dimensionColumns[i], resolveDimensionRow(dimensionColumns[i], fieldValue));
+            }
+
+            LinkedHashMap<MetricColumn, Object> metrics = new LinkedHashMap<>();
+            for (int i = 0; i < metricColumns.length; i++) {
+                if (metricFound[i]) {
+                    metrics.put(metricColumns[i], metricValues[i]);
+                } else {
+                    LOG.warn("Found null node for metric column {}", metricColumns[i].getName());
+                }
+            }
+
+            return new StreamedRow(dimensionRows, metrics);
+        }
+    }
+
     /**
      * Produce the schema-defining columns for a given druid query.
      *
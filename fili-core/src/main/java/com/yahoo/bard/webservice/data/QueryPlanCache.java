@@ -0,0 +1,349 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.config.names.DataSourceName;
+import com.yahoo.bard.webservice.data.metric.TemplateDruidQuery;
+import com.yahoo.bard.webservice.druid.model.QueryType;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.table.ConfigPhysicalTable;
+import com.yahoo.bard.webservice.table.ConstrainedTable;
+import com.yahoo.bard.webservice.table.PhysicalTable;
+import com.yahoo.bard.webservice.table.TableIdentifier;
+import com.yahoo.bard.webservice.table.availability.Availability;
+import com.yahoo.bard.webservice.table.availability.AvailabilityCache;
+import com.yahoo.bard.webservice.table.availability.IsTableStartAlignedWithIntervals;
+import com.yahoo.bard.webservice.table.resolver.QueryPlanningConstraint;
+import com.yahoo.bard.webservice.table.resolver.SchemaPhysicalTableMatcher;
+import com.yahoo.bard.webservice.table.resolver.TableResolutionContext;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.joda.time.Interval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A bounded cache of the physical table resolved and the druid query built for the shape of a data request.
+ * <p>
+ * Dashboards send the same table, grain, dimensions, metrics and filters many times over, and resolving the physical
+ * table runs every matcher and comparator over the candidate tables of the logical table. A plan is keyed by
+ * everything resolution and query building depend on except the values the query builder substitutes on every
+ * request:
+ * <ul>
+ *     <li>the columns, filters and grain of the constraint, the template query and the result set truncations</li>
+ *     <li>whether each candidate table aligns with the requested intervals, since the matchers drop tables that do
+ *     not</li>
+ *     <li>when partial data is on, the request grain buckets each candidate table is missing relative to the start of
+ *     the requested intervals and the duration of its data available in volatile buckets, since the partial and
+ *     volatile data comparators then choose between candidate tables by them</li>
+ *     <li>the availabilities of the candidate tables and the versions of their data sources, so a plan is not used
+ *     once the metadata of its tables changes</li>
+ * </ul>
+ * Filter values are part of the key because partitioned tables choose their data sources by them, but the druid filter
+ * is still built and substituted for every request. Plans expire after a time to live, which bounds how stale the
+ * dimension cardinalities used to resolve them can be. Requests whose candidate tables are not versioned or whose
+ * filtered dimensions do not track their row versions are not cached.
+ * <p>
+ * The key is built in the same {@link TableResolutionContext} the physical table is then resolved in, so the
+ * availability and missing intervals of each candidate are computed once for both.
+ * <p>
+ * Hits and misses are reported as meters under the metric prefix.
+ */
+public class QueryPlanCache {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String METRIC_PREFIX = "queries.meter.query_plan_cache.";
+
+    public static final Meter HITS = REGISTRY.meter(METRIC_PREFIX + "hits");
+    public static final Meter MISSES = REGISTRY.meter(METRIC_PREFIX + "misses");
+
+    // Maximum number of query plans cached, 0 disables the cache
+    public static final long MAX_ENTRIES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("query_plan_cache_max_entries"),
+            1000
+    );
+
+    // Time in milliseconds a query plan is used for
+    public static final long TTL_MILLIS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("query_plan_cache_ttl_ms"),
+            60000
+    );
+
+    private final Cache<List<Object>, QueryPlan> plans;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries  The maximum number of cached plans, 0 to disable caching
+     * @param ttlMillis  The time in milliseconds a plan is used for after it is built
+     */
+    public QueryPlanCache(long maxEntries, long ttlMillis) {
+        if (maxEntries < 0 || ttlMillis < 0) {
+            String message = String.format(
+                    "Query plan cache size and time to live must not be negative: %d, %d",
+                    maxEntries,
+                    ttlMillis
+            );
+            throw new IllegalArgumentException(message);
+        }
+        this.plans = maxEntries == 0 ? null : CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Constructor for a cache of the configured size and time to live.
+     *
+     * @see #MAX_ENTRIES
+     * @see #TTL_MILLIS
+     */
+    public QueryPlanCache() {
+        this(MAX_ENTRIES, TTL_MILLIS);
+    }
+
+    /**
+     * Whether plans are cached at all.
+     *
+     * @return false if the cache is disabled
+     */
+    public boolean isEnabled() {
+        return plans != null;
+    }
+
+    /**
+     * Get the plan cached for a key.
+     *
+     * @param key  The plan key, or null if the request cannot be cached
+     *
+     * @return the cached plan, or null if there is none
+     */
+    public QueryPlan get(List<Object> key) {
+        if (plans == null || key == null) {
+            return null;
+        }
+        QueryPlan plan = plans.getIfPresent(key);
+        if (plan == null) {
+            MISSES.mark();
+        } else {
+            HITS.mark();
+        }
+        return plan;
+    }
+
+    /**
+     * Cache a plan.
+     *
+     * @param key  The plan key, or null if the request cannot be cached
+     * @param plan  The plan built for the key
+     */
+    public void put(List<Object> key, QueryPlan plan) {
+        if (plans != null && key != null) {
+            plans.put(key, plan);
+        }
+    }
+
+    /**
+     * Drop all cached plans.
+     */
+    public void invalidateAll() {
+        if (plans != null) {
+            plans.invalidateAll();
+        }
+    }
+
+    /**
+     * The number of cached plans.
+     *
+     * @return the approximate number of cache entries
+     */
+    public long size() {
+        return plans == null ? 0 : plans.size();
+    }
+
+    /**
+     * The fraction of lookups of all query plan caches which found a cached plan.
+     *
+     * @return the hit ratio, 0 if there were no lookups
+     */
+    public static double getHitRatio() {
+        long lookups = HITS.getCount() + MISSES.getCount();
+        return lookups == 0 ? 0 : (double) HITS.getCount() / lookups;
+    }
+
+    /**
+     * Build the key of the plan for a request.
+     *
+     * @param request  The request, with the filters of its logical table
+     * @param template  The template query of the request
+     * @param context  The context the physical table is resolved in, sharing the availability of the candidates
+     * @param candidates  The physical tables of the logical table
+     * @param queryType  The type of the druid query built for the request
+     *
+     * @return the plan key, or null if the plan of the request should not be cached
+     */
+    public static List<Object> planKey(
+            DataApiRequest request,
+            TemplateDruidQuery template,
+            TableResolutionContext context,
+            Collection<PhysicalTable> candidates,
+            QueryType queryType
+    ) {
+        QueryPlanningConstraint constraint = context.getRequestConstraint();
+        Object constraintKey = AvailabilityCache.constraintKey(constraint);
+        List<Availability> availabilities = getAvailabilities(candidates);
+        if (constraintKey == null || availabilities == null) {
+            return null;
+        }
+        Optional<Map<DataSourceName, Long>> versions = AvailabilityCache.mergeVersions(availabilities);
+        if (!versions.isPresent()) {
+            return null;
+        }
+
+        IsTableStartAlignedWithIntervals isAligned = new IsTableStartAlignedWithIntervals(constraint.getIntervals());
+        return Arrays.asList(
+                TableIdentifier.create(request),
+                constraintKey,
+                request.getGranularity(),
+                constraint.getMinimumGranularity(),
+                request.getTimeZone(),
+                constraint.getLogicalMetricNames(),
+                template,
+                request.getHavings(),
+                request.getSorts(),
+                request.getCount(),
+                request.getTopN(),
+                queryType,
+                candidates.stream().map(isAligned::test).collect(Collectors.toList()),
+                getCoverages(context, candidates),
+                availabilities,
+                versions.get()
+        );
+    }
+
+    /**
+     * Get the availabilities of the candidate tables.
+     *
+     * @param candidates  The physical tables of the logical table
+     *
+     * @return the availabilities, or null if a candidate is not a config physical table
+     */
+    private static List<Availability> getAvailabilities(Collection<PhysicalTable> candidates) {
+        List<Availability> availabilities = new ArrayList<>(candidates.size());
+        for (PhysicalTable candidate : candidates) {
+            if (!(candidate instanceof ConfigPhysicalTable)) {
+                return null;
+            }
+            availabilities.add(((ConfigPhysicalTable) candidate).getAvailability());
+        }
+        return availabilities;
+    }
+
+    /**
+     * Get how the candidate tables cover the requested intervals, as far as the partial data comparators see it.
+     * <p>
+     * Tables without the requested columns are never compared and have no availability under them, so they have no
+     * coverage.
+     *
+     * @param context  The context the physical table is resolved in
+     * @param candidates  The physical tables of the logical table
+     *
+     * @return the missing offsets and available volatile duration of each candidate, or null if partial data is off
+     */
+    private static List<List<Object>> getCoverages(
+            TableResolutionContext context,
+            Collection<PhysicalTable> candidates
+    ) {
+        if (!BardFeatureFlag.PARTIAL_DATA.isOn() && !BardFeatureFlag.PARTIAL_DATA_QUERY_OPTIMIZATION.isOn()) {
+            return null;
+        }
+        SchemaPhysicalTableMatcher hasColumns = new SchemaPhysicalTableMatcher(context.getRequestConstraint());
+        List<List<Object>> coverages = new ArrayList<>(candidates.size());
+        for (PhysicalTable candidate : candidates) {
+            coverages.add(hasColumns.test(candidate) ? getCoverage(context, candidate) : null);
+        }
+        return coverages;
+    }
+
+    /**
+     * Get how a table covers the requested intervals, as far as the partial data comparators see it.
+     * <p>
+     * The partial data comparator prefers the tables missing the least of the requested buckets, so requests whose
+     * candidates miss the same buckets relative to their start resolve the same table, even as they move over time.
+     * The volatile data comparator then prefers the tables with the most data available in volatile buckets, which
+     * changes as the volatile intervals move, so the key holds that duration as well.
+     *
+     * @param context  The context the physical table is resolved in
+     * @param table  The candidate table
+     *
+     * @return the starts and ends of the missing intervals in milliseconds from the start of the requested intervals,
+     * and the available volatile duration, or null if the context has no volatile intervals service
+     */
+    private static List<Object> getCoverage(TableResolutionContext context, PhysicalTable table) {
+        SimplifiedIntervalList requestedIntervals = context.getRequestedIntervals();
+        if (requestedIntervals.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long start = requestedIntervals.getFirst().getStartMillis();
+        SimplifiedIntervalList missingIntervals = context.getMissingIntervals(table);
+        List<Long> offsets = new ArrayList<>(missingIntervals.size() * 2);
+        for (Interval missing : missingIntervals) {
+            offsets.add(missing.getStartMillis() - start);
+            offsets.add(missing.getEndMillis() - start);
+        }
+        return Arrays.asList(
+                offsets,
+                context.hasVolatileIntervalsService() ? context.getAvailableVolatileDuration(table) : null
+        );
+    }
+
+    /**
+     * The physical table resolved and the druid query built for the shape of a request.
+     * <p>
+     * The query holds the filter and intervals of the request it was first built for, and is reused by substituting
+     * those of each later request.
+     */
+    public static class QueryPlan {
+        private final ConstrainedTable table;
+        private final DruidAggregationQuery<?> query;
+
+        /**
+         * Constructor.
+         *
+         * @param table  The resolved physical table, constrained by the request
+         * @param query  The druid query built on the table
+         */
+        public QueryPlan(ConstrainedTable table, DruidAggregationQuery<?> query) {
+            this.table = table;
+            this.query = query;
+        }
+
+        public ConstrainedTable getTable() {
+            return table;
+        }
+
+        public DruidAggregationQuery<?> getQuery() {
+            return query;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Converts Druid responses to and from the string values stored in the data caches.
+ */
+public interface CacheValueCodec {
+
+    /**
+     * Encode a Druid response as a cache value.
+     *
+     * @param json  The response to encode
+     * @param mapper  The mapper used to serialize the response
+     *
+     * @return the cache value
+     *
+     * @throws IOException if the response cannot be serialized
+     */
+    String encode(JsonNode json, ObjectMapper mapper) throws IOException;
+
+    /**
+     * Decode a cache value back into the Druid response it was encoded from.
+     *
+     * @param value  The cache value to decode
+     * @param mapper  The mapper used to deserialize the response
+     *
+     * @return the decoded response
+     *
+     * @throws IOException if the value is not a valid encoding of a response
+     */
+    JsonNode decode(String value, ObjectMapper mapper) throws IOException;
+}
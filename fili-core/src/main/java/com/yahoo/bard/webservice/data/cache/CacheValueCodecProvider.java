@@ -0,0 +1,64 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A class to provide the cache value codec instance.
+ */
+public class CacheValueCodecProvider {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheValueCodecProvider.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String CACHE_VALUE_CODEC_IMPLEMENTATION_SETTING_NAME = "druid_cache_value_codec_implementation";
+
+    private static final String DEFAULT_CACHE_VALUE_CODEC_IMPL = JsonCacheValueCodec.class.getCanonicalName();
+
+    /**
+     * The instance of the cache value codec, built once on first use.
+     */
+    private static volatile CacheValueCodec cacheValueCodec;
+
+    /**
+     * Get an instance of CacheValueCodec.
+     *
+     * @return an instance of CacheValueCodec
+     */
+    public static CacheValueCodec getInstance() {
+        CacheValueCodec codec = cacheValueCodec;
+        if (codec == null) {
+            synchronized (CacheValueCodecProvider.class) {
+                codec = cacheValueCodec;
+                if (codec == null) {
+                    codec = buildCodec();
+                    cacheValueCodec = codec;
+                }
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Build the configured cache value codec.
+     *
+     * @return a new instance of the configured CacheValueCodec implementation
+     */
+    private static CacheValueCodec buildCodec() {
+        String codecImplementation = SYSTEM_CONFIG.getStringProperty(
+                SYSTEM_CONFIG.getPackageVariableName(CACHE_VALUE_CODEC_IMPLEMENTATION_SETTING_NAME),
+                DEFAULT_CACHE_VALUE_CODEC_IMPL
+        );
+        try {
+            return Class.forName(codecImplementation).asSubclass(CacheValueCodec.class).newInstance();
+        } catch (Exception exception) {
+            LOG.error("Exception while loading cache value codec: {}", exception.toString());
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A cache value codec storing responses as deflate compressed JSON.
+ * <p>
+ * The compressed bytes are framed by a leading format version byte and Base64 encoded, so the values remain strings
+ * and can be stored in the existing caches. Values which are not framed (plain JSON written by the
+ * {@link JsonCacheValueCodec}) are still decoded, so the codec can be switched on over a populated cache.
+ */
+public class DeflateCacheValueCodec implements CacheValueCodec {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final int level;
+
+    /**
+     * Constructor using the fastest compression level, favoring cheap writes on the response path.
+     */
+    public DeflateCacheValueCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param level  The deflate compression level, from 0 to 9
+     */
+    public DeflateCacheValueCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String encode(JsonNode json, ObjectMapper mapper) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(FORMAT_VERSION);
+        Deflater deflater = new Deflater(level);
+        try (
+                OutputStream out = new DeflaterOutputStream(bytes, deflater);
+                JsonGenerator generator = mapper.getFactory().createGenerator(out)
+        ) {
+            mapper.writeTree(generator, json);
+        } finally {
+            deflater.end();
+        }
+        return ENCODER.encodeToString(bytes.toByteArray());
+    }
+
+    @Override
+    public JsonNode decode(String value, ObjectMapper mapper) throws IOException {
+        if (value.isEmpty() || value.charAt(0) == '[' || value.charAt(0) == '{') {
+            return mapper.readTree(value);
+        }
+
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cache value is neither JSON nor a compressed response", e);
+        }
+        if (bytes.length == 0 || bytes[0] != FORMAT_VERSION) {
+            throw new IOException("Unsupported cache value format version: " + (bytes.length == 0 ? "" : bytes[0]));
+        }
+
+        Inflater inflater = new Inflater();
+        try (
+                InputStream in = new InflaterInputStream(
+                        new ByteArrayInputStream(bytes, 1, bytes.length - 1),
+                        inflater
+                );
+                JsonParser parser = mapper.getFactory().createParser(in)
+        ) {
+            return mapper.readTree(parser);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * A cache value codec storing responses as plain JSON text.
+ */
+public class JsonCacheValueCodec implements CacheValueCodec {
+
+    @Override
+    public String encode(JsonNode json, ObjectMapper mapper) throws IOException {
+        return mapper.writeValueAsString(json);
+    }
+
+    @Override
+    public JsonNode decode(String value, ObjectMapper mapper) throws IOException {
+        return mapper.readTree(value);
+    }
+}
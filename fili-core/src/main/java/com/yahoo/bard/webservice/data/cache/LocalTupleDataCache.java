@@ -0,0 +1,354 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * An in-process, size bounded TupleDataCache.
+ * <p>
+ * Entries are weighed by their estimated size in bytes and the cache holds at most a configured number of bytes.
+ * Eviction candidates are taken in least recently used order, but a new entry is only admitted if it has been
+ * requested more often than the entries it would displace (TinyLFU admission). Access frequencies are tracked in a
+ * small count-min sketch which is periodically halved so that the cache adapts to shifts in the workload.
+ * <p>
+ * Hits, misses, evictions and rejected admissions are reported as meters under the configured metric prefix.
+ *
+ * @param <M>  The meta data type of the cache.
+ * @param <V>  The raw data type of the cache.
+ */
+public class LocalTupleDataCache<M extends Serializable, V extends Serializable>
+        implements TupleDataCache<String, M, V> {
+
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String DEFAULT_METRIC_PREFIX = "queries.meter.cache.local";
+
+    /** Rough per entry cost of the map node, entry object and object headers. */
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+
+    /** Weight assumed for values of types whose size cannot be estimated. */
+    private static final long UNKNOWN_VALUE_BYTES = 64;
+
+    private final long maxWeight;
+    private final ToLongFunction<TupleDataCache.DataEntry<String, M, V>> weigher;
+    private final FrequencySketch sketch;
+
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, WeighedEntry<M, V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+    private final Meter rejections;
+
+    /**
+     * Constructor using the default weigher and metric names.
+     *
+     * @param maxWeight  The maximum estimated size, in bytes, of all entries held by the cache
+     */
+    public LocalTupleDataCache(long maxWeight) {
+        this(maxWeight, LocalTupleDataCache::estimateWeight, DEFAULT_METRIC_PREFIX);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxWeight  The maximum total weight of all entries held by the cache
+     * @param weigher  Function computing the weight of an entry, in the same unit as maxWeight
+     * @param metricPrefix  Prefix of the names of the meters reported by this cache
+     */
+    public LocalTupleDataCache(
+            long maxWeight,
+            ToLongFunction<TupleDataCache.DataEntry<String, M, V>> weigher,
+            String metricPrefix
+    ) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Maximum cache weight must be positive: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(maxWeight);
+        this.hits = REGISTRY.meter(metricPrefix + ".hits");
+        this.misses = REGISTRY.meter(metricPrefix + ".misses");
+        this.evictions = REGISTRY.meter(metricPrefix + ".evictions");
+        this.rejections = REGISTRY.meter(metricPrefix + ".rejections");
+    }
+
+    @Override
+    public synchronized TupleDataCache.DataEntry<String, M, V> get(String key) {
+        sketch.increment(key);
+        WeighedEntry<M, V> entry = entries.get(key);
+        if (entry == null) {
+            misses.mark();
+            return null;
+        }
+        hits.mark();
+        return entry.entry;
+    }
+
+    @Override
+    public V getDataValue(String key) {
+        TupleDataCache.DataEntry<String, M, V> entry = get(key);
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    public boolean set(String key, M meta, V value) {
+        return set(key, new MemTupleDataCache.DataEntry<>(key, meta, value));
+    }
+
+    @Override
+    public synchronized boolean set(String key, TupleDataCache.DataEntry<String, M, V> value) {
+        long weight = weigher.applyAsLong(value);
+        WeighedEntry<M, V> previous = entries.remove(key);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        if (weight > maxWeight) {
+            rejections.mark();
+            return false;
+        }
+
+        long excess = totalWeight + weight - maxWeight;
+        if (excess > 0) {
+            List<String> victims = new ArrayList<>();
+            int candidateFrequency = sketch.frequency(key);
+            long freed = 0;
+            Iterator<Map.Entry<String, WeighedEntry<M, V>>> iterator = entries.entrySet().iterator();
+            while (freed < excess) {
+                Map.Entry<String, WeighedEntry<M, V>> victim = iterator.next();
+                if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                    // The new entry is not more popular than what it would displace, keep the resident entries
+                    rejections.mark();
+                    return false;
+                }
+                victims.add(victim.getKey());
+                freed += victim.getValue().weight;
+            }
+            for (String victim : victims) {
+                totalWeight -= entries.remove(victim).weight;
+            }
+            evictions.mark(victims.size());
+        }
+
+        entries.put(key, new WeighedEntry<>(value, weight));
+        totalWeight += weight;
+        return true;
+    }
+
+    /**
+     * Remove a single entry from the cache.
+     *
+     * @param key  The key of the entry to remove
+     */
+    public synchronized void invalidate(String key) {
+        WeighedEntry<M, V> entry = entries.remove(key);
+        if (entry != null) {
+            totalWeight -= entry.weight;
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * The number of entries currently held by the cache.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The total weight of the entries currently held by the cache.
+     *
+     * @return the total weight
+     */
+    public synchronized long getTotalWeight() {
+        return totalWeight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Estimate the number of heap bytes retained by an entry.
+     *
+     * @param entry  The entry to weigh
+     * @param <M>  The meta data type of the entry.
+     * @param <V>  The raw data type of the entry.
+     *
+     * @return the estimated size of the entry in bytes
+     */
+    public static <M extends Serializable, V extends Serializable> long estimateWeight(
+            TupleDataCache.DataEntry<String, M, V> entry
+    ) {
+        return ENTRY_OVERHEAD_BYTES + estimateWeight(entry.getKey()) + estimateWeight(entry.getMeta()) +
+                estimateWeight(entry.getValue());
+    }
+
+    /**
+     * Estimate the number of heap bytes retained by a single key, meta or value object.
+     *
+     * @param object  The object to weigh
+     *
+     * @return the estimated size of the object in bytes
+     */
+    private static long estimateWeight(Object object) {
+        if (object == null) {
+            return 0;
+        } else if (object instanceof CharSequence) {
+            return 2L * ((CharSequence) object).length();
+        } else if (object instanceof byte[]) {
+            return ((byte[]) object).length;
+        } else if (object instanceof Number) {
+            return 16;
+        }
+        return UNKNOWN_VALUE_BYTES;
+    }
+
+    /**
+     * A cache entry together with its weight, so the weight is computed only once.
+     *
+     * @param <M>  The meta data type of the entry.
+     * @param <V>  The raw data type of the entry.
+     */
+    private static class WeighedEntry<M, V> {
+        private final TupleDataCache.DataEntry<String, M, V> entry;
+        private final long weight;
+
+        /**
+         * Constructor.
+         *
+         * @param entry  The cache entry
+         * @param weight  The weight of the cache entry
+         */
+        WeighedEntry(TupleDataCache.DataEntry<String, M, V> entry, long weight) {
+            this.entry = entry;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A count-min sketch of saturating 4 bit counters estimating how often keys have been requested.
+     * <p>
+     * Once the number of recorded requests reaches ten times the sketch width all counters are halved, aging out
+     * keys which used to be popular.
+     */
+    static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int MIN_WIDTH = 1 << 10;
+        private static final int MAX_WIDTH = 1 << 20;
+        private static final int[] SEEDS = {0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0xc2b2ae35};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param maxWeight  The capacity of the cache, used to size the sketch assuming entries of about 1KB
+         */
+        FrequencySketch(long maxWeight) {
+            long expected = Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, maxWeight >> 10));
+            int width = Integer.highestOneBit((int) expected - 1) << 1;
+            counters = new byte[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        /**
+         * Record a request for a key.
+         *
+         * @param key  The requested key
+         */
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (counters[i][index] < MAX_COUNT) {
+                    counters[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        /**
+         * Estimate how often a key has been requested.
+         *
+         * @param key  The key to look up
+         *
+         * @return the estimated (aged) request count of the key, at most 15
+         */
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, counters[i][indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        /**
+         * Halve all the counters.
+         */
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions >>>= 1;
+        }
+
+        /**
+         * Compute the counter index of a hash in one row of the sketch.
+         *
+         * @param hash  The spread hash of the key
+         * @param row  The row of the sketch
+         *
+         * @return the counter index in the row
+         */
+        private int indexOf(int hash, int row) {
+            int h = (hash + SEEDS[row]) * SEEDS[row];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        /**
+         * Mix the bits of a hash code so that similar keys land on unrelated counters.
+         *
+         * @param hashCode  The hash code to mix
+         *
+         * @return the mixed hash
+         */
+        private static int spread(int hashCode) {
+            int h = hashCode * 0x45d9f3b;
+            return h ^ (h >>> 16);
+        }
+    }
+}
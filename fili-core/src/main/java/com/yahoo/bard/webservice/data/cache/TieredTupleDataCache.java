@@ -0,0 +1,96 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import java.io.Serializable;
+import java.util.function.Predicate;
+
+/**
+ * A TupleDataCache which serves entries from an in-process cache in front of a shared (usually remote) cache.
+ * <p>
+ * Reads are answered by the local cache when possible. Entries found only in the shared cache are promoted into the
+ * local cache. Writes go to both caches. When the caller supplies a currency test for the entry metadata (such as
+ * the segment set id of a query), stale local copies are dropped and the shared cache is consulted instead.
+ *
+ * @param <M>  The meta data type of the cache.
+ * @param <V>  The raw data type of the cache.
+ */
+public class TieredTupleDataCache<M extends Serializable, V extends Serializable>
+        implements TupleDataCache<String, M, V> {
+
+    private final LocalTupleDataCache<M, V> localCache;
+    private final TupleDataCache<String, M, V> sharedCache;
+
+    /**
+     * Constructor.
+     *
+     * @param localCache  The in-process cache consulted first
+     * @param sharedCache  The cache backing the local cache
+     */
+    public TieredTupleDataCache(LocalTupleDataCache<M, V> localCache, TupleDataCache<String, M, V> sharedCache) {
+        this.localCache = localCache;
+        this.sharedCache = sharedCache;
+    }
+
+    @Override
+    public DataEntry<String, M, V> get(String key) {
+        return get(key, meta -> true);
+    }
+
+    /**
+     * Retrieve the complete data entry from the cache, skipping local copies whose metadata is no longer current.
+     *
+     * @param key  The key associated with data entry to be retrieved
+     * @param isCurrent  Test of whether the metadata of an entry is still current
+     *
+     * @return The complete data entry, or {@code null} if neither cache contains a mapping for the key. An entry from
+     * the shared cache is returned even if it is not current, so the caller can tell a stale entry from a miss.
+     */
+    @Override
+    public DataEntry<String, M, V> get(String key, Predicate<? super M> isCurrent) {
+        DataEntry<String, M, V> entry = localCache.get(key);
+        if (entry != null) {
+            if (isCurrent.test(entry.getMeta())) {
+                return entry;
+            }
+            localCache.invalidate(key);
+        }
+
+        entry = sharedCache.get(key);
+        if (entry != null && key.equals(entry.getKey()) && isCurrent.test(entry.getMeta())) {
+            localCache.set(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public V getDataValue(String key) {
+        DataEntry<String, M, V> entry = get(key);
+        return entry == null || !key.equals(entry.getKey()) ? null : entry.getValue();
+    }
+
+    @Override
+    public boolean set(String key, M meta, V value) {
+        localCache.set(key, meta, value);
+        return sharedCache.set(key, meta, value);
+    }
+
+    @Override
+    public boolean set(String key, DataEntry<String, M, V> value) {
+        return set(key, value.getMeta(), value.getValue());
+    }
+
+    @Override
+    public void clear() {
+        localCache.clear();
+        sharedCache.clear();
+    }
+
+    public LocalTupleDataCache<M, V> getLocalCache() {
+        return localCache;
+    }
+
+    public TupleDataCache<String, M, V> getSharedCache() {
+        return sharedCache;
+    }
+}
@@ -3,6 +3,7 @@
 package com.yahoo.bard.webservice.data.cache;
 
 import java.io.Serializable;
+import java.util.function.Predicate;
 
 /**
  * Versatile data cache interface that allows for parametrized types for the key, the metadata and the raw data value
@@ -25,6 +26,24 @@ public interface TupleDataCache<K, M extends Serializable, V extends Serializabl
     @Override
     DataEntry<K, M, V> get(String key);
 
+    /**
+     * Retrieve the complete data entry from the cache, for a caller which can tell whether the metadata of an entry is
+     * still current.
+     * <p>
+     * Caches which keep copies of entries, such as a local tier in front of a shared cache, use the test to skip
+     * copies which are out of date. By default the test is not used.
+     *
+     * @param key  The key associated with data entry to be retrieved
+     * @param isCurrent  Test of whether the metadata of an entry is still current
+     *
+     * @return The complete data entry containing metadata and raw data, or {@code null} if the cache contains no
+     * mapping for the key. An entry which is not current may be returned, so the caller can tell a stale entry from a
+     * miss.
+     */
+    default DataEntry<K, M, V> get(String key, Predicate<? super M> isCurrent) {
+        return get(key);
+    }
+
     /**
      * Read the raw data from cache.
      *
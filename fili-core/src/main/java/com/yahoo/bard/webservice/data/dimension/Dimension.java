@@ -56,6 +56,17 @@ public interface Dimension {
      */
     DateTime getLastUpdated();
 
+    /**
+     * Get the version of the rows of this dimension, which changes whenever rows are written through this dimension.
+     * <p>
+     * Results computed from the rows of the dimension can be cached under this version.
+     *
+     * @return the version of the rows, or -1 if this dimension does not track writes to its rows
+     */
+    default long getRowVersion() {
+        return -1;
+    }
+
     /**
      * Returns all dimension fields of this dimension.
      *
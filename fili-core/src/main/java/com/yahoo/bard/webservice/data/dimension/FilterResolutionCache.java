@@ -0,0 +1,193 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.web.ApiFilter;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of the key values of the dimension rows matching sets of filters.
+ * <p>
+ * Entries are keyed by the search provider of the dimension, the filters and the row version of the dimension.
+ * Filters are normalized so that the order of filters and of their values does not matter. Adding, updating or
+ * removing rows and setting the last updated time of a dimension change its row version, so a cache entry is not
+ * used once any row of its dimension was written. Filters on dimensions which do not track their row version are
+ * not cached.
+ * <p>
+ * The cache is bounded by the total number of key values it holds, and entries expire after a while.
+ * <p>
+ * Hits and misses are reported as meters under the metric prefix.
+ */
+public class FilterResolutionCache {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String METRIC_PREFIX = "dimensions.meter.filter_resolution_cache.";
+
+    // Maximum number of key values held by the shared cache, 0 disables it
+    public static final long MAX_VALUES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("filter_resolution_cache_max_values"),
+            1000000
+    );
+
+    // Time in milliseconds the resolved key values of filters are kept
+    public static final long TTL_MS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("filter_resolution_cache_ttl_ms"),
+            600000
+    );
+
+    private static final FilterResolutionCache SHARED_INSTANCE = new FilterResolutionCache(MAX_VALUES, TTL_MS);
+
+    private final Cache<FilterKey, List<String>> keyValues;
+    private final Meter hits;
+    private final Meter misses;
+
+    /**
+     * Constructor.
+     *
+     * @param maxValues  The maximum number of key values cached over all the entries, 0 to disable caching
+     * @param ttlMs  The time in milliseconds after which an entry expires
+     */
+    public FilterResolutionCache(long maxValues, long ttlMs) {
+        if (maxValues < 0) {
+            String message = "Maximum filter resolution cache size must not be negative: " + maxValues;
+            throw new IllegalArgumentException(message);
+        }
+        this.keyValues = maxValues == 0 ? null : CacheBuilder.newBuilder()
+                .maximumWeight(maxValues)
+                .<FilterKey, List<String>>weigher((key, values) -> values.size() + 1)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .build();
+        this.hits = REGISTRY.meter(METRIC_PREFIX + "hits");
+        this.misses = REGISTRY.meter(METRIC_PREFIX + "misses");
+    }
+
+    /**
+     * The cache shared by the druid filter builders.
+     *
+     * @return the shared cache, configured by {@code filter_resolution_cache_max_values} and
+     * {@code filter_resolution_cache_ttl_ms}
+     */
+    public static FilterResolutionCache getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Get the key values of the rows of a dimension matching all the filters, searching for them on a miss.
+     *
+     * @param dimension  The dimension being filtered
+     * @param filters  The filters on the dimension
+     *
+     * @return the unmodifiable sorted key values of the matching rows
+     */
+    public List<String> getKeyValues(Dimension dimension, Set<ApiFilter> filters) {
+        SearchProvider searchProvider = dimension.getSearchProvider();
+        long rowVersion = keyValues == null ? -1 : dimension.getRowVersion();
+        if (rowVersion < 0) {
+            return searchProvider.findFilteredDimensionKeys(filters);
+        }
+
+        FilterKey key = new FilterKey(searchProvider, filters, rowVersion);
+        List<String> cached = keyValues.getIfPresent(key);
+        if (cached != null) {
+            hits.mark();
+            return cached;
+        }
+        misses.mark();
+
+        List<String> resolved = ImmutableList.copyOf(searchProvider.findFilteredDimensionKeys(filters));
+        keyValues.put(key, resolved);
+        return resolved;
+    }
+
+    /**
+     * Drop all cached key values.
+     */
+    public void invalidateAll() {
+        if (keyValues != null) {
+            keyValues.invalidateAll();
+        }
+    }
+
+    /**
+     * The number of cached filter sets.
+     *
+     * @return the approximate number of cache entries
+     */
+    public long size() {
+        return keyValues == null ? 0 : keyValues.size();
+    }
+
+    public Meter getHits() {
+        return hits;
+    }
+
+    public Meter getMisses() {
+        return misses;
+    }
+
+    /**
+     * Identifies a set of filters on a version of the rows of a dimension.
+     */
+    private static final class FilterKey {
+        private final SearchProvider searchProvider;
+        private final Set<List<Object>> filters;
+        private final long rowVersion;
+
+        /**
+         * Constructor.
+         *
+         * @param searchProvider  The search provider of the dimension
+         * @param filters  The filters on the dimension
+         * @param rowVersion  The row version of the dimension
+         */
+        FilterKey(SearchProvider searchProvider, Set<ApiFilter> filters, long rowVersion) {
+            this.searchProvider = searchProvider;
+            this.filters = new HashSet<>(filters.size());
+            for (ApiFilter filter : filters) {
+                this.filters.add(Arrays.asList(
+                        filter.getDimensionField().getName(),
+                        filter.getOperation().getName(),
+                        new TreeSet<>(filter.getValues())
+                ));
+            }
+            this.rowVersion = rowVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FilterKey that = (FilterKey) o;
+            return searchProvider == that.searchProvider &&
+                    rowVersion == that.rowVersion &&
+                    filters.equals(that.filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(searchProvider), filters, rowVersion);
+        }
+    }
+}
@@ -2,6 +2,11 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension;
 
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.util.Utils;
+
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,9 +14,15 @@ import java.util.Map;
  * Map Store instance manager.
  */
 public class MapStoreManager {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    private static final String MAPPED_KEY_VALUE_STORE_PATH = SYSTEM_CONFIG.getPackageVariableName(
+            "mapped_key_value_store_path"
+    );
 
     // Hold singleton instances by name
     private static final Map<String, MapStore> MAP_STORES = new HashMap<>();
+    private static final Map<String, MappedFileStore> MAPPED_FILE_STORES = new HashMap<>();
 
     /**
      * Factory for singleton instances by name.
@@ -33,12 +44,55 @@ public class MapStoreManager {
         return mapStore;
     }
 
+    /**
+     * Factory for singleton memory mapped file instances by name.
+     * <p>
+     * Only a single instance can exist for each name. Its files are kept under the mapped key value store path.
+     *
+     * @param storeName Name for the singleton instance
+     *
+     * @return The singleton instance for the given name
+     */
+    public static synchronized MappedFileStore getMappedFileInstance(String storeName) {
+        MappedFileStore mappedFileStore = MAPPED_FILE_STORES.get(storeName);
+
+        if (mappedFileStore == null) {
+            mappedFileStore = new MappedFileStore(Paths.get(getMappedFileStorePath(storeName)));
+            MAPPED_FILE_STORES.put(storeName, mappedFileStore);
+        }
+
+        return mappedFileStore;
+    }
+
     /**
      * Delete the named singleton instance.
+     * <p>
+     * A memory mapped file instance is closed and its files are deleted.
      *
      * @param storeName Name of the singleton instance to delete
      */
     public static synchronized void removeInstance(String storeName) {
         MAP_STORES.remove(storeName);
+        MappedFileStore mappedFileStore = MAPPED_FILE_STORES.remove(storeName);
+        if (mappedFileStore != null) {
+            mappedFileStore.close();
+            Utils.deleteFiles(getMappedFileStorePath(storeName));
+        }
+    }
+
+    /**
+     * Get the path of the files of a memory mapped file instance.
+     *
+     * @param storeName  Name of the instance
+     *
+     * @return the path to the files of the instance
+     */
+    private static String getMappedFileStorePath(String storeName) {
+        // Path eg: /home/y/var/bard_webservice/dimensionCache/dimension1/key_value_store/
+        return String.format(
+                "%s/dimensionCache/%s/key_value_store/",
+                SYSTEM_CONFIG.getStringProperty(MAPPED_KEY_VALUE_STORE_PATH),
+                storeName
+        ).replaceAll("/+", "/");
     }
 }
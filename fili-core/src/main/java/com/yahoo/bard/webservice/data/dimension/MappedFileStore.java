@@ -0,0 +1,971 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A KeyValueStore kept off heap in memory mapped files, which survive restarts.
+ * <p>
+ * Entries are appended to a log split into fixed size segment files. Each record holds the UTF-8 key, the UTF-8 value
+ * (or a removal marker) and a CRC32 of both. An open addressing hash table in a separate mapped file points every key
+ * at its latest record. Reads take a shared lock and writes an exclusive one, so any number of readers run
+ * concurrently with each other, and a single writer at a time.
+ * <p>
+ * The index is derived from the log. It is marked dirty on the first write after opening and clean on close, and a
+ * dirty index is rebuilt by scanning the log when the store is opened again. The scan stops at the first record whose
+ * checksum does not match, which drops a record torn by a crash and everything written after it.
+ * <p>
+ * Updates and removals leave stale records in the log. Once the stale records outweigh both the live records and one
+ * segment, the live records are compacted into the files of a new generation. The new generation only becomes
+ * current when a small {@code CURRENT} file naming it is atomically replaced, after all of its files have been written
+ * to disk, so a crash during compaction leaves the old generation in place. Files of other generations are deleted on
+ * open.
+ * <p>
+ * Written entries are forced to disk by {@link #putAll}, by compaction and on close. Entries written by {@link #put}
+ * and {@link #remove} are visible to the operating system immediately, so they survive a crash of the process, but
+ * may be lost on a crash of the machine until the next forced write.
+ */
+public class MappedFileStore implements KeyValueStore {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedFileStore.class);
+
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 28;
+
+    private static final int SEGMENT_MAGIC = 0x464c4f47;
+    private static final int INDEX_MAGIC = 0x46494458;
+    private static final int FORMAT_VERSION = 1;
+
+    // Segment header: magic, version
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    // Record header: key length, value length (REMOVED for a removal), CRC32 of the lengths, key and value
+    private static final int RECORD_HEADER_BYTES = 12;
+    private static final int REMOVED = -1;
+
+    // Index header: magic, version, capacity, used slots, clean flag, unused, log end, total bytes, live bytes
+    private static final int INDEX_CAPACITY_OFFSET = 8;
+    private static final int INDEX_USED_OFFSET = 12;
+    private static final int INDEX_CLEAN_OFFSET = 16;
+    private static final int INDEX_LOG_END_OFFSET = 24;
+    private static final int INDEX_TOTAL_BYTES_OFFSET = 32;
+    private static final int INDEX_LIVE_BYTES_OFFSET = 40;
+    private static final int INDEX_HEADER_BYTES = 48;
+    // Index slot: record address (0 for an empty slot), key hash
+    private static final int SLOT_BYTES = 12;
+    private static final int MIN_INDEX_CAPACITY = 1 << 10;
+    private static final double MAX_INDEX_LOAD = 0.7;
+
+    private static final String CURRENT_FILE = "CURRENT";
+    private static final Pattern GENERATION_FILE = Pattern.compile("(?:segment|index)-(\\d+)(?:-\\d+)?\\.bin");
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // All guarded by lock
+    private boolean open = false;
+    private boolean dirty = false;
+    private long generation;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int tailOffset;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int usedSlots;
+    private long totalBytes;
+    private long liveBytes;
+
+    /**
+     * Constructor, opening the store with the default segment size.
+     *
+     * @param directory  The directory holding the files of the store, created if missing
+     */
+    public MappedFileStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Constructor, opening the store.
+     *
+     * @param directory  The directory holding the files of the store, created if missing
+     * @param segmentBytes  The size of each log segment file, which bounds the size of a single entry
+     */
+    public MappedFileStore(Path directory, int segmentBytes) {
+        if (segmentBytes <= SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        open();
+    }
+
+    @Override
+    public void open() {
+        lock.writeLock().lock();
+        try {
+            if (open) {
+                return;
+            }
+            Files.createDirectories(directory);
+            dirty = false;
+            generation = readCurrentGeneration();
+            deleteOtherGenerations();
+            for (int number = 0; Files.exists(segmentPath(generation, number)); number++) {
+                segments.add(mapSegment(generation, number));
+            }
+            if (segments.isEmpty()) {
+                segments.add(mapSegment(generation, 0));
+                createIndex(MIN_INDEX_CAPACITY);
+                tailOffset = SEGMENT_HEADER_BYTES;
+                totalBytes = 0;
+                liveBytes = 0;
+            } else if (!loadIndex()) {
+                LOG.info("Rebuilding index of key value store {}", directory);
+                rebuildIndex();
+            }
+            open = true;
+        } catch (IOException e) {
+            segments.clear();
+            index = null;
+            LOG.error("Unable to open key value store {}", directory, e);
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!open) {
+                return;
+            }
+            forceSegments();
+            index.putLong(INDEX_LOG_END_OFFSET, address(segments.size() - 1, tailOffset));
+            index.putLong(INDEX_TOTAL_BYTES_OFFSET, totalBytes);
+            index.putLong(INDEX_LIVE_BYTES_OFFSET, liveBytes);
+            index.putInt(INDEX_USED_OFFSET, usedSlots);
+            index.putInt(INDEX_CLEAN_OFFSET, 1);
+            index.force();
+            // The mappings are released once the buffers are garbage collected
+            segments.clear();
+            index = null;
+            open = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        lock.readLock().lock();
+        try {
+            return open;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return isOpen();
+    }
+
+    @Override
+    public String get(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot get null key");
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            long address = index.getLong(slotOffset(findSlot(keyBytes, hash(keyBytes))));
+            return address == 0 ? null : readValue(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String remove(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot remove null key");
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            String previous = write(key.getBytes(StandardCharsets.UTF_8), null);
+            compactIfWasteful();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String put(@NotNull String key, String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot set null key");
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            String previous = write(
+                    key.getBytes(StandardCharsets.UTF_8),
+                    value == null ? null : value.getBytes(StandardCharsets.UTF_8)
+            );
+            compactIfWasteful();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, String> putAll(@NotNull Map<String, String> entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("Cannot set null entries");
+        }
+        Map<String, String> oldValues = new HashMap<>(entries.size());
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                if (entry.getKey() == null) {
+                    throw new IllegalArgumentException("Cannot set null key");
+                }
+                String value = entry.getValue();
+                oldValues.put(entry.getKey(), write(
+                        entry.getKey().getBytes(StandardCharsets.UTF_8),
+                        value == null ? null : value.getBytes(StandardCharsets.UTF_8)
+                ));
+            }
+            if (!compactIfWasteful()) {
+                forceSegments();
+            }
+            return oldValues;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The number of keys in the store.
+     *
+     * @return the number of keys with a value
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int size = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                long address = index.getLong(slotOffset(slot));
+                if (address != 0 && segment(address).getInt(offset(address) + 4) != REMOVED) {
+                    size++;
+                }
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live entries into new files, dropping the records of updated and removed entries.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            doCompact();
+        } catch (IOException e) {
+            LOG.error("Unable to compact key value store {}", directory, e);
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write an entry to the log and point the index at it.
+     *
+     * @param key  The UTF-8 key
+     * @param value  The UTF-8 value, null to remove the key
+     *
+     * @return the previous value of the key, null if there was none
+     */
+    private String write(byte[] key, byte[] value) {
+        int hash = hash(key);
+        int slot = findSlot(key, hash);
+        int slotOffset = slotOffset(slot);
+        long previousAddress = index.getLong(slotOffset);
+        String previous = previousAddress == 0 ? null : readValue(previousAddress);
+        if (previous == null && value == null) {
+            // Nothing to remove
+            return null;
+        }
+        int previousValueLength = previous == null
+                ? REMOVED
+                : segment(previousAddress).getInt(offset(previousAddress) + 4);
+
+        markDirty();
+        long address = append(key, value);
+        index.putLong(slotOffset, address);
+        index.putInt(slotOffset + 8, hash);
+        if (previousValueLength != REMOVED) {
+            liveBytes -= recordBytes(key.length, previousValueLength);
+        }
+        if (value != null) {
+            liveBytes += recordBytes(key.length, value.length);
+        }
+        if (previousAddress == 0 && ++usedSlots > capacity * MAX_INDEX_LOAD) {
+            resizeIndex(capacity * 2);
+        }
+        return previous;
+    }
+
+    /**
+     * Append a record to the log, starting a new segment if the current one is full.
+     *
+     * @param key  The UTF-8 key
+     * @param value  The UTF-8 value, null for a removal
+     *
+     * @return the address of the record
+     */
+    private long append(byte[] key, byte[] value) {
+        int length = recordBytes(key.length, value == null ? 0 : value.length);
+        if (length > segmentBytes - SEGMENT_HEADER_BYTES) {
+            throw new IllegalArgumentException("Entry of " + length + " bytes exceeds the segment size");
+        }
+        if (tailOffset + length > segmentBytes) {
+            try {
+                segments.add(mapSegment(generation, segments.size()));
+            } catch (IOException e) {
+                LOG.error("Unable to add a segment to key value store {}", directory, e);
+                throw new UncheckedIOException(e);
+            }
+            tailOffset = SEGMENT_HEADER_BYTES;
+        }
+        long address = address(segments.size() - 1, tailOffset);
+        writeRecord(segments.get(segments.size() - 1), tailOffset, key, value);
+        tailOffset += length;
+        totalBytes += length;
+        return address;
+    }
+
+    /**
+     * Write a record at an offset of a segment.
+     *
+     * @param segment  The segment to write to
+     * @param offset  The offset of the record in the segment
+     * @param key  The UTF-8 key
+     * @param value  The UTF-8 value, null for a removal
+     */
+    private static void writeRecord(ByteBuffer segment, int offset, byte[] key, byte[] value) {
+        int valueLength = value == null ? REMOVED : value.length;
+        ByteBuffer record = segment.duplicate();
+        record.position(offset + RECORD_HEADER_BYTES);
+        record.put(key);
+        if (value != null) {
+            record.put(value);
+        }
+        segment.putInt(offset, key.length);
+        segment.putInt(offset + 4, valueLength);
+        segment.putInt(offset + 8, checksum(segment, offset, key.length, valueLength));
+    }
+
+    /**
+     * Read the value of the record at an address.
+     *
+     * @param address  The address of the record
+     *
+     * @return the value, null if the record is a removal
+     */
+    private String readValue(long address) {
+        ByteBuffer segment = segment(address);
+        int offset = offset(address);
+        int keyLength = segment.getInt(offset);
+        int valueLength = segment.getInt(offset + 4);
+        if (valueLength == REMOVED) {
+            return null;
+        }
+        byte[] value = new byte[valueLength];
+        ByteBuffer record = segment.duplicate();
+        record.position(offset + RECORD_HEADER_BYTES + keyLength);
+        record.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Find the slot of a key: the slot pointing at its record, or the empty slot where it would be inserted.
+     *
+     * @param key  The UTF-8 key
+     * @param hash  The hash of the key
+     *
+     * @return the slot of the key
+     */
+    private int findSlot(byte[] key, int hash) {
+        int mask = capacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int slotOffset = slotOffset(slot);
+            long address = index.getLong(slotOffset);
+            if (address == 0 || (index.getInt(slotOffset + 8) == hash && keyEquals(address, key))) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Whether the record at an address has a key.
+     *
+     * @param address  The address of the record
+     * @param key  The UTF-8 key
+     *
+     * @return true if the record has the key
+     */
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer segment = segment(address);
+        int offset = offset(address);
+        if (segment.getInt(offset) != key.length) {
+            return false;
+        }
+        int start = offset + RECORD_HEADER_BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Load the index of the current generation, if it was closed cleanly and matches the log.
+     *
+     * @return true if the index was loaded, false if it needs to be rebuilt
+     *
+     * @throws IOException if the index cannot be mapped
+     */
+    private boolean loadIndex() throws IOException {
+        Path path = indexPath(generation);
+        if (!Files.exists(path) || Files.size(path) < INDEX_HEADER_BYTES) {
+            return false;
+        }
+        MappedByteBuffer header = map(path, INDEX_HEADER_BYTES);
+        int storedCapacity = header.getInt(INDEX_CAPACITY_OFFSET);
+        long logEnd = header.getLong(INDEX_LOG_END_OFFSET);
+        boolean valid = header.getInt(0) == INDEX_MAGIC &&
+                header.getInt(4) == FORMAT_VERSION &&
+                header.getInt(INDEX_CLEAN_OFFSET) == 1 &&
+                Integer.bitCount(storedCapacity) == 1 &&
+                Files.size(path) == INDEX_HEADER_BYTES + (long) storedCapacity * SLOT_BYTES &&
+                segmentNumber(logEnd) == segments.size() - 1 &&
+                offset(logEnd) >= SEGMENT_HEADER_BYTES &&
+                offset(logEnd) <= segmentBytes;
+        if (!valid) {
+            return false;
+        }
+        capacity = storedCapacity;
+        index = map(path, INDEX_HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        usedSlots = index.getInt(INDEX_USED_OFFSET);
+        totalBytes = index.getLong(INDEX_TOTAL_BYTES_OFFSET);
+        liveBytes = index.getLong(INDEX_LIVE_BYTES_OFFSET);
+        tailOffset = offset(logEnd);
+        return true;
+    }
+
+    /**
+     * Rebuild the index of the current generation by scanning the log.
+     * <p>
+     * Each segment is scanned up to its first invalid record. The rest of the last segment is cleared, so that records
+     * which reached the disk after a torn record cannot reappear once new records are appended.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    private void rebuildIndex() throws IOException {
+        createIndex(MIN_INDEX_CAPACITY);
+        totalBytes = 0;
+        liveBytes = 0;
+        int end = SEGMENT_HEADER_BYTES;
+        for (int number = 0; number < segments.size(); number++) {
+            end = scanSegment(number);
+        }
+        // Only write where needed, so the unused part of the segment stays sparse
+        ByteBuffer segment = segments.get(segments.size() - 1);
+        int offset = end;
+        for (; offset + 8 <= segmentBytes; offset += 8) {
+            if (segment.getLong(offset) != 0) {
+                segment.putLong(offset, 0);
+            }
+        }
+        for (; offset < segmentBytes; offset++) {
+            segment.put(offset, (byte) 0);
+        }
+        tailOffset = end;
+        markDirty();
+    }
+
+    /**
+     * Index the valid records of a segment.
+     *
+     * @param number  The number of the segment
+     *
+     * @return the offset after the last valid record of the segment
+     */
+    private int scanSegment(int number) {
+        ByteBuffer segment = segments.get(number);
+        int offset = SEGMENT_HEADER_BYTES;
+        while (offset + RECORD_HEADER_BYTES <= segmentBytes) {
+            int keyLength = segment.getInt(offset);
+            int valueLength = segment.getInt(offset + 4);
+            if (keyLength < 0 || valueLength < REMOVED) {
+                break;
+            }
+            long length = recordBytes(keyLength, Math.max(valueLength, 0));
+            if (offset + length > segmentBytes ||
+                    segment.getInt(offset + 8) != checksum(segment, offset, keyLength, valueLength)) {
+                break;
+            }
+
+            byte[] key = new byte[keyLength];
+            ByteBuffer record = segment.duplicate();
+            record.position(offset + RECORD_HEADER_BYTES);
+            record.get(key);
+            int hash = hash(key);
+            int slotOffset = slotOffset(findSlot(key, hash));
+            long previousAddress = index.getLong(slotOffset);
+            if (previousAddress == 0) {
+                usedSlots++;
+            } else {
+                int previousValueLength = segment(previousAddress).getInt(offset(previousAddress) + 4);
+                if (previousValueLength != REMOVED) {
+                    liveBytes -= recordBytes(keyLength, previousValueLength);
+                }
+            }
+            index.putLong(slotOffset, address(number, offset));
+            index.putInt(slotOffset + 8, hash);
+            if (valueLength != REMOVED) {
+                liveBytes += length;
+            }
+            totalBytes += length;
+            offset += length;
+            if (usedSlots > capacity * MAX_INDEX_LOAD) {
+                resizeIndex(capacity * 2);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Compact the live records into the files of the next generation and make it current.
+     *
+     * @throws IOException if the new generation cannot be written
+     */
+    private void doCompact() throws IOException {
+        long nextGeneration = generation + 1;
+        // Left over by a compaction which failed earlier
+        deleteGeneration(nextGeneration);
+        List<MappedByteBuffer> nextSegments = new ArrayList<>();
+        nextSegments.add(mapSegment(nextGeneration, 0));
+        int nextCapacity = MIN_INDEX_CAPACITY;
+        while (usedSlots > nextCapacity * MAX_INDEX_LOAD) {
+            nextCapacity *= 2;
+        }
+        MappedByteBuffer nextIndex = map(
+                indexPath(nextGeneration),
+                INDEX_HEADER_BYTES + (long) nextCapacity * SLOT_BYTES
+        );
+        int nextMask = nextCapacity - 1;
+        int nextOffset = SEGMENT_HEADER_BYTES;
+        int nextUsed = 0;
+        long nextBytes = 0;
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int slotOffset = slotOffset(slot);
+            long address = index.getLong(slotOffset);
+            if (address == 0) {
+                continue;
+            }
+            ByteBuffer segment = segment(address);
+            int offset = offset(address);
+            int keyLength = segment.getInt(offset);
+            int valueLength = segment.getInt(offset + 4);
+            if (valueLength == REMOVED) {
+                continue;
+            }
+            int length = recordBytes(keyLength, valueLength);
+            if (nextOffset + length > segmentBytes) {
+                nextSegments.add(mapSegment(nextGeneration, nextSegments.size()));
+                nextOffset = SEGMENT_HEADER_BYTES;
+            }
+            ByteBuffer record = segment.duplicate();
+            record.position(offset);
+            record.limit(offset + length);
+            ByteBuffer target = nextSegments.get(nextSegments.size() - 1).duplicate();
+            target.position(nextOffset);
+            target.put(record);
+
+            // Keys are unique, so each goes to the first free slot of its probe sequence
+            int hash = index.getInt(slotOffset + 8);
+            int nextSlot = hash & nextMask;
+            while (nextIndex.getLong(slotOffset(nextSlot)) != 0) {
+                nextSlot = (nextSlot + 1) & nextMask;
+            }
+            nextIndex.putLong(slotOffset(nextSlot), address(nextSegments.size() - 1, nextOffset));
+            nextIndex.putInt(slotOffset(nextSlot) + 8, hash);
+            nextUsed++;
+            nextOffset += length;
+            nextBytes += length;
+        }
+
+        long nextLogEnd = address(nextSegments.size() - 1, nextOffset);
+        nextIndex.putInt(0, INDEX_MAGIC);
+        nextIndex.putInt(4, FORMAT_VERSION);
+        nextIndex.putInt(INDEX_CAPACITY_OFFSET, nextCapacity);
+        nextIndex.putInt(INDEX_USED_OFFSET, nextUsed);
+        nextIndex.putInt(INDEX_CLEAN_OFFSET, 1);
+        nextIndex.putLong(INDEX_LOG_END_OFFSET, nextLogEnd);
+        nextIndex.putLong(INDEX_TOTAL_BYTES_OFFSET, nextBytes);
+        nextIndex.putLong(INDEX_LIVE_BYTES_OFFSET, nextBytes);
+        for (MappedByteBuffer segment : nextSegments) {
+            segment.force();
+        }
+        nextIndex.force();
+
+        // The new generation is complete on disk, switching to it is a single atomic rename
+        writeCurrentGeneration(nextGeneration);
+        long previousGeneration = generation;
+        generation = nextGeneration;
+        segments.clear();
+        segments.addAll(nextSegments);
+        index = nextIndex;
+        capacity = nextCapacity;
+        usedSlots = nextUsed;
+        tailOffset = nextOffset;
+        totalBytes = nextBytes;
+        liveBytes = nextBytes;
+        // The index stays dirty until close, as writes after compaction are not reflected in its header
+        dirty = false;
+        markDirty();
+        deleteGeneration(previousGeneration);
+    }
+
+    /**
+     * Compact the store if the stale records outweigh both the live records and a segment.
+     *
+     * @return true if the store was compacted
+     */
+    private boolean compactIfWasteful() {
+        long staleBytes = totalBytes - liveBytes;
+        if (staleBytes <= segmentBytes || staleBytes <= liveBytes) {
+            return false;
+        }
+        try {
+            doCompact();
+            return true;
+        } catch (IOException e) {
+            // The store stays usable on the current generation
+            LOG.error("Unable to compact key value store {}", directory, e);
+            return false;
+        }
+    }
+
+    /**
+     * Create an empty, dirty index of the current generation.
+     *
+     * @param indexCapacity  The number of slots of the index, a power of 2
+     *
+     * @throws IOException if the index cannot be mapped
+     */
+    private void createIndex(int indexCapacity) throws IOException {
+        Path path = indexPath(generation);
+        Files.deleteIfExists(path);
+        index = map(path, INDEX_HEADER_BYTES + (long) indexCapacity * SLOT_BYTES);
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, FORMAT_VERSION);
+        index.putInt(INDEX_CAPACITY_OFFSET, indexCapacity);
+        capacity = indexCapacity;
+        usedSlots = 0;
+    }
+
+    /**
+     * Move the index to a larger table.
+     *
+     * @param newCapacity  The number of slots of the new table, a power of 2
+     */
+    private void resizeIndex(int newCapacity) {
+        long[] addresses = new long[usedSlots];
+        int[] hashes = new int[usedSlots];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long address = index.getLong(slotOffset(slot));
+            if (address != 0) {
+                addresses[count] = address;
+                hashes[count] = index.getInt(slotOffset(slot) + 8);
+                count++;
+            }
+        }
+        try {
+            createIndex(newCapacity);
+        } catch (IOException e) {
+            LOG.error("Unable to resize the index of key value store {}", directory, e);
+            throw new UncheckedIOException(e);
+        }
+        int mask = newCapacity - 1;
+        for (int i = 0; i < count; i++) {
+            int slot = hashes[i] & mask;
+            while (index.getLong(slotOffset(slot)) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index.putLong(slotOffset(slot), addresses[i]);
+            index.putInt(slotOffset(slot) + 8, hashes[i]);
+        }
+        usedSlots = count;
+        dirty = false;
+        markDirty();
+    }
+
+    /**
+     * Mark the index as not matching the log until the store is closed, forcing the mark to disk.
+     */
+    private void markDirty() {
+        if (!dirty) {
+            index.putInt(INDEX_CLEAN_OFFSET, 0);
+            index.force();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Force the written segments to disk.
+     */
+    private void forceSegments() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Map a segment file of a generation, creating it with a header if missing.
+     *
+     * @param segmentGeneration  The generation of the segment
+     * @param number  The number of the segment
+     *
+     * @return the mapped segment
+     *
+     * @throws IOException if the segment cannot be mapped, or is not a segment of this format
+     */
+    private MappedByteBuffer mapSegment(long segmentGeneration, int number) throws IOException {
+        Path path = segmentPath(segmentGeneration, number);
+        boolean exists = Files.exists(path) && Files.size(path) > 0;
+        MappedByteBuffer segment = map(path, segmentBytes);
+        if (!exists) {
+            segment.putInt(0, SEGMENT_MAGIC);
+            segment.putInt(4, FORMAT_VERSION);
+        } else if (segment.getInt(0) != SEGMENT_MAGIC || segment.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not a key value store segment: " + path);
+        }
+        return segment;
+    }
+
+    /**
+     * Map a file for reading and writing, growing it to the mapped size.
+     *
+     * @param path  The file to map
+     * @param size  The number of bytes to map
+     *
+     * @return the mapped file
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (
+                RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+                FileChannel channel = file.getChannel()
+        ) {
+            if (file.length() < size) {
+                // Growing the file before mapping it keeps the unused part sparse, some JVMs allocate it otherwise
+                file.setLength(size);
+            }
+            // The mapping remains valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Read the current generation from the CURRENT file.
+     *
+     * @return the current generation, 0 if there is no CURRENT file
+     *
+     * @throws IOException if the CURRENT file cannot be read
+     */
+    private long readCurrentGeneration() throws IOException {
+        Path current = directory.resolve(CURRENT_FILE);
+        if (!Files.exists(current)) {
+            return 0;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(current), StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * Atomically replace the CURRENT file with one naming a generation.
+     *
+     * @param currentGeneration  The generation to make current
+     *
+     * @throws IOException if the CURRENT file cannot be written
+     */
+    private void writeCurrentGeneration(long currentGeneration) throws IOException {
+        Path temporary = directory.resolve(CURRENT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            channel.write(ByteBuffer.wrap(Long.toString(currentGeneration).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(
+                temporary,
+                directory.resolve(CURRENT_FILE),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING
+        );
+    }
+
+    /**
+     * Delete the files of all generations but the current one, left over by an interrupted compaction.
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private void deleteOtherGenerations() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = GENERATION_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) != generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the files of a generation which is no longer current.
+     *
+     * @param oldGeneration  The generation to delete
+     */
+    private void deleteGeneration(long oldGeneration) {
+        try {
+            for (int number = 0; Files.deleteIfExists(segmentPath(oldGeneration, number)); number++) {
+                // Deleted one more segment
+            }
+            Files.deleteIfExists(indexPath(oldGeneration));
+        } catch (IOException e) {
+            // They are deleted the next time the store is opened
+            LOG.warn("Unable to delete generation {} of key value store {}", oldGeneration, directory, e);
+        }
+    }
+
+    /**
+     * Fail if the store is closed.
+     */
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("Key value store is closed: " + directory);
+        }
+    }
+
+    private Path segmentPath(long segmentGeneration, int number) {
+        return directory.resolve("segment-" + segmentGeneration + "-" + number + ".bin");
+    }
+
+    private Path indexPath(long indexGeneration) {
+        return directory.resolve("index-" + indexGeneration + ".bin");
+    }
+
+    private ByteBuffer segment(long address) {
+        return segments.get(segmentNumber(address));
+    }
+
+    private static long address(int segmentNumber, int offset) {
+        return ((long) segmentNumber << 32) | offset;
+    }
+
+    private static int segmentNumber(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int slotOffset(int slot) {
+        return INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static int recordBytes(int keyLength, int valueLength) {
+        return RECORD_HEADER_BYTES + keyLength + valueLength;
+    }
+
+    /**
+     * The CRC32 of the lengths, key and value of a record.
+     *
+     * @param segment  The segment holding the record
+     * @param offset  The offset of the record
+     * @param keyLength  The length of the key
+     * @param valueLength  The length of the value, or REMOVED
+     *
+     * @return the checksum of the record
+     */
+    private static int checksum(ByteBuffer segment, int offset, int keyLength, int valueLength) {
+        CRC32 crc = new CRC32();
+        ByteBuffer record = segment.duplicate();
+        record.position(offset);
+        record.limit(offset + 8);
+        crc.update(record);
+        record.limit(offset + RECORD_HEADER_BYTES + keyLength + Math.max(valueLength, 0));
+        record.position(offset + RECORD_HEADER_BYTES);
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The FNV-1a hash of a UTF-8 key, spread so the low bits used to pick a slot depend on every byte.
+     *
+     * @param key  The UTF-8 key
+     *
+     * @return the hash of the key
+     */
+    private static int hash(byte[] key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
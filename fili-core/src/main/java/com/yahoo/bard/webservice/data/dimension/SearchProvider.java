@@ -10,9 +10,11 @@ import com.yahoo.bard.webservice.web.util.PaginationParameters;
 import org.slf4j.LoggerFactory;
 
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
 
@@ -116,6 +118,37 @@ public interface SearchProvider {
             @NotNull PaginationParameters paginationParameters
     );
 
+    /**
+     * Return the key values of the dimension rows matching all the filters, without building the rows when the
+     * provider can avoid it.
+     *
+     * @param filters  The filters to be applied to the dimension rows
+     *
+     * @return the key values of the matching rows, sorted
+     */
+    default List<String> findFilteredDimensionKeys(Set<ApiFilter> filters) {
+        return findFilteredDimensionRows(filters).stream()
+                .map(DimensionRow::getKeyValue)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Return the key values of all the dimension rows, reading as many pages of rows as it takes.
+     *
+     * @return the key values of all the rows
+     */
+    default Set<String> findAllDimensionKeys() {
+        int perPage = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage();
+        Set<String> keyValues = new LinkedHashSet<>();
+        for (int page = 1; ; page++) {
+            Pagination<DimensionRow> rows = findAllDimensionRowsPaged(new PaginationParameters(perPage, page));
+            rows.getPageOfData().forEach(row -> keyValues.add(row.getKeyValue()));
+            if (rows.getPageOfData().size() < perPage || (long) page * perPage >= rows.getNumResults()) {
+                return keyValues;
+            }
+        }
+    }
+
     /**
      * Determine if any rows match these filters.
      *
@@ -137,11 +170,11 @@ public interface SearchProvider {
     void refreshIndex(String rowId, DimensionRow dimensionRow, DimensionRow dimensionRowOld);
 
     /**
-     * Method to add / update indexes.
+     * Method to add / update / remove indexes.
      *
      * @param changedRows Collection of newRow / oldRow pairs keyed by rowId to update the index with. Each row is a
      * pair of dimension rows (newRow is the key, oldRow is the value), with the rowId (ie. unique key in the dimension)
-     * as the top-level Map key.
+     * as the top-level Map key. A pair with a null newRow removes its oldRow from the index.
      */
     void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows);
 
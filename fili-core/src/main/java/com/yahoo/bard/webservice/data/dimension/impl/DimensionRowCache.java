@@ -0,0 +1,231 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of decoded dimension rows, keyed by the key value store key of the row.
+ * <p>
+ * Lookups of keys without a row are cached as well, so repeated lookups of unknown values do not reach the store.
+ * Cached rows are shared by every caller and cannot be modified, use {@link DimensionRow#copyWithReplace} to derive
+ * a modified row.
+ * <p>
+ * Writers invalidate the keys they change after writing them to the store. A lookup racing with a write may read the
+ * old row from the store, so a lookup only keeps its row cached if no invalidation happened while it was loading.
+ * <p>
+ * Hits and misses are reported as meters under the metric prefix, negative lookups included.
+ */
+public class DimensionRowCache {
+
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String METRIC_PREFIX = "dimensions.meter.row_cache.";
+
+    private final DimensionField key;
+    private final Cache<String, Optional<DimensionRow>> rows;
+
+    // Incremented on every invalidation, lets lookups detect invalidations while they load
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Meter hits;
+    private final Meter misses;
+
+    /**
+     * Constructor.
+     *
+     * @param dimensionName  Name of the dimension of the rows, used in the metric names
+     * @param key  The key field of the dimension
+     * @param maxEntries  The maximum number of rows and negative lookups cached
+     */
+    public DimensionRowCache(String dimensionName, DimensionField key, long maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum dimension row cache size must be positive: " + maxEntries);
+        }
+        this.key = key;
+        this.rows = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        this.hits = REGISTRY.meter(METRIC_PREFIX + dimensionName + ".hits");
+        this.misses = REGISTRY.meter(METRIC_PREFIX + dimensionName + ".misses");
+    }
+
+    /**
+     * Get the row stored under a key, loading it on a miss.
+     *
+     * @param rowKey  The key value store key of the row
+     * @param loader  Loads the row of a key from the store, returning null if there is none
+     *
+     * @return the unmodifiable row, or null if the store has no row for the key
+     */
+    public DimensionRow get(String rowKey, Function<String, DimensionRow> loader) {
+        Optional<DimensionRow> cached = rows.getIfPresent(rowKey);
+        if (cached != null) {
+            hits.mark();
+            return cached.orElse(null);
+        }
+        misses.mark();
+
+        long loadGeneration = generation.get();
+        DimensionRow row = loader.apply(rowKey);
+        Optional<DimensionRow> loaded = Optional.ofNullable(row).map(this::freeze);
+        rows.put(rowKey, loaded);
+        if (generation.get() != loadGeneration) {
+            // The row may have been read before a write to the store, drop it to be safe
+            rows.invalidate(rowKey);
+        }
+        return loaded.orElse(null);
+    }
+
+    /**
+     * Drop the cached rows of keys which have been written to or removed from the store.
+     *
+     * @param rowKeys  The key value store keys of the changed rows
+     */
+    public void invalidate(Collection<String> rowKeys) {
+        generation.incrementAndGet();
+        rows.invalidateAll(rowKeys);
+    }
+
+    /**
+     * Drop all cached rows.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        rows.invalidateAll();
+    }
+
+    /**
+     * The number of cached rows and negative lookups.
+     *
+     * @return the approximate number of cache entries
+     */
+    public long size() {
+        return rows.size();
+    }
+
+    public Meter getHits() {
+        return hits;
+    }
+
+    public Meter getMisses() {
+        return misses;
+    }
+
+    /**
+     * Copy a row into an unmodifiable row.
+     *
+     * @param row  The row to copy
+     *
+     * @return the unmodifiable copy of the row
+     */
+    private DimensionRow freeze(DimensionRow row) {
+        return row instanceof UnmodifiableDimensionRow ? row : new UnmodifiableDimensionRow(key, row);
+    }
+
+    /**
+     * A dimension row which rejects modification, so it can be shared by all readers of a cache.
+     */
+    private static final class UnmodifiableDimensionRow extends DimensionRow {
+
+        /**
+         * Constructor.
+         *
+         * @param key  The key field of the row
+         * @param fieldValueMap  The values of the row
+         */
+        UnmodifiableDimensionRow(DimensionField key, Map<DimensionField, String> fieldValueMap) {
+            super(key, fieldValueMap);
+        }
+
+        @Override
+        public String put(DimensionField field, String value) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public void putAll(Map<? extends DimensionField, ? extends String> values) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public String putIfAbsent(DimensionField field, String value) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public String remove(Object field) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public boolean remove(Object field, Object value) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public String replace(DimensionField field, String value) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public boolean replace(DimensionField field, String oldValue, String newValue) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public void replaceAll(BiFunction<? super DimensionField, ? super String, ? extends String> function) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public String compute(
+                DimensionField field,
+                BiFunction<? super DimensionField, ? super String, ? extends String> function
+        ) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public String computeIfAbsent(
+                DimensionField field,
+                Function<? super DimensionField, ? extends String> function
+        ) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public String computeIfPresent(
+                DimensionField field,
+                BiFunction<? super DimensionField, ? super String, ? extends String> function
+        ) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public String merge(
+                DimensionField field,
+                String value,
+                BiFunction<? super String, ? super String, ? extends String> function
+        ) {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Cached dimension rows cannot be modified");
+        }
+    }
+}
@@ -0,0 +1,377 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a stream of dimension rows into a dimension in batches, without holding the whole stream in memory.
+ * <p>
+ * Rows are read one at a time with a Jackson streaming parser, either as newline delimited JSON objects or as CSV
+ * with a header line naming the fields. Every batch is applied to the key value store and search provider of the
+ * dimension before the next row is read, so a slow dimension store slows down the reading of the stream rather than
+ * letting parsed rows pile up in memory.
+ * <p>
+ * Loading replaces rows with the same key, or merges into them when updating. Replacing the rows of a dimension
+ * also removes, once the whole stream was loaded, the rows whose keys were not in the stream. A stream which fails
+ * part way through leaves the rows it did not reach untouched and removes nothing.
+ */
+public class DimensionRowStreamLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(DimensionRowStreamLoader.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final int BATCH_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("dimension_ingest_batch_size"),
+            10000
+    );
+
+    public static final int PROGRESS_ROWS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("dimension_ingest_progress_rows"),
+            100000
+    );
+
+    public static final Meter INGESTED_ROWS = REGISTRY.meter("dimensions.meter.ingest.rows");
+    public static final Timer INGEST_BATCHES = REGISTRY.timer("dimensions.timer.ingest.batch");
+
+    private static final TypeReference<LinkedHashMap<String, String>> ROW_TYPE =
+            new TypeReference<LinkedHashMap<String, String>>() { /* Empty class */ };
+
+    /**
+     * The formats of a stream of rows.
+     */
+    public enum Format {
+        /**
+         * One JSON object of field names to values per line.
+         */
+        NDJSON,
+        /**
+         * CSV whose header line names the fields.
+         */
+        CSV
+    }
+
+    /**
+     * How the rows of a stream are applied to the existing rows of a dimension.
+     */
+    public enum Mode {
+        /**
+         * Add rows, replacing the existing rows with the same keys.
+         */
+        ADD,
+        /**
+         * Add rows, merging the fields of the streamed rows into the existing rows with the same keys.
+         */
+        UPDATE,
+        /**
+         * Add rows, replacing the existing rows with the same keys, and remove the rows not in the stream.
+         */
+        REPLACE
+    }
+
+    private final ObjectReader ndjsonReader;
+    private final ObjectReader csvReader;
+    private final int batchSize;
+    private final int progressRows;
+
+    /**
+     * Constructor using the configured batch size and progress interval.
+     *
+     * @param mapper  Mapper to read JSON rows with
+     */
+    public DimensionRowStreamLoader(ObjectMapper mapper) {
+        this(mapper, BATCH_SIZE, PROGRESS_ROWS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param mapper  Mapper to read JSON rows with
+     * @param batchSize  Number of rows applied to the dimension at once
+     * @param progressRows  Number of rows loaded between progress log lines
+     */
+    public DimensionRowStreamLoader(ObjectMapper mapper, int batchSize, int progressRows) {
+        if (batchSize <= 0 || progressRows <= 0) {
+            String message = String.format(
+                    "Dimension ingestion batch size %d and progress interval %d must be positive",
+                    batchSize,
+                    progressRows
+            );
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.ndjsonReader = mapper.readerFor(ROW_TYPE);
+        this.csvReader = new CsvMapper().readerFor(ROW_TYPE).with(CsvSchema.emptySchema().withHeader());
+        this.batchSize = batchSize;
+        this.progressRows = progressRows;
+    }
+
+    /**
+     * Load a stream of rows into a dimension.
+     *
+     * @param dimension  The dimension to load the rows into
+     * @param rows  The stream of rows, which is closed once read
+     * @param format  The format of the stream
+     * @param mode  How the rows are applied to the existing rows of the dimension
+     *
+     * @return a summary of the load
+     *
+     * @throws IOException if the stream cannot be read or parsed, after loading the batches before the failure
+     * @throws IllegalArgumentException if a row has a field the dimension does not have, or if the rows of the
+     * dimension cannot be replaced
+     */
+    public LoadSummary load(Dimension dimension, InputStream rows, Format format, Mode mode) throws IOException {
+        if (mode == Mode.REPLACE && !(dimension instanceof KeyValueStoreDimension)) {
+            String message = String.format("Rows of dimension %s cannot be replaced", dimension.getApiName());
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long startNanos = System.nanoTime();
+        Set<String> loadedKeys = mode == Mode.REPLACE ? new HashSet<>() : null;
+        List<Map<String, String>> batch = new ArrayList<>(batchSize);
+        long rowCount = 0;
+        int batchCount = 0;
+
+        try (MappingIterator<Map<String, String>> iterator = getReader(format).readValues(rows)) {
+            while (iterator.hasNextValue()) {
+                batch.add(iterator.nextValue());
+                if (batch.size() == batchSize) {
+                    rowCount = applyBatch(dimension, batch, mode, loadedKeys, rowCount, startNanos);
+                    batchCount++;
+                    batch.clear();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error(
+                    "Loading rows into dimension {} failed after {} rows in {} batches",
+                    dimension.getApiName(),
+                    rowCount,
+                    batchCount,
+                    e
+            );
+            throw e;
+        }
+        if (!batch.isEmpty()) {
+            rowCount = applyBatch(dimension, batch, mode, loadedKeys, rowCount, startNanos);
+            batchCount++;
+        }
+
+        int removedRows = 0;
+        if (loadedKeys != null) {
+            removedRows = removeRowsNotLoaded((KeyValueStoreDimension) dimension, loadedKeys);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        LoadSummary summary = new LoadSummary(rowCount, batchCount, removedRows, elapsedMillis);
+        LOG.info(
+                "Loaded {} rows in {} batches into dimension {}, removing {} rows, in {} ms ({} rows/s)",
+                rowCount,
+                batchCount,
+                dimension.getApiName(),
+                removedRows,
+                elapsedMillis,
+                summary.getRowsPerSecond()
+        );
+        return summary;
+    }
+
+    /**
+     * Merge rows into the existing rows of a dimension with the same keys.
+     * <p>
+     * Only the fields in a raw row overwrite the fields of the existing row, and rows without an existing row are
+     * added as they are.
+     *
+     * @param dimension  The dimension holding the existing rows
+     * @param rawRows  The field names and values of the rows to merge
+     *
+     * @return the merged rows
+     */
+    public static Set<DimensionRow> mergeDimensionRows(
+            Dimension dimension,
+            Collection<? extends Map<String, String>> rawRows
+    ) {
+        DimensionField key = dimension.getKey();
+        Set<DimensionRow> dimensionRows = new LinkedHashSet<>();
+        for (Map<String, String> fieldnameValueMap : rawRows) {
+            DimensionRow newRow = dimension.parseDimensionRow(fieldnameValueMap);
+            DimensionRow oldRow = dimension.findDimensionRowByKeyValue(newRow.get(key));
+            if (oldRow == null) {
+                // It didn't exist before, so add it directly
+                dimensionRows.add(newRow);
+            } else {
+                // The row existed before, so update a copy of the existing row's data, as found rows are shared.
+                // Only overwrite the fields which were in the original row.
+                dimensionRows.add(DimensionRow.copyWithReplace(
+                        oldRow,
+                        (field, value) -> fieldnameValueMap.containsKey(field.getName()) ? newRow.get(field) : value
+                ));
+            }
+        }
+        return dimensionRows;
+    }
+
+    /**
+     * Get the reader of a format of rows.
+     *
+     * @param format  The format of the rows
+     *
+     * @return the reader of a stream of rows as maps of field names to values
+     */
+    private ObjectReader getReader(Format format) {
+        return format == Format.CSV ? csvReader : ndjsonReader;
+    }
+
+    /**
+     * Apply a batch of rows to a dimension.
+     *
+     * @param dimension  The dimension to load the rows into
+     * @param batch  The field names and values of the rows
+     * @param mode  How the rows are applied to the existing rows of the dimension
+     * @param loadedKeys  The keys of the rows loaded so far, which the keys of the batch are added to, or null if the
+     * keys are not tracked
+     * @param rowCount  The number of rows loaded before the batch
+     * @param startNanos  The time the load started at, to report progress
+     *
+     * @return the number of rows loaded including the batch
+     */
+    private long applyBatch(
+            Dimension dimension,
+            List<Map<String, String>> batch,
+            Mode mode,
+            Set<String> loadedKeys,
+            long rowCount,
+            long startNanos
+    ) {
+        try (Timer.Context ignored = INGEST_BATCHES.time()) {
+            Set<DimensionRow> dimensionRows;
+            if (mode == Mode.UPDATE) {
+                dimensionRows = mergeDimensionRows(dimension, batch);
+            } else {
+                dimensionRows = new LinkedHashSet<>(batch.size());
+                for (Map<String, String> fieldnameValueMap : batch) {
+                    dimensionRows.add(dimension.parseDimensionRow(fieldnameValueMap));
+                }
+            }
+            dimension.addAllDimensionRows(dimensionRows);
+
+            if (loadedKeys != null) {
+                for (DimensionRow dimensionRow : dimensionRows) {
+                    loadedKeys.add(dimensionRow.getKeyValue());
+                }
+            }
+        }
+        INGESTED_ROWS.mark(batch.size());
+
+        long loadedRows = rowCount + batch.size();
+        if (loadedRows / progressRows > rowCount / progressRows) {
+            long elapsedMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), 1);
+            LOG.info(
+                    "Loaded {} rows into dimension {} in {} ms ({} rows/s)",
+                    loadedRows,
+                    dimension.getApiName(),
+                    elapsedMillis,
+                    loadedRows * 1000 / elapsedMillis
+            );
+        }
+        return loadedRows;
+    }
+
+    /**
+     * Remove the rows of a dimension whose keys were not loaded, in a single batch.
+     *
+     * @param dimension  The dimension whose rows were replaced
+     * @param loadedKeys  The keys of the rows loaded
+     *
+     * @return the number of rows removed
+     */
+    private int removeRowsNotLoaded(KeyValueStoreDimension dimension, Set<String> loadedKeys) {
+        List<String> staleKeys = new ArrayList<>();
+        for (String keyValue : dimension.getSearchProvider().findAllDimensionKeys()) {
+            if (!loadedKeys.contains(keyValue)) {
+                staleKeys.add(keyValue);
+            }
+        }
+        return staleKeys.isEmpty() ? 0 : dimension.removeDimensionRows(staleKeys);
+    }
+
+    /**
+     * The outcome of loading a stream of rows.
+     */
+    public static class LoadSummary {
+        private final long rows;
+        private final int batches;
+        private final int removedRows;
+        private final long elapsedMillis;
+
+        /**
+         * Constructor.
+         *
+         * @param rows  Number of rows loaded
+         * @param batches  Number of batches the rows were loaded in
+         * @param removedRows  Number of rows removed because they were not in the stream
+         * @param elapsedMillis  Time the load took in milliseconds
+         */
+        public LoadSummary(long rows, int batches, int removedRows, long elapsedMillis) {
+            this.rows = rows;
+            this.batches = batches;
+            this.removedRows = removedRows;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public int getBatches() {
+            return batches;
+        }
+
+        public int getRemovedRows() {
+            return removedRows;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * The throughput of the load.
+         *
+         * @return the number of rows loaded per second
+         */
+        public long getRowsPerSecond() {
+            return rows * 1000 / Math.max(elapsedMillis, 1);
+        }
+    }
+}
@@ -2,6 +2,8 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl;
 
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
 import com.yahoo.bard.webservice.data.config.dimension.DimensionConfig;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
@@ -24,13 +26,16 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
@@ -42,8 +47,22 @@ import javax.validation.constraints.NotNull;
  * <ul>
  *     <li>Id {@literal ->} DimensionRow
  * </ul>
+ * <p>
+ * Rows found by key are decoded once and kept in a bounded {@link DimensionRowCache}, along with the keys found to
+ * have no row. Rows are dropped from the cache when they are added or updated through this dimension, and the whole
+ * cache is dropped when the rows are deleted or the last updated time is set.
  */
 public class KeyValueStoreDimension implements Dimension {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * The maximum number of decoded rows cached per dimension. 0 or less disables the cache.
+     */
+    public static final long ROW_CACHE_MAX_ENTRIES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("dimension_row_cache_max_entries"),
+            10000L
+    );
+
     private static final String MISSING_ROW_KEY_FORMAT = "Dimension row '%s' doesn't contain expected key '%s'";
     private static final String FIELD_UNDEFINED_FORMAT = "Unknown dimensionField: '%s' on dimension: '%s'.";
 
@@ -69,6 +88,12 @@ public class KeyValueStoreDimension implements Dimension {
     private final boolean isAggregatable;
     private final StorageStrategy storageStrategy;
 
+    // Null if row caching is disabled, shared with the copies of this dimension as they share the key value store
+    private DimensionRowCache rowCache;
+
+    // Bumped once rows have been written, so that nothing is cached under a version with a partial write
+    private final AtomicLong rowVersion = new AtomicLong();
+
     /**
      * Constructor.
      *
@@ -119,6 +144,10 @@ public class KeyValueStoreDimension implements Dimension {
 
         this.isAggregatable = isAggregatable;
         this.storageStrategy = storageStrategy;
+
+        this.rowCache = ROW_CACHE_MAX_ENTRIES <= 0 || key == null ?
+                null :
+                new DimensionRowCache(dimensionName, key, ROW_CACHE_MAX_ENTRIES);
     }
 
     /**
@@ -362,6 +391,11 @@ public class KeyValueStoreDimension implements Dimension {
         } else {
             keyValueStore.put(lastUpdatedKey, lastUpdated.toString());
         }
+        // Loaders set the last updated time once they are done, rows may have been written to the store directly
+        if (rowCache != null) {
+            rowCache.invalidateAll();
+        }
+        rowVersion.incrementAndGet();
     }
 
     @Override
@@ -379,6 +413,11 @@ public class KeyValueStoreDimension implements Dimension {
         }
     }
 
+    @Override
+    public long getRowVersion() {
+        return rowVersion.get();
+    }
+
     @Override
     public String getDescription() {
         return description;
@@ -432,6 +471,15 @@ public class KeyValueStoreDimension implements Dimension {
         return keyValueStore;
     }
 
+    /**
+     * The cache of decoded rows of this dimension.
+     *
+     * @return the row cache, empty if row caching is disabled
+     */
+    public Optional<DimensionRowCache> getRowCache() {
+        return Optional.ofNullable(rowCache);
+    }
+
     @Override
     public void addDimensionRow(DimensionRow dimensionRow) {
         addAllDimensionRows(Collections.singleton(dimensionRow));
@@ -482,7 +530,49 @@ public class KeyValueStoreDimension implements Dimension {
         }
 
         keyValueStore.putAll(storeRows);
+        if (rowCache != null) {
+            rowCache.invalidate(storeRows.keySet());
+        }
+        searchProvider.refreshIndex(indexRows);
+        if (!storeRows.isEmpty()) {
+            rowVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove the dimension rows with the given key values in one batch.
+     * <p>
+     * The rows are removed from the search provider before the key value store, so that searches never find a row
+     * which cannot be read. Key values without a row are ignored.
+     *
+     * @param keyValues  The key values of the rows to remove
+     *
+     * @return the number of rows removed
+     */
+    public int removeDimensionRows(Collection<String> keyValues) {
+        Map<String, String> storeRows = new LinkedHashMap<>(keyValues.size());
+        Map<String, Pair<DimensionRow, DimensionRow>> indexRows = new LinkedHashMap<>(keyValues.size());
+
+        for (String keyValue : keyValues) {
+            String rowIdKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), keyValue);
+            DimensionRow dimensionRowOld = loadDimensionRow(rowIdKey);
+            if (dimensionRowOld != null) {
+                // A null value removes the key from the store, and a null new row removes the row from the index
+                storeRows.put(rowIdKey, null);
+                indexRows.put(rowIdKey, new Pair<>(null, dimensionRowOld));
+            }
+        }
+        if (storeRows.isEmpty()) {
+            return 0;
+        }
+
         searchProvider.refreshIndex(indexRows);
+        keyValueStore.putAll(storeRows);
+        if (rowCache != null) {
+            rowCache.invalidate(storeRows.keySet());
+        }
+        rowVersion.incrementAndGet();
+        return storeRows.size();
     }
 
     @Override
@@ -511,6 +601,17 @@ public class KeyValueStoreDimension implements Dimension {
          * rowKey would be id_12345_row_key
          */
         String rowKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), value);
+        return rowCache == null ? loadDimensionRow(rowKey) : rowCache.get(rowKey, this::loadDimensionRow);
+    }
+
+    /**
+     * Read and decode the dimension row stored under a key value store key.
+     *
+     * @param rowKey  The key value store key of the row
+     *
+     * @return the dimension row, or null if there is no row under the key
+     */
+    private DimensionRow loadDimensionRow(String rowKey) {
         DimensionRow drByKey = null;
         try {
             String dimRowJson = keyValueStore.get(rowKey);
@@ -546,6 +647,9 @@ public class KeyValueStoreDimension implements Dimension {
             for (String dimRowKey : dimRowKeys) {
                 keyValueStore.remove(dimRowKey);
             }
+            if (rowCache != null) {
+                rowCache.invalidateAll();
+            }
             searchProvider.setKeyValueStore(keyValueStore);
 
             // Reset cardinality to 0
@@ -554,6 +658,7 @@ public class KeyValueStoreDimension implements Dimension {
             // Reset list to empty
             String allValuesKey = DimensionStoreKeyUtils.getAllValuesKey();
             keyValueStore.put(allValuesKey, "[]");
+            rowVersion.incrementAndGet();
 
         } catch (IOException e) {
             LOG.error("Exception while reading dimension rows", e);
@@ -608,7 +713,7 @@ public class KeyValueStoreDimension implements Dimension {
      * @return the new KeyValueStoreDimension with the specified StorageStrategy
      */
     public KeyValueStoreDimension withStorageStrategy(StorageStrategy storageStrategy) {
-        return new KeyValueStoreDimension(
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
                 apiName,
                 longName,
                 category,
@@ -620,6 +725,8 @@ public class KeyValueStoreDimension implements Dimension {
                 isAggregatable,
                 storageStrategy
         );
+        dimension.rowCache = rowCache;
+        return dimension;
     }
 
     @Override
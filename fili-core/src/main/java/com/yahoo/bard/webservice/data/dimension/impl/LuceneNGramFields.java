@@ -0,0 +1,208 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * N-gram fields answering contains and startswith filters with term and phrase queries.
+ * <p>
+ * Alongside each field of a dimension row, the n-grams of its value are indexed in order, one position each, in a
+ * hidden field. The value is marked with a start character and padded with n - 1 end characters, so that:
+ * <ul>
+ *     <li>A value contains a string of at least n characters if its n-grams appear at consecutive positions, which
+ *     is a phrase query</li>
+ *     <li>A value contains a shorter string if one of its n-grams starts with it, which is a prefix query on the small
+ *     dictionary of n-grams</li>
+ *     <li>A value starts with a string if it contains the start character followed by that string</li>
+ * </ul>
+ * Both are exact, matching the same rows as the equivalent wildcard queries without scanning the terms of the field.
+ * Contains filters on values holding wildcard characters are still answered by wildcard queries, which expand them.
+ */
+final class LuceneNGramFields {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final int GRAM_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_ngram_size"),
+            3
+    );
+
+    private static final String FIELD_SUFFIX = "__ngrams";
+    private static final char START = '\u0002';
+    private static final char END = '\u0003';
+
+    /**
+     * Private constructor for utility class.
+     */
+    private LuceneNGramFields() {
+        // Utility class
+    }
+
+    /**
+     * The name of the n-gram field of a field.
+     *
+     * @param luceneFieldName  The name of the lucene field holding the values
+     *
+     * @return the name of the field holding the n-grams of the values
+     */
+    static String getFieldName(String luceneFieldName) {
+        return luceneFieldName + FIELD_SUFFIX;
+    }
+
+    /**
+     * Build an n-gram field, whose value is set per row with {@link #setValue}.
+     *
+     * @param luceneFieldName  The name of the lucene field holding the values
+     *
+     * @return the n-gram field, not stored
+     */
+    static Field buildField(String luceneFieldName) {
+        return new Field(getFieldName(luceneFieldName), new GramTokenStream(""), TextField.TYPE_NOT_STORED);
+    }
+
+    /**
+     * Set the value whose n-grams an n-gram field indexes.
+     *
+     * @param field  The n-gram field
+     * @param value  The value of the row
+     */
+    static void setValue(Field field, String value) {
+        field.setTokenStream(new GramTokenStream(value));
+    }
+
+    /**
+     * Whether a contains filter value is matched literally by a wildcard query, so n-grams can answer it.
+     *
+     * @param value  The string to find
+     *
+     * @return true if the value is not empty and holds no wildcard or escape characters
+     */
+    static boolean isLiteral(String value) {
+        return !value.isEmpty() && value.indexOf('*') < 0 && value.indexOf('?') < 0 && value.indexOf('\\') < 0;
+    }
+
+    /**
+     * Build the query matching the values containing a string.
+     *
+     * @param luceneFieldName  The name of the lucene field holding the values
+     * @param value  The string to find, not empty
+     *
+     * @return the query on the n-gram field
+     */
+    static Query containsQuery(String luceneFieldName, String value) {
+        return substringQuery(getFieldName(luceneFieldName), value);
+    }
+
+    /**
+     * Build the query matching the values starting with a string.
+     *
+     * @param luceneFieldName  The name of the lucene field holding the values
+     * @param value  The prefix to find
+     *
+     * @return the query on the n-gram field
+     */
+    static Query startswithQuery(String luceneFieldName, String value) {
+        return substringQuery(getFieldName(luceneFieldName), START + value);
+    }
+
+    /**
+     * Build the query matching marked values containing a string.
+     *
+     * @param nGramFieldName  The name of the n-gram field
+     * @param substring  The string to find in the marked values
+     *
+     * @return the query on the n-gram field
+     */
+    private static Query substringQuery(String nGramFieldName, String substring) {
+        if (substring.length() < GRAM_SIZE) {
+            return new PrefixQuery(new Term(nGramFieldName, substring));
+        }
+        List<String> grams = grams(substring);
+        if (grams.size() == 1) {
+            return new TermQuery(new Term(nGramFieldName, grams.get(0)));
+        }
+        PhraseQuery.Builder builder = new PhraseQuery.Builder();
+        for (int position = 0; position < grams.size(); position++) {
+            builder.add(new Term(nGramFieldName, grams.get(position)), position);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The n-grams of a string, in order.
+     *
+     * @param text  The string, at least as long as an n-gram
+     *
+     * @return the n-grams starting at each character of the string which are complete
+     */
+    private static List<String> grams(String text) {
+        List<String> grams = new ArrayList<>(text.length() - GRAM_SIZE + 1);
+        for (int start = 0; start + GRAM_SIZE <= text.length(); start++) {
+            grams.add(text.substring(start, start + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    /**
+     * Mark a value with the start character and pad it with end characters, so that every substring of the value is
+     * the prefix of an n-gram.
+     *
+     * @param value  The value of a row
+     *
+     * @return the marked value
+     */
+    private static String mark(String value) {
+        StringBuilder marked = new StringBuilder(value.length() + GRAM_SIZE).append(START).append(value);
+        for (int i = 1; i < GRAM_SIZE; i++) {
+            marked.append(END);
+        }
+        return marked.toString();
+    }
+
+    /**
+     * The token stream of the n-grams of a marked value, one position each.
+     */
+    private static final class GramTokenStream extends TokenStream {
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final List<String> grams;
+        private int next;
+
+        /**
+         * Constructor.
+         *
+         * @param value  The value whose n-grams are streamed
+         */
+        GramTokenStream(String value) {
+            this.grams = grams(mark(value));
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (next >= grams.size()) {
+                return false;
+            }
+            clearAttributes();
+            termAttribute.setEmpty().append(grams.get(next++));
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            next = 0;
+        }
+    }
+}
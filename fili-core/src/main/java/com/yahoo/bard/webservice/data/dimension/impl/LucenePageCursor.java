@@ -0,0 +1,143 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * An opaque search-after cursor to the page following a page of Lucene search results.
+ * <p>
+ * The cursor holds the last hit of a page, which is only meaningful to the searcher that found it and to the query
+ * that matched it. A cursor used with another searcher, query or page size is ignored, and the page is found from the
+ * start of the results instead.
+ */
+final class LucenePageCursor {
+    private static final Logger LOG = LoggerFactory.getLogger(LucenePageCursor.class);
+
+    private static final String SEPARATOR = ":";
+    private static final int FIELD_COUNT = 6;
+
+    private final String searcherGeneration;
+    private final int queryHash;
+    private final int perPage;
+    private final int page;
+    private final ScoreDoc lastHit;
+
+    /**
+     * Constructor.
+     *
+     * @param searcherGeneration  Identifies the searcher which found the hit
+     * @param query  The query which matched the hit
+     * @param perPage  The number of hits per page
+     * @param page  The page whose last hit the cursor holds
+     * @param lastHit  The last hit of the page
+     */
+    LucenePageCursor(String searcherGeneration, Query query, int perPage, int page, ScoreDoc lastHit) {
+        this(searcherGeneration, query.hashCode(), perPage, page, lastHit);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param searcherGeneration  Identifies the searcher which found the hit
+     * @param queryHash  The hash code of the query which matched the hit
+     * @param perPage  The number of hits per page
+     * @param page  The page whose last hit the cursor holds
+     * @param lastHit  The last hit of the page
+     */
+    private LucenePageCursor(String searcherGeneration, int queryHash, int perPage, int page, ScoreDoc lastHit) {
+        this.searcherGeneration = searcherGeneration;
+        this.queryHash = queryHash;
+        this.perPage = perPage;
+        this.page = page;
+        this.lastHit = lastHit;
+    }
+
+    /**
+     * Decode a cursor encoded with {@link #encode()}.
+     *
+     * @param cursor  The encoded cursor
+     *
+     * @return the cursor, or empty if the string is not a cursor
+     */
+    static Optional<LucenePageCursor> decode(String cursor) {
+        try {
+            String[] fields = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(SEPARATOR);
+            if (fields.length != FIELD_COUNT) {
+                LOG.debug("Ignoring malformed page cursor {}", cursor);
+                return Optional.empty();
+            }
+            return Optional.of(new LucenePageCursor(
+                    fields[0],
+                    Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]),
+                    Integer.parseInt(fields[3]),
+                    new ScoreDoc(Integer.parseInt(fields[4]), Float.intBitsToFloat(Integer.parseInt(fields[5])))
+            ));
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Ignoring malformed page cursor {}", cursor, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Encode the cursor as an opaque string which is safe in urls.
+     *
+     * @return the encoded cursor
+     */
+    String encode() {
+        String fields = String.join(
+                SEPARATOR,
+                searcherGeneration,
+                Integer.toString(queryHash),
+                Integer.toString(perPage),
+                Integer.toString(page),
+                Integer.toString(lastHit.doc),
+                Integer.toString(Float.floatToIntBits(lastHit.score))
+        );
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fields.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Whether the cursor can be used to find a page of results.
+     *
+     * @param searcherGeneration  Identifies the searcher finding the page
+     * @param query  The query whose results are paginated
+     * @param perPage  The number of hits per page
+     * @param page  The page to find
+     *
+     * @return true if the cursor holds the last hit of the previous page of the same search
+     */
+    boolean precedes(String searcherGeneration, Query query, int perPage, int page) {
+        return this.searcherGeneration.equals(searcherGeneration) &&
+                queryHash == query.hashCode() &&
+                this.perPage == perPage &&
+                this.page == page - 1;
+    }
+
+    /**
+     * The page whose last hit the cursor holds.
+     *
+     * @return the page number
+     */
+    int getPage() {
+        return page;
+    }
+
+    /**
+     * The last hit of the page, to search after.
+     *
+     * @return the hit
+     */
+    ScoreDoc getLastHit() {
+        return lastHit;
+    }
+}
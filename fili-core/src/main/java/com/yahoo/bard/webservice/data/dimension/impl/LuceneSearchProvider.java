@@ -25,6 +25,8 @@ import com.yahoo.bard.webservice.web.PageNotFoundException;
 import com.yahoo.bard.webservice.web.RowLimitReachedException;
 import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 
 import org.apache.commons.io.FileUtils;
@@ -34,6 +36,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
@@ -44,10 +47,12 @@ import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
 import org.slf4j.Logger;
@@ -62,14 +67,23 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -77,6 +91,11 @@ import java.util.stream.Stream;
 /**
  * LuceneSearchProvider.
  * Search provider which uses lucene.
+ * <p>
+ * The index is written by a single long lived IndexWriter and searched through near real time searchers from a
+ * SearcherManager. Searches acquire a reference counted searcher and never wait for writers: a searcher opened before
+ * a write keeps seeing the index as it was until it is released. Written rows are visible to searches as soon as the
+ * write returns, and are committed to disk once enough documents are pending, or periodically.
  */
 public class LuceneSearchProvider implements SearchProvider {
     private static final Logger LOG = LoggerFactory.getLogger(LuceneSearchProvider.class);
@@ -96,11 +115,63 @@ public class LuceneSearchProvider implements SearchProvider {
             1.2f
     );
 
+    // Maximum time in milliseconds written rows stay uncommitted
+    public static final long LUCENE_COMMIT_INTERVAL_MS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_commit_interval_ms"),
+            60000
+    );
+
+    // Number of uncommitted documents which triggers a commit when written
+    public static final int LUCENE_COMMIT_MAX_DOCUMENTS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_commit_max_documents"),
+            10000
+    );
+
+    // Dimensions whose rows are indexed with n-grams of their values
+    public static final List<String> NGRAM_DIMENSIONS = SYSTEM_CONFIG.getListProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_ngram_dimensions"),
+            Collections.emptyList()
+    );
+
+    // Dimensions whose rows are built from the fields stored in the index, rather than read from the key value store
+    public static final List<String> STORED_FIELD_DIMENSIONS = SYSTEM_CONFIG.getListProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_stored_field_dimensions"),
+            Collections.emptyList()
+    );
+
+    // Time in milliseconds the last hits of the pages found by a search are kept, to find the following pages faster
+    public static final long LUCENE_PAGE_ANCHOR_TTL_MS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_page_anchor_ttl_ms"),
+            300000
+    );
+
+    // Maximum number of page anchors kept per search provider
+    public static final int LUCENE_PAGE_ANCHOR_CACHE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_page_anchor_cache_size"),
+            10000
+    );
+
+    // Commits pending changes of all the search providers periodically
+    private static final ScheduledExecutorService COMMIT_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "lucene-search-provider-commit");
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
+
     protected Analyzer analyzer;
 
-    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes writers, searches do not take it
+    private final ReentrantLock writerLock = new ReentrantLock();
     private final String luceneIndexPath;
 
+    // Last hit of each page found by a search, by searcher, query, page size and page
+    private final Cache<PageAnchorKey, ScoreDoc> pageAnchors = CacheBuilder.newBuilder()
+            .expireAfterWrite(LUCENE_PAGE_ANCHOR_TTL_MS, TimeUnit.MILLISECONDS)
+            .maximumSize(LUCENE_PAGE_ANCHOR_CACHE_SIZE)
+            .build();
+
     public static final String TOO_MANY_DOCUMENTS = "Unexpectedly large response from search provider.  Found %l hits.";
 
     /**
@@ -112,8 +183,18 @@ public class LuceneSearchProvider implements SearchProvider {
     private KeyValueStore keyValueStore;
     private Dimension dimension;
     private boolean luceneIndexIsHealthy;
-    protected IndexSearcher luceneIndexSearcher;
     private int searchTimeout;
+    private boolean nGramIndexed;
+    private volatile boolean storedFieldHydration;
+
+    // Created on first use, guarded by writerLock
+    private IndexWriter indexWriter;
+    private volatile SearcherManager searcherManager;
+    // Incremented when the index is opened, so that searchers of different index instances are told apart
+    private volatile long indexEpoch;
+    private ScheduledFuture<?> periodicCommit;
+    private int uncommittedDocuments;
+    private long lastCommitNanos;
 
     /**
      * Constructor.
@@ -150,47 +231,16 @@ public class LuceneSearchProvider implements SearchProvider {
         this(luceneIndexPath, maxResults, LUCENE_SEARCH_TIMEOUT_MS);
     }
 
-    /**
-     * Attempts to acquire the read lock. If waiting for the read lock times out or is interrupted an exception is
-     * thrown and the query is failed. Timeout is equivalent to the timeout on a search.
-     */
-    protected void readLock() {
-        try {
-            if (!lock.readLock().tryLock(searchTimeout, TimeUnit.MILLISECONDS)) {
-                String msg = String.format(
-                        ErrorMessageFormat.LUCENE_LOCK_TIMEOUT.getMessageFormat(),
-                        getDimension().getApiName()
-                );
-
-                LOG.error(msg);
-                throw new IllegalStateException(msg);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            String msg = String.format(
-                    ErrorMessageFormat.LUCENE_LOCK_INTERRUPTED.getMessageFormat(),
-                    getDimension()
-            );
-            LOG.error(msg);
-            throw new IllegalStateException(msg, e);
-        }
-    }
-
-    /**
-     * Unlocks the held read lock for this thread.
-     */
-    protected void readUnlock() {
-        lock.readLock().unlock();
-    }
-
     /**
      * Attempts to acquire the write lock. If waiting for the write lock times out or is interrupted an exception is
-     * thrown and the query is failed. Timeout is equivalent to the timeout on a search multiplied by a constant
+     * thrown and the write is failed. Timeout is equivalent to the timeout on a search multiplied by a constant
      * write timeout multiplier.
+     * <p>
+     * Only writers of the index take the lock, searches never wait for it.
      */
     protected void writeLock() {
         try {
-            if (!lock.writeLock().tryLock(
+            if (!writerLock.tryLock(
                     (int) (searchTimeout * WRITE_LOCK_TIMEOUT_MULTIPLIER),
                     TimeUnit.MILLISECONDS)
             ) {
@@ -218,63 +268,227 @@ public class LuceneSearchProvider implements SearchProvider {
      * Unlocks the write lock for this thread.
      */
     protected void writeUnlock() {
-        lock.writeLock().unlock();
+        writerLock.unlock();
     }
 
     /**
-     * Initializes the `luceneIndexSearcher` if it has not been initialized already.
+     * Opens the index writer and the searcher manager if they have not been opened already.
      * <p>
-     * Note that the index searcher cannot be built at construction time, because it needs the dimension and
+     * Note that the index writer cannot be opened at construction time, because it needs the dimension and
      * associated key-value store. However, because of a circular dependency between the `SearchProvider` and the
      * `Dimension` classes, we cannot provide the dimension and key-value store to the search provider at
      * construction time.
+     * <p>
+     * This method will attempt to acquire and release the write lock if the index is not open yet.
      */
     protected void initializeIndexSearcher() {
-        if (luceneIndexSearcher == null) {
-            reopenIndexSearcher(true);
+        if (searcherManager != null) {
+            return;
+        }
+        writeLock();
+        try {
+            openIndex();
+        } finally {
+            writeUnlock();
         }
     }
 
     /**
-     * Re-open the Index Searcher, opening it for the first time if it's never been opened.
+     * Open the index writer and a near real time searcher manager on it.
      * <p>
-     * This method will attempt to acquire and release a write lock.
-     *
-     * @param firstTimeThrough  If true, will write an empty index and will then re-open the searcher
+     * Nothing is committed until rows are written, so opening a provider on an empty directory leaves no index files
+     * behind.
+     * <p>
+     * The write lock must be held.
      */
-    private void reopenIndexSearcher(boolean firstTimeThrough) {
+    private void openIndex() {
+        if (searcherManager != null) {
+            return;
+        }
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
+        try {
+            indexWriter = new IndexWriter(luceneDirectory, indexWriterConfig);
+            searcherManager = new SearcherManager(indexWriter, true, true, null);
+            indexEpoch++;
+        } catch (IOException e) {
+            luceneIndexIsHealthy = false;
+            closeQuietly();
+            String message = String.format("Unable to open index writer for %s:", luceneIndexPath);
+            LOG.error(message, e);
+            throw new UncheckedIOException(e);
+        }
+        uncommittedDocuments = 0;
+        lastCommitNanos = System.nanoTime();
+        periodicCommit = COMMIT_EXECUTOR.scheduleWithFixedDelay(
+                this::commitIfDue,
+                LUCENE_COMMIT_INTERVAL_MS,
+                LUCENE_COMMIT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Commit the pending changes, and close the index writer and the searcher manager.
+     * <p>
+     * Searchers acquired before closing stay usable until they are released. The index is opened again on next use.
+     */
+    public void close() {
         writeLock();
         try {
-            // Close the current reader if open
-            if (luceneIndexSearcher != null) {
-                luceneIndexSearcher.getIndexReader().close();
+            closeIndex();
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Commit the pending changes, and close the index writer and the searcher manager.
+     * <p>
+     * The write lock must be held.
+     */
+    private void closeIndex() {
+        if (indexWriter == null) {
+            return;
+        }
+        try {
+            indexWriter.commit();
+        } catch (IOException e) {
+            LOG.error("Unable to commit index of {} on close", luceneIndexPath, e);
+        }
+        closeQuietly();
+    }
+
+    /**
+     * Close the index writer and the searcher manager, dropping uncommitted changes.
+     * <p>
+     * The write lock must be held.
+     */
+    private void closeQuietly() {
+        if (periodicCommit != null) {
+            periodicCommit.cancel(false);
+            periodicCommit = null;
+        }
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
             }
+        } catch (IOException e) {
+            LOG.warn("Unable to close searcher manager of {}", luceneIndexPath, e);
+        }
+        try {
+            if (indexWriter != null) {
+                indexWriter.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to close index writer of {}", luceneIndexPath, e);
+        }
+        searcherManager = null;
+        indexWriter = null;
+        pageAnchors.invalidateAll();
+    }
 
-            // Open a new IndexSearcher on a new DirectoryReader
-            luceneIndexSearcher = new IndexSearcher(DirectoryReader.open(luceneDirectory));
-        } catch (IOException reopenException) {
-            // If there is no index file, this is expected. On the 1st time through, write an empty index and try again
-            if (firstTimeThrough) {
-                IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
-                try (IndexWriter ignored = new IndexWriter(luceneDirectory, indexWriterConfig)) {
-                    // Closed automatically by the try-resource block
-                } catch (IOException emptyIndexWriteException) {
-                    // We can't move past this, so puke
-                    luceneIndexIsHealthy = false;
-                    String message = String.format("Unable to write empty index to %s:", luceneIndexPath);
-                    LOG.error(message, emptyIndexWriteException);
-                    throw new UncheckedIOException(emptyIndexWriteException);
-                }
-                reopenIndexSearcher(false);
-            } else {
-                // We've been here before, so puke
-                luceneIndexIsHealthy = false;
-                String message = String.format("Unable to open index searcher for %s:", luceneIndexPath);
-                LOG.error(message, reopenException);
-                throw new UncheckedIOException(reopenException);
+    /**
+     * Identify the searcher, so that hits it found are only used to search after with the same searcher.
+     *
+     * @param indexSearcher  The searcher
+     *
+     * @return the generation of the searcher
+     */
+    private String getSearcherGeneration(IndexSearcher indexSearcher) {
+        IndexReader reader = indexSearcher.getIndexReader();
+        long version = reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : 0;
+        return indexEpoch + "." + version + "." + System.identityHashCode(reader);
+    }
+
+    /**
+     * Acquire the current searcher. It must be released with {@link #releaseIndexSearcher}.
+     * <p>
+     * This never waits for writers, but may open the index on first use.
+     *
+     * @return the current searcher
+     */
+    protected IndexSearcher acquireIndexSearcher() {
+        while (true) {
+            initializeIndexSearcher();
+            SearcherManager manager = searcherManager;
+            if (manager == null) {
+                continue;
+            }
+            try {
+                return manager.acquire();
+            } catch (AlreadyClosedException e) {
+                // The index was closed or replaced concurrently, use the new one
+                LOG.trace("Searcher manager of {} closed while acquiring a searcher", luceneIndexPath);
+            } catch (IOException e) {
+                String message = String.format("Unable to acquire index searcher for %s:", luceneIndexPath);
+                LOG.error(message, e);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Release a searcher acquired with {@link #acquireIndexSearcher}.
+     *
+     * @param indexSearcher  The searcher to release
+     */
+    protected void releaseIndexSearcher(IndexSearcher indexSearcher) {
+        try {
+            // What SearcherManager::release does, but safe when the searcher manager was replaced since
+            indexSearcher.getIndexReader().decRef();
+        } catch (IOException e) {
+            LOG.warn("Unable to release index searcher for {}", luceneIndexPath, e);
+        }
+    }
+
+    /**
+     * Make written changes visible to searches, and commit them if enough are pending.
+     * <p>
+     * The write lock must be held.
+     *
+     * @param changedDocuments  The number of documents changed by the write
+     *
+     * @throws IOException if the searcher cannot be refreshed or the changes cannot be committed
+     */
+    private void publishChanges(int changedDocuments) throws IOException {
+        searcherManager.maybeRefreshBlocking();
+        uncommittedDocuments += changedDocuments;
+        if (uncommittedDocuments >= LUCENE_COMMIT_MAX_DOCUMENTS ||
+                System.nanoTime() - lastCommitNanos >= TimeUnit.MILLISECONDS.toNanos(LUCENE_COMMIT_INTERVAL_MS)) {
+            commit();
+        }
+    }
+
+    /**
+     * Commit the pending changes to disk.
+     * <p>
+     * The write lock must be held.
+     *
+     * @throws IOException if the changes cannot be committed
+     */
+    private void commit() throws IOException {
+        indexWriter.commit();
+        uncommittedDocuments = 0;
+        lastCommitNanos = System.nanoTime();
+    }
+
+    /**
+     * Commit pending changes which have waited for the commit interval, unless a writer is busy.
+     */
+    private void commitIfDue() {
+        if (!writerLock.tryLock()) {
+            // The writer commits when it is done if needed
+            return;
+        }
+        try {
+            if (indexWriter != null && uncommittedDocuments > 0 &&
+                    System.nanoTime() - lastCommitNanos >= TimeUnit.MILLISECONDS.toNanos(LUCENE_COMMIT_INTERVAL_MS)) {
+                commit();
             }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Unable to commit index of {}", luceneIndexPath, e);
         } finally {
-            writeUnlock();
+            writerLock.unlock();
         }
     }
 
@@ -290,13 +504,151 @@ public class LuceneSearchProvider implements SearchProvider {
     @Override
     public void setDimension(Dimension dimension) {
         this.dimension = dimension;
+        this.nGramIndexed = NGRAM_DIMENSIONS.contains(dimension.getApiName());
+        this.storedFieldHydration = STORED_FIELD_DIMENSIONS.contains(dimension.getApiName());
+    }
+
+    /**
+     * Whether rows are indexed with n-grams of their values, to answer contains and startswith filters quickly.
+     *
+     * @return true if the dimension is configured to be indexed with n-grams
+     */
+    public boolean isNGramIndexed() {
+        return nGramIndexed;
+    }
+
+    /**
+     * Set whether rows are indexed with n-grams of their values.
+     * <p>
+     * This applies to rows written afterwards, {@link #rebuildIndex()} applies it to the rows already indexed.
+     *
+     * @param nGramIndexed  true to index rows with n-grams of their values
+     */
+    public void setNGramIndexed(boolean nGramIndexed) {
+        this.nGramIndexed = nGramIndexed;
+    }
+
+    /**
+     * Whether the found rows are built from the fields stored in the index, rather than read from the dimension.
+     *
+     * @return true if all the fields of the rows are stored in the index
+     */
+    public boolean isStoredFieldHydration() {
+        return storedFieldHydration;
+    }
+
+    /**
+     * Set whether all the fields of the rows are stored in the index, to build the found rows from them.
+     * <p>
+     * Rows found by a search are then returned in the order of the index rather than sorted. Rows written before
+     * are read from the dimension until {@link #rebuildIndex()} stores their fields.
+     *
+     * @param storedFieldHydration  true to store all the fields of the rows and build found rows from them
+     */
+    public void setStoredFieldHydration(boolean storedFieldHydration) {
+        this.storedFieldHydration = storedFieldHydration;
+    }
+
+    /**
+     * Rebuild the index from the rows of the dimension, and replace the index with it.
+     * <p>
+     * This adds the n-gram fields and the stored fields to an index written before they were enabled for the
+     * dimension, or drops them. An index lacking n-grams is rebuilt when the provider is bound to a dimension
+     * configured with them.
+     * Until an index has n-grams for all its rows, contains and startswith filters are answered by wildcard queries.
+     * Searches keep using the old index while the new one is built, writes wait for it.
+     */
+    public void rebuildIndex() {
+        writeLock();
+        try {
+            Path indexPath = Paths.get(luceneIndexPath);
+            Path rebuildPath = indexPath.resolveSibling(indexPath.getFileName() + "_rebuild");
+            deleteDir(rebuildPath.toString());
+
+            List<DimensionRow> rows = getIndexedDimensionRows();
+            IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
+            try (
+                    Directory rebuildDirectory = new MMapDirectory(rebuildPath);
+                    IndexWriter rebuildWriter = new IndexWriter(rebuildDirectory, indexWriterConfig)
+            ) {
+                writeDimensionRows(rebuildWriter, rows);
+                rebuildWriter.commit();
+            } catch (IOException e) {
+                LOG.error("Unable to rebuild index of dimension {} in {}", dimension.getApiName(), rebuildPath, e);
+                throw new UncheckedIOException(e);
+            }
+            LOG.info("Rebuilt index of dimension {} with {} rows", dimension.getApiName(), rows.size());
+
+            replaceIndex(rebuildPath.toString());
+            refreshCardinality();
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Read the rows of all the documents of the index from the dimension.
+     *
+     * @return the rows of the indexed keys which the dimension has
+     */
+    private List<DimensionRow> getIndexedDimensionRows() {
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        IndexSearcher indexSearcher = acquireIndexSearcher();
+        try {
+            int maxDoc = Math.max(indexSearcher.getIndexReader().maxDoc(), 1);
+            List<DimensionRow> rows = new ArrayList<>();
+            for (ScoreDoc hit : indexSearcher.search(new MatchAllDocsQuery(), maxDoc).scoreDocs) {
+                DimensionRow row = dimension.findDimensionRowByKeyValue(indexSearcher.doc(hit.doc).get(idKey));
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+            return rows;
+        } catch (IOException e) {
+            LOG.error("Unable to read the indexed rows of dimension {}", dimension.getApiName(), e);
+            throw new UncheckedIOException(e);
+        } finally {
+            releaseIndexSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Whether every document of the current index has n-grams, so filters can be answered with them.
+     *
+     * @return true if n-grams are enabled and the index has them for all its documents
+     */
+    private boolean hasCompleteNGramIndex() {
+        if (!nGramIndexed) {
+            return false;
+        }
+        String keyField = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        IndexSearcher indexSearcher = acquireIndexSearcher();
+        try {
+            IndexReader reader = indexSearcher.getIndexReader();
+            boolean complete = reader.getDocCount(LuceneNGramFields.getFieldName(keyField)) == reader.getDocCount(
+                    keyField
+            );
+            if (!complete) {
+                LOG.debug("Index of dimension {} lacks n-grams, it needs to be rebuilt", dimension.getApiName());
+            }
+            return complete;
+        } catch (IOException e) {
+            LOG.warn("Unable to check n-grams of dimension {}", dimension.getApiName(), e);
+            return false;
+        } finally {
+            releaseIndexSearcher(indexSearcher);
+        }
     }
 
     @Override
     public void setKeyValueStore(KeyValueStore keyValueStore) {
         this.keyValueStore = keyValueStore;
-        // Check initialization for the cardinality in a keyValueStore
-        if (keyValueStore.get(DimensionStoreKeyUtils.getCardinalityKey()) == null) {
+        if (nGramIndexed && !hasCompleteNGramIndex()) {
+            // The index was written before n-grams were configured for the dimension, add them to its rows
+            LOG.info("Rebuilding index of dimension {} to add n-grams", dimension.getApiName());
+            rebuildIndex();
+        } else if (keyValueStore.get(DimensionStoreKeyUtils.getCardinalityKey()) == null) {
+            // Check initialization for the cardinality in a keyValueStore
             refreshCardinality();
         }
     }
@@ -353,52 +705,96 @@ public class LuceneSearchProvider implements SearchProvider {
 
     @Override
     public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
+        writeLock();
+        try {
+            openIndex();
+            try {
+                // Get the new rows from the pairs and update the index, and delete the removed rows
+                writeDimensionRows(
+                        indexWriter,
+                        changedRows.values().stream()
+                                .map(Pair::getKey)
+                                .filter(Objects::nonNull)
+                                .collect(Collectors.toList())
+                );
+                deleteDimensionRows(
+                        indexWriter,
+                        changedRows.values().stream()
+                                .filter(pair -> pair.getKey() == null && pair.getValue() != null)
+                                .map(Pair::getValue)
+                                .collect(Collectors.toList())
+                );
+                // Make the changes searchable, committing them if enough are pending, and refresh the cardinality
+                publishChanges(changedRows.size());
+            } catch (IOException e) {
+                luceneIndexIsHealthy = false;
+                LOG.error("Failed to refresh index for dimension rows", e);
+                throw new UncheckedIOException(e);
+            }
+            refreshCardinality();
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Write dimension rows to an index, replacing the documents of rows with the same key.
+     *
+     * @param writer  Lucene IndexWriter to update the indexes of
+     * @param rows  Rows to write
+     *
+     * @throws IOException if there is a problem updating the documents
+     */
+    private void writeDimensionRows(IndexWriter writer, Collection<DimensionRow> rows) throws IOException {
         // Make a single Document instance to hold field data being updated to Lucene
         // Creating documents is costly and so Document will be reused for each record being processed due to
         // performance best practices.
         Document doc = new Document();
         Map<DimensionField, Field> dimFieldToLuceneField = new HashMap<>(dimension.getDimensionFields().size());
+        Map<DimensionField, Field> dimFieldToNGramField = new HashMap<>();
 
         // Create the document fields for this dimension and add them to the document
         for (DimensionField dimensionField : dimension.getDimensionFields()) {
+            String luceneFieldName = DimensionStoreKeyUtils.getColumnKey(dimensionField.getName());
             Field luceneField = new StringField(
-                    DimensionStoreKeyUtils.getColumnKey(dimensionField.getName()),
+                    luceneFieldName,
                     "",
-                    dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
+                    storedFieldHydration || dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
             );
 
             // Store the lucene field in the doc and in our lookup map
             dimFieldToLuceneField.put(dimensionField, luceneField);
             doc.add(luceneField);
+
+            if (nGramIndexed) {
+                Field nGramField = LuceneNGramFields.buildField(luceneFieldName);
+                dimFieldToNGramField.put(dimensionField, nGramField);
+                doc.add(nGramField);
+            }
         }
 
-        // Write the rows to the document
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
-        writeLock();
-        try {
-            try (IndexWriter luceneIndexWriter = new IndexWriter(luceneDirectory, indexWriterConfig)) {
-                // Update the document fields for each row and update the document
-                for (String rowId : changedRows.keySet()) {
-                    // Get the new row from the pair
-                    DimensionRow newDimensionRow = changedRows.get(rowId).getKey();
-
-                    // Update the index
-                    updateDimensionRow(doc, dimFieldToLuceneField, luceneIndexWriter, newDimensionRow);
-                }
+        // Update the document fields for each row and update the document
+        for (DimensionRow row : rows) {
+            updateDimensionRow(doc, dimFieldToLuceneField, dimFieldToNGramField, writer, row);
+        }
+    }
 
-            } catch (IOException e) {
-                luceneIndexIsHealthy = false;
-                LOG.error("Failed to refresh index for dimension rows", e);
-                throw new UncheckedIOException(e);
-                // Commit all the changes to the index (on .close, called by try-resources) and refresh the cardinality
-            }
-            //This must be outside the try-resources block because it may _also_ need to open an IndexWriter, and
-            //opening an IndexWriter involves taking a write lock on lucene, of which there can only be one at a time.
-            reopenIndexSearcher(true);
-            refreshCardinality();
-        } finally {
-            writeUnlock();
+    /**
+     * Delete the documents of dimension rows from an index.
+     *
+     * @param writer  Lucene IndexWriter to update the indexes of
+     * @param rows  Rows to delete, by their key value
+     *
+     * @throws IOException if there is a problem deleting the documents
+     */
+    private void deleteDimensionRows(IndexWriter writer, Collection<DimensionRow> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
         }
+        String keyFieldName = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        writer.deleteDocuments(rows.stream()
+                .map(row -> new Term(keyFieldName, row.getOrDefault(dimension.getKey(), "")))
+                .toArray(Term[]::new));
     }
 
     /**
@@ -406,6 +802,7 @@ public class LuceneSearchProvider implements SearchProvider {
      *
      * @param luceneDimensionRowDoc  Document to use for doing the update
      * @param fieldMap  Mapping of DimensionFields to the Document's fields
+     * @param nGramFieldMap  Mapping of DimensionFields to the Document's n-gram fields, empty without n-grams
      * @param writer  Lucene IndexWriter to update the indexes of
      * @param newRow  Row to update
      *
@@ -414,6 +811,7 @@ public class LuceneSearchProvider implements SearchProvider {
     private void updateDimensionRow(
             Document luceneDimensionRowDoc,
             Map<DimensionField, Field> fieldMap,
+            Map<DimensionField, Field> nGramFieldMap,
             IndexWriter writer,
             DimensionRow newRow
     ) throws IOException {
@@ -423,7 +821,13 @@ public class LuceneSearchProvider implements SearchProvider {
             Field fieldToUpdate = fieldMap.get(field);
 
             // Set field value to updated value
-            fieldToUpdate.setStringValue(newRow.getOrDefault(field, ""));
+            String value = newRow.getOrDefault(field, "");
+            fieldToUpdate.setStringValue(value);
+
+            Field nGramField = nGramFieldMap.get(field);
+            if (nGramField != null) {
+                LuceneNGramFields.setValue(nGramField, value);
+            }
         }
 
         // Build the term to delete the old document by the key value (which should be unique)
@@ -444,6 +848,9 @@ public class LuceneSearchProvider implements SearchProvider {
 
         writeLock();
         try {
+            // Searches still using the old index keep reading its files until they release their searcher
+            closeIndex();
+
             Path oldLuceneIndexPath = Paths.get(luceneIndexPath);
             String tempDir = oldLuceneIndexPath.resolveSibling(oldLuceneIndexPath.getFileName() + "_old").toString();
 
@@ -462,7 +869,7 @@ public class LuceneSearchProvider implements SearchProvider {
             LOG.trace("Deleting old Lucene indexes in {} ...", tempDir);
             deleteDir(tempDir);
 
-            reopenIndexSearcher(false);
+            openIndex();
         } finally {
             writeUnlock();
         }
@@ -535,15 +942,15 @@ public class LuceneSearchProvider implements SearchProvider {
     /**
      * Clears the dimension cache, and resets the indices, effectively resetting the SearchProvider to a clean state.
      * <p>
-     * Note that this method attempts to acquire a write lock before clearing the index.
+     * Note that this method attempts to acquire the write lock before clearing the index.
      */
     @Override
     public void clearDimension() {
         Set<DimensionRow> dimensionRows = findAllDimensionRows();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
         writeLock();
         try {
-            try (IndexWriter writer = new IndexWriter(luceneDirectory, indexWriterConfig)) {
+            openIndex();
+            try {
                 //Remove all dimension data from the store.
                 String rowId = dimension.getKey().getName();
                 dimensionRows.stream()
@@ -561,16 +968,13 @@ public class LuceneSearchProvider implements SearchProvider {
                 keyValueStore.remove(DimensionStoreKeyUtils.getLastUpdatedKey());
 
                 //In addition to clearing the keyValueStore, we also need to delete all of Lucene's segment files.
-                writer.deleteAll();
-                writer.commit();
+                indexWriter.deleteAll();
+                commit();
+                searcherManager.maybeRefreshBlocking();
             } catch (IOException e) {
                 LOG.error(ErrorMessageFormat.FAIL_TO_WIPTE_LUCENE_INDEX_DIR.format(luceneDirectory));
                 throw new UncheckedIOException(e);
             }
-
-            //This must be outside the try-resources block because it may _also_ need to open an IndexWriter, and
-            //opening an IndexWriter involves taking a write lock on lucene, of which there can only be one at a time.
-            reopenIndexSearcher(true);
             refreshCardinality();
         } finally {
             writeUnlock();
@@ -580,16 +984,15 @@ public class LuceneSearchProvider implements SearchProvider {
     /**
      * Update the cardinality count.
      * <p>
-     * Note that this method acquires a read lock to query the lucene index for the number of documents.
+     * Note that this method acquires a searcher to query the lucene index for the number of documents.
      */
     private void refreshCardinality() {
         int numDocs;
-        initializeIndexSearcher();
-        readLock();
+        IndexSearcher indexSearcher = acquireIndexSearcher();
         try {
-            numDocs = luceneIndexSearcher.getIndexReader().numDocs();
+            numDocs = indexSearcher.getIndexReader().numDocs();
         } finally {
-            readUnlock();
+            releaseIndexSearcher(indexSearcher);
         }
         keyValueStore.put(
                 DimensionStoreKeyUtils.getCardinalityKey(),
@@ -605,6 +1008,59 @@ public class LuceneSearchProvider implements SearchProvider {
         return getResultsPage(getFilterQuery(filters), paginationParameters);
     }
 
+    @Override
+    public List<String> findFilteredDimensionKeys(Set<ApiFilter> filters) {
+        int perPage = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage();
+        validatePerPage(perPage);
+        Query query = getFilterQuery(filters);
+
+        IndexSearcher luceneIndexSearcher = acquireIndexSearcher();
+        try (TimedPhase timer = RequestLog.startTiming("QueryingLucene")) {
+            // Only the stored key field is read, the rows are neither built nor read from the key value store
+            String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+            Set<String> fieldsToLoad = Collections.singleton(idKey);
+            TreeSet<String> keyValues = new TreeSet<>();
+            for (ScoreDoc hit : getPageOfData(luceneIndexSearcher, null, query, perPage).scoreDocs) {
+                keyValues.add(luceneIndexSearcher.doc(hit.doc, fieldsToLoad).get(idKey));
+            }
+            return new ArrayList<>(keyValues);
+        } catch (IOException e) {
+            LOG.error("Unable to read the keys of the dimension rows matching {}", filters);
+            throw new UncheckedIOException(e);
+        } finally {
+            releaseIndexSearcher(luceneIndexSearcher);
+        }
+    }
+
+    @Override
+    public Set<String> findAllDimensionKeys() {
+        int perPage = Math.min(maxResults, PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage());
+        Query query = new MatchAllDocsQuery();
+
+        IndexSearcher luceneIndexSearcher = acquireIndexSearcher();
+        try (TimedPhase timer = RequestLog.startTiming("QueryingLucene")) {
+            // Every page is searched after the last hit of the one before, reading only the stored key field
+            String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+            Set<String> fieldsToLoad = Collections.singleton(idKey);
+            Set<String> keyValues = new LinkedHashSet<>();
+            ScoreDoc lastEntry = null;
+            ScoreDoc[] hits;
+            do {
+                hits = getPageOfData(luceneIndexSearcher, lastEntry, query, perPage).scoreDocs;
+                for (ScoreDoc hit : hits) {
+                    keyValues.add(luceneIndexSearcher.doc(hit.doc, fieldsToLoad).get(idKey));
+                }
+                lastEntry = hits.length == 0 ? null : hits[hits.length - 1];
+            } while (hits.length == perPage);
+            return keyValues;
+        } catch (IOException e) {
+            LOG.error("Unable to read the keys of the rows of dimension {}", dimension.getApiName());
+            throw new UncheckedIOException(e);
+        } finally {
+            releaseIndexSearcher(luceneIndexSearcher);
+        }
+    }
+
     /**
      * Returns a Collector that accumulates boolean queries into a single nested query, and ties all of the sub
      * queries together with the specified {@link BooleanClause.Occur}.
@@ -657,13 +1113,16 @@ public class LuceneSearchProvider implements SearchProvider {
      *
      * @param luceneFieldName  Name of the lucene field to filter on
      * @param filter  New filter to add to the query
+     * @param useNGrams  Whether to query the n-grams of the field rather than enumerate its terms
      *
      * @return A builder that knows how to build the appropriate BooleanQuery
      */
-    private BooleanQuery startswithFilterQuery(String luceneFieldName, ApiFilter filter) {
+    private BooleanQuery startswithFilterQuery(String luceneFieldName, ApiFilter filter, boolean useNGrams) {
         return filter.getValues().stream()
-                .map(value -> new Term(luceneFieldName, value))
-                .map(PrefixQuery::new)
+                .map(value -> useNGrams
+                        ? LuceneNGramFields.startswithQuery(luceneFieldName, value)
+                        : new PrefixQuery(new Term(luceneFieldName, value))
+                )
                 .collect(getBooleanQueryCollector(BooleanClause.Occur.SHOULD))
                 .build();
     }
@@ -673,13 +1132,16 @@ public class LuceneSearchProvider implements SearchProvider {
      *
      * @param luceneFieldName  Name of the lucene field to filter on
      * @param filter  New filter to add to the query
+     * @param useNGrams  Whether to query the n-grams of the field rather than enumerate its terms
      *
      * @return A builder that knows how to build the appropriate BooleanQuery
      */
-    private BooleanQuery containsFilterQuery(String luceneFieldName, ApiFilter filter) {
+    private BooleanQuery containsFilterQuery(String luceneFieldName, ApiFilter filter, boolean useNGrams) {
         return filter.getValues().stream()
-                .map(value -> new Term(luceneFieldName, "*" + value + "*"))
-                .map(WildcardQuery::new)
+                .map(value -> useNGrams && LuceneNGramFields.isLiteral(value)
+                        ? LuceneNGramFields.containsQuery(luceneFieldName, value)
+                        : new WildcardQuery(new Term(luceneFieldName, "*" + value + "*"))
+                )
                 .collect(getBooleanQueryCollector(BooleanClause.Occur.SHOULD))
                 .build();
     }
@@ -721,6 +1183,10 @@ public class LuceneSearchProvider implements SearchProvider {
 
         BooleanQuery.Builder filterQueryBuilder = new BooleanQuery.Builder();
         boolean hasPositive = false;
+        boolean useNGrams = filters.stream()
+                .anyMatch(filter -> filter.getOperation() == DefaultFilterOperation.contains ||
+                        filter.getOperation() == DefaultFilterOperation.startswith) &&
+                hasCompleteNGramIndex();
         for (ApiFilter filter : filters) {
             FilterOperation op = filter.getOperation();
             if (!(op instanceof DefaultFilterOperation)) {
@@ -745,11 +1211,17 @@ public class LuceneSearchProvider implements SearchProvider {
                             .forEach(query -> filterQueryBuilder.add(query, BooleanClause.Occur.MUST_NOT));
                     break;
                 case startswith:
-                    filterQueryBuilder.add(startswithFilterQuery(luceneFieldName, filter), BooleanClause.Occur.MUST);
+                    filterQueryBuilder.add(
+                            startswithFilterQuery(luceneFieldName, filter, useNGrams),
+                            BooleanClause.Occur.MUST
+                    );
                     hasPositive = true;
                     break;
                 case contains:
-                    filterQueryBuilder.add(containsFilterQuery(luceneFieldName, filter), BooleanClause.Occur.MUST);
+                    filterQueryBuilder.add(
+                            containsFilterQuery(luceneFieldName, filter, useNGrams),
+                            BooleanClause.Occur.MUST
+                    );
                     hasPositive = true;
                     break;
                 default:
@@ -776,8 +1248,8 @@ public class LuceneSearchProvider implements SearchProvider {
      * @param paginationParameters  The parameters defining the pagination (i.e. the number of rows per page, and the
      * desired page)
      * <p>
-     * Note that this method _may_ need to acquire and release a write lock if the index searcher needs to be
-     * initialized, and it later acquires and released a read lock when querying for dimension data from Lucene.
+     * Note that this method _may_ need to acquire and release the write lock if the index needs to be opened, and it
+     * later acquires and releases a searcher when querying for dimension data from Lucene.
      *
      * @return The desired page of dimension rows that satisfy the given query
      *
@@ -788,18 +1260,35 @@ public class LuceneSearchProvider implements SearchProvider {
         int perPage = paginationParameters.getPerPage();
         validatePerPage(perPage);
 
-        TreeSet<DimensionRow> filteredDimRows;
+        Collection<DimensionRow> filteredDimRows;
         int documentCount;
-        initializeIndexSearcher();
+        String nextPageCursor;
         LOG.trace("Lucene Query {}", query);
 
-        readLock();
+        IndexSearcher luceneIndexSearcher = acquireIndexSearcher();
         try {
             ScoreDoc[] hits;
+            String searcherGeneration = getSearcherGeneration(luceneIndexSearcher);
             try (TimedPhase timer = RequestLog.startTiming("QueryingLucene")) {
+                // Start from the previous page if the cursor leads to the requested page
+                int currentPage = 1;
+                ScoreDoc lastEntry = null;
+                LucenePageCursor cursor = paginationParameters.getCursor()
+                        .flatMap(LucenePageCursor::decode)
+                        .filter(it -> it.precedes(
+                                searcherGeneration,
+                                query,
+                                perPage,
+                                paginationParameters.getPage(0)
+                        ))
+                        .orElse(null);
+                if (cursor != null) {
+                    currentPage = cursor.getPage() + 1;
+                    lastEntry = cursor.getLastHit();
+                }
                 TopDocs hitDocs = getPageOfData(
                         luceneIndexSearcher,
-                        null,
+                        lastEntry,
                         query,
                         perPage
                 );
@@ -822,44 +1311,102 @@ public class LuceneSearchProvider implements SearchProvider {
                     }
                     throw new PageNotFoundException(requestedPageNumber, perPage, 0);
                 }
-                for (int currentPage = 1; currentPage < requestedPageNumber; currentPage++) {
-                    ScoreDoc lastEntry = hits[hits.length - 1];
+                if (currentPage < requestedPageNumber) {
+                    // Skip to the closest page whose last hit a previous search found
+                    for (int page = requestedPageNumber - 1; page >= currentPage; page--) {
+                        ScoreDoc anchor = pageAnchors.getIfPresent(
+                                new PageAnchorKey(searcherGeneration, query, perPage, page)
+                        );
+                        if (anchor != null) {
+                            currentPage = page;
+                            hits = new ScoreDoc[] {anchor};
+                            break;
+                        }
+                    }
+                }
+                for (; currentPage < requestedPageNumber; currentPage++) {
+                    lastEntry = hits[hits.length - 1];
+                    pageAnchors.put(new PageAnchorKey(searcherGeneration, query, perPage, currentPage), lastEntry);
                     hits = getPageOfData(luceneIndexSearcher, lastEntry, query, perPage).scoreDocs;
                     if (hits.length == 0) {
                         throw new PageNotFoundException(requestedPageNumber, perPage, 0);
                     }
                 }
+                pageAnchors.put(
+                        new PageAnchorKey(searcherGeneration, query, perPage, requestedPageNumber),
+                        hits[hits.length - 1]
+                );
+                nextPageCursor = new LucenePageCursor(
+                        searcherGeneration,
+                        query,
+                        perPage,
+                        requestedPageNumber,
+                        hits[hits.length - 1]
+                ).encode();
             }
 
             // convert hits to dimension rows
             try (TimedPhase timer = RequestLog.startTiming("LuceneHydratingDimensionRows")) {
-                String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
-                filteredDimRows = Arrays.stream(hits)
+                boolean fromStoredFields = storedFieldHydration;
+                Set<String> fieldsToLoad = fromStoredFields
+                        ? null
+                        : Collections.singleton(DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName()));
+                Stream<DimensionRow> rows = Arrays.stream(hits)
                         .map(
                                 hit -> {
                                     try {
-                                        return luceneIndexSearcher.doc(hit.doc);
+                                        return luceneIndexSearcher.doc(hit.doc, fieldsToLoad);
                                     } catch (IOException e) {
                                         LOG.error("Unable to convert hit " + hit);
                                         throw new UncheckedIOException(e);
                                     }
                                 }
                         )
-                        .map(document -> document.get(idKey))
-                        .map(dimension::findDimensionRowByKeyValue)
-                        .filter(it -> it != null)
-                        .collect(Collectors.toCollection(TreeSet::new));
+                        .map(document -> hydrateDimensionRow(document, fromStoredFields))
+                        .filter(it -> it != null);
+                // Rows read from the index keep the order of the hits, rows read from the dimension are sorted
+                filteredDimRows = fromStoredFields
+                        ? rows.collect(Collectors.toList())
+                        : rows.collect(Collectors.toCollection(TreeSet::new));
             }
         } finally {
-            readUnlock();
+            releaseIndexSearcher(luceneIndexSearcher);
         }
         return new SinglePagePagination<>(
                 ImmutableList.copyOf(filteredDimRows),
                 paginationParameters,
-                documentCount
+                documentCount,
+                nextPageCursor
         );
     }
 
+    /**
+     * Build the dimension row of a document found by a search.
+     * <p>
+     * When hydrating from stored fields, the row is built from the fields of the document. A document written before
+     * its fields were stored is looked up in the dimension, like every document otherwise.
+     *
+     * @param document  The document, with the stored key field
+     * @param fromStoredFields  Whether to build the row from the stored fields of the document
+     *
+     * @return the dimension row, or null if the dimension has no row with the key of the document
+     */
+    private DimensionRow hydrateDimensionRow(Document document, boolean fromStoredFields) {
+        String keyValue = document.get(DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName()));
+        if (!fromStoredFields) {
+            return dimension.findDimensionRowByKeyValue(keyValue);
+        }
+        LinkedHashMap<DimensionField, String> fieldValues = new LinkedHashMap<>();
+        for (DimensionField field : dimension.getDimensionFields()) {
+            String value = document.get(DimensionStoreKeyUtils.getColumnKey(field.getName()));
+            if (value == null) {
+                return dimension.findDimensionRowByKeyValue(keyValue);
+            }
+            fieldValues.put(field, value);
+        }
+        return new DimensionRow(dimension.getKey(), fieldValues);
+    }
+
     /**
      * Check if perPage exceeds limit of max number of rows to be returned.
      *
@@ -877,8 +1424,6 @@ public class LuceneSearchProvider implements SearchProvider {
 
     /**
      * Returns the requested page of dimension metadata from Lucene.
-     * <p>
-     * Note that this method acquires and releases a read lock when querying Lucene for data.
      *
      * @param indexSearcher  The service to find the desired dimension metadata in the Lucene index
      * @param lastEntry  The last entry from the previous page of dimension metadata, the indexSearcher will begin its
@@ -895,7 +1440,6 @@ public class LuceneSearchProvider implements SearchProvider {
             int perPage
     ) {
         TimeLimitingCollectorManager manager = new TimeLimitingCollectorManager(searchTimeout, lastEntry, perPage);
-        readLock();
         try {
             return indexSearcher.search(query, manager);
         } catch (IOException e) {
@@ -905,8 +1449,51 @@ public class LuceneSearchProvider implements SearchProvider {
         } catch (TimeLimitingCollector.TimeExceededException e) {
             LOG.warn("Lucene query timeout: {}. {}", query, e.getMessage());
             throw new TimeoutException(e.getMessage(), e);
-        } finally {
-            readUnlock();
+        }
+    }
+
+    /**
+     * Identifies a page of the results of a search, whose last hit is an anchor to search the next page after.
+     */
+    private static final class PageAnchorKey {
+        private final String searcherGeneration;
+        private final Query query;
+        private final int perPage;
+        private final int page;
+
+        /**
+         * Constructor.
+         *
+         * @param searcherGeneration  Identifies the searcher which found the page
+         * @param query  The query whose results are paginated
+         * @param perPage  The number of hits per page
+         * @param page  The page number
+         */
+        PageAnchorKey(String searcherGeneration, Query query, int perPage, int page) {
+            this.searcherGeneration = searcherGeneration;
+            this.query = query;
+            this.perPage = perPage;
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PageAnchorKey that = (PageAnchorKey) o;
+            return perPage == that.perPage &&
+                    page == that.page &&
+                    Objects.equals(searcherGeneration, that.searcherGeneration) &&
+                    Objects.equals(query, that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(searcherGeneration, query, perPage, page);
         }
     }
 }
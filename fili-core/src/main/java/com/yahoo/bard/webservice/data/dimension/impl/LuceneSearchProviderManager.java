@@ -53,7 +53,11 @@ public class LuceneSearchProviderManager {
      */
     public static void removeInstance(String providerName) {
         synchronized (LuceneSearchProviderManager.class) {
-            LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            LuceneSearchProvider luceneProvider = LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            if (luceneProvider != null) {
+                // Release the index writer, so a new provider can write to the same path
+                luceneProvider.close();
+            }
             Utils.deleteFiles(getProviderPath(providerName));
         }
     }
@@ -85,25 +85,24 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
             String searchQueryString,
             PaginationParameters paginationParameters
     ) {
-       initializeIndexSearcher();
-       readLock();
-       try {
-           validateSearchColumn();
-
-           return getResultsPage(getSearchQuery(searchQueryString), paginationParameters);
-       } finally {
-           readUnlock();
-       }
+       validateSearchColumn();
+
+       return getResultsPage(getSearchQuery(searchQueryString), paginationParameters);
     }
 
     /**
-     * If the search provider has changed, recheck that the search column is available and error if not.
+     * If the index searcher has changed, recheck that the search column is available and error if not.
      */
     private void validateSearchColumn() {
-         if (lastIndexSearcher != luceneIndexSearcher) {
-             lastIndexSearcher = luceneIndexSearcher;
-             searchColumnExists = validateSearchColumn(SEARCH_COLUMN_NAME);
-         }
+        IndexSearcher indexSearcher = acquireIndexSearcher();
+        try {
+            if (lastIndexSearcher != indexSearcher) {
+                searchColumnExists = validateSearchColumn(indexSearcher, SEARCH_COLUMN_NAME);
+                lastIndexSearcher = indexSearcher;
+            }
+        } finally {
+            releaseIndexSearcher(indexSearcher);
+        }
         if (!searchColumnExists) {
             throw new UnsupportedOperationException(
                     String.format(
@@ -169,10 +168,25 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
      * @return whether or not that field exists in the lucene index.
      */
     protected boolean validateSearchColumn(String searchColumnName) {
-        initializeIndexSearcher();
-        readLock();
+        IndexSearcher indexSearcher = acquireIndexSearcher();
         try {
-            return luceneIndexSearcher.getIndexReader().getDocCount(searchColumnName) > 0;
+            return validateSearchColumn(indexSearcher, searchColumnName);
+        } finally {
+            releaseIndexSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Validates that the search column with the provided name exists in the index of a searcher, by checking that
+     * more than 0 documents have a field with the provided name.
+     *
+     * @param indexSearcher  The searcher of the index to check
+     * @param searchColumnName The name of the search column to check.
+     * @return whether or not that field exists in the lucene index.
+     */
+    private boolean validateSearchColumn(IndexSearcher indexSearcher, String searchColumnName) {
+        try {
+            return indexSearcher.getIndexReader().getDocCount(searchColumnName) > 0;
         } catch (IOException e) {
             LOG.debug(
                     String.format(
@@ -183,8 +197,6 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
             );
             // No need to directly fail the query on this. Just return that search is not supported on the index
             return false;
-        } finally {
-            readUnlock();
         }
     }
 }
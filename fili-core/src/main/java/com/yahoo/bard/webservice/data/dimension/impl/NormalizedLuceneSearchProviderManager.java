@@ -66,7 +66,11 @@ public final class NormalizedLuceneSearchProviderManager {
      */
     public static void removeInstance(String providerName) {
         synchronized (NormalizedLuceneSearchProviderManager.class) {
-            LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            NormalizedLuceneSearchProvider luceneProvider = LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            if (luceneProvider != null) {
+                // Release the index writer, so a new provider can write to the same path
+                luceneProvider.close();
+            }
             Utils.deleteFiles(getProviderPath(providerName));
         }
     }
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
@@ -17,6 +18,8 @@ import com.yahoo.bard.webservice.web.DefaultFilterOperation;
 import com.yahoo.bard.webservice.web.FilterOperation;
 import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
@@ -27,12 +30,16 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -40,6 +47,9 @@ import java.util.stream.Collectors;
  */
 public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
     private static final Logger LOG = LoggerFactory.getLogger(ScanSearchProvider.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final Timer INDEX_REFRESH_TIMER = REGISTRY.timer("dimensions.timer.scan_index_refresh");
 
     private final ObjectMapper objectMapper;
 
@@ -129,122 +139,171 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
 
     @Override
     public void refreshIndex(String rowId, DimensionRow dimensionRow, DimensionRow dimensionRowOld) {
-        refreshIndexForDimensionKey(rowId);
-        refreshIndexForDimensionFields(rowId, dimensionRow, dimensionRowOld);
-        refreshCardinality();
-    }
-
-    @Override
-    public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
-        for (String rowId : changedRows.keySet()) {
-            // Get old and new rows from the pair
-            DimensionRow newRow = changedRows.get(rowId).getKey();
-            DimensionRow oldRow = changedRows.get(rowId).getValue();
-
-            // Refresh index for the row
-            refreshIndex(rowId, newRow, oldRow);
-        }
+        refreshIndex(Collections.singletonMap(rowId, new Pair<>(dimensionRow, dimensionRowOld)));
     }
 
     /**
-     * This method updates the set of values corresponding to a dimension.
-     * <p>
-     * Eg: For dimension dim1 there were 3 rows with ID's v1, v2, v3 and DESC's value1, value2, value3 respectively
-     * the keyValueStore would look like
-     * all_values_key -> [id_v1_row_key, id_v2_row_key, id_v3_row_key]
+     * Refresh the indexes of a batch of changed rows.
      * <p>
-     * After this refreshIndexForDimensionKey call, given a new row id: id_v4_row_key, it would look like
-     * all_values_key -> [id_v1_row_key, id_v2_row_key, id_v3_row_key, id_v4_row_key]
-     * <p>
-     * This is useful to list all values for &lt;blah&gt;/dim1/values endpoint
+     * Every index key touched by the batch is read once, updated in memory for all the rows of the batch, and written
+     * back once, so the cost of a batch is linear in its size rather than reading and writing the whole list of row
+     * ids for each row. The cardinality is updated by the number of new row ids instead of counting every row.
      *
-     * @param rowId  The row id to be added
+     * @param changedRows  The changed rows by row id, each with its new (null if removed) and old (null if new) row
      */
-    private void refreshIndexForDimensionKey(String rowId) {
-        try {
-            String allValuesKey = DimensionStoreKeyUtils.getAllValuesKey();
-            String dimensionRows = keyValueStore.get(allValuesKey);
-            Set<String> dimensionRowsSet = new LinkedHashSet<>();
-            if (dimensionRows != null) {
-                dimensionRowsSet.addAll(Arrays.asList(objectMapper.readValue(dimensionRows, String[].class)));
+    @Override
+    public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
+        long startNanos = System.nanoTime();
+
+        String allValuesKey = DimensionStoreKeyUtils.getAllValuesKey();
+        Set<String> allValues = readKeySet(allValuesKey);
+        Map<String, Set<String>> secondaryKeys = new HashMap<>();
+        int addedRows = 0;
+        int removedRows = 0;
+
+        for (Map.Entry<String, Pair<DimensionRow, DimensionRow>> changedRow : changedRows.entrySet()) {
+            String rowId = changedRow.getKey();
+            if (changedRow.getValue().getKey() == null) {
+                if (allValues.remove(rowId)) {
+                    removedRows++;
+                }
+            } else if (allValues.add(rowId)) {
+                addedRows++;
             }
-            dimensionRowsSet.add(rowId);
-            String dimRows = objectMapper.writeValueAsString(dimensionRowsSet);
-            keyValueStore.put(allValuesKey, dimRows);
-        } catch (IOException e) {
-            LOG.error("Exception while adding dimension entry in KeyValueStore : {}", e.toString());
-            throw new UncheckedIOException(e);
+            refreshIndexForDimensionFields(
+                    rowId,
+                    changedRow.getValue().getKey(),
+                    changedRow.getValue().getValue(),
+                    secondaryKeys
+            );
         }
+
+        Map<String, String> updates = new LinkedHashMap<>();
+        secondaryKeys.forEach((key, rowIds) -> updates.put(key, rowIds.isEmpty() ? null : writeValue(rowIds)));
+        updates.put(allValuesKey, writeValue(allValues));
+        updates.put(
+                DimensionStoreKeyUtils.getCardinalityKey(),
+                Integer.toString(addCardinality(addedRows - removedRows, allValues))
+        );
+        keyValueStore.putAll(updates);
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        INDEX_REFRESH_TIMER.update(elapsedNanos, TimeUnit.NANOSECONDS);
+        LOG.debug(
+                "Refreshed scan index of dimension {} for {} rows, {} new, {} removed, in {} ms",
+                dimension == null ? null : dimension.getApiName(),
+                changedRows.size(),
+                addedRows,
+                removedRows,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+        );
     }
 
     /**
-     * This method updates the store to allow point lookups using the non-key field(s).
+     * This method updates, in memory, the secondary keys allowing point lookups using the non-key field(s).
      * It loops through all the fields for a dimension (ignores the key field)
      * <p>
      * For a new dimensionRow
      * say ID v1 and DESC value1 a new entry is added in store
      * <p>
-     * desc_value1_row_key -> [id_v1_row_key]
+     * desc_value1_row_key -&gt; [id_v1_row_key]
      * <p>
      * For a new dimensionRow with duplicate description
      * say ID v2 and DESC value1 the store is updated to look like this
      * <p>
-     * desc_value1_row_key -> [id_v1_row_key, id_v2_row_key]
+     * desc_value1_row_key -&gt; [id_v1_row_key, id_v2_row_key]
      * <p>
      * For a dimensionRow
      * say ID v2 and DESC value2,
-     * dimensionRow -> (v2, value2)
-     * dimensionRowOld -> (v2, value1)
+     * dimensionRow -&gt; (v2, value2)
+     * dimensionRowOld -&gt; (v2, value1)
      * <p>
      * the store is updated to look like this
      * <p>
-     * desc_value1_row_key -> [id_v1_row_key]
-     * desc_value2_row_key -> [id_v2_row_key]
+     * desc_value1_row_key -&gt; [id_v1_row_key]
+     * desc_value2_row_key -&gt; [id_v2_row_key]
+     * <p>
+     * Secondary keys are read from the store the first time a batch touches them, and an empty set of row ids means
+     * the secondary key is to be removed. A removed row only has its old values unindexed.
      *
      * @param rowId  The id to be associated with the new dimension row
-     * @param dimensionRow  The new dimension row to be added to the index
+     * @param dimensionRow  The new dimension row to be added to the index, or null if the row is removed
      * @param dimensionRowOld  The original dimension row associated to the given row id
+     * @param secondaryKeys  The row ids of the secondary keys touched by the batch so far, by secondary key
+     */
+    private void refreshIndexForDimensionFields(
+            String rowId,
+            DimensionRow dimensionRow,
+            DimensionRow dimensionRowOld,
+            Map<String, Set<String>> secondaryKeys
+    ) {
+        for (DimensionField field : dimension.getDimensionFields()) {
+            // skip key field
+            if (field == dimension.getKey()) {
+                continue;
+            }
+            if (dimensionRowOld != null) {
+                String oldRowValueKey = DimensionStoreKeyUtils.getRowKey(field.getName(), dimensionRowOld.get(field));
+                secondaryKeys.computeIfAbsent(oldRowValueKey, this::readKeySet).remove(rowId);
+            }
+            if (dimensionRow == null) {
+                continue;
+            }
+            String rowValueKey = DimensionStoreKeyUtils.getRowKey(field.getName(), dimensionRow.get(field));
+            secondaryKeys.computeIfAbsent(rowValueKey, this::readKeySet).add(rowId);
+        }
+    }
+
+    /**
+     * Compute the cardinality after a batch from the stored cardinality and the number of row ids added.
+     *
+     * @param addedRows  The net number of row ids added by the batch, negative if more were removed
+     * @param allValues  All the row ids after the batch, counted if the stored cardinality cannot be read
+     *
+     * @return the cardinality after the batch
      */
-    private void refreshIndexForDimensionFields(String rowId, DimensionRow dimensionRow, DimensionRow dimensionRowOld) {
+    private int addCardinality(int addedRows, Set<String> allValues) {
+        String cardinality = keyValueStore.get(DimensionStoreKeyUtils.getCardinalityKey());
         try {
-            // oldRowValue - key to associate a Value to its dimensionRow/rows
-            for (DimensionField field : dimension.getDimensionFields()) {
-                // skip key field
-                if (field == dimension.getKey()) {
-                    continue;
-                }
-                if (dimensionRowOld != null) {
-                    String oldRowValue = dimensionRowOld.get(field);
-                    String oldRowValueKey = DimensionStoreKeyUtils.getRowKey(field.getName(), oldRowValue);
-
-                    // oldRowValueSKeys holds all the secondary keys i.e. ref. to dimension rows in store
-                    String oldRowValuesKeysJson = keyValueStore.get(oldRowValueKey);
-                    String[] oldRowValueSKeys = objectMapper.readValue(oldRowValuesKeysJson, String[].class);
-                    Set<String> oldRowValuesKeySet = new LinkedHashSet<>(Arrays.asList(oldRowValueSKeys));
-                    oldRowValuesKeySet.remove(rowId);
-                    if (oldRowValuesKeySet.isEmpty()) {
-                        keyValueStore.remove(oldRowValueKey);
-                    } else {
-                        String updatedOldRowValueSKeys = objectMapper.writeValueAsString(oldRowValuesKeySet);
-                        keyValueStore.put(oldRowValueKey, updatedOldRowValueSKeys);
-                    }
-                }
+            return cardinality == null ? allValues.size() : Integer.parseInt(cardinality) + addedRows;
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid cardinality {} recounted for dimension {}", cardinality, dimension.getApiName());
+            return allValues.size();
+        }
+    }
 
-                String rowValue = dimensionRow.get(field);
-                String rowValueKey = DimensionStoreKeyUtils.getRowKey(field.getName(), rowValue);
+    /**
+     * Read a JSON list of row ids from the store.
+     *
+     * @param key  The key of the list
+     *
+     * @return the row ids in list order, empty if the key is not in the store
+     */
+    private Set<String> readKeySet(String key) {
+        String json = keyValueStore.get(key);
+        if (json == null) {
+            return new LinkedHashSet<>();
+        }
+        try {
+            return new LinkedHashSet<>(Arrays.asList(objectMapper.readValue(json, String[].class)));
+        } catch (IOException e) {
+            LOG.error("Exception while reading dimension index entry {} in KeyValueStore : {}", key, e.toString());
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                // rowValueSKeys holds all the secondary keys i.e. ref. to dimension rows in store
-                String rowValueSKeys = keyValueStore.get(rowValueKey);
-                Set<String> rowValueSKeySet = new LinkedHashSet<>();
-                if (rowValueSKeys != null) {
-                    rowValueSKeySet.addAll(Arrays.asList(objectMapper.readValue(rowValueSKeys, String[].class)));
-                }
-                rowValueSKeySet.add(rowId);
-                String updatedRowValueSKeys = objectMapper.writeValueAsString(rowValueSKeySet);
-                keyValueStore.put(rowValueKey, updatedRowValueSKeys);
-            }
+    /**
+     * Write row ids as a JSON list.
+     *
+     * @param rowIds  The row ids
+     *
+     * @return the JSON list of the row ids
+     */
+    private String writeValue(Set<String> rowIds) {
+        try {
+            return objectMapper.writeValueAsString(rowIds);
         } catch (IOException e) {
-            LOG.error("Exception while adding dimension description entry in key value store : {}", e.toString());
+            LOG.error("Exception while adding dimension entry in KeyValueStore : {}", e.toString());
             throw new UncheckedIOException(e);
         }
     }
@@ -89,6 +89,12 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
         }
     };
 
+    /**
+     * A JSON builder which holds the response body unparsed, so that it can be stream parsed into a result set.
+     */
+    public static final Function<Response, JsonNode> RAW_JSON_NODE_BUILDER_STRATEGY =
+            response -> new RawJsonResponseNode(response.getResponseBodyAsBytes());
+
     private final Supplier<Map<String, String>> headersToAppend;
     private final DruidServiceConfig serviceConfig;
 
@@ -0,0 +1,143 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.client.impl;
+
+import com.yahoo.bard.webservice.web.responseprocessors.DruidJsonResponseContentKeys;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A JSON node that holds the unparsed body of a Druid response.
+ * <p>
+ * Consumers that can read a token stream, such as the streaming mode of
+ * {@link com.yahoo.bard.webservice.data.DruidResponseParser}, read the body directly without building a JSON tree.
+ * Consumers that need the tree should call {@link #materialize(JsonNode)}. Serializing this node writes the original
+ * JSON, so caching response processors can store it without building the tree either.
+ */
+public class RawJsonResponseNode extends ValueNode {
+
+    private static final MappingJsonFactory JSON_FACTORY = new MappingJsonFactory();
+
+    private final byte[] body;
+
+    /**
+     * Constructor.
+     *
+     * @param body  The bytes of the response body
+     */
+    public RawJsonResponseNode(@NotNull byte[] body) {
+        this.body = body;
+    }
+
+    /**
+     * Get the bytes of the response body.
+     *
+     * @return the response body
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Create a parser over the response body, bound to the given mapper.
+     *
+     * @param mapper  The mapper used to read any nested trees
+     *
+     * @return a new parser, which the caller is responsible for closing
+     *
+     * @throws IOException if the parser cannot be created
+     */
+    public JsonParser createParser(ObjectMapper mapper) throws IOException {
+        return mapper.getFactory().createParser(getBody());
+    }
+
+    /**
+     * Parse the response body into a JSON tree.
+     *
+     * @return the JSON tree of the response body
+     */
+    public JsonNode asTree() {
+        try (JsonParser parser = JSON_FACTORY.createParser(getBody())) {
+            return parser.readValueAsTree();
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    @Override
+    public JsonNodeType getNodeType() {
+        return JsonNodeType.POJO;
+    }
+
+    @Override
+    public JsonToken asToken() {
+        return JsonToken.VALUE_EMBEDDED_OBJECT;
+    }
+
+    @Override
+    public String asText() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(getBody())) {
+            if (parser.nextToken() == null) {
+                generator.writeNull();
+            } else {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof RawJsonResponseNode && Arrays.equals(body, ((RawJsonResponseNode) o).body));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(body);
+    }
+
+    @Override
+    public String toString() {
+        return asText();
+    }
+
+    /**
+     * Make sure a response is backed by a JSON tree.
+     * <p>
+     * Raw response nodes are parsed into trees, including a raw response nested under the response key by the
+     * {@link HeaderNestingJsonBuilderStrategy}. Any other node is returned unchanged.
+     *
+     * @param json  The response to materialize
+     *
+     * @return a JSON tree with the content of the response
+     */
+    public static JsonNode materialize(JsonNode json) {
+        if (json instanceof RawJsonResponseNode) {
+            return ((RawJsonResponseNode) json).asTree();
+        }
+        String responseKey = DruidJsonResponseContentKeys.RESPONSE.getName();
+        if (json instanceof ObjectNode && json.get(responseKey) instanceof RawJsonResponseNode) {
+            ((ObjectNode) json).set(responseKey, ((RawJsonResponseNode) json.get(responseKey)).asTree());
+        }
+        return json;
+    }
+}
@@ -10,6 +10,7 @@ import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.dimension.DimensionRowNotFoundException;
 import com.yahoo.bard.webservice.data.dimension.FilterBuilderException;
+import com.yahoo.bard.webservice.data.dimension.FilterResolutionCache;
 import com.yahoo.bard.webservice.data.dimension.impl.ExtractionFunctionDimension;
 import com.yahoo.bard.webservice.druid.model.dimension.extractionfunction.ExtractionFunction;
 import com.yahoo.bard.webservice.druid.model.filter.AndFilter;
@@ -55,6 +56,24 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
 
     private static final String NON_NEGATIVE_FILTER_ERROR_FORMAT = "Negating a non-negative filter - '%s'";
 
+    private final FilterResolutionCache filterResolutionCache;
+
+    /**
+     * Constructor, resolving filters through the shared filter resolution cache.
+     */
+    public ConjunctionDruidFilterBuilder() {
+        this(FilterResolutionCache.getSharedInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param filterResolutionCache  The cache of the key values of the dimension rows matching filters
+     */
+    protected ConjunctionDruidFilterBuilder(FilterResolutionCache filterResolutionCache) {
+        this.filterResolutionCache = filterResolutionCache;
+    }
+
     @Override
     public Filter buildFilters(Map<Dimension, Set<ApiFilter>> filterMap) throws FilterBuilderException {
         LOG.trace("Building filters using filter map: {}", filterMap);
@@ -162,6 +181,8 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
 
     /**
      * Resolves a set of ApiFilters into a list of dimension row values that need to be filtered in Druid.
+     * <p>
+     * Only the key values of the matching rows are resolved, through the filter resolution cache.
      *
      * @param dimension  The dimension being filtered
      * @param filters  The filters being applied to the {@code dimension}
@@ -172,9 +193,15 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
      */
     protected List<String> getFilteredDimensionRowValues(Dimension dimension, Set<ApiFilter> filters)
             throws DimensionRowNotFoundException {
-        return getFilteredDimensionRows(dimension, filters).stream()
-                .map(DimensionRow::getKeyValue)
-                .collect(Collectors.toList());
+        List<String> values = filterResolutionCache.getKeyValues(dimension, filters);
+
+        if (values.isEmpty()) {
+            String msg = ErrorMessageFormat.DIMENSION_ROWS_NOT_FOUND.format(dimension.getApiName(), filters);
+            LOG.debug(msg);
+            throw new DimensionRowNotFoundException(msg);
+        }
+
+        return values;
     }
 
     /**
@@ -209,28 +236,36 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
      * @return a list of Druid selector filters
      */
     protected List<Filter> buildSelectorFilters(Dimension dimension, Set<DimensionRow> rows) {
-
-        Function<DimensionRow, Filter> filterBuilder = row -> new SelectorFilter(
+        return buildKeySelectorFilters(
                 dimension,
-                row.get(dimension.getKey())
+                rows.stream().map(row -> row.get(dimension.getKey())).collect(Collectors.toList())
         );
+    }
+
+    /**
+     * Builds a list of Druid selector or extraction filters.
+     *
+     * @param dimension  The dimension to build the list of Druid selector filters from
+     * @param keyValues  The key values of the dimension rows that need selector filters built around
+     *
+     * @return a list of Druid selector filters
+     */
+    protected List<Filter> buildKeySelectorFilters(Dimension dimension, List<String> keyValues) {
+
+        Function<String, Filter> filterBuilder = value -> new SelectorFilter(dimension, value);
 
         if (dimension instanceof ExtractionFunctionDimension) {
 
             Optional<ExtractionFunction> extractionFunction = ((ExtractionFunctionDimension) dimension)
                     .getExtractionFunction();
             if (extractionFunction.isPresent()) {
-                filterBuilder = row -> new ExtractionFilter(
-                        dimension,
-                        row.get(dimension.getKey()),
-                        extractionFunction.get()
-                );
+                filterBuilder = value -> new ExtractionFilter(dimension, value, extractionFunction.get());
             }
         }
 
-        final Function<DimensionRow, Filter> finalFilterBuilder = filterBuilder;
+        final Function<String, Filter> finalFilterBuilder = filterBuilder;
 
-        return rows.stream()
+        return keyValues.stream()
                 .map(finalFilterBuilder::apply)
                 .collect(Collectors.toList());
     }
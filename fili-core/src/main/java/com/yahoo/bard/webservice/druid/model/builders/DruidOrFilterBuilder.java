@@ -55,9 +55,9 @@ public class DruidOrFilterBuilder extends ConjunctionDruidFilterBuilder {
                         filter.getValuesList()
                 ));
             } else {
-                disjunction = new OrFilter(buildSelectorFilters(
+                disjunction = new OrFilter(buildKeySelectorFilters(
                         dimension,
-                        getFilteredDimensionRows(dimension, Collections.singleton(normalizedFilter))
+                        getFilteredDimensionRowValues(dimension, Collections.singleton(normalizedFilter))
                 ));
             }
             orFilters.add(normalizedFilter == filter ? disjunction : new NotFilter(disjunction));
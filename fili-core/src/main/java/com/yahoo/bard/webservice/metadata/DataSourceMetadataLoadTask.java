@@ -13,6 +13,7 @@ import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.client.impl.RawJsonResponseNode;
 import com.yahoo.bard.webservice.table.PhysicalTable;
 import com.yahoo.bard.webservice.table.PhysicalTableDictionary;
 
@@ -179,7 +180,10 @@ public class DataSourceMetadataLoadTask extends LoadTask<Boolean> {
     protected SuccessCallback buildDataSourceMetadataSuccessCallback(DataSourceName dataSourceName) {
         return rootNode -> {
             try {
-                metadataService.update(dataSourceName, mapper.treeToValue(rootNode, DataSourceMetadata.class));
+                metadataService.update(
+                        dataSourceName,
+                        mapper.treeToValue(RawJsonResponseNode.materialize(rootNode), DataSourceMetadata.class)
+                );
             } catch (IOException e) {
                 LOG.error(DRUID_METADATA_READ_ERROR.format(dataSourceName.asName()), e);
                 throw new UnsupportedOperationException(DRUID_METADATA_READ_ERROR.format(dataSourceName.asName()), e);
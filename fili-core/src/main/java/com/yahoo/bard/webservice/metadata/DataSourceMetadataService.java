@@ -16,12 +16,14 @@ import org.apache.druid.timeline.DataSegment;
 
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -43,6 +45,21 @@ public class DataSourceMetadataService {
     private final Map<DataSourceName, AtomicReference<ImmutableMap<String, SimplifiedIntervalList>>>
             allSegmentsByColumn;
 
+    /**
+     * The segment hash indexes of the current segments of every table.
+     */
+    private final Map<DataSourceName, SegmentHashIndex> segmentHashIndexes;
+
+    /**
+     * The source of segment metadata versions, shared by all data sources so versions are never reused.
+     */
+    private final AtomicLong versions;
+
+    /**
+     * The version of the last metadata update of every data source.
+     */
+    private final Map<DataSourceName, Long> dataSourceVersions;
+
     /**
      * The collector that accumulates partitions of a segment.
      */
@@ -54,6 +71,9 @@ public class DataSourceMetadataService {
     public DataSourceMetadataService() {
         this.allSegmentsByTime = new ConcurrentHashMap<>();
         this.allSegmentsByColumn = new ConcurrentHashMap<>();
+        this.segmentHashIndexes = new ConcurrentHashMap<>();
+        this.versions = new AtomicLong();
+        this.dataSourceVersions = new ConcurrentHashMap<>();
     }
 
     /**
@@ -71,6 +91,61 @@ public class DataSourceMetadataService {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Get the segment hash indexes of the current segments of the given data sources.
+     * <p>
+     * Indexes are built when the segments of a data source are updated. An index is rebuilt on demand if it does not
+     * match the current segments of its data source.
+     *
+     * @param dataSourceNames  A Set of physical data source names
+     *
+     * @return the segment hash indexes of the data sources which have segment metadata
+     */
+    public List<SegmentHashIndex> getSegmentHashIndexes(Set<DataSourceName> dataSourceNames) {
+        return dataSourceNames.stream()
+                .map(this::getSegmentHashIndex)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the segment hash index of the current segments of a data source.
+     *
+     * @param dataSourceName  The data source whose index to get
+     *
+     * @return the segment hash index, or null if the data source has no segment metadata
+     */
+    public SegmentHashIndex getSegmentHashIndex(DataSourceName dataSourceName) {
+        AtomicReference<ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>>> segmentsReference =
+                allSegmentsByTime.get(dataSourceName);
+        ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>> segments = segmentsReference == null ?
+                null :
+                segmentsReference.get();
+        if (segments == null) {
+            return null;
+        }
+        return segmentHashIndexes.compute(
+                dataSourceName,
+                (ignored, index) -> index != null && index.getSegments() == segments ?
+                        index :
+                        new SegmentHashIndex(segments, versions.incrementAndGet())
+        );
+    }
+
+    /**
+     * Get the version of the metadata of a data source.
+     * <p>
+     * The version increases every time the metadata of the data source is updated, and is set after the updated
+     * metadata, so anything computed from the metadata read after a version belongs to that version or a later one.
+     *
+     * @param dataSourceName  The data source whose version to get
+     *
+     * @return the version of the last update of the data source, or 0 if it was never updated
+     */
+    public long getVersion(DataSourceName dataSourceName) {
+        return dataSourceVersions.getOrDefault(dataSourceName, 0L);
+    }
+
     /**
      * Get a set of intervals available for each column in the data source.
      *
@@ -109,6 +184,9 @@ public class DataSourceMetadataService {
                 .set(currentByTime);
         allSegmentsByColumn.computeIfAbsent(dataSourceName, ignored -> new AtomicReference<>())
                 .set(ImmutableMap.copyOf(currentByColumn));
+        long version = versions.incrementAndGet();
+        segmentHashIndexes.put(dataSourceName, new SegmentHashIndex(currentByTime, version));
+        dataSourceVersions.put(dataSourceName, version);
     }
 
     /**
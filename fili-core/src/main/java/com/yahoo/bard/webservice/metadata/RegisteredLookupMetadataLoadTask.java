@@ -11,6 +11,7 @@ import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.client.impl.RawJsonResponseNode;
 import com.yahoo.bard.webservice.druid.model.dimension.extractionfunction.RegisteredLookupExtractionFunction;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -156,7 +157,7 @@ public class RegisteredLookupMetadataLoadTask extends LoadTask<Boolean> {
     protected SuccessCallback buildLookupSuccessCallback() {
         return rootNode -> {
             Map<String, Boolean> lookupStatuses = new HashMap<>();
-            Iterator<Map.Entry<String, JsonNode>> entries = rootNode.fields();
+            Iterator<Map.Entry<String, JsonNode>> entries = RawJsonResponseNode.materialize(rootNode).fields();
             while (entries.hasNext()) {
                 Map.Entry<String, JsonNode> entry = entries.next();
                 lookupStatuses.put(entry.getKey(), entry.getValue().get("loaded").asBoolean());
@@ -0,0 +1,220 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.metadata;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * An immutable index of the segments of a data source for computing segment set hashes of intervals.
+ * <p>
+ * The segments are grouped by start time, as in {@link DataSourceMetadataService#getSegments}. The index holds the
+ * sorted start times of the groups and the running sums of the hash codes of the group entries, so the hash code of
+ * the segments of any interval, which equals the hash code of the corresponding sub map of the segments, is the
+ * difference of two running sums found by binary search. The latest end of the segments of each group and the groups
+ * before it is kept as well, to include the groups starting before an interval whose segments extend into it.
+ * <p>
+ * Each index carries the version of the segment metadata it was built from. Versions increase with every update
+ * of the segments of the data source.
+ */
+public final class SegmentHashIndex {
+
+    private static final Range EMPTY_RANGE = new Range(null, 0, 0, 0);
+
+    private final SortedMap<DateTime, Map<String, SegmentInfo>> segments;
+    private final long version;
+    private final long[] starts;
+    // maxEnds[i] is the latest end of the segments of group i and the groups before it
+    private final long[] maxEnds;
+    // prefixHashes[i] is the (overflowing) sum of the entry hash codes of the groups before group i
+    private final int[] prefixHashes;
+
+    /**
+     * Constructor.
+     *
+     * @param segments  The segments of a data source, grouped by start time
+     * @param version  The version of the segment metadata
+     */
+    public SegmentHashIndex(@NotNull SortedMap<DateTime, Map<String, SegmentInfo>> segments, long version) {
+        this.segments = segments;
+        this.version = version;
+
+        // The segment maps are replaced rather than modified on update, so the size is stable
+        int size = segments.size();
+        starts = new long[size];
+        maxEnds = new long[size];
+        prefixHashes = new int[size + 1];
+        int i = 0;
+        for (Map.Entry<DateTime, Map<String, SegmentInfo>> group : segments.entrySet()) {
+            starts[i] = group.getKey().getMillis();
+            long end = group.getValue().values().stream()
+                    .mapToLong(segment -> segment.getInterval().getEndMillis())
+                    .max()
+                    .orElse(starts[i]);
+            maxEnds[i] = i == 0 ? end : Math.max(maxEnds[i - 1], end);
+            // Same as the entry hash code of the sorted map, so range hashes match the sub map hash codes
+            prefixHashes[i + 1] = prefixHashes[i] + (group.getKey().hashCode() ^ group.getValue().hashCode());
+            i++;
+        }
+    }
+
+    /**
+     * Find the range of segment groups holding data for an interval.
+     * <p>
+     * These are the groups starting within the interval and the groups starting before the interval whose segments
+     * extend into it. With segments of mixed granularities, such as a month segment and a later day segment, a coarse
+     * segment may reach into the interval past later groups which do not. Ranges are contiguous, so those groups
+     * are part of the range as well.
+     *
+     * @param interval  The requested interval
+     *
+     * @return the range of segment groups of the interval
+     */
+    public Range getRange(Interval interval) {
+        long start = interval.getStartMillis();
+        int to = lowerBound(interval.getEndMillis());
+        int from = firstEndingAfter(start, lowerBound(start));
+        return from >= to ? EMPTY_RANGE : new Range(this, from, to, prefixHashes[to] - prefixHashes[from]);
+    }
+
+    /**
+     * The hash code of the segments holding data for an interval.
+     *
+     * @param interval  The requested interval
+     *
+     * @return the hash code of the segments of the interval, 0 if there are none
+     */
+    public int getSegmentHash(Interval interval) {
+        return getRange(interval).getHash();
+    }
+
+    /**
+     * The index of the first segment group starting at or after an instant.
+     *
+     * @param instant  The instant in milliseconds
+     *
+     * @return the index of the first group starting at or after the instant, the number of groups if there is none
+     */
+    private int lowerBound(long instant) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < instant) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The index of the first segment group whose segments, or the segments of an earlier group, end after an instant.
+     * <p>
+     * The latest ends of the groups never decrease, so the groups from the found one on all reach past the instant.
+     *
+     * @param instant  The instant in milliseconds
+     * @param limit  The index to return if no group before it ends after the instant
+     *
+     * @return the index of the first group before the limit ending after the instant, or the limit if there is none
+     */
+    private int firstEndingAfter(long instant, int limit) {
+        int low = 0;
+        int high = limit;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (maxEnds[middle] <= instant) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The segments this index was built from.
+     *
+     * @return the segments grouped by start time
+     */
+    public SortedMap<DateTime, Map<String, SegmentInfo>> getSegments() {
+        return segments;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The number of segment groups in the index.
+     *
+     * @return the number of distinct segment start times
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * A contiguous range of the segment groups of an index.
+     * <p>
+     * Ranges are equal if they cover the same groups of the same index, and all empty ranges are equal, as are the
+     * corresponding sub maps of segments.
+     */
+    public static final class Range {
+        private final SegmentHashIndex index;
+        private final int from;
+        private final int to;
+        private final int hash;
+
+        /**
+         * Constructor.
+         *
+         * @param index  The index of the range
+         * @param from  The first group in the range
+         * @param to  The group after the last group in the range
+         * @param hash  The hash code of the segments in the range
+         */
+        Range(SegmentHashIndex index, int from, int to, int hash) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+            this.hash = hash;
+        }
+
+        public int getHash() {
+            return hash;
+        }
+
+        /**
+         * Whether the range holds no segments.
+         *
+         * @return true if the range is empty
+         */
+        public boolean isEmpty() {
+            return from == to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Range)) {
+                return false;
+            }
+            Range that = (Range) o;
+            return index == that.index && from == that.from && to == that.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -9,20 +9,21 @@ import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.util.DefaultingDictionary;
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * An implementation of the QuerySigningService that generates segment id for requested interval.
  * It uses the sum of segment hashes to create a segment id.
+ * <p>
+ * The hashes of the segments of each interval are read from the {@link SegmentHashIndex} of each data source, at the
+ * cost of two binary searches per interval and data source.
  */
 public class SegmentIntervalsHashIdGenerator implements QuerySigningService<Long> {
 
@@ -78,37 +79,20 @@ public class SegmentIntervalsHashIdGenerator implements QuerySigningService<Long
                 .stream()
                 .collect(Collectors.toSet());
 
-        // Get all the segments for the data sources of the query's physical tables
-        Set<SortedMap<DateTime, Map<String, SegmentInfo>>> tableSegments = dataSourceMetadataService.getSegments(
-                dataSourceNames
-        );
+        // Get the segment hash indexes for the data sources of the query's physical tables
+        List<SegmentHashIndex> indexes = dataSourceMetadataService.getSegmentHashIndexes(dataSourceNames);
 
         // Check if we have no tables with segments
-        if (tableSegments.isEmpty()) {
+        if (indexes.isEmpty()) {
             LOG.warn(DRUID_METADATA_SEGMENTS_MISSING.logFormat(dataSourceNames));
             return Optional.empty();
         }
 
-        // Get requested intervals, then their segments, and sum their hash codes into a long
-        return getSegmentHash(
-                requestedIntervalsQueryExtractionFunctions.get(query.getClass()).apply(query).stream()
-                        .flatMap(interval -> tableSegments.stream()
-                                .map(segments -> segments.subMap(interval.getStart(), interval.getEnd()))
-                        )
-        );
-    }
-
-    /**
-     * Given a set of requested segments, calculate a hash to represent the segment set Id.
-     *
-     * @param requestedSegments  A set of requestedSegments
-     *
-     * @return A hash of the given segments
-     */
-    public Optional<Long> getSegmentHash(Stream<SortedMap<DateTime, Map<String, SegmentInfo>>> requestedSegments) {
-        return requestedSegments
+        // Get requested intervals, then the range of their segments in each index, and sum the distinct ranges' hashes
+        return requestedIntervalsQueryExtractionFunctions.get(query.getClass()).apply(query).stream()
+                .flatMap(interval -> indexes.stream().map(index -> index.getRange(interval)))
                 .distinct()
-                .map(Object::hashCode)
+                .map(SegmentHashIndex.Range::getHash)
                 .map(Integer::longValue)
                 .reduce(Long::sum);
     }
@@ -50,6 +50,11 @@ public abstract class AbstractAvailabilityDecorator implements Availability {
         return getTarget().getDataSourceNames(constraint);
     }
 
+    @Override
+    public Optional<Map<DataSourceName, Long>> getDataSourceVersions() {
+        return getTarget().getDataSourceVersions();
+    }
+
     @Override
     public Map<String, SimplifiedIntervalList> getAllAvailableIntervals() {
         return getTarget().getAllAvailableIntervals();
@@ -43,6 +43,19 @@ public interface Availability {
         return getDataSourceNames();
     }
 
+    /**
+     * The versions of the metadata of the data sources backing this availability.
+     * <p>
+     * The version of a data source increases whenever its availability may have changed, so results computed from
+     * this availability can be cached until the versions change. An empty optional means this availability is not
+     * versioned and its results may change at any time.
+     *
+     * @return the version of each data source, if this availability is versioned
+     */
+    default Optional<Map<DataSourceName, Long>> getDataSourceVersions() {
+        return Optional.empty();
+    }
+
     /**
      * The availability of all columns.
      *
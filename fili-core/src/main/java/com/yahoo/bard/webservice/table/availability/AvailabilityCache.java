@@ -0,0 +1,260 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.table.availability;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.config.names.DataSourceName;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint;
+import com.yahoo.bard.webservice.table.resolver.PhysicalDataSourceConstraint;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded cache of values computed by an availability, valid for a version of the metadata of its data sources.
+ * <p>
+ * Entries are keyed by the columns and filters of a constraint and by the versions of the data sources at the time
+ * the value was computed. Data source versions increase on every metadata update, so a cached value is never used
+ * once the metadata it was computed from changed. When a new version vector is seen, the entries of the old one are
+ * dropped. Availabilities which are not versioned are never cached.
+ * <p>
+ * Values which callers could modify are copied out of the cache by the copier of the cache, so that callers never
+ * share a cached value. Hits and misses of all the caches are reported as meters under the metric prefix.
+ *
+ * @param <V>  The type of the cached values
+ */
+public class AvailabilityCache<V> {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String METRIC_PREFIX = "availability.meter.cache.";
+
+    public static final Meter HITS = REGISTRY.meter(METRIC_PREFIX + "hits");
+    public static final Meter MISSES = REGISTRY.meter(METRIC_PREFIX + "misses");
+
+    // Maximum number of constraints each composite availability caches the available intervals of, 0 disables it
+    public static final long MAX_ENTRIES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("availability_cache_max_entries"),
+            1000
+    );
+
+    private static final Object UNCONSTRAINED_KEY = Collections.emptyList();
+
+    private final Cache<List<Object>, V> entries;
+    private final UnaryOperator<V> copier;
+    private volatile Map<DataSourceName, Long> versions;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries  The maximum number of cached values, 0 to disable caching
+     * @param copier  Copies the values handed out, so that callers cannot modify the cached ones
+     */
+    public AvailabilityCache(long maxEntries, UnaryOperator<V> copier) {
+        if (maxEntries < 0) {
+            String message = "Maximum availability cache size must not be negative: " + maxEntries;
+            throw new IllegalArgumentException(message);
+        }
+        this.entries = maxEntries == 0 ? null : CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        this.copier = copier;
+    }
+
+    /**
+     * Constructor for a cache of immutable values.
+     *
+     * @param maxEntries  The maximum number of cached values, 0 to disable caching
+     */
+    public AvailabilityCache(long maxEntries) {
+        this(maxEntries, UnaryOperator.identity());
+    }
+
+    /**
+     * Constructor for a cache of the configured size.
+     *
+     * @param copier  Copies the values handed out, so that callers cannot modify the cached ones
+     *
+     * @see #MAX_ENTRIES
+     */
+    public AvailabilityCache(UnaryOperator<V> copier) {
+        this(MAX_ENTRIES, copier);
+    }
+
+    /**
+     * Constructor for a cache of immutable values of the configured size.
+     *
+     * @see #MAX_ENTRIES
+     */
+    public AvailabilityCache() {
+        this(MAX_ENTRIES);
+    }
+
+    /**
+     * Get the value for a constraint at the current versions, computing it on a miss.
+     * <p>
+     * The versions are read before computing the value, and the metadata service sets a version after the metadata
+     * it describes, so a value is never cached under a version older than the metadata it was computed from.
+     *
+     * @param constraint  The constraint the value is computed for, or null for a value which is not constrained
+     * @param currentVersions  The current versions of the data sources, empty if they are not versioned
+     * @param loader  Computes the value
+     *
+     * @return the cached or computed value, copied if it came from or went into the cache
+     */
+    public V get(
+            DataSourceConstraint constraint,
+            Optional<Map<DataSourceName, Long>> currentVersions,
+            Supplier<V> loader
+    ) {
+        List<Object> key = cacheKey(constraint, currentVersions);
+        if (key == null) {
+            return loader.get();
+        }
+        Map<DataSourceName, Long> dataSourceVersions = currentVersions.get();
+        if (!dataSourceVersions.equals(versions)) {
+            // The data changed, so no cached value will be used again
+            entries.invalidateAll();
+            versions = dataSourceVersions;
+        }
+
+        V cached = entries.getIfPresent(key);
+        if (cached != null) {
+            HITS.mark();
+            return copier.apply(cached);
+        }
+        MISSES.mark();
+
+        V value = loader.get();
+        entries.put(key, value);
+        return copier.apply(value);
+    }
+
+    /**
+     * Build the key of a value in this cache.
+     *
+     * @param constraint  The constraint the value is computed for, or null for a value which is not constrained
+     * @param currentVersions  The current versions of the data sources, empty if they are not versioned
+     *
+     * @return the key of the value, or null if the value should not be cached
+     */
+    private List<Object> cacheKey(
+            DataSourceConstraint constraint,
+            Optional<Map<DataSourceName, Long>> currentVersions
+    ) {
+        if (entries == null || currentVersions == null || !currentVersions.isPresent()) {
+            return null;
+        }
+        Object constraintKey = constraint == null ? UNCONSTRAINED_KEY : constraintKey(constraint);
+        return constraintKey == null ? null : Arrays.asList(constraintKey, currentVersions.get());
+    }
+
+    /**
+     * Drop all cached values.
+     */
+    public void invalidateAll() {
+        if (entries != null) {
+            entries.invalidateAll();
+        }
+    }
+
+    /**
+     * The number of cached values.
+     *
+     * @return the approximate number of cache entries
+     */
+    public long size() {
+        return entries == null ? 0 : entries.size();
+    }
+
+    /**
+     * The fraction of lookups of all availability caches which found a cached value.
+     *
+     * @return the hit ratio, 0 if there were no lookups
+     */
+    public static double getHitRatio() {
+        long lookups = HITS.getCount() + MISSES.getCount();
+        return lookups == 0 ? 0 : (double) HITS.getCount() / lookups;
+    }
+
+    /**
+     * Build the parts of a constraint which availabilities depend on.
+     * <p>
+     * Partitions are chosen by searching the rows of the filtered dimensions, so the key includes the row versions of
+     * those dimensions as well. Constraints filtering dimensions which do not track their row version are not cached.
+     *
+     * @param constraint  The constraint
+     *
+     * @return a key equal for constraints on the same columns with the same filters, or null if the constraint
+     * should not be cached
+     */
+    public static Object constraintKey(DataSourceConstraint constraint) {
+        Map<Dimension, Long> filteredDimensionVersions = getRowVersions(constraint.getApiFilters().keySet());
+        if (filteredDimensionVersions == null) {
+            return null;
+        }
+        return Arrays.asList(
+                constraint.getRequestDimensions(),
+                constraint.getFilterDimensions(),
+                constraint.getMetricDimensions(),
+                constraint.getMetricNames(),
+                constraint.getApiFilters(),
+                filteredDimensionVersions,
+                constraint instanceof PhysicalDataSourceConstraint ?
+                        ((PhysicalDataSourceConstraint) constraint).getAllColumnPhysicalNames() :
+                        null
+        );
+    }
+
+    /**
+     * Get the row versions of dimensions.
+     *
+     * @param dimensions  The dimensions
+     *
+     * @return the row version of each dimension, or null if any of them does not track its row version
+     */
+    private static Map<Dimension, Long> getRowVersions(Iterable<Dimension> dimensions) {
+        Map<Dimension, Long> rowVersions = new HashMap<>();
+        for (Dimension dimension : dimensions) {
+            long rowVersion = dimension.getRowVersion();
+            if (rowVersion < 0) {
+                return null;
+            }
+            rowVersions.put(dimension, rowVersion);
+        }
+        return rowVersions;
+    }
+
+    /**
+     * Merge the versions of the data sources of several availabilities into a version vector.
+     *
+     * @param availabilities  The availabilities
+     *
+     * @return the versions of all their data sources, empty if any of them is not versioned
+     */
+    public static Optional<Map<DataSourceName, Long>> mergeVersions(Iterable<Availability> availabilities) {
+        Map<DataSourceName, Long> merged = new HashMap<>();
+        for (Availability availability : availabilities) {
+            Optional<Map<DataSourceName, Long>> versions = availability.getDataSourceVersions();
+            if (versions == null || !versions.isPresent()) {
+                return Optional.empty();
+            }
+            // The same data source may back several availabilities, and has a single version
+            versions.get().forEach((name, version) -> merged.merge(name, version, Math::max));
+        }
+        return Optional.of(merged);
+    }
+}
@@ -10,19 +10,30 @@ import com.yahoo.bard.webservice.util.StreamUtils;
 import org.joda.time.DateTime;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * A class implementing common capabilities for availabilities backed by a collection of other availabilities.
+ * <p>
+ * Merging the availabilities of the sources is costly, so merged results are cached until the metadata versions of
+ * the sources change.
  */
 public abstract class BaseCompositeAvailability implements Availability {
 
     private final Set<Availability> sourceAvailabilities;
     private final Set<DataSourceName> dataSourcesNames;
+    private final AvailabilityCache<SimplifiedIntervalList> availableIntervalsCache = new AvailabilityCache<>(
+            SimplifiedIntervalList::new
+    );
+    private final AvailabilityCache<Map<String, SimplifiedIntervalList>> allAvailableIntervalsCache =
+            new AvailabilityCache<>(BaseCompositeAvailability::copyAllAvailableIntervals);
 
     /**
      * Constructor.
@@ -55,6 +66,26 @@ public abstract class BaseCompositeAvailability implements Availability {
         return dataSourcesNames;
     }
 
+    @Override
+    public Optional<Map<DataSourceName, Long>> getDataSourceVersions() {
+        return AvailabilityCache.mergeVersions(sourceAvailabilities);
+    }
+
+    /**
+     * Get the available intervals for a constraint from the cache, merging them from the sources on a miss.
+     *
+     * @param constraint  The filtering constraint
+     * @param merge  Merges the available intervals of the sources for the constraint
+     *
+     * @return The intervals which are available for the given constraint
+     */
+    protected SimplifiedIntervalList getCachedAvailableIntervals(
+            DataSourceConstraint constraint,
+            Supplier<SimplifiedIntervalList> merge
+    ) {
+        return availableIntervalsCache.get(constraint, getDataSourceVersions(), merge);
+    }
+
     /**
      * Retrieve all available intervals for all data source fields across all the underlying datasources.
      * <p>
@@ -64,17 +95,36 @@ public abstract class BaseCompositeAvailability implements Availability {
      */
     @Override
     public Map<String, SimplifiedIntervalList> getAllAvailableIntervals() {
-        return getAllSourceAvailabilities()
-                .map(Availability::getAllAvailableIntervals)
-                .map(Map::entrySet)
-                .flatMap(Set::stream)
-                .collect(
-                        Collectors.toMap(
-                                Map.Entry::getKey,
-                                Map.Entry::getValue,
-                                (value1, value2) -> SimplifiedIntervalList.simplifyIntervals(value1, value2)
-                        )
-                );
+        return allAvailableIntervalsCache.get(
+                null,
+                getDataSourceVersions(),
+                () -> Collections.unmodifiableMap(getAllSourceAvailabilities()
+                        .map(Availability::getAllAvailableIntervals)
+                        .map(Map::entrySet)
+                        .flatMap(Set::stream)
+                        .collect(
+                                Collectors.toMap(
+                                        Map.Entry::getKey,
+                                        Map.Entry::getValue,
+                                        (value1, value2) -> SimplifiedIntervalList.simplifyIntervals(value1, value2)
+                                )
+                        ))
+        );
+    }
+
+    /**
+     * Copy the available intervals of fields, so that the cached ones are not modified.
+     *
+     * @param allAvailableIntervals  The available intervals of each field
+     *
+     * @return an unmodifiable map of copies of the available intervals
+     */
+    private static Map<String, SimplifiedIntervalList> copyAllAvailableIntervals(
+            Map<String, SimplifiedIntervalList> allAvailableIntervals
+    ) {
+        Map<String, SimplifiedIntervalList> copy = new HashMap<>(allAvailableIntervals.size());
+        allAvailableIntervals.forEach((name, intervals) -> copy.put(name, new SimplifiedIntervalList(intervals)));
+        return Collections.unmodifiableMap(copy);
     }
 
     @Override
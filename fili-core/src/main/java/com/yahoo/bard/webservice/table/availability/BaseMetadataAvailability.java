@@ -10,6 +10,7 @@ import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 
 import javax.validation.constraints.NotNull;
@@ -56,6 +57,11 @@ public abstract class BaseMetadataAvailability implements Availability {
         return metadataService;
     }
 
+    @Override
+    public Optional<Map<DataSourceName, Long>> getDataSourceVersions() {
+        return Optional.of(Collections.singletonMap(dataSourceName, metadataService.getVersion(dataSourceName)));
+    }
+
     @Override
     public Map<String, SimplifiedIntervalList> getAllAvailableIntervals() {
         return getDataSourceMetadataService().getAvailableIntervalsByDataSource(getDataSourceName());
@@ -124,9 +124,12 @@ public class MetricUnionAvailability extends BaseCompositeAvailability implement
             return new SimplifiedIntervalList();
         }
 
-        return constructSubConstraint(constraint).entrySet().stream()
-                .map(entry -> entry.getKey().getAvailableIntervals(entry.getValue()))
-                .reduce(SimplifiedIntervalList::intersect).orElseGet(SimplifiedIntervalList::new);
+        return getCachedAvailableIntervals(
+                constraint,
+                () -> constructSubConstraint(constraint).entrySet().stream()
+                        .map(entry -> entry.getKey().getAvailableIntervals(entry.getValue()))
+                        .reduce(SimplifiedIntervalList::intersect).orElseGet(SimplifiedIntervalList::new)
+        );
     }
 
     /**
@@ -128,7 +128,7 @@ public class PartitionAvailability extends BaseCompositeAvailability implements
 
     @Override
     public SimplifiedIntervalList getAvailableIntervals(DataSourceConstraint constraint) {
-        return mergeAvailabilities(constraint);
+        return getCachedAvailableIntervals(constraint, () -> mergeAvailabilities(constraint));
     }
 
     @Override
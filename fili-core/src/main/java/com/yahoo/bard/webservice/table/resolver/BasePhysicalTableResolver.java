@@ -3,6 +3,8 @@
 package com.yahoo.bard.webservice.table.resolver;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.logging.TimedPhase;
 import com.yahoo.bard.webservice.table.PhysicalTable;
 import com.yahoo.bard.webservice.web.ErrorMessageFormat;
 
@@ -16,6 +18,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
 
 /**
  *  Abstract parent to with business rule agnostic implementations of core methods.
@@ -25,6 +28,8 @@ public abstract class BasePhysicalTableResolver implements PhysicalTableResolver
     private static final Logger LOG = LoggerFactory.getLogger(BasePhysicalTableResolver.class);
     private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
 
+    public static final String RESOLVE_TIMER = "ResolvingPhysicalTable";
+
     /**
      * Create a list of matchers based on a request and query.
      *
@@ -43,6 +48,18 @@ public abstract class BasePhysicalTableResolver implements PhysicalTableResolver
      */
     public abstract BinaryOperator<PhysicalTable> getBetterTableOperator(QueryPlanningConstraint requestConstraint);
 
+    /**
+     * Create a binary operator which returns the 'better' of two physical table, using the facts about the tables
+     * gathered in a context.
+     *
+     * @param context  The context of the request
+     *
+     * @return the operator, which ignores the context unless overridden
+     */
+    public BinaryOperator<PhysicalTable> getBetterTableOperator(TableResolutionContext context) {
+        return getBetterTableOperator(context.getRequestConstraint());
+    }
+
     /**
      * Filter to a set of tables matching the rules of this resolver.
      *
@@ -86,6 +103,33 @@ public abstract class BasePhysicalTableResolver implements PhysicalTableResolver
             Collection<PhysicalTable> candidateTables,
             QueryPlanningConstraint requestConstraint
     ) throws NoMatchFoundException {
+        return resolve(candidateTables, requestConstraint, () -> getBetterTableOperator(requestConstraint));
+    }
+
+    @Override
+    public PhysicalTable resolve(
+            Collection<PhysicalTable> candidateTables,
+            TableResolutionContext context
+    ) throws NoMatchFoundException {
+        return resolve(candidateTables, context.getRequestConstraint(), () -> getBetterTableOperator(context));
+    }
+
+    /**
+     * Choose the best fit Physical Table from a table group with an operator choosing the better of two tables.
+     *
+     * @param candidateTables  The tables being considered for match
+     * @param requestConstraint  Contains the request constraints extracted from DataApiRequest and TemplateDruidQuery
+     * @param betterTableOperator  Builds the operator returning the better of two matching tables
+     *
+     * @return The table, if any, that satisfies all criteria and best matches the query
+     *
+     * @throws NoMatchFoundException if there is no matching physical table in the table group
+     */
+    private PhysicalTable resolve(
+            Collection<PhysicalTable> candidateTables,
+            QueryPlanningConstraint requestConstraint,
+            Supplier<BinaryOperator<PhysicalTable>> betterTableOperator
+    ) throws NoMatchFoundException {
 
         // Minimum grain at which the request can be aggregated from
         LOG.trace(
@@ -95,9 +139,9 @@ public abstract class BasePhysicalTableResolver implements PhysicalTableResolver
                 candidateTables
         );
 
-        try {
+        try (TimedPhase timer = RequestLog.startTiming(RESOLVE_TIMER)) {
             PhysicalTable bestTable = filter(candidateTables, requestConstraint).stream()
-                    .reduce(getBetterTableOperator(requestConstraint))
+                    .reduce(betterTableOperator.get())
                     .get();
 
             REGISTRY.meter(
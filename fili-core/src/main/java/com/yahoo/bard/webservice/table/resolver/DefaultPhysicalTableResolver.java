@@ -57,15 +57,29 @@ public class DefaultPhysicalTableResolver extends BasePhysicalTableResolver {
         );
     }
 
+    @Override
+    public TableResolutionContext buildContext(QueryPlanningConstraint requestConstraint) {
+        // The query plan cache reads the missing intervals of tables even when a single table needs no comparing
+        return new TableResolutionContext(
+                requestConstraint,
+                partialDataHandler == null ? new PartialDataHandler() : partialDataHandler,
+                volatileIntervalsService
+        );
+    }
+
     @Override
     public BinaryOperator<PhysicalTable> getBetterTableOperator(QueryPlanningConstraint requestConstraint) {
+        return getBetterTableOperator(buildContext(requestConstraint));
+    }
+
+    @Override
+    public BinaryOperator<PhysicalTable> getBetterTableOperator(TableResolutionContext context) {
         List<Comparator<PhysicalTable>> comparators = new ArrayList<>();
 
         if (BardFeatureFlag.PARTIAL_DATA.isOn() || BardFeatureFlag.PARTIAL_DATA_QUERY_OPTIMIZATION.isOn()) {
-            comparators.add(
-                    new PartialTimeComparator(requestConstraint, partialDataHandler));
-            comparators.add(
-                    new VolatileTimeComparator(requestConstraint, partialDataHandler, volatileIntervalsService));
+            // Share the availability of each table between the comparisons of this request
+            comparators.add(new PartialTimeComparator(context));
+            comparators.add(new VolatileTimeComparator(context));
         }
         comparators.add(COMPARE_GRANULARITY);
         comparators.add(CARDINALITY_COMPARATOR);
@@ -4,19 +4,18 @@ package com.yahoo.bard.webservice.table.resolver;
 
 import com.yahoo.bard.webservice.data.PartialDataHandler;
 import com.yahoo.bard.webservice.table.PhysicalTable;
-import com.yahoo.bard.webservice.util.IntervalUtils;
-import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
 import java.util.Comparator;
 
 /**
  * Comparator to prefer less partial data duration within the query.
+ * <p>
+ * The missing duration of each table is computed once by the resolution context shared with the other comparators
+ * of the request.
  */
 public class PartialTimeComparator implements Comparator<PhysicalTable> {
 
-    private final PartialDataHandler partialDataHandler;
-    private final QueryPlanningConstraint requestConstraint;
-    private final SimplifiedIntervalList requestedIntervals;
+    private final TableResolutionContext context;
 
     /**
      * Constructor.
@@ -25,9 +24,16 @@ public class PartialTimeComparator implements Comparator<PhysicalTable> {
      * @param handler  Handler for Partial Data
      */
     public PartialTimeComparator(QueryPlanningConstraint requestConstraint, PartialDataHandler handler) {
-        this.requestConstraint = requestConstraint;
-        requestedIntervals = new SimplifiedIntervalList(requestConstraint.getIntervals());
-        this.partialDataHandler = handler;
+        this(new TableResolutionContext(requestConstraint, handler, null));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context  The resolution context of the request, caching the missing duration of each table
+     */
+    public PartialTimeComparator(TableResolutionContext context) {
+        this.context = context;
     }
 
     /**
@@ -41,22 +47,7 @@ public class PartialTimeComparator implements Comparator<PhysicalTable> {
     @Override
     public int compare(PhysicalTable left, PhysicalTable right) {
         // choose table with most data available for given columns
-
-        long missingDurationLeft = IntervalUtils.getTotalDuration(
-                partialDataHandler.findMissingTimeGrainIntervals(
-                        left.getAvailableIntervals(requestConstraint).intersect(requestedIntervals),
-                        new SimplifiedIntervalList(requestConstraint.getIntervals()),
-                        requestConstraint.getRequestGranularity()
-                )
-        );
-        long missingDurationRight = IntervalUtils.getTotalDuration(
-                partialDataHandler.findMissingTimeGrainIntervals(
-                        right.getAvailableIntervals(requestConstraint).intersect(requestedIntervals),
-                        new SimplifiedIntervalList(requestConstraint.getIntervals()),
-                        requestConstraint.getRequestGranularity()
-                )
-        );
-        long difference = missingDurationLeft - missingDurationRight;
+        long difference = context.getMissingDuration(left) - context.getMissingDuration(right);
         return (int) Math.max(Math.min(Integer.MAX_VALUE, difference), Integer.MIN_VALUE);
     }
 }
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.table.resolver;
 
+import com.yahoo.bard.webservice.data.PartialDataHandler;
 import com.yahoo.bard.webservice.table.PhysicalTable;
 
 import java.util.Collection;
@@ -27,4 +28,32 @@ public interface PhysicalTableResolver {
             Collection<PhysicalTable> candidateTables,
             QueryPlanningConstraint requestConstraint
     ) throws NoMatchFoundException;
+
+    /**
+     * Build the context sharing the facts about candidate tables between the steps resolving a request.
+     *
+     * @param requestConstraint  Contains the request constraints extracted from DataApiRequest and TemplateDruidQuery
+     *
+     * @return a context for the request, without volatile durations
+     */
+    default TableResolutionContext buildContext(QueryPlanningConstraint requestConstraint) {
+        return new TableResolutionContext(requestConstraint, new PartialDataHandler(), null);
+    }
+
+    /**
+     * Choose the best fit Physical Table from a table group, using the facts about the tables gathered in a context.
+     *
+     * @param candidateTables  The tables being considered for match
+     * @param context  The context of the request, built by {@link #buildContext(QueryPlanningConstraint)}
+     *
+     * @return The table, if any, that satisfies all criteria and best matches the query
+     *
+     * @throws NoMatchFoundException if there is no matching physical table in the table group
+     */
+    default PhysicalTable resolve(
+            Collection<PhysicalTable> candidateTables,
+            TableResolutionContext context
+    ) throws NoMatchFoundException {
+        return resolve(candidateTables, context.getRequestConstraint());
+    }
 }
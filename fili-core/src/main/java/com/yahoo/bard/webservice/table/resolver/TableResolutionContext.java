@@ -0,0 +1,157 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.table.resolver;
+
+import com.yahoo.bard.webservice.data.PartialDataHandler;
+import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.data.volatility.VolatileIntervalsService;
+import com.yahoo.bard.webservice.table.PhysicalTable;
+import com.yahoo.bard.webservice.util.IntervalUtils;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The facts about candidate tables which the comparators of a single request use, each computed once per table.
+ * <p>
+ * Reducing the candidate tables compares each table with several others, and the availability of a table under a
+ * constraint can be costly to build, for instance when it is a union over sub-tables. A context is created for the
+ * constraint of one request and shared by the comparators of that request, and by the query plan cache building the
+ * key of the request, so the constrained availability, missing intervals and volatile duration of a table are
+ * computed at most once however many comparisons it takes part in.
+ * <p>
+ * A context is not thread safe and should not outlive the resolution of its request, as availability changes over
+ * time.
+ */
+public class TableResolutionContext {
+
+    private final QueryPlanningConstraint requestConstraint;
+    private final PartialDataHandler partialDataHandler;
+    private final VolatileIntervalsService volatileIntervalsService;
+    private final SimplifiedIntervalList requestedIntervals;
+
+    private final Map<PhysicalTable, SimplifiedIntervalList> availableIntervals = new IdentityHashMap<>();
+    private final Map<PhysicalTable, SimplifiedIntervalList> missingIntervals = new IdentityHashMap<>();
+    private final Map<PhysicalTable, Long> missingDurations = new IdentityHashMap<>();
+    private final Map<PhysicalTable, Long> availableVolatileDurations = new IdentityHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param requestConstraint  Contains the request constraints extracted from DataApiRequest and TemplateDruidQuery
+     * @param partialDataHandler  A service for computing partial data information
+     * @param volatileIntervalsService  A service to extract the intervals in a query that are volatile with respect
+     * to a given table, or null if volatile durations are not needed
+     */
+    public TableResolutionContext(
+            QueryPlanningConstraint requestConstraint,
+            PartialDataHandler partialDataHandler,
+            VolatileIntervalsService volatileIntervalsService
+    ) {
+        this.requestConstraint = requestConstraint;
+        this.partialDataHandler = partialDataHandler;
+        this.volatileIntervalsService = volatileIntervalsService;
+        this.requestedIntervals = new SimplifiedIntervalList(requestConstraint.getIntervals());
+    }
+
+    public QueryPlanningConstraint getRequestConstraint() {
+        return requestConstraint;
+    }
+
+    public SimplifiedIntervalList getRequestedIntervals() {
+        return requestedIntervals;
+    }
+
+    /**
+     * Whether volatile durations can be computed in this context.
+     *
+     * @return true if the context has a volatile intervals service
+     */
+    public boolean hasVolatileIntervalsService() {
+        return volatileIntervalsService != null;
+    }
+
+    /**
+     * Get the intervals available in a table under the request constraint.
+     *
+     * @param table  The table of interest
+     *
+     * @return the constrained availability of the table
+     */
+    public SimplifiedIntervalList getAvailableIntervals(PhysicalTable table) {
+        return availableIntervals.computeIfAbsent(table, key -> key.getAvailableIntervals(requestConstraint));
+    }
+
+    /**
+     * Get the request grain buckets of the requested intervals with incomplete data in a table.
+     *
+     * @param table  The table of interest
+     *
+     * @return the missing intervals
+     */
+    public SimplifiedIntervalList getMissingIntervals(PhysicalTable table) {
+        return missingIntervals.computeIfAbsent(
+                table,
+                key -> partialDataHandler.findMissingTimeGrainIntervals(
+                        getAvailableIntervals(key).intersect(requestedIntervals),
+                        requestedIntervals,
+                        requestConstraint.getRequestGranularity()
+                )
+        );
+    }
+
+    /**
+     * Get the duration of the request grain buckets of the requested intervals with incomplete data in a table.
+     *
+     * @param table  The table of interest
+     *
+     * @return the missing duration in milliseconds
+     */
+    public long getMissingDuration(PhysicalTable table) {
+        return missingDurations.computeIfAbsent(
+                table,
+                key -> IntervalUtils.getTotalDuration(getMissingIntervals(key))
+        );
+    }
+
+    /**
+     * Get the duration of the data available in a table within the request grain buckets which are both volatile and
+     * partial.
+     *
+     * @param table  The table of interest
+     *
+     * @return the available volatile duration in milliseconds
+     *
+     * @see VolatileTimeComparator
+     */
+    public long getAvailableVolatileDuration(PhysicalTable table) {
+        return availableVolatileDurations.computeIfAbsent(table, this::computeAvailableVolatileDuration);
+    }
+
+    /**
+     * Compute the duration of the data available in a table within the request grain buckets which are both volatile
+     * and partial.
+     *
+     * @param table  The table of interest
+     *
+     * @return the available volatile duration in milliseconds
+     */
+    private long computeAvailableVolatileDuration(PhysicalTable table) {
+        if (volatileIntervalsService == null) {
+            throw new IllegalStateException("No volatile intervals service to compute volatile durations with");
+        }
+        Granularity apiRequestGranularity = requestConstraint.getRequestGranularity();
+        SimplifiedIntervalList tableAvailability = getAvailableIntervals(table);
+
+        // First, find the volatile intervals that are also partial at the request grain.
+        SimplifiedIntervalList volatilePartialRequestIntervals = partialDataHandler.findMissingTimeGrainIntervals(
+                tableAvailability,
+                volatileIntervalsService.getVolatileIntervals(apiRequestGranularity, requestedIntervals, table),
+                apiRequestGranularity
+        );
+
+        // Take the duration of their intersection with the available intervals.
+        return IntervalUtils.getTotalDuration(tableAvailability.intersect(volatilePartialRequestIntervals));
+    }
+}
@@ -3,11 +3,8 @@
 package com.yahoo.bard.webservice.table.resolver;
 
 import com.yahoo.bard.webservice.data.PartialDataHandler;
-import com.yahoo.bard.webservice.data.time.Granularity;
 import com.yahoo.bard.webservice.data.volatility.VolatileIntervalsService;
 import com.yahoo.bard.webservice.table.PhysicalTable;
-import com.yahoo.bard.webservice.util.IntervalUtils;
-import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
 import java.util.Comparator;
 
@@ -16,9 +13,7 @@ import java.util.Comparator;
  */
 public class VolatileTimeComparator implements Comparator<PhysicalTable> {
 
-    private final QueryPlanningConstraint requestConstraint;
-    private final PartialDataHandler partialDataHandler;
-    private final VolatileIntervalsService volatileIntervalsService;
+    private final TableResolutionContext context;
 
     /**
      * Builds a table comparator that compares tables based on how much data there is in their volatile intervals.
@@ -33,9 +28,17 @@ public class VolatileTimeComparator implements Comparator<PhysicalTable> {
             PartialDataHandler partialDataHandler,
             VolatileIntervalsService volatileIntervalsService
     ) {
-        this.requestConstraint = requestConstraint;
-        this.partialDataHandler = partialDataHandler;
-        this.volatileIntervalsService = volatileIntervalsService;
+        this(new TableResolutionContext(requestConstraint, partialDataHandler, volatileIntervalsService));
+    }
+
+    /**
+     * Builds a table comparator that compares tables based on how much data there is in their volatile intervals.
+     *
+     * @param context  The resolution context of the request, caching the volatile duration of each table. It must
+     * have a volatile intervals service.
+     */
+    public VolatileTimeComparator(TableResolutionContext context) {
+        this.context = context;
     }
 
     /**
@@ -79,18 +82,6 @@ public class VolatileTimeComparator implements Comparator<PhysicalTable> {
      * request granularity, and present at the table granularity
      */
     private long getAvailableVolatileDataDuration(PhysicalTable table) {
-        SimplifiedIntervalList requestIntervals = new SimplifiedIntervalList(requestConstraint.getIntervals());
-        Granularity apiRequestGranularity = requestConstraint.getRequestGranularity();
-        // First, find the volatile intervals that are also partial at the request grain.
-        SimplifiedIntervalList volatilePartialRequestIntervals = partialDataHandler.findMissingTimeGrainIntervals(
-                table.getAvailableIntervals(requestConstraint),
-                volatileIntervalsService.getVolatileIntervals(apiRequestGranularity, requestIntervals, table),
-                apiRequestGranularity
-        );
-        //Next find the intervals on the physical table that are available.
-        SimplifiedIntervalList tableAvailability = table.getAvailableIntervals(requestConstraint);
-
-        //Take the duration of their intersection.
-        return IntervalUtils.getTotalDuration(tableAvailability.intersect(volatilePartialRequestIntervals));
+        return context.getAvailableVolatileDuration(table);
     }
 }
@@ -0,0 +1,489 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.util;
+
+import org.joda.time.Chronology;
+import org.joda.time.Interval;
+import org.joda.time.ReadableInterval;
+import org.joda.time.chrono.ISOChronology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * An immutable set of instants, held as the sorted start and end milliseconds of the fewest intervals covering them.
+ * <p>
+ * The intervals are half open, disjoint, not empty and do not abut. Set operations merge the endpoint arrays of two
+ * sets in a single pass, so they are linear in the number of intervals of both sets and only allocate the arrays of
+ * the result. Containment is found by binary search, and the total duration is summed from the arrays, neither
+ * allocating any interval.
+ * <p>
+ * {@link SimplifiedIntervalList} holds the same intervals as a list of {@link Interval}, and converts to and from
+ * this set.
+ */
+public final class IntervalSet {
+
+    public static final IntervalSet EMPTY = new IntervalSet(new long[0], new long[0], 0);
+
+    private final long[] starts;
+    private final long[] ends;
+    private final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param starts  The start instants of the intervals, at least size long
+     * @param ends  The end instants of the intervals, at least size long
+     * @param size  The number of intervals
+     */
+    IntervalSet(@NotNull long[] starts, @NotNull long[] ends, int size) {
+        this.starts = starts;
+        this.ends = ends;
+        this.size = size;
+    }
+
+    /**
+     * Build the set of the instants in any of a collection of intervals, which may be unsorted, overlap or abut.
+     *
+     * @param intervals  The intervals
+     *
+     * @return the set of instants of the intervals
+     */
+    public static IntervalSet of(Collection<? extends ReadableInterval> intervals) {
+        if (intervals.isEmpty()) {
+            return EMPTY;
+        }
+        if (intervals instanceof SimplifiedIntervalList) {
+            return ofSimplified((SimplifiedIntervalList) intervals);
+        }
+
+        // Sort the intervals by start, packing each interval into the start and end of one array for the sort
+        long[][] sorted = new long[intervals.size()][];
+        int count = 0;
+        for (ReadableInterval interval : intervals) {
+            sorted[count++] = new long[] {interval.getStartMillis(), interval.getEndMillis()};
+        }
+        Arrays.sort(sorted, (left, right) -> Long.compare(left[0], right[0]));
+
+        Builder builder = new Builder(count);
+        for (long[] interval : sorted) {
+            builder.append(interval[0], interval[1]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Build a set from a simplified list of intervals, which is already sorted and merged.
+     *
+     * @param intervals  The simplified intervals
+     *
+     * @return the set of instants of the intervals
+     */
+    public static IntervalSet ofSimplified(SimplifiedIntervalList intervals) {
+        if (intervals.isEmpty()) {
+            return EMPTY;
+        }
+        long[] starts = new long[intervals.size()];
+        long[] ends = new long[intervals.size()];
+        int count = 0;
+        for (Interval interval : intervals) {
+            starts[count] = interval.getStartMillis();
+            ends[count++] = interval.getEndMillis();
+        }
+        return new IntervalSet(starts, ends, count);
+    }
+
+    /**
+     * Build the set of the instants of a single interval.
+     *
+     * @param startMillis  The start of the interval, inclusive
+     * @param endMillis  The end of the interval, exclusive
+     *
+     * @return the set of instants of the interval, empty if the interval is
+     */
+    public static IntervalSet of(long startMillis, long endMillis) {
+        if (endMillis <= startMillis) {
+            return EMPTY;
+        }
+        return new IntervalSet(new long[] {startMillis}, new long[] {endMillis}, 1);
+    }
+
+    /**
+     * The instants in this set, the other or both.
+     *
+     * @param that  The other set
+     *
+     * @return the union of the sets
+     */
+    public IntervalSet union(IntervalSet that) {
+        if (that.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return that;
+        }
+        Builder builder = new Builder(size + that.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < that.size) {
+            // Append the interval starting first, which merges it into the last interval if they overlap or abut
+            if (startsFirst(i, that, j)) {
+                builder.append(starts[i], ends[i]);
+                i++;
+            } else {
+                builder.append(that.starts[j], that.ends[j]);
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Whether the next interval to merge from this set starts before the next interval to merge from the other.
+     *
+     * @param i  The index of the next interval of this set, size if there are none left
+     * @param that  The other set
+     * @param j  The index of the next interval of the other set, its size if there are none left
+     *
+     * @return true if the interval of this set is merged next
+     */
+    private boolean startsFirst(int i, IntervalSet that, int j) {
+        return j == that.size || (i < size && starts[i] <= that.starts[j]);
+    }
+
+    /**
+     * The instants in both this set and the other.
+     *
+     * @param that  The other set
+     *
+     * @return the intersection of the sets
+     */
+    public IntervalSet intersect(IntervalSet that) {
+        if (size == 0 || that.size == 0) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(size + that.size - 1);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < that.size) {
+            builder.append(Math.max(starts[i], that.starts[j]), Math.min(ends[i], that.ends[j]));
+            // Advance past the interval ending first, as it cannot overlap any later interval of the other set
+            if (ends[i] < that.ends[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * The instants in this set which are not in the other.
+     *
+     * @param that  The other set
+     *
+     * @return the difference of the sets
+     */
+    public IntervalSet subtract(IntervalSet that) {
+        if (size == 0 || that.size == 0) {
+            return this;
+        }
+        Builder builder = new Builder(size + that.size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            // Skip the intervals of the other set which end before this interval
+            while (j < that.size && that.ends[j] <= starts[i]) {
+                j++;
+            }
+            int k = appendDifference(builder, starts[i], ends[i], that, j);
+            // The last overlapping interval of the other set may overlap the next interval too
+            j = Math.max(j, k - 1);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Append the parts of an interval which are not in the intervals of another set.
+     *
+     * @param builder  The builder the parts are appended to
+     * @param start  The start of the interval
+     * @param end  The end of the interval
+     * @param that  The other set
+     * @param from  The index of the first interval of the other set which ends after the start of the interval
+     *
+     * @return the index of the first interval of the other set starting at or after the end of the interval
+     */
+    private static int appendDifference(Builder builder, long start, long end, IntervalSet that, int from) {
+        // Cut out the intervals of the other set which overlap this interval
+        int k = from;
+        long partStart = start;
+        while (k < that.size && that.starts[k] < end) {
+            builder.append(partStart, that.starts[k]);
+            partStart = Math.max(partStart, that.ends[k]);
+            k++;
+        }
+        builder.append(partStart, end);
+        return k;
+    }
+
+    /**
+     * Whether an instant is in this set.
+     *
+     * @param instantMillis  The instant
+     *
+     * @return true if an interval of the set contains the instant
+     */
+    public boolean contains(long instantMillis) {
+        int index = indexOfLastStartAtOrBefore(instantMillis);
+        return index >= 0 && instantMillis < ends[index];
+    }
+
+    /**
+     * Whether all the instants of an interval are in this set.
+     *
+     * @param startMillis  The start of the interval, inclusive
+     * @param endMillis  The end of the interval, exclusive
+     *
+     * @return true if a single interval of the set contains the interval, or if the interval is empty and its instant
+     * is in the set
+     */
+    public boolean contains(long startMillis, long endMillis) {
+        int index = indexOfLastStartAtOrBefore(startMillis);
+        return index >= 0 && startMillis < ends[index] && endMillis <= ends[index];
+    }
+
+    /**
+     * Whether all the instants of an interval are in this set.
+     *
+     * @param interval  The interval
+     *
+     * @return true if a single interval of the set contains the interval
+     */
+    public boolean contains(ReadableInterval interval) {
+        return contains(interval.getStartMillis(), interval.getEndMillis());
+    }
+
+    /**
+     * Whether any instant of an interval is in this set.
+     *
+     * @param startMillis  The start of the interval, inclusive
+     * @param endMillis  The end of the interval, exclusive
+     *
+     * @return true if an interval of the set overlaps the interval
+     */
+    public boolean overlaps(long startMillis, long endMillis) {
+        if (endMillis <= startMillis) {
+            return false;
+        }
+        // The interval starting last before the end of the interval is the only one which can overlap it
+        int index = indexOfLastStartAtOrBefore(endMillis - 1);
+        return index >= 0 && ends[index] > startMillis;
+    }
+
+    /**
+     * The number of milliseconds in this set.
+     *
+     * @return the sum of the durations of the intervals
+     */
+    public long getTotalDurationMillis() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += ends[i] - starts[i];
+        }
+        return total;
+    }
+
+    /**
+     * The number of intervals in this set.
+     *
+     * @return the number of disjoint intervals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether this set has no instants.
+     *
+     * @return true if the set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The start of an interval of this set.
+     *
+     * @param index  The index of the interval, in time order
+     *
+     * @return the start instant of the interval, inclusive
+     */
+    public long getStartMillis(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * The end of an interval of this set.
+     *
+     * @param index  The index of the interval, in time order
+     *
+     * @return the end instant of the interval, exclusive
+     */
+    public long getEndMillis(int index) {
+        checkIndex(index);
+        return ends[index];
+    }
+
+    /**
+     * The intervals of this set.
+     *
+     * @param chronology  The chronology of the intervals
+     *
+     * @return the intervals in time order
+     */
+    public List<Interval> toIntervals(Chronology chronology) {
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<Interval> intervals = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            intervals.add(new Interval(starts[i], ends[i], chronology));
+        }
+        return intervals;
+    }
+
+    /**
+     * The intervals of this set as a simplified interval list.
+     *
+     * @return the simplified list of the intervals in the ISO chronology of the default time zone
+     */
+    public SimplifiedIntervalList toSimplifiedIntervalList() {
+        return toSimplifiedIntervalList(ISOChronology.getInstance());
+    }
+
+    /**
+     * The intervals of this set as a simplified interval list.
+     *
+     * @param chronology  The chronology of the intervals
+     *
+     * @return the simplified list of the intervals
+     */
+    public SimplifiedIntervalList toSimplifiedIntervalList(Chronology chronology) {
+        return SimplifiedIntervalList.ofSimplified(toIntervals(chronology));
+    }
+
+    /**
+     * Find the last interval starting at or before an instant.
+     *
+     * @param instantMillis  The instant
+     *
+     * @return the index of the interval, or -1 if all the intervals start after the instant
+     */
+    private int indexOfLastStartAtOrBefore(long instantMillis) {
+        int index = Arrays.binarySearch(starts, 0, size, instantMillis);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Check an interval index.
+     *
+     * @param index  The index of an interval
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Interval " + index + " of " + size);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntervalSet)) {
+            return false;
+        }
+        IntervalSet that = (IntervalSet) o;
+        if (size != that.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (starts[i] != that.starts[i] || ends[i] != that.ends[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + Long.hashCode(starts[i]);
+            hash = 31 * hash + Long.hashCode(ends[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toIntervals(ISOChronology.getInstanceUTC()).toString();
+    }
+
+    /**
+     * Accumulates intervals appended in order of their starts into the arrays of a set.
+     */
+    private static final class Builder {
+        private long[] starts;
+        private long[] ends;
+        private int size;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity  The most intervals expected
+         */
+        Builder(int capacity) {
+            this.starts = new long[Math.max(capacity, 1)];
+            this.ends = new long[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Append an interval starting at or after the start of the last interval, merging them if they overlap or
+         * abut. Empty intervals are ignored.
+         *
+         * @param start  The start of the interval
+         * @param end  The end of the interval
+         */
+        void append(long start, long end) {
+            if (end <= start) {
+                return;
+            }
+            if (size > 0 && start <= ends[size - 1]) {
+                ends[size - 1] = Math.max(ends[size - 1], end);
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size++] = end;
+        }
+
+        /**
+         * Build the set of the appended intervals.
+         *
+         * @return the set
+         */
+        IntervalSet build() {
+            return size == 0 ? EMPTY : new IntervalSet(starts, ends, size);
+        }
+    }
+}
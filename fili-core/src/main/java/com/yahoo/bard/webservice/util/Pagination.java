@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.util;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
 
 /**
@@ -58,6 +59,15 @@ public interface Pagination<T> extends Serializable {
      */
     OptionalInt getPreviousPage();
 
+    /**
+     * Gets an opaque cursor to the next page if the source of the data can use it to find that page faster.
+     *
+     * @return The cursor to the next page
+     */
+    default Optional<String> getNextPageCursor() {
+        return Optional.empty();
+    }
+
     /**
      * Get a list of results corresponding to the current page of data.
      *
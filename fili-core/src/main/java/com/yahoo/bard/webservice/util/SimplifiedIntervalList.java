@@ -5,11 +5,12 @@ package com.yahoo.bard.webservice.util;
 import com.fasterxml.jackson.annotation.JsonValue;
 
 import org.apache.commons.collections4.IteratorUtils;
+import org.joda.time.Chronology;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.joda.time.ReadablePeriod;
+import org.joda.time.chrono.ISOChronology;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -27,6 +28,9 @@ import javax.validation.constraints.NotNull;
 /**
  * A simplified interval list is a list of intervals, ordered by time, expressed in as few intervals as possible
  * (i.e. adjacent and overlapping intervals are combined into a single interval).
+ * <p>
+ * Set operations are computed on the {@link IntervalSet} of the list, which code doing many of them can use directly
+ * through {@link #asIntervalSet()}.
  */
 public class SimplifiedIntervalList extends LinkedList<Interval> {
 
@@ -70,6 +74,28 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
         super(intervals);
     }
 
+    /**
+     * Build a list from intervals which are already sorted, disjoint and do not abut, without simplifying them.
+     *
+     * @param intervals  Simplified intervals
+     *
+     * @return the list of the intervals
+     */
+    static SimplifiedIntervalList ofSimplified(Collection<Interval> intervals) {
+        SimplifiedIntervalList simplified = new SimplifiedIntervalList();
+        simplified.addAll(intervals);
+        return simplified;
+    }
+
+    /**
+     * The set of the instants of this list.
+     *
+     * @return the interval set holding the intervals of this list
+     */
+    public IntervalSet asIntervalSet() {
+        return IntervalSet.ofSimplified(this);
+    }
+
     /**
      * Takes one or more lists of intervals, and combines them into a single, sorted list with the minimum number of
      * intervals needed to capture exactly the same instants as the original intervals.
@@ -232,6 +258,8 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
         public static final BiPredicate<Interval, Interval> IS_SUBINTERVAL =
                 (test, supplyInterval) -> supplyInterval.contains(test);
 
+        private final IntervalSet supply;
+
         /**
          * Construct a subinterval predicate that closes over a supply of intervals.
          *
@@ -239,6 +267,20 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
          */
         public IsSubinterval(SimplifiedIntervalList supplyList) {
             super(supplyList, IS_SUBINTERVAL, false);
+            this.supply = supplyList.asIntervalSet();
+        }
+
+        /**
+         * Test whether an interval is contained by an interval of the supply, by binary search, so intervals may be
+         * tested in any order.
+         *
+         * @param testInterval  The interval to test
+         *
+         * @return true if an interval of the supply contains the test interval
+         */
+        @Override
+        public boolean test(Interval testInterval) {
+            return supply.contains(testInterval);
         }
     }
 
@@ -275,7 +317,7 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @return A new simplified list containing all subintervals of both this and that.
      */
     public SimplifiedIntervalList union(SimplifiedIntervalList that) {
-        return simplifyIntervals(this, that);
+        return asIntervalSet().union(that.asIntervalSet()).toSimplifiedIntervalList(getChronology(that));
     }
 
     /**
@@ -286,23 +328,7 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @return A new simplified interval list whose intervals are all subintervals of this and that.
      */
     public SimplifiedIntervalList intersect(SimplifiedIntervalList that) {
-        Iterator<Interval> theseIntervals = this.iterator();
-        Iterator<Interval> thoseIntervals = that.iterator();
-        Interval thisCurrent = getNextIfAvailable.apply(theseIntervals);
-        Interval thatCurrent = getNextIfAvailable.apply(thoseIntervals);
-        List<Interval> collected = new ArrayList<>();
-
-        while (thisCurrent != null && thatCurrent != null) {
-            if (thisCurrent.overlaps(thatCurrent)) {
-                collected.add(thisCurrent.overlap(thatCurrent));
-            }
-            if (thisCurrent.isBefore(thatCurrent.getEnd())) {
-                thisCurrent = getNextIfAvailable.apply(theseIntervals);
-            } else {
-                thatCurrent = getNextIfAvailable.apply(thoseIntervals);
-            }
-        }
-        return new SimplifiedIntervalList(collected);
+        return asIntervalSet().intersect(that.asIntervalSet()).toSimplifiedIntervalList(getChronology(that));
     }
 
     /**
@@ -313,46 +339,22 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @return A new simplified interval list whose intervals are all subintervals of this and not that
      */
     public SimplifiedIntervalList subtract(SimplifiedIntervalList that) {
-        Iterator<Interval> theseIntervals = this.iterator();
-        Interval thisCurrent = getNextIfAvailable.apply(theseIntervals);
-
-        if (thisCurrent == null) {
-            return new SimplifiedIntervalList();
-        }
+        return asIntervalSet().subtract(that.asIntervalSet()).toSimplifiedIntervalList(getChronology(that));
+    }
 
-        Iterator<Interval> thoseIntervals = that.iterator();
-
-        Interval thatCurrent = getNextIfAvailable.apply(thoseIntervals);
-        List<Interval> collected = new ArrayList<>();
-
-        while (thisCurrent != null && thatCurrent != null) {
-            if (thisCurrent.isBefore(thatCurrent)) {
-                // Non overlapping intervals are simply collected
-                collected.add(thisCurrent);
-            } else if (thisCurrent.overlaps(thatCurrent)) {
-                // Take any part of the source interval that lies before an overlap
-                if (thisCurrent.getStart().isBefore(thatCurrent.getStart())) {
-                    collected.add(new Interval(thisCurrent.getStart(), thatCurrent.getStart()));
-                }
-                // Truncate out any overlap from the source interval and continue
-                if (!thisCurrent.getEnd().isBefore(thatCurrent.getEnd())) {
-                    thisCurrent = new Interval(thatCurrent.getEnd(), thisCurrent.getEnd());
-                }
-            }
-            // Advance to the next interval to consider
-            if (thisCurrent.isBefore(thatCurrent.getEnd())) {
-                thisCurrent = getNextIfAvailable.apply(theseIntervals);
-            } else {
-                thatCurrent = getNextIfAvailable.apply(thoseIntervals);
-            }
-        }
-        if (thatCurrent == null) {
-            collected.add(thisCurrent);
-            while (theseIntervals.hasNext()) {
-                collected.add(theseIntervals.next());
-            }
+    /**
+     * The chronology of the intervals resulting from a set operation with another list, which is the chronology of
+     * the intervals of this list if it has any.
+     *
+     * @param that  The other list of the operation
+     *
+     * @return the chronology of the first interval of this list, or else of that list, or else ISO in the default zone
+     */
+    private Chronology getChronology(SimplifiedIntervalList that) {
+        if (!isEmpty()) {
+            return getFirst().getChronology();
         }
-        return new SimplifiedIntervalList(collected);
+        return that.isEmpty() ? ISOChronology.getInstance() : that.getFirst().getChronology();
     }
 
     /**
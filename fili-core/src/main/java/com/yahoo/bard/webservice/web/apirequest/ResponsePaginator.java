@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.web.apirequest;
 
 import com.yahoo.bard.webservice.util.Pagination;
 import com.yahoo.bard.webservice.web.util.PaginationLink;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import java.util.Arrays;
 import java.util.stream.Stream;
@@ -34,7 +35,12 @@ public class ResponsePaginator {
             UriInfo uriInfo,
             Pagination<?> pages
     ) {
-        link.getPage(pages).ifPresent(page -> addPageLink(responseBuilder, link, uriInfo, page));
+        link.getPage(pages).ifPresent(page -> addPageLink(
+                responseBuilder,
+                link,
+                link.replaceCursor(uriInfo.getRequestUriBuilder(), pages),
+                page
+        ));
     }
 
     /**
@@ -51,7 +57,26 @@ public class ResponsePaginator {
             UriInfo uriInfo,
             int pageNumber
     ) {
-        UriBuilder uriBuilder = uriInfo.getRequestUriBuilder().replaceQueryParam("page", pageNumber);
+        // The cursor of the current page does not lead to the linked page
+        UriBuilder requestUriBuilder = uriInfo.getRequestUriBuilder().replaceQueryParam(PaginationParameters.CURSOR);
+        addPageLink(responseBuilder, link, requestUriBuilder, pageNumber);
+    }
+
+    /**
+     * Add page links to the header of the response builder.
+     *
+     * @param responseBuilder The builder for the http response
+     * @param link  The type of the link to add.
+     * @param requestUriBuilder  The builder of the requested uri, with the cursor of the linked page if it has one
+     * @param pageNumber  Number of the page to add the link for.
+     */
+    private static void addPageLink(
+            Response.ResponseBuilder responseBuilder,
+            PaginationLink link,
+            UriBuilder requestUriBuilder,
+            int pageNumber
+    ) {
+        UriBuilder uriBuilder = requestUriBuilder.replaceQueryParam("page", pageNumber);
         responseBuilder.header(HttpHeaders.LINK, Link.fromUriBuilder(uriBuilder).rel(link.getHeaderName()).build());
     }
 
@@ -10,9 +10,9 @@ import com.yahoo.bard.webservice.application.ObjectMappersSuite;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
-import com.yahoo.bard.webservice.data.dimension.DimensionField;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.dimension.DimensionUpdateDate;
+import com.yahoo.bard.webservice.data.dimension.impl.DimensionRowStreamLoader;
 import com.yahoo.bard.webservice.web.PATCH;
 
 import com.codahale.metrics.annotation.Timed;
@@ -25,8 +25,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -36,11 +38,13 @@ import javax.inject.Singleton;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
@@ -55,6 +59,7 @@ public class DimensionCacheLoaderServlet {
     private final DimensionDictionary dimensionDictionary;
     private final ObjectMapper mapper;
     private final DataCache<?> dataCache;
+    private final DimensionRowStreamLoader streamLoader;
 
     /**
      * Constructor.
@@ -72,6 +77,7 @@ public class DimensionCacheLoaderServlet {
         this.mapper = objectMappers.getMapper();
         this.dimensionDictionary = dimensionDictionary;
         this.dataCache = dataCache;
+        this.streamLoader = new DimensionRowStreamLoader(mapper);
     }
 
     /**
@@ -290,25 +296,10 @@ public class DimensionCacheLoaderServlet {
                     new TypeReference<Map<String, LinkedHashSet<LinkedHashMap<String, String>>>>() { /* Empty class */ }
             );
 
-            DimensionField key = dimension.getKey();
-            Set<DimensionRow> dimensionRows = new LinkedHashSet<>();
-            for (Map<String, String> fieldnameValueMap: rawDimensionRows.get("dimensionRows")) {
-                DimensionRow newRow = dimension.parseDimensionRow(fieldnameValueMap);
-                DimensionRow oldRow = dimension.findDimensionRowByKeyValue(newRow.get(key));
-                if (oldRow == null) {
-                    // It didn't exist before, so add it directly
-                    dimensionRows.add(newRow);
-                } else {
-                    // The row existed before, so do an update on the existing row's data
-                    for (DimensionField field : dimension.getDimensionFields()) {
-                        // only overwrite if the field was in the original JSON
-                        if (fieldnameValueMap.containsKey(field.getName())) {
-                            oldRow.put(field, newRow.get(field));
-                        }
-                        dimensionRows.add(oldRow);
-                    }
-                }
-            }
+            Set<DimensionRow> dimensionRows = DimensionRowStreamLoader.mergeDimensionRows(
+                    dimension,
+                    rawDimensionRows.get("dimensionRows")
+            );
             dimension.addAllDimensionRows(dimensionRows);
 
             LOG.debug("Successfully added/updated {} row(s) for dimension: {}", dimensionRows.size(), dimensionName);
@@ -320,6 +311,118 @@ public class DimensionCacheLoaderServlet {
         }
     }
 
+    /**
+     * Endpoint to stream dimension rows as newline delimited JSON, one row object per line.
+     * <p>
+     * Rows are read and applied to the dimension in batches, so the payload is never held in memory as a whole.
+     * <pre><code>
+     * { "id":"usa", "description":"United_States_of_America" }
+     * { "id":"can", "description":"Canada" }
+     * </code></pre>
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified. (path parameter)
+     * @param mode  {@code add} to add/replace rows (the default), {@code update} to add/update rows like PATCH, or
+     * {@code replace} to also remove the rows which are not in the stream once it has been loaded
+     * @param rows  the stream of rows
+     *
+     * @return OK(200) with a summary of the load if successful, else Bad Request(400)
+     */
+    @POST
+    @Timed
+    @Path("/dimensions/{dimensionName}/dimensionRows/stream")
+    @Consumes("application/x-ndjson")
+    public Response streamJsonDimensionRows(
+            @PathParam("dimensionName") String dimensionName,
+            @QueryParam("mode") @DefaultValue("add") String mode,
+            InputStream rows
+    ) {
+        return streamDimensionRows(dimensionName, mode, rows, DimensionRowStreamLoader.Format.NDJSON);
+    }
+
+    /**
+     * Endpoint to stream dimension rows as CSV, with a header line naming the dimension fields.
+     * <p>
+     * Rows are read and applied to the dimension in batches, so the payload is never held in memory as a whole.
+     * <pre><code>
+     * id,description
+     * usa,United_States_of_America
+     * can,Canada
+     * </code></pre>
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified. (path parameter)
+     * @param mode  {@code add} to add/replace rows (the default), {@code update} to add/update rows like PATCH, or
+     * {@code replace} to also remove the rows which are not in the stream once it has been loaded
+     * @param rows  the stream of rows
+     *
+     * @return OK(200) with a summary of the load if successful, else Bad Request(400)
+     */
+    @POST
+    @Timed
+    @Path("/dimensions/{dimensionName}/dimensionRows/stream")
+    @Consumes("text/csv")
+    public Response streamCsvDimensionRows(
+            @PathParam("dimensionName") String dimensionName,
+            @QueryParam("mode") @DefaultValue("add") String mode,
+            InputStream rows
+    ) {
+        return streamDimensionRows(dimensionName, mode, rows, DimensionRowStreamLoader.Format.CSV);
+    }
+
+    /**
+     * Load a stream of dimension rows into a dimension.
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified
+     * @param mode  name of the way the rows are applied to the existing rows
+     * @param rows  the stream of rows
+     * @param format  the format of the stream
+     *
+     * @return OK(200) with a summary of the load if successful, else an error response
+     */
+    private Response streamDimensionRows(
+            String dimensionName,
+            String mode,
+            InputStream rows,
+            DimensionRowStreamLoader.Format format
+    ) {
+        Dimension dimension = dimensionDictionary.findByApiName(dimensionName);
+        if (dimension == null) {
+            String message = String.format("Dimension %s cannot be found.", dimensionName);
+            LOG.debug(message);
+            return Response.status(NOT_FOUND).entity(message).build();
+        }
+
+        DimensionRowStreamLoader.Mode loadMode;
+        try {
+            loadMode = DimensionRowStreamLoader.Mode.valueOf(mode.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            String message = String.format("Unknown dimension row load mode %s", mode);
+            LOG.debug(message);
+            return Response.status(BAD_REQUEST).entity(message).build();
+        }
+
+        try {
+            DimensionRowStreamLoader.LoadSummary summary = streamLoader.load(dimension, rows, format, loadMode);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("name", dimensionName);
+            result.put("mode", loadMode.name().toLowerCase(Locale.ENGLISH));
+            result.put("rows", summary.getRows());
+            result.put("batches", summary.getBatches());
+            result.put("removedRows", summary.getRemovedRows());
+            result.put("durationMillis", summary.getElapsedMillis());
+            result.put("rowsPerSecond", summary.getRowsPerSecond());
+            return Response.status(Status.OK).entity(mapper.writeValueAsString(result)).build();
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            String message = String.format("Failed to load dimension rows: %s", e.getMessage());
+            LOG.debug(message, e);
+            return Response.status(BAD_REQUEST).entity(message).build();
+        } catch (IOException e) {
+            String message = "Failed to load dimension rows";
+            LOG.error(message, e);
+            return Response.status(INTERNAL_SERVER_ERROR).entity(message).build();
+        }
+    }
+
     /**
      * Endpoint to update cache status.
      *
@@ -94,6 +94,7 @@ public class DimensionSearchServlet extends EndpointServlet {
      * @param searchQuery The query to search the dimensions with
      * @param perPage  The number of rows per page
      * @param page  The page number
+     * @param cursor  The cursor to the page linked by the previous page, if any
      * @param format  The format of the response
      * @param downloadFilename If present, indicates the response should be downloaded by the client with the provided
      * filename. Otherwise indicates the response should be rendered in the browser.
@@ -108,6 +109,7 @@ public class DimensionSearchServlet extends EndpointServlet {
             @PathParam("dimensionName") String dimensionName,
             @DefaultValue("") @NotNull @QueryParam("perPage") String perPage,
             @DefaultValue("") @NotNull @QueryParam("page") String page,
+            @QueryParam(PaginationParameters.CURSOR) String cursor,
             @QueryParam("format") String format,
             @QueryParam("filename") String downloadFilename,
             @QueryParam("query") String searchQuery,
@@ -135,7 +137,8 @@ public class DimensionSearchServlet extends EndpointServlet {
 
             PaginationParameters paginationParameters = apiRequest
                     .getPaginationParameters()
-                    .orElse(ApiRequestImpl.DEFAULT_PAGINATION);
+                    .orElse(ApiRequestImpl.DEFAULT_PAGINATION)
+                    .withCursor(cursor);
 
             Pagination<DimensionRow> pagedRows;
 
@@ -265,6 +265,7 @@ public class DimensionsServlet extends EndpointServlet {
      * @param dimensionName  The dimension
      * @param filterQuery  The filters
      * @param page  The page number
+     * @param cursor  The cursor to the page linked by the previous page, if any
      * @param perPage  The number of rows per page
      * @param format  The format of the response
      * @param downloadFilename If present, indicates the response should be downloaded by the client with the provided
@@ -299,6 +300,7 @@ public class DimensionsServlet extends EndpointServlet {
             @QueryParam("filters") String filterQuery,
             @DefaultValue("") @NotNull @QueryParam("perPage") String perPage,
             @DefaultValue("") @NotNull @QueryParam("page") String page,
+            @QueryParam(PaginationParameters.CURSOR) String cursor,
             @QueryParam("format") String format,
             @QueryParam("filename") String downloadFilename,
             @Context final UriInfo uriInfo,
@@ -327,7 +329,8 @@ public class DimensionsServlet extends EndpointServlet {
             SearchProvider searchProvider = apiRequest.getDimension().getSearchProvider();
             PaginationParameters paginationParameters = apiRequest
                     .getPaginationParameters()
-                    .orElse(ApiRequestImpl.DEFAULT_PAGINATION);
+                    .orElse(ApiRequestImpl.DEFAULT_PAGINATION)
+                    .withCursor(cursor);
 
             Pagination<DimensionRow> pagedRows = getPagedRows(apiRequest, searchProvider, paginationParameters);
             Response.ResponseBuilder builder = Response.status(Response.Status.OK);
@@ -6,20 +6,21 @@ import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQU
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodecProvider;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
-import com.yahoo.bard.webservice.util.Utils;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.CachingResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.util.QueryFingerprinter;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.slf4j.Logger;
@@ -45,6 +46,8 @@ public class CacheRequestHandler extends BaseDataRequestHandler {
 
     protected final @NotNull DataRequestHandler next;
     protected final @NotNull DataCache<String> dataCache;
+    protected final @NotNull CacheValueCodec codec;
+    protected final @NotNull QueryFingerprinter fingerprinter;
 
     /**
      * Build a Cache request handler.
@@ -53,15 +56,34 @@ public class CacheRequestHandler extends BaseDataRequestHandler {
      * @param dataCache  The cache instance
      * @param mapper  The mapper for all JSON processing
      */
-    @SuppressWarnings("unchecked")
     public CacheRequestHandler(
             DataRequestHandler next,
             @NotNull DataCache<?> dataCache,
             ObjectMapper mapper
+    ) {
+        this(next, dataCache, mapper, new QueryFingerprinter(mapper));
+    }
+
+    /**
+     * Build a Cache request handler.
+     *
+     * @param next  The next handler in the chain
+     * @param dataCache  The cache instance
+     * @param mapper  The mapper for all JSON processing
+     * @param fingerprinter  The fingerprinter of the queries, shared with the other handlers of the workflow
+     */
+    @SuppressWarnings("unchecked")
+    public CacheRequestHandler(
+            DataRequestHandler next,
+            @NotNull DataCache<?> dataCache,
+            ObjectMapper mapper,
+            @NotNull QueryFingerprinter fingerprinter
     ) {
         super(mapper);
         this.next = next;
         this.dataCache = (DataCache<String>) dataCache;
+        this.codec = CacheValueCodecProvider.getInstance();
+        this.fingerprinter = fingerprinter;
     }
 
     @Override
@@ -94,7 +116,7 @@ public class CacheRequestHandler extends BaseDataRequestHandler {
                         BardQueryInfo.getBardQueryInfo().incrementCountCacheHits();
                         RequestLog logCtx = RequestLog.dump();
                         nextResponse.processResponse(
-                                mapper.readTree(jsonResult),
+                                codec.decode(jsonResult, mapper),
                                 druidQuery,
                                 new LoggingContext(logCtx)
                         );
@@ -131,8 +153,6 @@ public class CacheRequestHandler extends BaseDataRequestHandler {
      * @throws JsonProcessingException if the druid query cannot be mapped to Json
      */
     protected String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
-        JsonNode root = mapper.valueToTree(druidQuery);
-        Utils.canonicalize(root,  mapper, false);
-        return writer.writeValueAsString(root);
+        return fingerprinter.getFingerprint(druidQuery).getCanonicalQuery();
     }
 }
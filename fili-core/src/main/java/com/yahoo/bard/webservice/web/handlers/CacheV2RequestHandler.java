@@ -2,20 +2,22 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodecProvider;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.metadata.QuerySigningService;
-import com.yahoo.bard.webservice.util.Utils;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.util.QueryFingerprint;
+import com.yahoo.bard.webservice.web.util.QueryFingerprinter;
 import com.yahoo.bard.webservice.web.util.QuerySignedCacheService;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.slf4j.Logger;
@@ -37,9 +39,14 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
     protected final @NotNull TupleDataCache<String, Long, String> dataCache;
     protected final @NotNull QuerySigningService<Long> querySigningService;
     protected final @NotNull QuerySignedCacheService querySignedCacheService;
+    protected final @NotNull CacheValueCodec codec;
+    protected final @NotNull QueryFingerprinter fingerprinter;
 
     /**
      * Build a Cache request handler.
+     * <p>
+     * Queries are fingerprinted by the fingerprinter of the cache service, so the service reads and writes the cache
+     * without serializing them again.
      *
      * @param next  The next handler in the chain
      * @param dataCache  The cache instance
@@ -60,6 +67,8 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
         this.dataCache = (TupleDataCache<String, Long, String>) dataCache;
         this.querySigningService = (QuerySigningService<Long>) querySigningService;
         this.querySignedCacheService = querySignedCacheService;
+        this.codec = CacheValueCodecProvider.getInstance();
+        this.fingerprinter = querySignedCacheService.getFingerprinter();
     }
 
     @Override
@@ -72,9 +81,11 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
         ResponseProcessor nextResponse = response;
 
         String cacheKey;
+        QueryFingerprint fingerprint;
 
         try {
             cacheKey = getKey(druidQuery);
+            fingerprint = fingerprinter.getFingerprint(druidQuery);
         } catch (JsonProcessingException e) {
             LOG.warn("Cache key cannot be built: ", e);
             return next.handleRequest(context, request, druidQuery, response);
@@ -86,7 +97,7 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                 if (cacheResponse != null) {
                     RequestLog logCtx = RequestLog.dump();
                     nextResponse.processResponse(
-                            mapper.readTree(cacheResponse),
+                            codec.decode(cacheResponse, mapper),
                             druidQuery,
                             new LoggingContext(logCtx)
                     );
@@ -100,7 +111,10 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
         }
 
         // Cached value either doesn't exist or is invalid
-        nextResponse = new CacheV2ResponseProcessor(response, cacheKey, dataCache, querySigningService, mapper);
+        // Reuse the checksum of the fingerprint unless a subclass keys the cache differently
+        nextResponse = cacheKey.equals(fingerprint.getCanonicalQuery()) ?
+                new CacheV2ResponseProcessor(response, fingerprint, dataCache, querySigningService, mapper) :
+                new CacheV2ResponseProcessor(response, cacheKey, dataCache, querySigningService, mapper);
 
         return next.handleRequest(context, request, druidQuery, nextResponse);
     }
@@ -115,8 +129,6 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
      * @throws JsonProcessingException if the druid query cannot be serialized to JSON
      */
     protected String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
-        JsonNode root = mapper.valueToTree(druidQuery);
-        Utils.canonicalize(root , mapper, false);
-        return writer.writeValueAsString(root);
+        return fingerprinter.getFingerprint(druidQuery).getCanonicalQuery();
     }
 }
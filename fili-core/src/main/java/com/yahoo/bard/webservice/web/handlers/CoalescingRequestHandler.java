@@ -0,0 +1,344 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQUEST_WORKFLOW_TIMER;
+import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.metadata.QuerySigningService;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.util.QueryFingerprinter;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Request handler which sends identical Druid queries that are in flight at the same time to Druid only once.
+ * <p>
+ * Queries are identified by their canonical form together with the segment set id of the data they cover. The first
+ * request for a query (the leader) is sent on to the next handler. Requests for the same query arriving before the
+ * leader's response attach to it as followers, up to a configured number, and are not sent to Druid. The leader's
+ * response, HTTP error or failure is then delivered to every follower's response processor, each under its own
+ * request log. Followers receive a copy of the response, since response processors may modify the JSON they get.
+ */
+public class CoalescingRequestHandler extends BaseDataRequestHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingRequestHandler.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Meter COALESCING_LEADERS = REGISTRY.meter("queries.meter.coalescing.leaders");
+    public static final Meter COALESCING_FOLLOWERS = REGISTRY.meter("queries.meter.coalescing.followers");
+    public static final Meter COALESCING_OVERFLOWS = REGISTRY.meter("queries.meter.coalescing.overflows");
+
+    protected final @NotNull DataRequestHandler next;
+    protected final @NotNull QuerySigningService<?> querySigningService;
+    protected final int maxFollowers;
+    protected final @NotNull QueryFingerprinter fingerprinter;
+
+    private final ConcurrentMap<String, InFlightQuery> inFlightQueries = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param next  The next handler in the chain
+     * @param querySigningService  Service providing the segment set id of a query
+     * @param maxFollowers  The maximum number of requests which may wait on a single in flight query
+     * @param mapper  The mapper for all JSON processing
+     */
+    public CoalescingRequestHandler(
+            @NotNull DataRequestHandler next,
+            @NotNull QuerySigningService<?> querySigningService,
+            int maxFollowers,
+            @NotNull ObjectMapper mapper
+    ) {
+        this(next, querySigningService, maxFollowers, mapper, new QueryFingerprinter(mapper));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next  The next handler in the chain
+     * @param querySigningService  Service providing the segment set id of a query
+     * @param maxFollowers  The maximum number of requests which may wait on a single in flight query
+     * @param mapper  The mapper for all JSON processing
+     * @param fingerprinter  The fingerprinter of the queries, shared with the other handlers of the workflow
+     */
+    public CoalescingRequestHandler(
+            @NotNull DataRequestHandler next,
+            @NotNull QuerySigningService<?> querySigningService,
+            int maxFollowers,
+            @NotNull ObjectMapper mapper,
+            @NotNull QueryFingerprinter fingerprinter
+    ) {
+        super(mapper);
+        this.next = next;
+        this.querySigningService = querySigningService;
+        this.maxFollowers = maxFollowers;
+        this.fingerprinter = fingerprinter;
+    }
+
+    @Override
+    public boolean handleRequest(
+            RequestContext context,
+            DataApiRequest request,
+            DruidAggregationQuery<?> druidQuery,
+            ResponseProcessor response
+    ) {
+        String key;
+        try {
+            key = getKey(druidQuery);
+        } catch (JsonProcessingException e) {
+            LOG.warn("Coalescing key cannot be built: ", e);
+            return next.handleRequest(context, request, druidQuery, response);
+        }
+
+        InFlightQuery inFlight = new InFlightQuery(key);
+        InFlightQuery leader = inFlightQueries.putIfAbsent(key, inFlight);
+        if (leader != null) {
+            if (leader.attach(context, druidQuery, response)) {
+                COALESCING_FOLLOWERS.mark();
+                return true;
+            }
+            // The leader is complete or has all the followers it may take, so this request runs on its own
+            return next.handleRequest(context, request, druidQuery, response);
+        }
+
+        COALESCING_LEADERS.mark();
+        try {
+            return next.handleRequest(context, request, druidQuery, new LeaderResponseProcessor(inFlight, response));
+        } catch (RuntimeException e) {
+            inFlight.complete().forEach(follower -> follower.deliver(
+                    processor -> processor.getFailureCallback(follower.druidQuery).invoke(e)
+            ));
+            throw e;
+        }
+    }
+
+    /**
+     * Build the key identifying identical queries: the canonical query and the segment set id it is answered from.
+     *
+     * @param druidQuery  The query to identify
+     *
+     * @return the coalescing key of the query
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    protected String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
+        return querySigningService.getSegmentSetId(druidQuery).map(String::valueOf).orElse("") + ":" +
+                fingerprinter.getFingerprint(druidQuery).getCanonicalQuery();
+    }
+
+    /**
+     * The number of distinct queries currently in flight through this handler.
+     *
+     * @return the number of in flight queries
+     */
+    public int getInFlightCount() {
+        return inFlightQueries.size();
+    }
+
+    /**
+     * A query sent to Druid, and the requests waiting on its response.
+     */
+    private class InFlightQuery {
+        private final String key;
+        private final List<Follower> followers = new ArrayList<>();
+        private boolean completed = false;
+
+        /**
+         * Constructor.
+         *
+         * @param key  The coalescing key of the query
+         */
+        InFlightQuery(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Attach a request to this query, unless the query has completed or is at its follower limit.
+         * <p>
+         * An attached request is finished on the request side as a cache hit would be: its outgoing query count is
+         * decremented and its request log is set aside until the response arrives.
+         *
+         * @param context  The context of the attaching request
+         * @param druidQuery  The query of the attaching request
+         * @param response  The response processor of the attaching request
+         *
+         * @return true if the request was attached
+         */
+        synchronized boolean attach(
+                RequestContext context,
+                DruidAggregationQuery<?> druidQuery,
+                ResponseProcessor response
+        ) {
+            if (completed) {
+                return false;
+            }
+            if (followers.size() >= maxFollowers) {
+                COALESCING_OVERFLOWS.mark();
+                return false;
+            }
+            if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
+                RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
+            }
+            followers.add(new Follower(context, druidQuery, response, RequestLog.dump()));
+            return true;
+        }
+
+        /**
+         * Mark the query complete, so no further requests attach to it, and stop tracking it as in flight.
+         *
+         * @return the requests waiting on the query
+         */
+        List<Follower> complete() {
+            List<Follower> waiting;
+            synchronized (this) {
+                if (completed) {
+                    return Collections.emptyList();
+                }
+                completed = true;
+                waiting = new ArrayList<>(followers);
+            }
+            inFlightQueries.remove(key, this);
+            return waiting;
+        }
+    }
+
+    /**
+     * A request waiting on the response to an identical in flight query.
+     */
+    private static class Follower {
+        private final RequestContext context;
+        private final DruidAggregationQuery<?> druidQuery;
+        private final ResponseProcessor response;
+        private final RequestLog logCtx;
+
+        /**
+         * Constructor.
+         *
+         * @param context  The context of the waiting request
+         * @param druidQuery  The query of the waiting request
+         * @param response  The response processor of the waiting request
+         * @param logCtx  The request log of the waiting request
+         */
+        Follower(
+                RequestContext context,
+                DruidAggregationQuery<?> druidQuery,
+                ResponseProcessor response,
+                RequestLog logCtx
+        ) {
+            this.context = context;
+            this.druidQuery = druidQuery;
+            this.response = response;
+            this.logCtx = logCtx;
+        }
+
+        /**
+         * Hand the outcome of the leader's query to this request, under this request's log.
+         * <p>
+         * The request log of the current (leader) thread is set aside while delivering and restored afterwards.
+         *
+         * @param delivery  The action delivering the outcome to the response processor
+         */
+        void deliver(Consumer<ResponseProcessor> delivery) {
+            RequestLog leaderLog = RequestLog.dump();
+            try {
+                RequestLog.restore(logCtx);
+                if (context.getNumberOfIncoming().decrementAndGet() == 0) {
+                    RequestLog.startTiming(RESPONSE_WORKFLOW_TIMER);
+                }
+                delivery.accept(response);
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to deliver coalesced response: ", e);
+            } finally {
+                RequestLog.dump();
+                RequestLog.restore(leaderLog);
+            }
+        }
+    }
+
+    /**
+     * Response processor of a leader query, delivering its outcome to the followers and then to the leader.
+     * <p>
+     * The followers are served first, so an exception or a slow response chain in the leader's processing never
+     * leaves them waiting. Delivery to a follower never throws.
+     */
+    private class LeaderResponseProcessor implements ResponseProcessor {
+        private final InFlightQuery inFlight;
+        private final ResponseProcessor next;
+
+        /**
+         * Constructor.
+         *
+         * @param inFlight  The in flight query of the leader
+         * @param next  The response processor of the leader request
+         */
+        LeaderResponseProcessor(InFlightQuery inFlight, ResponseProcessor next) {
+            this.inFlight = inFlight;
+            this.next = next;
+        }
+
+        @Override
+        public ResponseContext getResponseContext() {
+            return next.getResponseContext();
+        }
+
+        @Override
+        public FailureCallback getFailureCallback(DruidAggregationQuery<?> druidQuery) {
+            FailureCallback leaderFailure = next.getFailureCallback(druidQuery);
+            return error -> {
+                inFlight.complete().forEach(follower -> follower.deliver(
+                        processor -> processor.getFailureCallback(follower.druidQuery).invoke(error)
+                ));
+                leaderFailure.invoke(error);
+            };
+        }
+
+        @Override
+        public HttpErrorCallback getErrorCallback(DruidAggregationQuery<?> druidQuery) {
+            HttpErrorCallback leaderError = next.getErrorCallback(druidQuery);
+            return (statusCode, reasonPhrase, responseBody) -> {
+                inFlight.complete().forEach(follower -> follower.deliver(
+                        processor -> processor.getErrorCallback(follower.druidQuery)
+                                .invoke(statusCode, reasonPhrase, responseBody)
+                ));
+                leaderError.invoke(statusCode, reasonPhrase, responseBody);
+            };
+        }
+
+        @Override
+        public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+            // Followers get their own copy, since their processors may modify the response they are given
+            for (Follower follower : inFlight.complete()) {
+                follower.deliver(processor -> processor.processResponse(
+                        json.deepCopy(),
+                        follower.druidQuery,
+                        new LoggingContext(RequestLog.copy())
+                ));
+            }
+            next.processResponse(json, druidQuery, metadata);
+        }
+    }
+}
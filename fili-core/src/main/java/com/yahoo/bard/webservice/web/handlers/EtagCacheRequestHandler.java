@@ -10,17 +10,15 @@ import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
-import com.yahoo.bard.webservice.util.Utils;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.DruidJsonRequestContentKeys;
-import com.yahoo.bard.webservice.web.responseprocessors.DruidJsonResponseContentKeys;
 import com.yahoo.bard.webservice.web.responseprocessors.EtagCacheResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.util.QueryFingerprinter;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.slf4j.Logger;
@@ -45,6 +43,7 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
 
     protected final DataRequestHandler next;
     protected final TupleDataCache<String, String, String> dataCache;
+    protected final QueryFingerprinter fingerprinter;
 
     /**
      * Build a Cache request handler.
@@ -57,10 +56,28 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
             @NotNull DataRequestHandler next,
             @NotNull TupleDataCache<String, String, String> dataCache,
             @NotNull ObjectMapper mapper
+    ) {
+        this(next, dataCache, mapper, new QueryFingerprinter(mapper));
+    }
+
+    /**
+     * Build a Cache request handler.
+     *
+     * @param next  The next handler in the chain
+     * @param dataCache  The cache instance
+     * @param mapper  The mapper for all JSON processing
+     * @param fingerprinter  The fingerprinter of the queries, shared with the other handlers of the workflow
+     */
+    public EtagCacheRequestHandler(
+            @NotNull DataRequestHandler next,
+            @NotNull TupleDataCache<String, String, String> dataCache,
+            @NotNull ObjectMapper mapper,
+            @NotNull QueryFingerprinter fingerprinter
     ) {
         super(mapper);
         this.next = next;
         this.dataCache = dataCache;
+        this.fingerprinter = fingerprinter;
     }
 
     @Override
@@ -82,12 +99,8 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
                 String eTagInRequest = DruidJsonRequestContentKeys.ETAG.getName();
                 if (cacheEntry != null) { // Current query is in data cache
                     // Insert "If-None-Match" header into RequestContext; the value is etag of the corresponding cache
-                    context.getHeaders().putSingle(
-                            eTagInRequest,
-                            mapper.readTree(cacheEntry.getValue())
-                                    .get(DruidJsonResponseContentKeys.ETAG.getName())
-                                    .asText()
-                            );
+                    // entry, kept as its metadata so the (possibly compressed) response need not be decoded here
+                    context.getHeaders().putSingle(eTagInRequest, cacheEntry.getMeta());
 
                     if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
                         RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
@@ -133,8 +146,6 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
      * @throws JsonProcessingException if the druid query cannot be serialized to JSON
      */
     private String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
-        JsonNode root = mapper.valueToTree(druidQuery);
-        Utils.canonicalize(root, mapper, false);
-        return writer.writeValueAsString(root);
+        return fingerprinter.getFingerprint(druidQuery).getCanonicalQuery();
     }
 }
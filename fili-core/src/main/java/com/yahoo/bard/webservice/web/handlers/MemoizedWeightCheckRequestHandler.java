@@ -0,0 +1,194 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.druid.client.DruidWebService;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
+import com.yahoo.bard.webservice.metadata.QuerySigningService;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.WeightCheckResponseProcessor;
+import com.yahoo.bard.webservice.web.util.QueryFingerprinter;
+import com.yahoo.bard.webservice.web.util.QueryWeightUtil;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Weight check request handler which remembers the row counts measured by weight check queries.
+ * <p>
+ * Row counts are kept in a bounded in-process cache keyed by the fingerprint of the query being weighed and the
+ * segment set id of the data it covers, so a new segment set (data being loaded or reprocessed) is measured again.
+ * The weight check query is derived from the query, and the query's fingerprint is memoized for the other request
+ * handlers, so requests whose query has been measured before are allowed or refused without building a weight check
+ * query or the extra round trip to druid. Queries without a segment set id are measured every time.
+ */
+public class MemoizedWeightCheckRequestHandler extends WeightCheckRequestHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoizedWeightCheckRequestHandler.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Timer WEIGHT_CHECK_CACHED = REGISTRY.timer("queries.timer.weight_check.cached");
+    public static final Meter WEIGHT_CHECK_CACHE_HITS = REGISTRY.meter("queries.meter.weight_check.cache.hits");
+    public static final Meter WEIGHT_CHECK_CACHE_MISSES = REGISTRY.meter("queries.meter.weight_check.cache.misses");
+
+    protected final @NotNull QuerySigningService<?> querySigningService;
+    protected final @NotNull QueryFingerprinter fingerprinter;
+
+    private final Cache<String, Integer> rowCounts;
+
+    /**
+     * Build a memoizing weight checking request handler.
+     *
+     * @param next  The request handler to delegate the request to.
+     * @param webService  The web service to use for weight checking
+     * @param queryWeightUtil  A provider which measures estimated weight against allowed weights.
+     * @param querySigningService  Service providing the segment set id of a query
+     * @param maxEntries  The maximum number of row counts remembered
+     * @param mapper  A JSON object mapper, used to parse the JSON response from the weight check.
+     */
+    public MemoizedWeightCheckRequestHandler(
+            DataRequestHandler next,
+            DruidWebService webService,
+            QueryWeightUtil queryWeightUtil,
+            QuerySigningService<?> querySigningService,
+            long maxEntries,
+            ObjectMapper mapper
+    ) {
+        this(
+                next,
+                webService,
+                queryWeightUtil,
+                querySigningService,
+                maxEntries,
+                mapper,
+                new QueryFingerprinter(mapper)
+        );
+    }
+
+    /**
+     * Build a memoizing weight checking request handler.
+     *
+     * @param next  The request handler to delegate the request to.
+     * @param webService  The web service to use for weight checking
+     * @param queryWeightUtil  A provider which measures estimated weight against allowed weights.
+     * @param querySigningService  Service providing the segment set id of a query
+     * @param maxEntries  The maximum number of row counts remembered
+     * @param mapper  A JSON object mapper, used to parse the JSON response from the weight check.
+     * @param fingerprinter  The fingerprinter of the queries, shared with the other handlers of the workflow
+     */
+    public MemoizedWeightCheckRequestHandler(
+            DataRequestHandler next,
+            DruidWebService webService,
+            QueryWeightUtil queryWeightUtil,
+            QuerySigningService<?> querySigningService,
+            long maxEntries,
+            ObjectMapper mapper,
+            QueryFingerprinter fingerprinter
+    ) {
+        super(next, webService, queryWeightUtil, mapper);
+        this.querySigningService = querySigningService;
+        this.rowCounts = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        this.fingerprinter = fingerprinter;
+    }
+
+    @Override
+    public boolean handleRequest(
+            final RequestContext context,
+            final DataApiRequest request,
+            final DruidAggregationQuery<?> druidQuery,
+            final ResponseProcessor response
+    ) {
+        // Heuristic test to let requests with very low estimated cardinality directly through
+        if (queryWeightUtil.skipWeightCheckQuery(druidQuery)) {
+            return next.handleRequest(context, request, druidQuery, response);
+        }
+
+        BardQueryInfo.getBardQueryInfo().incrementCountWeightCheck();
+        final WeightCheckResponseProcessor weightCheckResponse = new WeightCheckResponseProcessor(response);
+        Granularity granularity = druidQuery.getInnermostQuery().getGranularity();
+        final long queryRowLimit = queryWeightUtil.getQueryWeightThreshold(granularity);
+        final long startNanos = System.nanoTime();
+
+        String key = getKey(druidQuery).orElse(null);
+        Integer rowCount = key == null ? null : rowCounts.getIfPresent(key);
+        if (rowCount != null) {
+            WEIGHT_CHECK_CACHE_HITS.mark();
+            WEIGHT_CHECK_CACHED.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            continueOrReject(context, request, druidQuery, weightCheckResponse, rowCount, queryRowLimit);
+            return true;
+        }
+        WEIGHT_CHECK_CACHE_MISSES.mark();
+
+        final DruidAggregationQuery<?> weightEvaluationQuery = queryWeightUtil.makeWeightEvaluationQuery(druidQuery);
+
+        SuccessCallback weightQuerySuccess = buildSuccessCallback(
+                context,
+                request,
+                druidQuery,
+                weightCheckResponse,
+                queryRowLimit
+        );
+        SuccessCallback memoizingSuccess = jsonResult -> {
+            WEIGHT_CHECK_CACHED.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (key != null) {
+                try {
+                    rowCounts.put(key, getRowCount(jsonResult));
+                } catch (RuntimeException e) {
+                    // The weight check callback reports unreadable results
+                    LOG.debug("Weight check row count not remembered", e);
+                }
+            }
+            weightQuerySuccess.invoke(jsonResult);
+        };
+        HttpErrorCallback error = response.getErrorCallback(druidQuery);
+        FailureCallback failure = response.getFailureCallback(druidQuery);
+        webService.postDruidQuery(context, memoizingSuccess, error, failure, weightEvaluationQuery);
+        return true;
+    }
+
+    /**
+     * Build the key of the row count of a query: its fingerprint and its segment set id.
+     *
+     * @param druidQuery  The query being weighed
+     *
+     * @return the key of the row count, or empty if the query has no segment set id or cannot be fingerprinted
+     */
+    protected Optional<String> getKey(DruidAggregationQuery<?> druidQuery) {
+        Optional<?> segmentSetId = querySigningService.getSegmentSetId(druidQuery);
+        if (!segmentSetId.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            String checksum = fingerprinter.getFingerprint(druidQuery).getChecksum();
+            return Optional.of(segmentSetId.get() + ":" + checksum);
+        } catch (JsonProcessingException e) {
+            LOG.warn("Query cannot be fingerprinted for its weight check: ", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Forget all remembered row counts.
+     */
+    public void invalidateAll() {
+        rowCounts.invalidateAll();
+    }
+}
@@ -0,0 +1,239 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.druid.client.DruidWebService;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.WeightCheckResponseProcessor;
+import com.yahoo.bard.webservice.web.util.QueryWeightUtil;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weight check request handler which sends the data query to druid at the same time as the weight check query.
+ * <p>
+ * The outcome of the data query is held back until the weight check completes. If the query is within its weight
+ * limit, the outcome is delivered as soon as both queries have completed, saving the sequential round trip of the
+ * plain {@link WeightCheckRequestHandler}. If the query is too heavy, or the weight check fails, the request fails as
+ * it would with the plain handler and the outcome of the data query is discarded.
+ */
+public class SpeculativeWeightCheckRequestHandler extends WeightCheckRequestHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(SpeculativeWeightCheckRequestHandler.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Timer WEIGHT_CHECK_SPECULATIVE = REGISTRY.timer("queries.timer.weight_check.speculative");
+    public static final Meter SPECULATIVE_DISCARDS = REGISTRY.meter("queries.meter.weight_check.speculative.discards");
+
+    /**
+     * Build a speculative weight checking request handler.
+     *
+     * @param next  The request handler to delegate the request to.
+     * @param webService  The web service to use for weight checking
+     * @param queryWeightUtil  A provider which measures estimated weight against allowed weights.
+     * @param mapper  A JSON object mapper, used to parse the JSON response from the weight check.
+     */
+    public SpeculativeWeightCheckRequestHandler(
+            DataRequestHandler next,
+            DruidWebService webService,
+            QueryWeightUtil queryWeightUtil,
+            ObjectMapper mapper
+    ) {
+        super(next, webService, queryWeightUtil, mapper);
+    }
+
+    @Override
+    public boolean handleRequest(
+            final RequestContext context,
+            final DataApiRequest request,
+            final DruidAggregationQuery<?> druidQuery,
+            final ResponseProcessor response
+    ) {
+        // Heuristic test to let requests with very low estimated cardinality directly through
+        if (queryWeightUtil.skipWeightCheckQuery(druidQuery)) {
+            return next.handleRequest(context, request, druidQuery, response);
+        }
+
+        BardQueryInfo.getBardQueryInfo().incrementCountWeightCheck();
+        final WeightCheckResponseProcessor weightCheckResponse = new WeightCheckResponseProcessor(response);
+        final DruidAggregationQuery<?> weightEvaluationQuery = queryWeightUtil.makeWeightEvaluationQuery(druidQuery);
+        Granularity granularity = druidQuery.getInnermostQuery().getGranularity();
+        final long queryRowLimit = queryWeightUtil.getQueryWeightThreshold(granularity);
+
+        SpeculativeResponseProcessor speculativeResponse = new SpeculativeResponseProcessor(weightCheckResponse);
+        final long startNanos = System.nanoTime();
+        SuccessCallback weightQuerySuccess = jsonResult -> {
+            WEIGHT_CHECK_SPECULATIVE.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            int rowCount;
+            try {
+                rowCount = getRowCount(jsonResult);
+            } catch (Throwable e) {
+                LOG.info("Exception processing druid call in success", e);
+                speculativeResponse.reject();
+                weightCheckResponse.getFailureCallback(druidQuery).dispatch(e);
+                return;
+            }
+            if (rowCount > queryRowLimit) {
+                speculativeResponse.reject();
+                dispatchInsufficientStorage(weightCheckResponse, druidQuery, rowCount, queryRowLimit);
+            } else {
+                speculativeResponse.allow();
+            }
+        };
+        HttpErrorCallback weightQueryError = (statusCode, reasonPhrase, responseBody) -> {
+            speculativeResponse.reject();
+            weightCheckResponse.getErrorCallback(druidQuery).invoke(statusCode, reasonPhrase, responseBody);
+        };
+        FailureCallback weightQueryFailure = error -> {
+            speculativeResponse.reject();
+            weightCheckResponse.getFailureCallback(druidQuery).invoke(error);
+        };
+
+        // Sending the weight query hands the request log over to its response, the data query continues on a copy
+        RequestLog logCtx = RequestLog.copy();
+        webService.postDruidQuery(
+                context,
+                weightQuerySuccess,
+                weightQueryError,
+                weightQueryFailure,
+                weightEvaluationQuery
+        );
+        RequestLog.restore(logCtx);
+        return next.handleRequest(context, request, druidQuery, speculativeResponse);
+    }
+
+    /**
+     * Response processor of a speculatively sent data query, holding its outcome until the weight check completes.
+     */
+    private static class SpeculativeResponseProcessor implements ResponseProcessor {
+        private final ResponseProcessor next;
+
+        // Guarded by this
+        private Boolean allowed = null;
+        private Runnable heldOutcome = null;
+        private RequestLog heldLog = null;
+        private RequestLog weightLog = null;
+
+        /**
+         * Constructor.
+         *
+         * @param next  The response processor of the request
+         */
+        SpeculativeResponseProcessor(ResponseProcessor next) {
+            this.next = next;
+        }
+
+        @Override
+        public ResponseContext getResponseContext() {
+            return next.getResponseContext();
+        }
+
+        @Override
+        public FailureCallback getFailureCallback(DruidAggregationQuery<?> druidQuery) {
+            return error -> deliver(() -> next.getFailureCallback(druidQuery).invoke(error));
+        }
+
+        @Override
+        public HttpErrorCallback getErrorCallback(DruidAggregationQuery<?> druidQuery) {
+            return (statusCode, reasonPhrase, responseBody) -> deliver(
+                    () -> next.getErrorCallback(druidQuery).invoke(statusCode, reasonPhrase, responseBody)
+            );
+        }
+
+        @Override
+        public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+            deliver(() -> next.processResponse(json, druidQuery, metadata));
+        }
+
+        /**
+         * Deliver the outcome of the data query if the weight check passed, hold it if the weight check is pending
+         * and discard it if the weight check failed.
+         *
+         * @param outcome  The action delivering the outcome to the response processor of the request
+         */
+        private void deliver(Runnable outcome) {
+            Boolean verdict;
+            RequestLog checkLog;
+            synchronized (this) {
+                verdict = allowed;
+                checkLog = weightLog;
+                if (verdict == null) {
+                    heldOutcome = outcome;
+                    heldLog = RequestLog.dump();
+                    return;
+                }
+            }
+            if (verdict) {
+                RequestLog.accumulate(checkLog);
+                outcome.run();
+            } else {
+                SPECULATIVE_DISCARDS.mark();
+            }
+        }
+
+        /**
+         * Record that the weight check passed, delivering the outcome of the data query if it is held.
+         * <p>
+         * The timings of the weight check query, recorded in the request log of the current thread, are added to the
+         * request log of the data query.
+         */
+        void allow() {
+            Runnable outcome;
+            RequestLog outcomeLog;
+            synchronized (this) {
+                allowed = true;
+                weightLog = RequestLog.copy();
+                outcome = heldOutcome;
+                outcomeLog = heldLog;
+                heldOutcome = null;
+                heldLog = null;
+            }
+            if (outcome == null) {
+                return;
+            }
+            RequestLog checkLog = RequestLog.dump();
+            try {
+                RequestLog.restore(outcomeLog);
+                RequestLog.accumulate(checkLog);
+                outcome.run();
+            } finally {
+                RequestLog.dump();
+                RequestLog.restore(checkLog);
+            }
+        }
+
+        /**
+         * Record that the weight check failed, discarding the outcome of the data query if it is held.
+         */
+        void reject() {
+            boolean discarded;
+            synchronized (this) {
+                allowed = false;
+                discarded = heldOutcome != null;
+                heldOutcome = null;
+                heldLog = null;
+            }
+            if (discarded) {
+                SPECULATIVE_DISCARDS.mark();
+            }
+        }
+    }
+}
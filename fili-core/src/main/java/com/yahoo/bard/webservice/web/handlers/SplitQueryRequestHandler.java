@@ -7,15 +7,20 @@ import static com.yahoo.bard.webservice.web.ErrorMessageFormat.EMPTY_INTERVAL_FO
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.data.time.AllGranularity;
 import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.util.IntervalUtils;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.SplitQueryResponseProcessor;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import org.joda.time.Interval;
 import org.slf4j.Logger;
@@ -25,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.validation.constraints.NotNull;
@@ -35,6 +41,10 @@ import javax.ws.rs.core.Response;
  * <p>
  * It creates a common response processor which serves as an accumulator to receive all replies before delegating to the
  * result set processing.
+ * <p>
+ * Without a {@link SplitQueryScheduler} all sub-queries are sent at once. With one, the scheduler bounds how many are
+ * in flight and sends the rest as earlier ones complete. The first error or failure of a sub-query cancels the
+ * sub-queries not yet sent.
  */
 public class SplitQueryRequestHandler implements DataRequestHandler {
 
@@ -44,14 +54,26 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
     public static final Meter SPLITS = REGISTRY.meter("queries.meter.split_queries.splits");
 
     protected final @NotNull DataRequestHandler next;
+    protected final SplitQueryScheduler scheduler;
 
     /**
-     * Build a Split Query Request Handler.
+     * Build a Split Query Request Handler sending all sub-queries at once.
      *
      * @param next  The next handler in the chain
      */
     public SplitQueryRequestHandler(DataRequestHandler next) {
+        this(next, null);
+    }
+
+    /**
+     * Build a Split Query Request Handler.
+     *
+     * @param next  The next handler in the chain
+     * @param scheduler  The scheduler bounding the sub-queries in flight, or null to send all sub-queries at once
+     */
+    public SplitQueryRequestHandler(DataRequestHandler next, SplitQueryScheduler scheduler) {
         this.next = next;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -115,13 +137,130 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
             SPLIT_QUERIES.mark(numberOfIntervals);
         }
 
-        queries.stream().forEach(
-                q -> {
-                    RequestLog.restore(logCtx);
-                    next.handleRequest(context, request, q, mergingResponse);
-                }
-        );
+        if (scheduler == null) {
+            queries.stream().forEach(
+                    q -> {
+                        RequestLog.restore(logCtx);
+                        next.handleRequest(context, request, q, mergingResponse);
+                    }
+            );
+        } else {
+            scheduler.schedule(
+                    queries,
+                    (q, batch) -> dispatch(
+                            context,
+                            request,
+                            q,
+                            new ScheduledResponseProcessor(mergingResponse, batch),
+                            logCtx
+                    )
+            );
+        }
 
         return true;
     }
+
+    /**
+     * Send a scheduled sub-query on under the request log of the split request.
+     * <p>
+     * Scheduled sub-queries may be sent from the thread processing another response, so the request log of the current
+     * thread is set aside while sending and restored afterwards.
+     *
+     * @param context  The context of the split request
+     * @param request  The split request
+     * @param query  The sub-query to send
+     * @param response  The response processor of the sub-query
+     * @param logCtx  The request log of the split request
+     */
+    protected void dispatch(
+            RequestContext context,
+            DataApiRequest request,
+            DruidAggregationQuery<?> query,
+            ResponseProcessor response,
+            RequestLog logCtx
+    ) {
+        RequestLog currentLog = RequestLog.dump();
+        try {
+            RequestLog.restore(logCtx);
+            next.handleRequest(context, request, query, response);
+        } catch (RuntimeException e) {
+            LOG.error("Unable to send split sub-query: ", e);
+            response.getFailureCallback(query).invoke(e);
+        } finally {
+            RequestLog.dump();
+            RequestLog.restore(currentLog);
+        }
+    }
+
+    /**
+     * Response processor of a scheduled sub-query, freeing its slot once its outcome is known.
+     * <p>
+     * An error or failure of the sub-query cancels the sub-queries of the request which are not sent yet, since the
+     * request has failed.
+     */
+    private static class ScheduledResponseProcessor implements ResponseProcessor {
+        private final ResponseProcessor next;
+        private final SplitQueryScheduler.Batch batch;
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+
+        /**
+         * Constructor.
+         *
+         * @param next  The merging response processor of the split request
+         * @param batch  The scheduled batch of the sub-query
+         */
+        ScheduledResponseProcessor(ResponseProcessor next, SplitQueryScheduler.Batch batch) {
+            this.next = next;
+            this.batch = batch;
+        }
+
+        @Override
+        public ResponseContext getResponseContext() {
+            return next.getResponseContext();
+        }
+
+        @Override
+        public FailureCallback getFailureCallback(DruidAggregationQuery<?> druidQuery) {
+            FailureCallback nextFailure = next.getFailureCallback(druidQuery);
+            return error -> {
+                batch.cancel();
+                try {
+                    nextFailure.invoke(error);
+                } finally {
+                    complete();
+                }
+            };
+        }
+
+        @Override
+        public HttpErrorCallback getErrorCallback(DruidAggregationQuery<?> druidQuery) {
+            HttpErrorCallback nextError = next.getErrorCallback(druidQuery);
+            return (statusCode, reasonPhrase, responseBody) -> {
+                batch.cancel();
+                try {
+                    nextError.invoke(statusCode, reasonPhrase, responseBody);
+                } finally {
+                    complete();
+                }
+            };
+        }
+
+        @Override
+        public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+            try {
+                next.processResponse(json, druidQuery, metadata);
+            } finally {
+                complete();
+            }
+        }
+
+        /**
+         * Free the slot of the sub-query, once.
+         */
+        private void complete() {
+            if (completed.compareAndSet(false, true)) {
+                batch.complete();
+            }
+        }
+    }
 }
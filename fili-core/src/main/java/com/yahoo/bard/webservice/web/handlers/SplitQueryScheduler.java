@@ -0,0 +1,321 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.joda.time.Interval;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Schedules the sub-queries of split queries, bounding how many of them are sent at the same time.
+ * <p>
+ * Each split request submits its sub-queries as a {@link Batch}. At most {@code window} sub-queries of a batch are in
+ * flight at once, and at most {@code budget} sub-queries of all batches together. Sub-queries waiting for a slot are
+ * sent in priority order within their batch, and batches take turns for the free slots. A window or budget of 0 or
+ * less is unbounded.
+ * <p>
+ * Sub-queries are sent on the thread which frees their slot, which is usually the thread processing the response to
+ * an earlier sub-query. Sub-queries answered synchronously, such as cache hits, do not nest further sends on the
+ * stack: the first thread to send drains the waiting sub-queries for all others.
+ */
+public class SplitQueryScheduler {
+
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Timer SPLIT_QUERY_WAIT = REGISTRY.timer("queries.timer.split_queries.wait");
+    public static final Meter SPLIT_QUERIES_CANCELLED = REGISTRY.meter("queries.meter.split_queries.cancelled");
+
+    private final int window;
+    private final int budget;
+    private final Priority priority;
+
+    private final Object lock = new Object();
+    private final Deque<Batch> waiting = new ArrayDeque<>();
+    private int inFlight = 0;
+
+    // Counts read by the gauges of this scheduler without taking the lock
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    // Number of drain requests not yet served, only the thread raising it from 0 drains
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    /**
+     * The order in which the waiting sub-queries of a split request are sent.
+     */
+    public enum Priority {
+        /**
+         * Send the sub-queries of the latest buckets first. These are the least likely to be cached.
+         */
+        MOST_RECENT_FIRST(Comparator.comparingLong(SplitQueryScheduler::getStartMillis).reversed()),
+
+        /**
+         * Send the sub-queries in the order of their buckets.
+         */
+        CHRONOLOGICAL(Comparator.comparingLong(SplitQueryScheduler::getStartMillis));
+
+        private final Comparator<DruidAggregationQuery<?>> comparator;
+
+        /**
+         * Constructor.
+         *
+         * @param comparator  The ordering of sub-queries, first sent first
+         */
+        Priority(Comparator<DruidAggregationQuery<?>> comparator) {
+            this.comparator = comparator;
+        }
+
+        public Comparator<DruidAggregationQuery<?>> getComparator() {
+            return comparator;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param window  The maximum number of sub-queries of one split request in flight at once
+     * @param budget  The maximum number of sub-queries of all split requests in flight at once
+     * @param priority  The order in which the waiting sub-queries of a split request are sent
+     */
+    public SplitQueryScheduler(int window, int budget, Priority priority) {
+        this.window = window;
+        this.budget = budget;
+        this.priority = priority;
+    }
+
+    /**
+     * Schedule the sub-queries of a split request.
+     * <p>
+     * The dispatcher sends a sub-query on. Once the outcome of the sub-query is known, {@link Batch#complete()} must be
+     * called to free its slot, and {@link Batch#cancel()} to drop the waiting sub-queries if the request failed.
+     *
+     * @param queries  The sub-queries to send
+     * @param dispatcher  The action sending a sub-query of the batch
+     *
+     * @return the batch of the sub-queries
+     */
+    public Batch schedule(
+            List<DruidAggregationQuery<?>> queries,
+            BiConsumer<DruidAggregationQuery<?>, Batch> dispatcher
+    ) {
+        List<DruidAggregationQuery<?>> ordered = new ArrayList<>(queries);
+        ordered.sort(priority.getComparator());
+        Batch batch = new Batch(ordered, dispatcher);
+        synchronized (lock) {
+            waiting.addLast(batch);
+        }
+        queuedCount.addAndGet(ordered.size());
+        drain();
+        return batch;
+    }
+
+    /**
+     * Send waiting sub-queries while there are free slots.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Dispatch dispatch;
+            while ((dispatch = poll()) != null) {
+                dispatch.run();
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Take the next sub-query to send, if there is one with a free slot.
+     *
+     * @return the next sub-query and its batch, or null if none can be sent now
+     */
+    private Dispatch poll() {
+        synchronized (lock) {
+            if (budget > 0 && inFlight >= budget) {
+                return null;
+            }
+            Iterator<Batch> batches = waiting.iterator();
+            while (batches.hasNext()) {
+                Batch batch = batches.next();
+                if (batch.pending.isEmpty()) {
+                    batches.remove();
+                } else if (window <= 0 || batch.inFlight < window) {
+                    // Move the batch to the back, so batches take turns for free slots
+                    batches.remove();
+                    return take(batch);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Take the next sub-query of a batch removed from the waiting batches, and queue the batch again if it has more.
+     * <p>
+     * Must be called holding the lock.
+     *
+     * @param batch  The batch with a free slot
+     *
+     * @return the next sub-query and its batch
+     */
+    private Dispatch take(Batch batch) {
+        DruidAggregationQuery<?> query = batch.pending.pollFirst();
+        batch.inFlight++;
+        inFlight++;
+        if (!batch.pending.isEmpty()) {
+            waiting.addLast(batch);
+        }
+        queuedCount.decrementAndGet();
+        inFlightCount.incrementAndGet();
+        return new Dispatch(batch, query);
+    }
+
+    /**
+     * The number of sub-queries of this scheduler waiting to be sent.
+     *
+     * @return the number of waiting sub-queries
+     */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * The number of sub-queries of this scheduler sent and not yet completed.
+     *
+     * @return the number of sub-queries in flight
+     */
+    public int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    /**
+     * Register the gauges of the queued and in flight sub-queries of this scheduler.
+     * <p>
+     * The gauges replace those of any scheduler registered before under the same prefix.
+     *
+     * @param registry  The registry to report the gauges to
+     * @param prefix  The prefix of the gauge names
+     */
+    public void registerGauges(MetricRegistry registry, String prefix) {
+        registry.remove(prefix + "queued");
+        registry.register(prefix + "queued", (Gauge<Integer>) this::getQueuedCount);
+        registry.remove(prefix + "in_flight");
+        registry.register(prefix + "in_flight", (Gauge<Integer>) this::getInFlightCount);
+    }
+
+    /**
+     * The start of the first interval of a query, used to order sub-queries by bucket.
+     *
+     * @param query  The query
+     *
+     * @return the start of the query in milliseconds, or 0 if the query has no intervals
+     */
+    private static long getStartMillis(DruidAggregationQuery<?> query) {
+        List<Interval> intervals = query.getIntervals();
+        return intervals == null || intervals.isEmpty() ? 0 : intervals.get(0).getStartMillis();
+    }
+
+    /**
+     * A sub-query taken from its batch to be sent.
+     */
+    private static class Dispatch {
+        private final Batch batch;
+        private final DruidAggregationQuery<?> query;
+
+        /**
+         * Constructor.
+         *
+         * @param batch  The batch of the sub-query
+         * @param query  The sub-query
+         */
+        Dispatch(Batch batch, DruidAggregationQuery<?> query) {
+            this.batch = batch;
+            this.query = query;
+        }
+
+        /**
+         * Send the sub-query.
+         */
+        void run() {
+            SPLIT_QUERY_WAIT.update(System.nanoTime() - batch.scheduledNanos, TimeUnit.NANOSECONDS);
+            batch.dispatcher.accept(query, batch);
+        }
+    }
+
+    /**
+     * The sub-queries of one split request.
+     */
+    public class Batch {
+        private final Deque<DruidAggregationQuery<?>> pending;
+        private final BiConsumer<DruidAggregationQuery<?>, Batch> dispatcher;
+        private final long scheduledNanos = System.nanoTime();
+        private int inFlight = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param queries  The sub-queries, in the order they are to be sent
+         * @param dispatcher  The action sending a sub-query of the batch
+         */
+        Batch(List<DruidAggregationQuery<?>> queries, BiConsumer<DruidAggregationQuery<?>, Batch> dispatcher) {
+            this.pending = new ArrayDeque<>(queries);
+            this.dispatcher = dispatcher;
+        }
+
+        /**
+         * Free the slot of a sent sub-query whose outcome is known, sending the next waiting sub-query.
+         */
+        public void complete() {
+            synchronized (lock) {
+                inFlight--;
+                SplitQueryScheduler.this.inFlight--;
+            }
+            inFlightCount.decrementAndGet();
+            drain();
+        }
+
+        /**
+         * Drop the sub-queries of this batch which have not been sent yet.
+         */
+        public void cancel() {
+            int dropped;
+            synchronized (lock) {
+                dropped = pending.size();
+                pending.clear();
+                waiting.remove(this);
+            }
+            if (dropped > 0) {
+                queuedCount.addAndGet(-dropped);
+                SPLIT_QUERIES_CANCELLED.mark(dropped);
+            }
+        }
+
+        /**
+         * The number of sub-queries of this batch waiting to be sent.
+         *
+         * @return the number of waiting sub-queries
+         */
+        public int getPendingCount() {
+            synchronized (lock) {
+                return pending.size();
+            }
+        }
+    }
+}
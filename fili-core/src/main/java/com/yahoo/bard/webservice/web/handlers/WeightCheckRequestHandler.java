@@ -7,6 +7,7 @@ import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.client.impl.RawJsonResponseNode;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
@@ -125,17 +126,7 @@ public class WeightCheckRequestHandler extends BaseDataRequestHandler {
                     // none if the request matches no rows.
                     LOG.debug("{}", writer.writeValueAsString(jsonResult));
 
-                    JsonNode row = jsonResult.get(0);
-                    // If the weight limit query is empty or reports acceptable rows, run the full query
-                    if (row != null) {
-                        int rowCount = row.get("event").get("count").asInt();
-
-                        if (rowCount > queryRowLimit) {
-                            dispatchInsufficientStorage(response, druidQuery, rowCount, queryRowLimit);
-                            return;
-                        }
-                    }
-                    next.handleRequest(context, request, druidQuery, response);
+                    continueOrReject(context, request, druidQuery, response, getRowCount(jsonResult), queryRowLimit);
                 } catch (Throwable e) {
                     LOG.info("Exception processing druid call in success", e);
                     response.getFailureCallback(druidQuery).dispatch(e);
@@ -144,6 +135,44 @@ public class WeightCheckRequestHandler extends BaseDataRequestHandler {
         };
     }
 
+    /**
+     * Continue the original request, or refuse it with an HTTP INSUFFICIENT_STORAGE (507) status if its cardinality
+     * exceeds the limit.
+     *
+     * @param context  The context data from the request processing chain
+     * @param request  The API request itself
+     * @param druidQuery  The query being processed
+     * @param response  The response handler
+     * @param rowCount  The number of aggregating lines of the query, as measured by the weight check query
+     * @param queryRowLimit  The number of aggregating lines allowed
+     */
+    protected void continueOrReject(
+            RequestContext context,
+            DataApiRequest request,
+            DruidAggregationQuery<?> druidQuery,
+            ResponseProcessor response,
+            int rowCount,
+            long queryRowLimit
+    ) {
+        if (rowCount > queryRowLimit) {
+            dispatchInsufficientStorage(response, druidQuery, rowCount, queryRowLimit);
+            return;
+        }
+        next.handleRequest(context, request, druidQuery, response);
+    }
+
+    /**
+     * Read the row count measured by a weight check query from its result.
+     *
+     * @param jsonResult  The result of the weight check query
+     *
+     * @return the number of aggregating lines of the weighed query, 0 if the weight check query matched no rows
+     */
+    protected static int getRowCount(JsonNode jsonResult) {
+        JsonNode row = RawJsonResponseNode.materialize(jsonResult).get(0);
+        return row == null ? 0 : row.get("event").get("count").asInt();
+    }
+
     /**
      * Dispatch an HTTP INSUFFICIENT_STORAGE (507) status based on the cardinality of the requester 's query
      * as measured by the weight check query.
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers.workflow;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.config.CacheFeatureFlag;
 import com.yahoo.bard.webservice.config.SystemConfig;
@@ -17,23 +18,30 @@ import com.yahoo.bard.webservice.table.PhysicalTableDictionary;
 import com.yahoo.bard.webservice.web.handlers.AsyncWebServiceRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.CacheRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.CacheV2RequestHandler;
+import com.yahoo.bard.webservice.web.handlers.CoalescingRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.DataRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.DateTimeSortRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.DebugRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.DruidPartialDataRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.EtagCacheRequestHandler;
+import com.yahoo.bard.webservice.web.handlers.MemoizedWeightCheckRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.PaginationRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.PartialDataRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.SplitQueryRequestHandler;
+import com.yahoo.bard.webservice.web.handlers.SplitQueryScheduler;
+import com.yahoo.bard.webservice.web.handlers.SpeculativeWeightCheckRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.TopNMapperRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.WebServiceSelectorRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.WeightCheckRequestHandler;
+import com.yahoo.bard.webservice.web.util.QueryFingerprinter;
 import com.yahoo.bard.webservice.web.util.QueryWeightUtil;
 import com.yahoo.bard.webservice.web.util.QuerySignedCacheService;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.Locale;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.validation.constraints.NotNull;
@@ -43,8 +51,11 @@ import javax.validation.constraints.NotNull;
  * <ul>
  *     <li>Partial data filtering is attached to the response. (Feature flagged)
  *     <li>Requests are routed by selecting a druid web service.
+ *     <li>Queries are split into one query per time bucket, with a bounded number in flight. (Feature flagged)
  *     <li>The cache is checked for responses matching the query. (Feature flagged)
- *     <li>Non UI requests may pass through an asynchronous druid query to test the aggregation cost.
+ *     <li>Queries identical to one already in flight wait for its response. (Feature flagged)
+ *     <li>Non UI requests may pass through an asynchronous druid query to test the aggregation cost, sent before,
+ *     along with or instead of (when remembered) the data query.
  *     <li>Requests are sent asynchronously to the druid web service
  * </ul>
  */
@@ -55,10 +66,35 @@ public class DruidWorkflow implements RequestWorkflowProvider {
 
     public static final String RESPONSE_WORKFLOW_TIMER = "ResponseWorkflow";
     public static final String REQUEST_WORKFLOW_TIMER = "RequestWorkflow";
+    public static final String SPLIT_QUERIES_GAUGE_PREFIX = "queries.gauge.split_queries.";
     private final int druidUncoveredIntervalLimit = SYSTEM_CONFIG.getIntProperty(
             SYSTEM_CONFIG.getPackageVariableName("druid_uncovered_interval_limit"),
             0
     );
+    private final int queryCoalescingMaxFollowers = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("query_coalescing_max_followers"),
+            100
+    );
+    private final int splitQueryWindow = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("split_query_window"),
+            0
+    );
+    private final int splitQueryBudget = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("split_query_budget"),
+            0
+    );
+    private final String splitQueryPriority = SYSTEM_CONFIG.getStringProperty(
+            SYSTEM_CONFIG.getPackageVariableName("split_query_priority"),
+            SplitQueryScheduler.Priority.MOST_RECENT_FIRST.name()
+    );
+    private final String weightCheckMode = SYSTEM_CONFIG.getStringProperty(
+            SYSTEM_CONFIG.getPackageVariableName("weight_check_mode"),
+            WeightCheckMode.SEQUENTIAL.name()
+    );
+    private final long weightCheckCacheMaxEntries = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("weight_check_cache_max_entries"),
+            10000L
+    );
 
     protected final @NotNull DataCache<?> dataCache;
     protected final @NotNull DruidWebService webService;
@@ -69,6 +105,7 @@ public class DruidWorkflow implements RequestWorkflowProvider {
     protected final @NotNull ObjectMapper mapper;
     protected final @NotNull VolatileIntervalsService volatileIntervalsService;
     protected final @NotNull QuerySignedCacheService querySignedCacheService;
+    protected final @NotNull QueryFingerprinter fingerprinter;
 
     /**
      * Constructor.
@@ -104,6 +141,7 @@ public class DruidWorkflow implements RequestWorkflowProvider {
         this.volatileIntervalsService = volatileIntervalsService;
         this.querySignedCacheService = querySignedCacheService;
         this.mapper = mapper;
+        this.fingerprinter = new QueryFingerprinter(mapper);
     }
 
     @Override
@@ -111,6 +149,17 @@ public class DruidWorkflow implements RequestWorkflowProvider {
         // The final stage of the workflow is to send a request to a druid web service
         DataRequestHandler handler = new AsyncWebServiceRequestHandler(webService, mapper);
 
+        // Identical queries in flight at the same time are sent to druid once
+        if (BardFeatureFlag.QUERY_COALESCING.isOn()) {
+            handler = new CoalescingRequestHandler(
+                    handler,
+                    querySigningService,
+                    queryCoalescingMaxFollowers,
+                    mapper,
+                    fingerprinter
+            );
+        }
+
         // If Druid sends uncoveredIntervals, missing intervals are checked before sending the request
         if (druidUncoveredIntervalLimit > 0) {
             handler = new DruidPartialDataRequestHandler(handler);
@@ -118,7 +167,7 @@ public class DruidWorkflow implements RequestWorkflowProvider {
 
         // If query caching is enabled, the cache is checked before sending the request
         if (CacheFeatureFlag.TTL.isOn()) {
-            handler = new CacheRequestHandler(handler, dataCache, mapper);
+            handler = new CacheRequestHandler(handler, dataCache, mapper, fingerprinter);
         } else if (CacheFeatureFlag.LOCAL_SIGNATURE.isOn()) {
             handler = new CacheV2RequestHandler(
                     handler,
@@ -131,16 +180,17 @@ public class DruidWorkflow implements RequestWorkflowProvider {
             handler = new EtagCacheRequestHandler(
                     handler,
                     (TupleDataCache<String, String, String>) dataCache,
-                    mapper
+                    mapper,
+                    fingerprinter
             );
         }
 
         if (BardFeatureFlag.QUERY_SPLIT.isOn()) {
-            handler = new SplitQueryRequestHandler(handler);
+            handler = new SplitQueryRequestHandler(handler, buildSplitQueryScheduler());
         }
 
         // Requests sent to the NonUI we service are checked to see if they are too heavy to process
-        handler = new WeightCheckRequestHandler(handler, webService, weightUtil, mapper);
+        handler = buildWeightCheckRequestHandler(handler);
 
         handler = new DebugRequestHandler(handler, mapper);
 
@@ -171,4 +221,69 @@ public class DruidWorkflow implements RequestWorkflowProvider {
 
         return handler;
     }
+
+    /**
+     * How weight check queries are sent relative to the data queries they measure.
+     */
+    public enum WeightCheckMode {
+        /**
+         * Send the data query once the weight check query has completed.
+         */
+        SEQUENTIAL,
+
+        /**
+         * Send the data query with the weight check query, discarding its response if the query is too heavy.
+         */
+        SPECULATIVE,
+
+        /**
+         * Remember the outcome of weight check queries for the segment set they were measured against.
+         */
+        CACHED
+    }
+
+    /**
+     * Build the handler checking whether a request is too heavy to process.
+     *
+     * @param next  The handler to delegate requests to once they pass the weight check
+     *
+     * @return the weight check handler of the configured weight check mode
+     */
+    protected DataRequestHandler buildWeightCheckRequestHandler(DataRequestHandler next) {
+        switch (WeightCheckMode.valueOf(weightCheckMode.toUpperCase(Locale.ENGLISH))) {
+            case SPECULATIVE:
+                return new SpeculativeWeightCheckRequestHandler(next, webService, weightUtil, mapper);
+            case CACHED:
+                return new MemoizedWeightCheckRequestHandler(
+                        next,
+                        webService,
+                        weightUtil,
+                        querySigningService,
+                        weightCheckCacheMaxEntries,
+                        mapper,
+                        fingerprinter
+                );
+            case SEQUENTIAL:
+            default:
+                return new WeightCheckRequestHandler(next, webService, weightUtil, mapper);
+        }
+    }
+
+    /**
+     * Build the scheduler bounding the split sub-queries in flight.
+     *
+     * @return the split query scheduler, or null to send all sub-queries of a split query at once
+     */
+    protected SplitQueryScheduler buildSplitQueryScheduler() {
+        if (splitQueryWindow <= 0 && splitQueryBudget <= 0) {
+            return null;
+        }
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(
+                splitQueryWindow,
+                splitQueryBudget,
+                SplitQueryScheduler.Priority.valueOf(splitQueryPriority.toUpperCase(Locale.ENGLISH))
+        );
+        scheduler.registerGauges(MetricRegistryFactory.getRegistry(), SPLIT_QUERIES_GAUGE_PREFIX);
+        return scheduler;
+    }
 }
@@ -9,6 +9,8 @@ import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodecProvider;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
@@ -16,21 +18,25 @@ import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.blocks.BardCacheInfo;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.metadata.QuerySigningService;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+import com.yahoo.bard.webservice.web.util.QueryFingerprint;
 import com.yahoo.bard.webservice.web.util.QuerySignedCacheService;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
+import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Locale;
 
 import javax.validation.constraints.NotNull;
@@ -61,6 +67,8 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
     protected final @NotNull QuerySigningService<Long> querySigningService;
 
     protected final ObjectWriter writer;
+    protected final ObjectMapper mapper;
+    protected final CacheValueCodec codec;
 
     /**
      * Constructor.
@@ -77,13 +85,55 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
             TupleDataCache<String, Long, String> dataCache,
             QuerySigningService<Long> querySigningService,
             ObjectMapper mapper
+    ) {
+        this(next, cacheKey, getMD5Checksum(cacheKey), dataCache, querySigningService, mapper);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next  Next ResponseProcessor in the chain
+     * @param fingerprint  Fingerprint of the query, whose canonical form is the key of the cache entry
+     * @param dataCache  The cache into which to write a cache entry
+     * @param querySigningService  Service to use for signing the queries in the cache key with their metadata
+     * @param mapper  An object mapper to use for processing Json
+     */
+    public CacheV2ResponseProcessor(
+            ResponseProcessor next,
+            QueryFingerprint fingerprint,
+            TupleDataCache<String, Long, String> dataCache,
+            QuerySigningService<Long> querySigningService,
+            ObjectMapper mapper
+    ) {
+        this(next, fingerprint.getCanonicalQuery(), fingerprint.getChecksum(), dataCache, querySigningService, mapper);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next  Next ResponseProcessor in the chain
+     * @param cacheKey  Key into which to write a cache entry
+     * @param cacheKeyChecksum  Checksum of the cache key, used in logs
+     * @param dataCache  The cache into which to write a cache entry
+     * @param querySigningService  Service to use for signing the queries in the cache key with their metadata
+     * @param mapper  An object mapper to use for processing Json
+     */
+    private CacheV2ResponseProcessor(
+            ResponseProcessor next,
+            String cacheKey,
+            String cacheKeyChecksum,
+            TupleDataCache<String, Long, String> dataCache,
+            QuerySigningService<Long> querySigningService,
+            ObjectMapper mapper
     ) {
         this.next = next;
         this.cacheKey = cacheKey;
         this.dataCache = dataCache;
         this.querySigningService = querySigningService;
         this.writer = mapper.writer();
-        this.cacheKeyChecksum = getMD5Checksum(cacheKey);
+        this.mapper = mapper;
+        this.codec = CacheValueCodecProvider.getInstance();
+        this.cacheKeyChecksum = cacheKeyChecksum;
     }
 
     @Override
@@ -110,11 +160,11 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
         next.processResponse(json, druidQuery, metadata);
 
         // Then try to cache
-        if (isCacheable()) {
+        if (isCacheable(druidQuery)) {
             String valueString;
             try {
-                valueString = writer.writeValueAsString(json);
-            } catch (JsonProcessingException e) {
+                valueString = codec.encode(json, mapper);
+            } catch (IOException e) {
                 handleException(e, querySignature);
                 return;
             }
@@ -183,7 +233,7 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
                 "Unable to cache {} value of size: {} and key checksum: {} ",
                 valueString == null ? "null " : "",
                 valueString == null ? "N/A" : valueString.length(),
-                getMD5Checksum(cacheKey),
+                cacheKeyChecksum,
                 e
         );
     }
@@ -201,6 +251,28 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
                         getVolatileIntervalsWithDefault(responseContext).isEmpty();
     }
 
+    /**
+     * A query is cacheable if the intervals it covers contain no partial or volatile data.
+     * <p>
+     * The partial and volatile intervals of the response context span the whole request. When a request is split
+     * into per bucket queries, only the buckets overlapping those intervals are kept out of the cache, so the
+     * complete buckets of a request for a range ending today are still cached.
+     *
+     * @param druidQuery  The query whose response is to be cached
+     *
+     * @return whether the response to the query can be cached
+     */
+    protected boolean isCacheable(DruidAggregationQuery<?> druidQuery) {
+        List<Interval> queryIntervals = druidQuery == null ? null : druidQuery.getIntervals();
+        if (CACHE_PARTIAL_DATA.isOn() || queryIntervals == null || queryIntervals.isEmpty()) {
+            return isCacheable();
+        }
+        ResponseContext responseContext = getResponseContext();
+        SimplifiedIntervalList requested = new SimplifiedIntervalList(queryIntervals);
+        return requested.intersect(getPartialIntervalsWithDefault(responseContext)).isEmpty() &&
+                requested.intersect(getVolatileIntervalsWithDefault(responseContext)).isEmpty();
+    }
+
     /**
      * Generate the Checksum of cacheKey using MD5 algorithm.
      * @param cacheKey cache key
@@ -7,6 +7,8 @@ import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.
 
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodecProvider;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
@@ -42,6 +44,8 @@ public class CachingResponseProcessor implements ResponseProcessor {
     private final @NotNull DataCache<String> dataCache;
 
     protected final ObjectWriter writer;
+    private final ObjectMapper mapper;
+    private final CacheValueCodec codec;
 
     /**
      * Constructor.
@@ -61,6 +65,8 @@ public class CachingResponseProcessor implements ResponseProcessor {
         this.cacheKey = cacheKey;
         this.dataCache = dataCache;
         this.writer = mapper.writer();
+        this.mapper = mapper;
+        this.codec = CacheValueCodecProvider.getInstance();
     }
 
     @Override
@@ -83,7 +89,7 @@ public class CachingResponseProcessor implements ResponseProcessor {
         if (isCacheable()) {
             String valueString = null;
             try {
-                valueString = writer.writeValueAsString(json);
+                valueString = codec.encode(json, mapper);
                 int valueLength = valueString.length();
                 if (valueLength <= maxDruidResponseLengthToCache) {
                     //(Deprecate this return type to be void)
@@ -6,16 +6,16 @@ import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static javax.ws.rs.core.Response.Status.NOT_MODIFIED;
 import static javax.ws.rs.core.Response.Status.OK;
 
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodecProvider;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.web.ErrorMessageFormat;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.slf4j.Logger;
@@ -33,10 +33,10 @@ public class EtagCacheResponseProcessor implements FullResponseProcessor {
     private static final Logger LOG = LoggerFactory.getLogger(EtagCacheResponseProcessor.class);
 
     private final ObjectMapper mapper;
-    private final ObjectWriter writer;
     private final ResponseProcessor next;
     private final String cacheKey;
     private final TupleDataCache<String, String, String> dataCache;
+    private final CacheValueCodec codec;
 
     /**
      * Constructor.
@@ -56,7 +56,7 @@ public class EtagCacheResponseProcessor implements FullResponseProcessor {
         this.cacheKey = cacheKey;
         this.dataCache = dataCache;
         this.mapper = mapper;
-        this.writer = mapper.writer();
+        this.codec = CacheValueCodecProvider.getInstance();
     }
 
     @Override
@@ -89,7 +89,7 @@ public class EtagCacheResponseProcessor implements FullResponseProcessor {
             try {
                 ((ObjectNode) json).set(
                         DruidJsonResponseContentKeys.RESPONSE.getName(),
-                        mapper.readTree(dataCache.getDataValue(cacheKey))
+                        codec.decode(dataCache.getDataValue(cacheKey), mapper)
                 );
             } catch (IOException ioe) {
                 logAndGetErrorCallback(ioe.getLocalizedMessage(), druidQuery);
@@ -104,9 +104,9 @@ public class EtagCacheResponseProcessor implements FullResponseProcessor {
                     dataCache.set(
                             cacheKey,
                             json.get(DruidJsonResponseContentKeys.ETAG.getName()).asText(),
-                            writer.writeValueAsString(json.get(DruidJsonResponseContentKeys.RESPONSE.getName()))
+                            codec.encode(json.get(DruidJsonResponseContentKeys.RESPONSE.getName()), mapper)
                     );
-                } catch (JsonProcessingException exception) {
+                } catch (IOException exception) {
                     logAndGetErrorCallback("Unable to parse JSON response while caching", druidQuery);
                     return;
                 }
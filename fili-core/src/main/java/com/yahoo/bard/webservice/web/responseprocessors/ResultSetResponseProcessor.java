@@ -9,6 +9,8 @@ import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKe
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
 import com.yahoo.bard.webservice.async.ResponseException;
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.data.DeserializationException;
 import com.yahoo.bard.webservice.data.DruidResponseParser;
 import com.yahoo.bard.webservice.data.HttpResponseMaker;
 import com.yahoo.bard.webservice.data.ResultSet;
@@ -19,6 +21,7 @@ import com.yahoo.bard.webservice.data.metric.LogicalMetric;
 import com.yahoo.bard.webservice.data.time.Granularity;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.impl.RawJsonResponseNode;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.table.Column;
@@ -26,6 +29,7 @@ import com.yahoo.bard.webservice.web.PageNotFoundException;
 import com.yahoo.bard.webservice.web.PreResponse;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import org.joda.time.DateTimeZone;
@@ -34,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import rx.subjects.Subject;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.stream.Collectors;
@@ -135,7 +140,7 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
     /**
      * Build a result set using the api request time grain.
      *
-     * @param json  The json representing the druid response.
+     * @param json  The json representing the druid response, which is stream parsed if it holds the raw body
      * @param druidQuery  The druid query being processed
      * @param dateTimeZone  The date time zone for parsing result rows
      *
@@ -148,6 +153,20 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
 
         ResultSetSchema resultSetSchema = new ResultSetSchema(granularity, columns);
 
+        if (json instanceof RawJsonResponseNode) {
+            try (JsonParser parser = ((RawJsonResponseNode) json).createParser(getObjectMappers().getMapper())) {
+                return BardFeatureFlag.COLUMNAR_RESULT_SET.isOn() ?
+                        druidResponseParser.parseColumnar(
+                                parser,
+                                resultSetSchema,
+                                druidQuery.getQueryType(),
+                                dateTimeZone
+                        ).toResultSet() :
+                        druidResponseParser.parse(parser, resultSetSchema, druidQuery.getQueryType(), dateTimeZone);
+            } catch (IOException e) {
+                throw new DeserializationException(e);
+            }
+        }
         return druidResponseParser.parse(json, resultSetSchema, druidQuery.getQueryType(), dateTimeZone);
     }
 }
@@ -5,6 +5,7 @@ package com.yahoo.bard.webservice.web.responseprocessors;
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.impl.RawJsonResponseNode;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
@@ -155,7 +156,7 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         ArrayNode result = factory.arrayNode();
         RequestLog.restore(logCtx);
         for (Pair<JsonNode, LoggingContext> entry : responses) {
-            for (JsonNode jsonNode : entry.getKey()) {
+            for (JsonNode jsonNode : RawJsonResponseNode.materialize(entry.getKey())) {
                 result.add(jsonNode);
             }
             RequestLog.accumulate(entry.getValue().getRequestLog());
@@ -47,4 +47,18 @@ public interface CacheService {
      * @return whether request can be cached
      */
     boolean isCacheable(ResponseProcessor response);
+
+    /**
+     * A query is cacheable if the intervals it covers do not refer to partial data.
+     * <p>
+     * By default this is the request wide check of {@link #isCacheable(ResponseProcessor)}.
+     *
+     * @param response The response handler
+     * @param druidQuery The query whose response is to be cached
+     *
+     * @return whether the response to the query can be cached
+     */
+    default boolean isCacheable(ResponseProcessor response, DruidAggregationQuery<?> druidQuery) {
+        return isCacheable(response);
+    }
 }
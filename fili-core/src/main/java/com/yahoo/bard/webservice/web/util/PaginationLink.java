@@ -4,8 +4,11 @@ package com.yahoo.bard.webservice.web.util;
 
 import com.yahoo.bard.webservice.util.Pagination;
 
+import java.util.Optional;
 import java.util.OptionalInt;
 
+import javax.ws.rs.core.UriBuilder;
+
 /**
  * Enumerates the names of the page links that may show up in the headers and/or bodies of responses that contain
  * pagination.
@@ -28,6 +31,11 @@ public enum PaginationLink {
         public OptionalInt getPage(Pagination<?> page) {
            return page.getNextPage();
        }
+
+        @Override
+        public Optional<String> getCursor(Pagination<?> page) {
+            return page.getNextPageCursor();
+        }
     },
     PREVIOUS("prev", "previous") {
        @Override
@@ -66,4 +74,28 @@ public enum PaginationLink {
      * @return a populated Optional if the page exists based on the current page, empty if not
      */
     public abstract OptionalInt getPage(Pagination<?> page);
+
+    /**
+     * Get the opaque cursor to the page if the current page has one.
+     *
+     * @param page  Current page to evaluate
+     *
+     * @return a populated Optional if there is a cursor to the page, empty if not
+     */
+    public Optional<String> getCursor(Pagination<?> page) {
+        return Optional.empty();
+    }
+
+    /**
+     * Set the cursor of the page on a link to it, removing the cursor of the current page.
+     *
+     * @param uriBuilder  The builder of the link
+     * @param page  Current page to evaluate
+     *
+     * @return the builder of the link
+     */
+    public UriBuilder replaceCursor(UriBuilder uriBuilder, Pagination<?> page) {
+        Object[] cursor = getCursor(page).map(value -> new Object[] {value}).orElseGet(() -> new Object[0]);
+        return uriBuilder.replaceQueryParam(PaginationParameters.CURSOR, cursor);
+    }
 }
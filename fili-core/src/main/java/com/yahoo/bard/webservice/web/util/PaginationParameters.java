@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * A wrapper around the pagination parameters ('perPage' and 'page') to simplify working with pagination requests.
@@ -25,6 +26,11 @@ public class PaginationParameters {
     private static final String FIRST = "first";
     private static final String LAST = "last";
 
+    /**
+     * Name of the query parameter holding the cursor to a page.
+     */
+    public static final String CURSOR = "cursor";
+
     private static final int DEFAULT_MAX_RESULTS_WITHOUT_FILTERS = 10000;
     private static final int MAX_RESULTS_WITHOUT_FILTER = SYSTEM_CONFIG.getIntProperty(
             SYSTEM_CONFIG.getPackageVariableName("max_results_without_filters"),
@@ -46,6 +52,7 @@ public class PaginationParameters {
 
     private final int perPage;
     private final int page;
+    private final String cursor;
 
     /**
      * Given a pair of strings, attempts to parse them into ints representing the pagination parameters.
@@ -66,8 +73,20 @@ public class PaginationParameters {
      * @param page  The page to be displayed
      */
     public PaginationParameters(int perPage, int page) {
+        this(perPage, page, null);
+    }
+
+    /**
+     * Constructor for already-parsed pagination parameters with a cursor to the page.
+     *
+     * @param perPage  The number of rows to be displayed on each page.
+     * @param page  The page to be displayed
+     * @param cursor  The opaque cursor a previous response linked to the page with, null if there is none
+     */
+    private PaginationParameters(int perPage, int page, String cursor) {
         this.perPage = perPage;
         this.page = page;
+        this.cursor = cursor;
     }
 
     /**
@@ -137,6 +156,29 @@ public class PaginationParameters {
         return page;
     }
 
+    /**
+     * Returns the cursor to the requested page, if the request has one.
+     * <p>
+     * A cursor lets the page be found without walking the pages before it. It is only a hint, the page number is
+     * authoritative and a cursor which does not lead to it is ignored.
+     *
+     * @return The cursor linked to the page by a previous response
+     */
+    public Optional<String> getCursor() {
+        return Optional.ofNullable(cursor);
+    }
+
+    /**
+     * Returns a new PaginationParameters object with the specified cursor.
+     *
+     * @param cursor  The cursor to the page, null or empty for none
+     *
+     * @return A new PaginationParameters object with the same state as this object, except with the specified cursor.
+     */
+    public PaginationParameters withCursor(String cursor) {
+        return new PaginationParameters(perPage, page, cursor == null || cursor.isEmpty() ? null : cursor);
+    }
+
     /**
      * Returns a new PaginationParameters object with the specified page value.
      *
@@ -165,7 +207,7 @@ public class PaginationParameters {
 
     @Override
     public String toString() {
-        return "perPage=" + perPage + "&page=" + page;
+        return "perPage=" + perPage + "&page=" + page + (cursor == null ? "" : "&" + CURSOR + "=" + cursor);
     }
 
     @Override
@@ -175,11 +217,12 @@ public class PaginationParameters {
         PaginationParameters that = (PaginationParameters) o;
         return
                 perPage == that.perPage &&
-                        page == that.page;
+                        page == that.page &&
+                        Objects.equals(cursor, that.cursor);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(perPage, page);
+        return Objects.hash(perPage, page, cursor);
     }
 }
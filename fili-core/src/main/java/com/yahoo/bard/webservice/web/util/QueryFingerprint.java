@@ -0,0 +1,97 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.util;
+
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.util.Utils;
+import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Objects;
+
+/**
+ * The canonical identity of a Druid query, used to key cache entries and to recognize repeated queries.
+ * <p>
+ * The fingerprint holds the canonical serialization of the query (every field but the context, with object fields
+ * and named array entries in a stable order) and its 128 bit MD5 checksum. Building it requires serializing the
+ * whole query, so the request handlers and cache service get fingerprints through a shared {@link QueryFingerprinter}
+ * which computes them once per query instance.
+ * <p>
+ * The canonical serialization is the key of the cache entries of the query, so it is built in full rather than
+ * streamed into the checksum, and named array entries can only be ordered once the whole query is serialized.
+ */
+public final class QueryFingerprint {
+
+    private final String canonicalQuery;
+    private final String checksum;
+
+    /**
+     * Constructor.
+     *
+     * @param canonicalQuery  The canonical serialization of the query
+     */
+    private QueryFingerprint(String canonicalQuery) {
+        this.canonicalQuery = canonicalQuery;
+        this.checksum = CacheV2ResponseProcessor.getMD5Checksum(canonicalQuery);
+    }
+
+    /**
+     * Compute the fingerprint of a query.
+     *
+     * @param druidQuery  The query to fingerprint
+     * @param mapper  The mapper used to serialize the query
+     *
+     * @return the fingerprint of the query
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    public static QueryFingerprint of(DruidAggregationQuery<?> druidQuery, ObjectMapper mapper)
+            throws JsonProcessingException {
+        JsonNode root = mapper.valueToTree(druidQuery);
+        Utils.canonicalize(root, mapper, false);
+        return new QueryFingerprint(mapper.writer().writeValueAsString(root));
+    }
+
+    /**
+     * The canonical serialization of the query, used as the key of its cache entries.
+     *
+     * @return the canonical query string
+     */
+    public String getCanonicalQuery() {
+        return canonicalQuery;
+    }
+
+    /**
+     * The hex encoded 128 bit checksum of the canonical query, used to identify the query in logs.
+     *
+     * @return the query checksum
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryFingerprint)) {
+            return false;
+        }
+        QueryFingerprint that = (QueryFingerprint) o;
+        return Objects.equals(checksum, that.checksum) && Objects.equals(canonicalQuery, that.canonicalQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return checksum.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return checksum;
+    }
+}
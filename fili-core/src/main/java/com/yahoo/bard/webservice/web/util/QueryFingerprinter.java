@@ -0,0 +1,57 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.util;
+
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Computes the fingerprints of Druid queries with one mapper, remembering them for as long as the query is in use.
+ * <p>
+ * The request handlers and cache service sharing a fingerprinter serialize each query instance once, however many of
+ * them need its fingerprint.
+ */
+public class QueryFingerprinter {
+
+    private final ObjectMapper mapper;
+
+    // Weak keys compare by identity, so each query instance is fingerprinted once and released with the query
+    private final Cache<DruidAggregationQuery<?>, QueryFingerprint> fingerprints = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * Constructor.
+     *
+     * @param mapper  The mapper used to serialize the queries
+     */
+    public QueryFingerprinter(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Get the fingerprint of a query, computing it if this query instance has not been fingerprinted yet.
+     *
+     * @param druidQuery  The query to fingerprint
+     *
+     * @return the fingerprint of the query
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    public QueryFingerprint getFingerprint(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
+        QueryFingerprint fingerprint = fingerprints.getIfPresent(druidQuery);
+        if (fingerprint == null) {
+            fingerprint = QueryFingerprint.of(druidQuery, mapper);
+            fingerprints.put(druidQuery, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+}
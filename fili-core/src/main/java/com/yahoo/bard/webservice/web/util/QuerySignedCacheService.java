@@ -16,12 +16,13 @@ import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.logging.blocks.BardCacheInfo;
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodecProvider;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.metadata.QuerySigningService;
-import com.yahoo.bard.webservice.util.Utils;
 import com.yahoo.bard.webservice.web.handlers.RequestContext;
 import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
@@ -30,11 +31,15 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 
+import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.*;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
 
 
 /**
@@ -67,6 +72,8 @@ public class QuerySignedCacheService implements CacheService {
     QuerySigningService<Long> querySigningService;
     ObjectMapper objectMapper;
     ObjectWriter writer;
+    CacheValueCodec codec;
+    QueryFingerprinter fingerprinter;
     /**
      * Constructor.
      *
@@ -84,6 +91,19 @@ public class QuerySignedCacheService implements CacheService {
         this.querySigningService = querySigningService;
         this.objectMapper = objectMapper;
         this.writer = objectMapper.writer();
+        this.codec = CacheValueCodecProvider.getInstance();
+        this.fingerprinter = new QueryFingerprinter(objectMapper);
+    }
+
+    /**
+     * The fingerprinter of the queries whose responses this service caches.
+     * <p>
+     * Handlers sharing it with the service serialize each query once.
+     *
+     * @return the query fingerprinter of this service
+     */
+    public QueryFingerprinter getFingerprinter() {
+        return fingerprinter;
     }
 
 
@@ -92,16 +112,17 @@ public class QuerySignedCacheService implements CacheService {
             RequestContext context,
             DruidAggregationQuery<?> druidQuery
     ) throws JsonProcessingException {
-        String querySignatureHash = String.valueOf(querySigningService.getSegmentSetId(druidQuery).orElse(null));
-        final TupleDataCache.DataEntry<String, Long, String> cacheEntry = dataCache.get(getKey(druidQuery));
+        QueryFingerprint fingerprint = fingerprinter.getFingerprint(druidQuery);
+        String cacheKey = fingerprint.getCanonicalQuery();
+        Optional<Long> segmentSetId = querySigningService.getSegmentSetId(druidQuery);
+        String signatureChecksum = CacheV2ResponseProcessor.getMD5Checksum(String.valueOf(segmentSetId.orElse(null)));
+        Predicate<Long> isCurrent = meta -> segmentSetId.filter(id -> Objects.equals(meta, id)).isPresent();
+
+        final TupleDataCache.DataEntry<String, Long, String> cacheEntry = dataCache.get(cacheKey, isCurrent);
         CACHE_REQUESTS.mark(1);
 
         if (cacheEntry != null) {
-            if (
-                    querySigningService.getSegmentSetId(druidQuery)
-                            .filter(id -> Objects.equals(cacheEntry.getMeta(), id))
-                            .isPresent()
-            ) {
+            if (isCurrent.test(cacheEntry.getMeta())) {
                 try {
                     if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
                         RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
@@ -112,94 +133,72 @@ public class QuerySignedCacheService implements CacheService {
                     }
                     CACHE_HITS.mark(1);
                     BardQueryInfo.getBardQueryInfo().incrementCountCacheHits();
-                    BardQueryInfo.getBardQueryInfo().addCacheInfo(
-                            CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                            new BardCacheInfo(
-                                    LOG_CACHE_GET_HIT,
-                                    getKey(druidQuery).length(),
-                                    CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                                    querySignatureHash != null
-                                            ? CacheV2ResponseProcessor.getMD5Checksum(querySignatureHash)
-                                            : null,
-                                    cacheEntry.getValue().length()
-                            )
-                    );
+                    addCacheInfo(LOG_CACHE_GET_HIT, fingerprint, signatureChecksum, cacheEntry.getValue().length());
                     return cacheEntry.getValue();
 
                 } catch (Exception e) {
                     LOG.warn("Error processing cached value for key {} with cksum {}",
-                            getKey(druidQuery),
-                            CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
+                            cacheKey,
+                            fingerprint.getChecksum(),
                             e);
-                    BardQueryInfo.getBardQueryInfo().addCacheInfo(
-                            CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                            new BardCacheInfo(
-                                    LOG_CACHE_READ_FAILURES,
-                                    getKey(druidQuery).length(),
-                                    CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                                    querySignatureHash != null
-                                            ? CacheV2ResponseProcessor.getMD5Checksum(querySignatureHash)
-                                            : null,
-                                    0
-                            )
-                    );
+                    addCacheInfo(LOG_CACHE_READ_FAILURES, fingerprint, signatureChecksum, 0);
                 }
             } else {
                 LOG.debug("Cache entry present but invalid for query with id: {}", RequestLog.getId());
                 CACHE_POTENTIAL_HITS.mark(1);
                 CACHE_MISSES.mark(1);
-                BardQueryInfo.getBardQueryInfo().addCacheInfo(
-                        CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                        new BardCacheInfo(
-                                LOG_CACHE_SIGNATURE_MISMATCH,
-                                getKey(druidQuery).length(),
-                                CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                                querySignatureHash != null
-                                        ? CacheV2ResponseProcessor.getMD5Checksum(querySignatureHash)
-                                        : null,
-                                0
-                        )
-                );
+                addCacheInfo(LOG_CACHE_SIGNATURE_MISMATCH, fingerprint, signatureChecksum, 0);
             }
         } else {
             CACHE_MISSES.mark(1);
-            BardQueryInfo.getBardQueryInfo().addCacheInfo(
-                    CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                    new BardCacheInfo(
-                            LOG_CACHE_GET_MISS,
-                            getKey(druidQuery).length(),
-                            CacheV2ResponseProcessor.getMD5Checksum(getKey(druidQuery)),
-                            querySignatureHash != null
-                                    ? CacheV2ResponseProcessor.getMD5Checksum(querySignatureHash)
-                                    : null,
-                            0
-                    )
-            );
+            addCacheInfo(LOG_CACHE_GET_MISS, fingerprint, signatureChecksum, 0);
         }
         return null;
     }
 
+    /**
+     * Record a cache operation in the BardQueryInfo log block.
+     *
+     * @param opType  The kind of cache operation
+     * @param fingerprint  The fingerprint of the query whose response is cached
+     * @param signatureChecksum  The checksum of the segment set id of the query
+     * @param valueLength  The length of the cached value involved in the operation
+     */
+    private static void addCacheInfo(
+            String opType,
+            QueryFingerprint fingerprint,
+            String signatureChecksum,
+            int valueLength
+    ) {
+        BardQueryInfo.getBardQueryInfo().addCacheInfo(
+                fingerprint.getChecksum(),
+                new BardCacheInfo(
+                        opType,
+                        fingerprint.getCanonicalQuery().length(),
+                        fingerprint.getChecksum(),
+                        signatureChecksum,
+                        valueLength
+                )
+        );
+    }
+
     @Override
     public void writeCache(
             ResponseProcessor response,
             JsonNode json,
             DruidAggregationQuery<?> druidQuery
             ) throws JsonProcessingException {
-        String querySignatureHash = String.valueOf(querySigningService.getSegmentSetId(druidQuery).orElse(null));
-        if (CACHE_PARTIAL_DATA.isOn() || isCacheable(response)) {
-            String cacheKey = getKey(druidQuery);
+        if (CACHE_PARTIAL_DATA.isOn() || isCacheable(response, druidQuery)) {
+            QueryFingerprint fingerprint = fingerprinter.getFingerprint(druidQuery);
+            Optional<Long> segmentSetId = querySigningService.getSegmentSetId(druidQuery);
             String valueString = null;
             try {
-                valueString = writer.writeValueAsString(json);
+                valueString = codec.encode(json, objectMapper);
                 int valueLength = valueString.length();
                 if (valueLength <= maxDruidResponseLengthToCache) {
                     dataCache.set(
-                            cacheKey,
-                            Long.parseLong(
-                                    String.valueOf(
-                                            querySigningService.getSegmentSetId(druidQuery).orElse(null)
-                                    )
-                            ),
+                            fingerprint.getCanonicalQuery(),
+                            Long.parseLong(String.valueOf(segmentSetId.orElse(null))),
                             valueString
                     );
                 } else {
@@ -210,32 +209,42 @@ public class QuerySignedCacheService implements CacheService {
                     );
                 }
             } catch (Exception e) {
-                //mark and log the cache put failure
-                CACHE_SET_FAILURES.mark(1);
-                BardQueryInfo.getBardQueryInfo().incrementCountCacheSetFailures();
-                BardQueryInfo.getBardQueryInfo().addCacheInfo(
-                        CacheV2ResponseProcessor.getMD5Checksum(cacheKey),
-                        new BardCacheInfo(
-                                LOG_CACHE_SET_FAILURES,
-                                cacheKey.length(),
-                                CacheV2ResponseProcessor.getMD5Checksum(cacheKey),
-                                querySignatureHash != null
-                                        ? CacheV2ResponseProcessor.getMD5Checksum(querySignatureHash)
-                                        : null,
-                                valueString != null ? valueString.length() : 0
-                        )
-                );
-                LOG.warn(
-                        "Unable to cache {}value of size: {} with cksum: {}",
-                        valueString == null ? "null " : "",
-                        valueString == null ? "N/A" : valueString.length(),
-                        CacheV2ResponseProcessor.getMD5Checksum(cacheKey),
-                        e
-                );
+                recordCacheSetFailure(fingerprint, segmentSetId, valueString, e);
             }
         }
     }
 
+    /**
+     * Mark and log a failure to cache the response to a query.
+     *
+     * @param fingerprint  The fingerprint of the query whose response was not cached
+     * @param segmentSetId  The segment set id of the query
+     * @param valueString  The encoded response, or null if it could not be encoded
+     * @param e  The cause of the failure
+     */
+    private static void recordCacheSetFailure(
+            QueryFingerprint fingerprint,
+            Optional<Long> segmentSetId,
+            String valueString,
+            Exception e
+    ) {
+        CACHE_SET_FAILURES.mark(1);
+        BardQueryInfo.getBardQueryInfo().incrementCountCacheSetFailures();
+        addCacheInfo(
+                LOG_CACHE_SET_FAILURES,
+                fingerprint,
+                CacheV2ResponseProcessor.getMD5Checksum(String.valueOf(segmentSetId.orElse(null))),
+                valueString != null ? valueString.length() : 0
+        );
+        LOG.warn(
+                "Unable to cache {}value of size: {} with cksum: {}",
+                valueString == null ? "null " : "",
+                valueString == null ? "N/A" : valueString.length(),
+                fingerprint.getChecksum(),
+                e
+        );
+    }
+
 
     @Override
     public boolean isCacheable(ResponseProcessor response) {
@@ -245,6 +254,28 @@ public class QuerySignedCacheService implements CacheService {
         return missingIntervals.isEmpty() && volatileIntervals.isEmpty();
     }
 
+    /**
+     * A query is cacheable if none of its intervals overlap the partial or volatile intervals of the request.
+     * <p>
+     * The buckets of a split query share the response context of the request, so checking the overlap rather than
+     * the emptiness of those intervals lets the complete buckets be cached while the volatile ones are refreshed.
+     *
+     * @param response The response handler
+     * @param druidQuery The query whose response is to be cached
+     *
+     * @return whether the response to the query can be cached
+     */
+    @Override
+    public boolean isCacheable(ResponseProcessor response, DruidAggregationQuery<?> druidQuery) {
+        List<Interval> queryIntervals = druidQuery == null ? null : druidQuery.getIntervals();
+        if (queryIntervals == null || queryIntervals.isEmpty()) {
+            return isCacheable(response);
+        }
+        SimplifiedIntervalList requested = new SimplifiedIntervalList(queryIntervals);
+        return requested.intersect(getPartialIntervalsWithDefault(response.getResponseContext())).isEmpty() &&
+                requested.intersect(getVolatileIntervalsWithDefault(response.getResponseContext())).isEmpty();
+    }
+
     /**
      * Construct the cache key.
      * Current implementation includes all the fields of the druidQuery besides the context.
@@ -256,8 +287,6 @@ public class QuerySignedCacheService implements CacheService {
      */
     protected String getKey(DruidAggregationQuery<?> druidQuery)
             throws JsonProcessingException {
-        JsonNode root = objectMapper.valueToTree(druidQuery);
-        Utils.canonicalize(root, objectMapper, false);
-        return writer.writeValueAsString(root);
+        return fingerprinter.getFingerprint(druidQuery).getCanonicalQuery();
     }
 }
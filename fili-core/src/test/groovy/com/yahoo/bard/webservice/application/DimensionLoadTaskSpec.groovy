@@ -12,6 +12,7 @@ import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
 import com.yahoo.bard.webservice.data.dimension.impl.NoOpSearchProviderManager
 import com.yahoo.bard.webservice.druid.client.DruidWebService
+import com.yahoo.bard.webservice.druid.client.FailureCallback
 import com.yahoo.bard.webservice.druid.client.SuccessCallback
 import com.yahoo.bard.webservice.table.PhysicalTableDictionary
 
@@ -22,6 +23,8 @@ import org.joda.time.DateTime
 
 import spock.lang.Specification
 
+import java.util.concurrent.Future
+
 class DimensionLoadTaskSpec extends Specification {
 
     static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
@@ -75,6 +78,19 @@ class DimensionLoadTaskSpec extends Specification {
         }
     }
 
+    /**
+     * Build the success callback of the only query of a load of a dimension.
+     *
+     * @param dimension  The dimension loaded
+     *
+     * @return the callback
+     */
+    SuccessCallback buildSuccessCallback(Dimension dimension) {
+        druidDimensionRowProvider.buildDruidDimensionsSuccessCallback(
+                new DruidDimensionValueLoader.DimensionLoad(dimension, 1)
+        )
+    }
+
     def "The DimensionLoader constructor successfully extracts the dimensions from a dimension dictionary"() {
         expect: "A list of singleton dimension lists that need to be loaded from Druid"
         druidDimensionRowProvider.dimensions.collect { Collections.singletonList(it) } == LOADED_DIMENSIONS.collect { [dimensionDictionary.findByApiName(it)] }
@@ -99,8 +115,11 @@ class DimensionLoadTaskSpec extends Specification {
         when:
         loader.run()
 
-        then: "A query is sent to Druid for each dimension and each data store"
-        numDruidQueries * druidWebService.postDruidQuery(_, _, _, _, _)
+        then: "A query is sent to Druid for each dimension and each data store, as earlier queries are answered"
+        numDruidQueries * druidWebService.postDruidQuery(_, _, _, _, _) >> { arguments ->
+            (arguments[3] as FailureCallback).invoke(new IOException("Not loaded in this test"))
+            return Mock(Future)
+        }
     }
 
     def "The success callback correctly loads JSON dimension data into the dimension"() {
@@ -114,7 +133,7 @@ class DimensionLoadTaskSpec extends Specification {
         )
 
         and: "The callback to test"
-        SuccessCallback callback = druidDimensionRowProvider.buildDruidDimensionsSuccessCallback(dimension)
+        SuccessCallback callback = buildSuccessCallback(dimension)
 
         and: "The data to load with the callback"
         String jsonResult = """[
@@ -169,12 +188,12 @@ class DimensionLoadTaskSpec extends Specification {
         ]"""
 
         and: "The callback to test"
-        SuccessCallback callback = druidDimensionRowProvider.buildDruidDimensionsSuccessCallback(dimension)
+        SuccessCallback callback = buildSuccessCallback(dimension)
 
         and: "The dimension value is already loaded once"
         if (dimension.findDimensionRowByKeyValue("male") == null) {
             JsonNode node = MAPPER.readTree(dimensionValueToLoad)
-            callback.invoke(node)
+            buildSuccessCallback(dimension).invoke(node)
         }
 
         and: "Try to load dimension value which is already loaded"
@@ -199,7 +218,7 @@ class DimensionLoadTaskSpec extends Specification {
         DateTime previousLastUpdated = dimension.lastUpdated
 
         and: "The callback to test"
-        SuccessCallback callback = druidDimensionRowProvider.buildDruidDimensionsSuccessCallback(dimension)
+        SuccessCallback callback = buildSuccessCallback(dimension)
 
         and: "The data to load with the callback"
         String jsonResult = "[]"
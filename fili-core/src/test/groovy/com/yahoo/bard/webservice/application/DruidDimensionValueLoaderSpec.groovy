@@ -2,13 +2,24 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.application
 
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
 import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.data.dimension.SearchProvider
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
 import com.yahoo.bard.webservice.druid.client.DruidWebService
+import com.yahoo.bard.webservice.druid.client.FailureCallback
+import com.yahoo.bard.webservice.druid.client.SuccessCallback
 import com.yahoo.bard.webservice.druid.model.datasource.DataSource
 import com.yahoo.bard.webservice.druid.model.query.DruidSearchQuery
 import com.yahoo.bard.webservice.table.PhysicalTableDictionary
 
+import com.codahale.metrics.Meter
+import com.fasterxml.jackson.databind.ObjectMapper
+
 import spock.lang.Specification
 
 import java.util.concurrent.Future
@@ -57,4 +68,162 @@ class DruidDimensionValueLoaderSpec extends Specification {
         searchQuery2.getIntervals().get(0).getStart() > searchQuery1.getIntervals().get(0).getStart()
 
     }
+
+    def "Only the values a dimension does not have are added, in a single batch on the batch executor"() {
+        setup:
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "loaded",
+                "loaded-description",
+                [BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet<DimensionField>,
+                MapStoreManager.getInstance("loaded"),
+                ScanSearchProviderManager.getInstance("loaded")
+        )
+        dimension.addDimensionRow(BardDimensionField.makeDimensionRow(dimension, "a", "existing"))
+        List<Runnable> batches = []
+        loader = new DruidDimensionValueLoader(
+                physicalTableDictionary,
+                dimensionDictionary,
+                [],
+                druidWebService,
+                { batches << it },
+                4
+        )
+        String response = """[{"timestamp": "2021-01-01T00:00:00.000Z", "result": [
+                {"dimension": "loaded", "value": "a", "count": 1},
+                {"dimension": "loaded", "value": "b", "count": 1},
+                {"dimension": "loaded", "value": "c", "count": 1}
+        ]}]"""
+
+        when:
+        loader.query(dimension, Mock(DataSource))
+
+        then:
+        1 * druidWebService.postDruidQuery(*_) >> { arguments ->
+            (arguments[1] as SuccessCallback).invoke(new ObjectMapper().readTree(response))
+            return Mock(Future)
+        }
+        batches.size() == 1
+        dimension.searchProvider.findAllDimensionRows().size() == 1
+
+        when:
+        Meter newValuesMeter = MetricRegistryFactory.registry.meter(
+                DruidDimensionValueLoader.NEW_VALUES_METER_PREFIX + "loaded"
+        )
+        long newValues = newValuesMeter.count
+        batches[0].run()
+
+        then:
+        dimension.findDimensionRowByKeyValue("a").get(BardDimensionField.DESC) == "existing"
+        dimension.findDimensionRowByKeyValue("b") == BardDimensionField.makeDimensionRow(dimension, "b", "")
+        dimension.searchProvider.findAllDimensionRows().size() == 3
+        dimension.lastUpdated != null
+        newValuesMeter.count == newValues + 2
+
+        cleanup:
+        dimension.searchProvider.clearDimension()
+    }
+
+    def "Values are diffed against the keys of all the rows of the dimension in one pass"() {
+        setup:
+        SearchProvider searchProvider = Mock(SearchProvider)
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "paged",
+                "paged-description",
+                [BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet<DimensionField>,
+                MapStoreManager.getInstance("paged"),
+                searchProvider
+        )
+        dimension.addDimensionRow(BardDimensionField.makeDimensionRow(dimension, "a", "existing"))
+        String response = """[{"timestamp": "2021-01-01T00:00:00.000Z", "result": [
+                {"dimension": "paged", "value": "a", "count": 1},
+                {"dimension": "paged", "value": "b", "count": 1}
+        ]}]"""
+
+        when:
+        loader.query(dimension, Mock(DataSource))
+
+        then:
+        1 * druidWebService.postDruidQuery(*_) >> { arguments ->
+            (arguments[1] as SuccessCallback).invoke(new ObjectMapper().readTree(response))
+            return Mock(Future)
+        }
+        1 * searchProvider.findAllDimensionKeys() >> (["a"] as Set)
+        0 * searchProvider.findFilteredDimensionKeys(_)
+        1 * searchProvider.refreshIndex({ it.size() == 1 })
+        dimension.findDimensionRowByKeyValue("a").get(BardDimensionField.DESC) == "existing"
+        dimension.findDimensionRowByKeyValue("b") == BardDimensionField.makeDimensionRow(dimension, "b", "")
+
+        cleanup:
+        MapStoreManager.removeInstance("paged")
+    }
+
+    def "Queries beyond the permits are queued without blocking, and sent as earlier queries complete"() {
+        setup:
+        loader = new DruidDimensionValueLoader(
+                physicalTableDictionary,
+                dimensionDictionary,
+                [],
+                druidWebService,
+                { it.run() },
+                2
+        )
+        List<FailureCallback> pending = []
+
+        when: "More queries are made than there are permits"
+        4.times { loader.query(Mock(Dimension), Mock(DataSource)) }
+
+        then: "Only as many as there are permits are sent"
+        2 * druidWebService.postDruidQuery(*_) >> { arguments ->
+            pending << (arguments[3] as FailureCallback)
+            return Mock(Future)
+        }
+
+        when: "A query completes"
+        pending.remove(0).invoke(new IOException("failed"))
+
+        then: "The next queued query is sent"
+        1 * druidWebService.postDruidQuery(*_) >> Mock(Future)
+    }
+
+    def "A query which cannot be sent releases its permit"() {
+        setup:
+        loader = new DruidDimensionValueLoader(
+                physicalTableDictionary,
+                dimensionDictionary,
+                [],
+                druidWebService,
+                { it.run() },
+                1
+        )
+
+        when:
+        2.times { loader.query(Mock(Dimension), Mock(DataSource)) }
+
+        then:
+        2 * druidWebService.postDruidQuery(*_) >> { throw new IllegalStateException("closed") }
+    }
+
+    def "Queries wait for a permit which failed queries release"() {
+        setup:
+        loader = new DruidDimensionValueLoader(
+                physicalTableDictionary,
+                dimensionDictionary,
+                [],
+                druidWebService,
+                { it.run() },
+                1
+        )
+        Dimension dimension = Mock(Dimension)
+
+        when:
+        3.times { loader.query(dimension, Mock(DataSource)) }
+
+        then:
+        3 * druidWebService.postDruidQuery(*_) >> { arguments ->
+            (arguments[3] as FailureCallback).invoke(new IOException("failed"))
+            return Mock(Future)
+        }
+        0 * dimension.addAllDimensionRows(_)
+        0 * dimension.setLastUpdated(_)
+    }
 }
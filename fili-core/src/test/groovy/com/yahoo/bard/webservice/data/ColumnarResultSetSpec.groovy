@@ -0,0 +1,176 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.Dimension
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+
+import spock.lang.Specification
+
+class ColumnarResultSetSpec extends Specification {
+
+    Dimension gender
+    DimensionColumn genderColumn
+    MetricColumn pageViews = new MetricColumn("pageViews")
+    MetricColumn ratio = new MetricColumn("ratio")
+    ResultSetSchema schema
+    DateTime start = new DateTime("2012-01-01T00:00:00.000Z", DateTimeZone.UTC)
+
+    def setup() {
+        LinkedHashSet<DimensionField> dimensionFields = [BardDimensionField.ID, BardDimensionField.DESC]
+        gender = new KeyValueStoreDimension(
+                "gender",
+                "gender",
+                dimensionFields,
+                MapStoreManager.getInstance("gender"),
+                ScanSearchProviderManager.getInstance("gender")
+        )
+        gender.addDimensionRow(BardDimensionField.makeDimensionRow(gender, "f", "female"))
+        genderColumn = new DimensionColumn(gender)
+        schema = new ResultSetSchema(DAY, [genderColumn, pageViews, ratio] as LinkedHashSet)
+    }
+
+    def "Rows read back as the results they were built from"() {
+        given:
+        ColumnarResultSet.Builder builder = new ColumnarResultSet.Builder(schema, DateTimeZone.UTC)
+        builder.addRow()
+        builder.setTimestamp(0, start.getMillis())
+                .setDimensionValue(genderColumn, "f")
+                .setMetricValue(pageViews, 10L)
+                .setMetricValue(ratio, 0.5d)
+        builder.addRow()
+        builder.setTimestamp(1, start.plusDays(1).getMillis())
+                .setDimensionValue(genderColumn, "m")
+                .setMetricValue(pageViews, 20L)
+                .setMetricValue(ratio, (Object) null)
+
+        when:
+        ColumnarResultSet resultSet = builder.build()
+
+        then:
+        resultSet.size() == 2
+        resultSet.getSchema() == schema
+        resultSet.asList() == [
+                new Result(
+                        [(genderColumn): gender.findDimensionRowByKeyValue("f")],
+                        [(pageViews): 10 as BigDecimal, (ratio): BigDecimal.valueOf(0.5d)],
+                        start
+                ),
+                new Result(
+                        [(genderColumn): gender.createEmptyDimensionRow("m")],
+                        [(pageViews): 20 as BigDecimal, (ratio): null],
+                        start.plusDays(1)
+                )
+        ]
+
+        and:
+        resultSet.getMetricValueAsLong(pageViews, 1) == 20L
+        resultSet.isNumeric(ratio, 0)
+        !resultSet.isNumeric(ratio, 1)
+        resultSet.getTimestampMillis(1) == start.plusDays(1).getMillis()
+    }
+
+    def "Dimension values are dictionary encoded"() {
+        given:
+        DimensionRow female = BardDimensionField.makeDimensionRow(gender, "f", "f")
+        DimensionRow male = BardDimensionField.makeDimensionRow(gender, "m", "")
+        Dimension mockDimension = Mock(Dimension) { getApiName() >> "gender" }
+        DimensionColumn column = new DimensionColumn(mockDimension)
+        ResultSetSchema dimensionSchema = new ResultSetSchema(DAY, [column] as LinkedHashSet)
+        ColumnarResultSet.Builder builder = new ColumnarResultSet.Builder(dimensionSchema, DateTimeZone.UTC)
+
+        when:
+        ["f", "f", "m", "f"].each {
+            builder.addRow()
+            builder.setDimensionValue(column, it)
+        }
+        ColumnarResultSet resultSet = builder.build()
+
+        then: "Each distinct key value is only resolved once"
+        1 * mockDimension.findDimensionRowByKeyValue("f") >> female
+        1 * mockDimension.findDimensionRowByKeyValue("m") >> null
+        1 * mockDimension.createEmptyDimensionRow("m") >> male
+
+        and:
+        resultSet.getDimensionDictionary(column).size() == 2
+        (0..3).collect { resultSet.getDimensionId(column, it) } == [0, 0, 1, 0]
+        resultSet.getDimensionRow(column, 3) == resultSet.getDimensionRow(column, 0)
+    }
+
+    def "A metric column holding mixed kinds of values keeps every value exactly"() {
+        given:
+        ColumnarResultSet.Builder builder = new ColumnarResultSet.Builder(schema, DateTimeZone.UTC)
+        [10L, 2.5d, "text"].eachWithIndex { value, row ->
+            builder.addRow()
+            builder.setTimestamp(row, start.getMillis()).setDimensionValue(genderColumn, "f")
+            if (value instanceof Long) {
+                builder.setMetricValue(pageViews, value as long)
+            } else if (value instanceof Double) {
+                builder.setMetricValue(pageViews, value as double)
+            } else {
+                builder.setMetricValue(pageViews, (Object) value)
+            }
+        }
+
+        when:
+        ColumnarResultSet resultSet = builder.build()
+
+        then:
+        resultSet.asList()*.getMetricValue(pageViews) == [10 as BigDecimal, BigDecimal.valueOf(2.5d), "text"]
+        !resultSet.isNumeric(pageViews, 0)
+    }
+
+    def "Missing metric values are left out of the result views"() {
+        given:
+        ColumnarResultSet.Builder builder = new ColumnarResultSet.Builder(schema, DateTimeZone.UTC)
+        builder.addRow()
+        builder.setTimestamp(0, start.getMillis()).setDimensionValue(genderColumn, "f").setMetricValue(pageViews, 1L)
+
+        expect:
+        !builder.build().get(0).getMetricValues().containsKey(ratio)
+    }
+
+    def "The rows of columnar result sets are read only"() {
+        given:
+        ColumnarResultSet resultSet = new ColumnarResultSet.Builder(schema, DateTimeZone.UTC).build()
+
+        when:
+        resultSet.asList().add(Mock(Result))
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "Row based copies of a columnar result set hold its rows"() {
+        given:
+        ColumnarResultSet.Builder builder = new ColumnarResultSet.Builder(schema, DateTimeZone.UTC)
+        builder.addRow()
+        builder.setTimestamp(0, start.getMillis()).setDimensionValue(genderColumn, "f").setMetricValue(pageViews, 1L)
+        ColumnarResultSet resultSet = builder.build()
+
+        when:
+        ResultSet copy = resultSet.toResultSet()
+
+        then:
+        copy == resultSet.asList()
+        copy.getSchema() == schema
+
+        when:
+        copy.clear()
+
+        then:
+        resultSet.size() == 1
+    }
+}
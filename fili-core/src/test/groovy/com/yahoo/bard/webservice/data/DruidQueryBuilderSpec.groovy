@@ -19,6 +19,7 @@ import com.yahoo.bard.webservice.data.metric.mappers.NoOpResultSetMapper
 import com.yahoo.bard.webservice.data.time.ZonedTimeGrain
 import com.yahoo.bard.webservice.data.volatility.DefaultingVolatileIntervalsService
 import com.yahoo.bard.webservice.druid.model.DefaultQueryType
+import com.yahoo.bard.webservice.druid.model.aggregation.LongSumAggregation
 import com.yahoo.bard.webservice.druid.model.builders.DefaultDruidHavingBuilder
 import com.yahoo.bard.webservice.druid.model.builders.DruidFilterBuilder
 import com.yahoo.bard.webservice.druid.model.builders.DruidOrFilterBuilder
@@ -252,6 +253,76 @@ class DruidQueryBuilderSpec extends Specification {
         timeseriesQuery.granularity == granularity.withZone(UTC)
     }
 
+    def "A planned nested query takes the filter and intervals of a later request"() {
+        setup:
+        ConstrainedTable table = TableTestUtils.buildTable(
+                "tab1",
+                DAY.buildZonedTimeGrain(UTC),
+                [] as Set,
+                [:],
+                Mock(DataSourceMetadataService) { getAvailableIntervalsByDataSource(_ as DataSourceName) >> [:]}
+        )
+        Filter plannedFilter = DRUID_FILTER_BUILDER.buildFilters([(resources.d3): [apiFiltersByName.abie1234] as Set])
+        Filter requestFilter = DRUID_FILTER_BUILDER.buildFilters([(resources.d3): [apiFiltersByName.abne56] as Set])
+        List<Interval> requestIntervals = [new Interval(new DateTime("2016"), Hours.ONE)]
+        GroupByQuery planned = builder.buildGroupByQuery(
+                resources.complexTemplateQuery,
+                table,
+                WEEK.buildZonedTimeGrain(UTC),
+                UTC,
+                [] as Set,
+                plannedFilter,
+                (Having) null,
+                intervals,
+                limitSpec
+        )
+
+        when:
+        GroupByQuery query = builder.withFilterAndIntervals(planned, requestFilter, requestIntervals)
+        GroupByQuery inner = query.dataSource.getQuery().get()
+
+        then:
+        query.filter == null
+        query.intervals == requestIntervals
+        query.limitSpec == planned.limitSpec
+        inner.filter == requestFilter
+        inner.intervals == requestIntervals
+        inner.dataSource.is(planned.dataSource.getQuery().get().dataSource)
+    }
+
+    def "Separately built requests of the same shape reuse the plan of the first"() {
+        setup:
+        QueryPlanCache planCache = new QueryPlanCache(10, 60000)
+        DruidQueryBuilder cachingBuilder = new DruidQueryBuilder(
+                resources.logicalDictionary,
+                resolver,
+                resources.druidFilterBuilder,
+                resources.druidHavingBuilder,
+                planCache
+        )
+        long hits = QueryPlanCache.HITS.count
+
+        when: "Two requests with equal but separately built templates, havings and sorts are built"
+        List<DruidAggregationQuery<?>> queries = (1..2).collect {
+            DataApiRequest request = Mock(DataApiRequest)
+            request.getHavings() >> [(resources.m1): [new ApiHaving("$resources.m1.name-gt[1]", resources.metricDictionary)] as Set]
+            request.getSorts() >> ([new OrderByColumn(resources.m1.name, SortDirection.DESC)] as LinkedHashSet)
+            initDefault(request)
+            TemplateDruidQuery template = new TemplateDruidQuery(
+                    [new LongSumAggregation(resources.m1.name, resources.m1.name)] as LinkedHashSet,
+                    [] as LinkedHashSet
+            )
+            cachingBuilder.buildQuery(request, template)
+        }
+
+        then: "The second request reuses the plan of the first"
+        planCache.size() == 1
+        QueryPlanCache.HITS.count == hits + 1
+        queries[1].dataSource == queries[0].dataSource
+        (queries[1] as GroupByQuery).having == (queries[0] as GroupByQuery).having
+        (queries[1] as GroupByQuery).limitSpec == (queries[0] as GroupByQuery).limitSpec
+    }
+
     def "Test recursive buildQueryMethods with Grain"() {
         setup:
         apiRequest = Mock(DataApiRequest)
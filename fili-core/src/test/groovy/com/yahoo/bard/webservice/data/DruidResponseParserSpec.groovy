@@ -20,6 +20,7 @@ import com.yahoo.bard.webservice.table.Column
 import com.yahoo.bard.webservice.table.Schema
 
 import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParseException
 import com.fasterxml.jackson.core.JsonParser
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
@@ -397,6 +398,106 @@ class DruidResponseParserSpec extends Specification {
         queryType << [DefaultQueryType.GROUP_BY, DefaultQueryType.TOP_N, DefaultQueryType.TIMESERIES]
     }
 
+    @Unroll
+    def "Stream parsing a Druid #queryType result builds the same result set as parsing the JSON tree"() {
+        given: "A response from Druid containing integer, decimal, string, null and JsonNode metrics"
+        String druidResponse = buildResponse(
+                queryType,
+                [
+                        '"pageViews"': 10,
+                        '"time_spent"': 1.25,
+                        '"luckyNumbers"': '"1, 3, 7"',
+                        '"unluckyNumbers"': '{"values": "2", "length": 1}',
+                        '"null"': null
+                ]
+        )
+        ResultSetSchema schema = buildSchema(["pageViews", "time_spent", "luckyNumbers", "unluckyNumbers", "null"])
+
+        when: "We stream parse the response"
+        ResultSet streamedResultSet = MAPPER.getFactory().createParser(druidResponse).withCloseable {
+            responseParser.parse(it, schema, queryType, DateTimeZone.UTC)
+        }
+
+        then: "The result set is the one built from the JSON tree"
+        streamedResultSet == buildResultSet(druidResponse, schema, queryType)
+        streamedResultSet.getSchema() == schema
+
+        where:
+        queryType << [
+                DefaultQueryType.GROUP_BY,
+                DefaultQueryType.TOP_N,
+                DefaultQueryType.TIMESERIES,
+                DefaultQueryType.LOOKBACK
+        ]
+    }
+
+    @Unroll
+    def "Columnar parsing a Druid #queryType result builds the same result set as parsing the JSON tree"() {
+        given: "A response from Druid containing integer, decimal, string, null and JsonNode metrics"
+        String druidResponse = buildResponse(
+                queryType,
+                [
+                        '"pageViews"': 10,
+                        '"time_spent"': 1.25,
+                        '"luckyNumbers"': '"1, 3, 7"',
+                        '"unluckyNumbers"': '{"values": "2", "length": 1}',
+                        '"null"': null
+                ]
+        )
+        ResultSetSchema schema = buildSchema(["pageViews", "time_spent", "luckyNumbers", "unluckyNumbers", "null"])
+
+        when: "We parse the response into columns"
+        ColumnarResultSet columnarResultSet = MAPPER.getFactory().createParser(druidResponse).withCloseable {
+            responseParser.parseColumnar(it, schema, queryType, DateTimeZone.UTC)
+        }
+
+        then: "The result views match the results built from the JSON tree"
+        columnarResultSet.asList() == buildResultSet(druidResponse, schema, queryType)
+        columnarResultSet.getSchema() == schema
+
+        and: "Numeric metrics are readable as primitives"
+        columnarResultSet.getMetricValueAsLong(schema.getColumn("pageViews", MetricColumn.class).get(), 0) == 10
+        columnarResultSet.getMetricValueAsDouble(schema.getColumn("time_spent", MetricColumn.class).get(), 0) == 1.25d
+
+        where:
+        queryType << [
+                DefaultQueryType.GROUP_BY,
+                DefaultQueryType.TOP_N,
+                DefaultQueryType.TIMESERIES,
+                DefaultQueryType.LOOKBACK
+        ]
+    }
+
+    def "Stream parsing skips unknown fields and reads records whose timestamp follows the rows"() {
+        given:
+        String druidResponse = """
+            [ {
+                "result" : [ { "ageBracket" : "4", "extra" : { "nested" : [1, 2] }, "pageViews" : 1 } ],
+                "timestamp" : "2012-01-01T00:00:00.000Z"
+            } ]
+        """
+        ResultSetSchema schema = new ResultSetSchema(DAY, [ageColumn, new MetricColumn("pageViews")] as Set)
+
+        when:
+        ResultSet resultSet = MAPPER.getFactory().createParser(druidResponse).withCloseable {
+            responseParser.parse(it, schema, DefaultQueryType.TOP_N, DateTimeZone.UTC)
+        }
+
+        then:
+        resultSet == buildResultSet(druidResponse, schema, DefaultQueryType.TOP_N)
+        resultSet.get(0).getTimeStamp() == new DateTime("2012-01-01T00:00:00.000Z", DateTimeZone.UTC)
+    }
+
+    def "Stream parsing a response that is not an array of records fails"() {
+        when:
+        MAPPER.getFactory().createParser('{"error": "bad"}').withCloseable {
+            responseParser.parse(it, buildSchema(["pageViews"]), DefaultQueryType.GROUP_BY, DateTimeZone.UTC)
+        }
+
+        then:
+        thrown(JsonParseException)
+    }
+
     def "Attempting to parse an unknown query type throws an UnsupportedOperationException"() {
         given:
         QueryType mysteryType = Mock(QueryType)
@@ -3,6 +3,7 @@
 package com.yahoo.bard.webservice.data
 
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.HOUR
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.MONTH
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.WEEK
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.YEAR
@@ -16,6 +17,7 @@ import com.yahoo.bard.webservice.data.dimension.DimensionDictionary
 import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
 import com.yahoo.bard.webservice.data.time.AllGranularity
 import com.yahoo.bard.webservice.data.time.Granularity
+import com.yahoo.bard.webservice.data.time.ZonedTimeGrain
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.metadata.TestDataSourceMetadataService
 import com.yahoo.bard.webservice.table.Column
@@ -23,6 +25,7 @@ import com.yahoo.bard.webservice.table.StrictPhysicalTable
 import com.yahoo.bard.webservice.table.resolver.QueryPlanningConstraint
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList
 
+import org.joda.time.DateTime
 import org.joda.time.DateTimeZone
 import org.joda.time.Interval
 
@@ -195,4 +198,113 @@ class PartialDataHandlerSpec extends Specification {
         where:
         [granularity, comment, fromAsStrings, removeAsStrings, expectedAsStrings] << complementExpectedSets()
     }
+
+    @Unroll
+    def "Gap buckets by #granularity match testing every bucket"() {
+        setup:
+        Random random = new Random(11)
+        DateTimeZone zone = granularity instanceof ZonedTimeGrain ? granularity.timeZone : UTC
+        // Requests start just before the end of a month, a daylight saving change, or both
+        List<DateTime> origins = ["2015-02-27T18:00", "2015-03-06T20:00", "2015-10-30T20:00"].collect {
+            new DateTime(it, zone)
+        }
+        int partiallyCovered = 0
+
+        expect:
+        (1..100).every {
+            SimplifiedIntervalList requested = randomIntervals(random, origins[it % origins.size()], granularity, 3)
+            SimplifiedIntervalList supply = randomSupply(random, requested, granularity)
+            SimplifiedIntervalList gaps = PartialDataHandler.collectBucketedIntervalsNotInIntervalList(
+                    supply,
+                    requested,
+                    granularity
+            )
+            SimplifiedIntervalList everyBucket = collectEveryBucketNotIn(
+                    new SimplifiedIntervalList(),
+                    requested,
+                    granularity
+            )
+            if (!gaps.isEmpty() && gaps != everyBucket) {
+                partiallyCovered++
+            }
+            gaps == collectEveryBucketNotIn(supply, requested, granularity)
+        }
+
+        and: "most requests are neither fully covered nor entirely missing"
+        partiallyCovered >= 50
+
+        where:
+        granularity << [
+                HOUR,
+                DAY,
+                WEEK,
+                MONTH,
+                YEAR,
+                DAY.buildZonedTimeGrain(DateTimeZone.forID("America/Los_Angeles")),
+                HOUR.buildZonedTimeGrain(DateTimeZone.forID("America/Los_Angeles")),
+                HOUR.buildZonedTimeGrain(DateTimeZone.forID("Asia/Kolkata"))
+        ]
+    }
+
+    def "An hourly request over years with a few gaps collects the buckets around the gaps"() {
+        setup:
+        SimplifiedIntervalList requested = buildIntervalList(["2014-01-01/2016-01-01"])
+        SimplifiedIntervalList supply = buildIntervalList(
+                ["2013/2014-03-01T10:30", "2014-03-01T12:15/2015-07-04T01", "2015-07-04T03/2015-12-31T23:59"]
+        )
+
+        expect:
+        PartialDataHandler.collectBucketedIntervalsNotInIntervalList(supply, requested, HOUR) == buildIntervalList(
+                ["2014-03-01T10/2014-03-01T13", "2015-07-04T01/2015-07-04T03", "2015-12-31T23/2016-01-01"]
+        )
+    }
+
+    /**
+     * Build one to a number of random intervals, not aligned to the grain, of up to 8 buckets within 30 buckets of an
+     * origin.
+     */
+    SimplifiedIntervalList randomIntervals(Random random, DateTime origin, Granularity granularity, int count) {
+        long bucket = granularity.estimatedDuration.millis
+        new SimplifiedIntervalList((0..random.nextInt(count)).collect {
+            long start = origin.millis + (long) (random.nextDouble() * bucket * 30)
+            long length = (long) ((0.2 + random.nextDouble() * 8) * bucket)
+            new Interval(start, start + length, origin.chronology)
+        })
+    }
+
+    /**
+     * Build the intervals of data available for requested intervals.
+     * <p>
+     * Each requested interval is either missing or covered from up to a bucket before or after its start to up to a
+     * bucket before or after its end, less up to two holes shorter or longer than a bucket.
+     */
+    SimplifiedIntervalList randomSupply(Random random, SimplifiedIntervalList requested, Granularity granularity) {
+        long bucket = granularity.estimatedDuration.millis
+        SimplifiedIntervalList supply = new SimplifiedIntervalList()
+        requested.findAll { random.nextInt(8) != 0 }.each { Interval interval ->
+            long start = interval.startMillis + (long) ((random.nextDouble() - 0.5) * 2 * bucket)
+            long end = Math.max(start, interval.endMillis + (long) ((random.nextDouble() - 0.5) * 2 * bucket))
+            SimplifiedIntervalList holes = new SimplifiedIntervalList((0..<random.nextInt(3)).collect {
+                long holeStart = start + (long) (random.nextDouble() * (end - start))
+                long holeLength = (long) (random.nextDouble() * bucket * (random.nextBoolean() ? 0.5 : 2))
+                new Interval(holeStart, holeStart + holeLength, interval.chronology)
+            })
+            supply = supply.union(
+                    new SimplifiedIntervalList([new Interval(start, end, interval.chronology)]).subtract(holes)
+            )
+        }
+        supply
+    }
+
+    /**
+     * Collect the buckets of the requested intervals not in the supply, testing every bucket.
+     */
+    SimplifiedIntervalList collectEveryBucketNotIn(
+            SimplifiedIntervalList supply,
+            SimplifiedIntervalList requested,
+            Granularity granularity
+    ) {
+        SimplifiedIntervalList.IsSubinterval isSubinterval = new SimplifiedIntervalList.IsSubinterval(supply)
+        granularity.intervalsIterable(requested).findAll { !isSubinterval.test(it) } as SimplifiedIntervalList
+    }
 }
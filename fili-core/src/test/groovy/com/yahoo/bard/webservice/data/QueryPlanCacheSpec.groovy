@@ -0,0 +1,240 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data
+
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.PARTIAL_DATA
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.PARTIAL_DATA_QUERY_OPTIMIZATION
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+import static org.joda.time.DateTimeZone.UTC
+
+import com.yahoo.bard.webservice.data.QueryPlanCache.QueryPlan
+import com.yahoo.bard.webservice.data.config.names.DataSourceName
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.data.metric.TemplateDruidQuery
+import com.yahoo.bard.webservice.data.volatility.VolatileIntervalsService
+import com.yahoo.bard.webservice.druid.model.DefaultQueryType
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery
+import com.yahoo.bard.webservice.table.ConfigPhysicalTable
+import com.yahoo.bard.webservice.table.ConstrainedTable
+import com.yahoo.bard.webservice.table.LogicalTable
+import com.yahoo.bard.webservice.table.PhysicalTable
+import com.yahoo.bard.webservice.table.PhysicalTableSchema
+import com.yahoo.bard.webservice.table.availability.Availability
+import com.yahoo.bard.webservice.table.resolver.QueryPlanningConstraint
+import com.yahoo.bard.webservice.table.resolver.TableResolutionContext
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
+import com.yahoo.bard.webservice.web.filters.ApiFilters
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class QueryPlanCacheSpec extends Specification {
+
+    boolean partialData = PARTIAL_DATA.isOn()
+    boolean partialDataQueryOptimization = PARTIAL_DATA_QUERY_OPTIMIZATION.isOn()
+
+    long version = 1
+    SimplifiedIntervalList available = new SimplifiedIntervalList([new Interval("2017-01-01/2017-01-10")])
+    Availability availability = Mock(Availability) {
+        getDataSourceVersions() >> { Optional.of([(DataSourceName.of("source")): version]) }
+    }
+    ConfigPhysicalTable table = Mock(ConfigPhysicalTable) {
+        getAvailability() >> availability
+        getAvailableIntervals(_) >> { available }
+        getSchema() >> Mock(PhysicalTableSchema) {
+            getTimeGrain() >> DAY.buildZonedTimeGrain(UTC)
+            getGranularity() >> DAY
+            getColumns() >> ([new MetricColumn("metric")] as LinkedHashSet)
+        }
+    }
+
+    LogicalTable logicalTable = Mock(LogicalTable) { getName() >> "logical" }
+    DataApiRequest request = Mock(DataApiRequest) {
+        getTable() >> logicalTable
+        getGranularity() >> DAY
+        getTimeZone() >> UTC
+        getHavings() >> [:]
+        getSorts() >> ([] as LinkedHashSet)
+        getCount() >> Optional.empty()
+        getTopN() >> Optional.empty()
+    }
+    TemplateDruidQuery template = new TemplateDruidQuery([], [])
+    VolatileIntervalsService volatileIntervalsService = null
+
+    def cleanup() {
+        PARTIAL_DATA.setOn(partialData)
+        PARTIAL_DATA_QUERY_OPTIMIZATION.setOn(partialDataQueryOptimization)
+    }
+
+    QueryPlanningConstraint constraint(String interval) {
+        new QueryPlanningConstraint(
+                [] as Set,
+                [] as Set,
+                [] as Set,
+                ["metric"] as Set,
+                new ApiFilters(),
+                logicalTable,
+                [new Interval(interval)],
+                [] as Set,
+                DAY,
+                DAY
+        )
+    }
+
+    List<Object> planKey(String interval, Collection<PhysicalTable> candidates = [table]) {
+        TableResolutionContext context = new TableResolutionContext(
+                constraint(interval),
+                new PartialDataHandler(),
+                volatileIntervalsService
+        )
+        QueryPlanCache.planKey(request, template, context, candidates, DefaultQueryType.GROUP_BY)
+    }
+
+    def "Plans are found by key and reported as hits and misses"() {
+        setup:
+        QueryPlanCache cache = new QueryPlanCache(10, 60000)
+        QueryPlan plan = new QueryPlan(Mock(ConstrainedTable), Mock(DruidAggregationQuery))
+        long hits = QueryPlanCache.HITS.count
+        long misses = QueryPlanCache.MISSES.count
+
+        expect:
+        cache.get(["shape"]) == null
+
+        when:
+        cache.put(["shape"], plan)
+
+        then:
+        cache.get(["shape"]).is(plan)
+        cache.get(["other shape"]) == null
+        cache.get(null) == null
+        cache.size() == 1
+        QueryPlanCache.HITS.count - hits == 1
+        QueryPlanCache.MISSES.count - misses == 2
+    }
+
+    def "A cache without entries never holds a plan"() {
+        setup:
+        QueryPlanCache cache = new QueryPlanCache(0, 60000)
+
+        when:
+        cache.put(["shape"], new QueryPlan(Mock(ConstrainedTable), Mock(DruidAggregationQuery)))
+
+        then:
+        !cache.enabled
+        cache.get(["shape"]) == null
+        cache.size() == 0
+    }
+
+    def "Plans expire after their time to live"() {
+        setup:
+        QueryPlanCache cache = new QueryPlanCache(10, 0)
+
+        when:
+        cache.put(["shape"], new QueryPlan(Mock(ConstrainedTable), Mock(DruidAggregationQuery)))
+
+        then:
+        cache.get(["shape"]) == null
+    }
+
+    @Unroll
+    def "Requests covered alike by the candidate tables share a key when partial data is #partialDataOn"() {
+        setup:
+        PARTIAL_DATA.setOn(partialDataOn)
+        PARTIAL_DATA_QUERY_OPTIMIZATION.setOn(false)
+
+        expect:
+        planKey("2017-01-01/2017-01-02") == planKey("2017-01-03/2017-01-05")
+        (planKey("2017-01-01/2017-01-02") == planKey("2017-01-09/2017-01-11")) == !partialDataOn
+
+        where:
+        partialDataOn << [true, false]
+    }
+
+    def "With partial data on, a request moving forward with the available data keeps its key"() {
+        setup:
+        PARTIAL_DATA.setOn(true)
+        PARTIAL_DATA_QUERY_OPTIMIZATION.setOn(false)
+        List<Object> key = planKey("2017-01-07/2017-01-11")
+
+        when:
+        available = new SimplifiedIntervalList([new Interval("2017-01-01/2017-01-11")])
+
+        then:
+        planKey("2017-01-08/2017-01-12") == key
+        planKey("2017-01-07/2017-01-11") != key
+    }
+
+    def "With partial data on, the key changes as the volatile intervals of the candidate tables move"() {
+        setup:
+        PARTIAL_DATA.setOn(true)
+        PARTIAL_DATA_QUERY_OPTIMIZATION.setOn(false)
+        SimplifiedIntervalList volatileIntervals = new SimplifiedIntervalList()
+        volatileIntervalsService = Mock(VolatileIntervalsService) {
+            getVolatileIntervals(*_) >> { volatileIntervals }
+        }
+        available = new SimplifiedIntervalList([new Interval("2017-01-01/2017-01-10T12:00")])
+        List<Object> key = planKey("2017-01-09/2017-01-11")
+
+        when: "The partial bucket becomes volatile"
+        volatileIntervals = new SimplifiedIntervalList([new Interval("2017-01-10/2017-01-11")])
+
+        then: "The volatile data comparator may choose another table"
+        planKey("2017-01-09/2017-01-11") != key
+    }
+
+    def "The key is built in the context the table is resolved in, computing the missing intervals once"() {
+        setup:
+        PARTIAL_DATA.setOn(true)
+        PARTIAL_DATA_QUERY_OPTIMIZATION.setOn(false)
+        TableResolutionContext context = new TableResolutionContext(
+                constraint("2017-01-09/2017-01-11"),
+                new PartialDataHandler(),
+                null
+        )
+
+        when:
+        QueryPlanCache.planKey(request, template, context, [table], DefaultQueryType.GROUP_BY)
+        long missing = context.getMissingDuration(table)
+
+        then:
+        1 * table.getAvailableIntervals(_) >> available
+        missing == new Interval("2017-01-10/2017-01-11").toDurationMillis()
+    }
+
+    def "The key holds the alignment of the intervals with the candidate tables"() {
+        setup:
+        PARTIAL_DATA.setOn(false)
+        PARTIAL_DATA_QUERY_OPTIMIZATION.setOn(false)
+
+        expect:
+        planKey("2017-01-01/2017-01-02") == planKey("2017-01-03/2017-01-05")
+        planKey("2017-01-01/2017-01-02") != planKey("2017-01-01T12:00/2017-01-02")
+    }
+
+    def "The key changes with the versions of the data sources"() {
+        setup:
+        List<Object> key = planKey("2017-01-01/2017-01-02")
+
+        when:
+        version++
+
+        then:
+        planKey("2017-01-01/2017-01-02") != key
+    }
+
+    def "Requests on tables which are not versioned are not cached"() {
+        setup:
+        Availability unversioned = Mock(Availability) { getDataSourceVersions() >> Optional.empty() }
+        ConfigPhysicalTable unversionedTable = Mock(ConfigPhysicalTable) {
+            getAvailability() >> unversioned
+            getSchema() >> Mock(PhysicalTableSchema) { getTimeGrain() >> DAY.buildZonedTimeGrain(UTC) }
+        }
+
+        expect:
+        planKey("2017-01-01/2017-01-02", [table, unversionedTable]) == null
+        planKey("2017-01-01/2017-01-02", [table, Mock(PhysicalTable)]) == null
+    }
+}
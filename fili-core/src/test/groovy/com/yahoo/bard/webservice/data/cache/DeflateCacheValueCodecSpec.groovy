@@ -0,0 +1,52 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+
+class DeflateCacheValueCodecSpec extends Specification {
+
+    ObjectMapper mapper = new ObjectMapper()
+    DeflateCacheValueCodec codec = new DeflateCacheValueCodec()
+
+    String json = mapper.writeValueAsString(
+            (1..200).collect { [timestamp: "2014-06-10T00:00:00.000Z", event: [color: "red", pageViews: it]] }
+    )
+
+    def "Encoded values decode to the original response"() {
+        setup:
+        JsonNode response = mapper.readTree(json)
+
+        expect:
+        codec.decode(codec.encode(response, mapper), mapper) == response
+    }
+
+    def "Encoded values are framed with the format version and much smaller than the JSON text"() {
+        when:
+        String encoded = codec.encode(mapper.readTree(json), mapper)
+
+        then:
+        Base64.decoder.decode(encoded)[0] == DeflateCacheValueCodec.FORMAT_VERSION
+        encoded.length() * 5 < json.length()
+    }
+
+    def "Plain JSON values are still decoded"() {
+        expect:
+        codec.decode(json, mapper) == mapper.readTree(json)
+        codec.decode(new JsonCacheValueCodec().encode(mapper.readTree("{}"), mapper), mapper) == mapper.readTree("{}")
+    }
+
+    def "Values with an unknown format version are rejected"() {
+        setup:
+        String encoded = Base64.encoder.encodeToString([2, 1, 2, 3] as byte[])
+
+        when:
+        codec.decode(encoded, mapper)
+
+        then:
+        thrown(IOException)
+    }
+}
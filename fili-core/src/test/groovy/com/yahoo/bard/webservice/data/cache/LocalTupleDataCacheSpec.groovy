@@ -0,0 +1,109 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory
+
+import spock.lang.Specification
+
+class LocalTupleDataCacheSpec extends Specification {
+
+    static final String PREFIX = "test.meter.cache.local"
+
+    // Every entry weighs 10 units, so a cache of 30 holds 3 entries
+    LocalTupleDataCache<Long, String> cache = new LocalTupleDataCache<>(30, { 10L }, PREFIX)
+
+    def "Entries set in the cache can be read back and misses return null"() {
+        when:
+        cache.set("key", 1L, "value")
+
+        then:
+        cache.get("key").meta == 1L
+        cache.getDataValue("key") == "value"
+        cache.get("other") == null
+        cache.size() == 1
+        cache.totalWeight == 10
+    }
+
+    def "Hits and misses are metered"() {
+        setup:
+        long hits = MetricRegistryFactory.registry.meter("${PREFIX}.hits").count
+        long misses = MetricRegistryFactory.registry.meter("${PREFIX}.misses").count
+        cache.set("key", 1L, "value")
+
+        when:
+        cache.get("key")
+        cache.get("key")
+        cache.get("other")
+
+        then:
+        MetricRegistryFactory.registry.meter("${PREFIX}.hits").count == hits + 2
+        MetricRegistryFactory.registry.meter("${PREFIX}.misses").count == misses + 1
+    }
+
+    def "A new entry which is more frequently requested than the least recently used entry replaces it"() {
+        setup:
+        ["a", "b", "c"].each { cache.set(it, 1L, it) }
+        3.times { cache.get("d") }
+
+        when:
+        boolean admitted = cache.set("d", 1L, "d")
+
+        then:
+        admitted
+        cache.get("a") == null
+        cache.getDataValue("d") == "d"
+        cache.size() == 3
+    }
+
+    def "A new entry which is requested less often than the entries it would displace is rejected"() {
+        setup:
+        ["a", "b", "c"].each { key ->
+            cache.set(key, 1L, key)
+            3.times { cache.get(key) }
+        }
+
+        when:
+        boolean admitted = cache.set("d", 1L, "d")
+
+        then:
+        !admitted
+        cache.get("d") == null
+        ["a", "b", "c"].every { cache.get(it) != null }
+    }
+
+    def "Entries heavier than the whole cache are rejected and replacing an entry adjusts the weight"() {
+        setup:
+        LocalTupleDataCache<Long, String> sized = new LocalTupleDataCache<>(
+                100,
+                { it.value.length() as long },
+                PREFIX
+        )
+
+        expect:
+        !sized.set("big", 1L, "x" * 101)
+        sized.set("key", 1L, "x" * 40)
+        sized.set("key", 2L, "x" * 20)
+        sized.totalWeight == 20
+        sized.get("key").meta == 2L
+    }
+
+    def "Invalidate and clear remove entries"() {
+        setup:
+        ["a", "b"].each { cache.set(it, 1L, it) }
+
+        when:
+        cache.invalidate("a")
+
+        then:
+        cache.get("a") == null
+        cache.totalWeight == 10
+
+        when:
+        cache.clear()
+
+        then:
+        cache.size() == 0
+        cache.totalWeight == 0
+    }
+}
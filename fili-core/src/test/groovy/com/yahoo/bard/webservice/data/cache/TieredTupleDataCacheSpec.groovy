@@ -0,0 +1,66 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import spock.lang.Specification
+
+class TieredTupleDataCacheSpec extends Specification {
+
+    LocalTupleDataCache<Long, String> localCache = new LocalTupleDataCache<>(1024 * 1024)
+    TupleDataCache<String, Long, String> sharedCache = Mock(TupleDataCache)
+    TieredTupleDataCache<Long, String> cache = new TieredTupleDataCache<>(localCache, sharedCache)
+
+    def "Writes go to both caches"() {
+        when:
+        cache.set("key", 1L, "value")
+
+        then:
+        1 * sharedCache.set("key", 1L, "value") >> true
+        localCache.getDataValue("key") == "value"
+    }
+
+    def "Reads answered by the local cache do not reach the shared cache"() {
+        setup:
+        localCache.set("key", 1L, "value")
+
+        when:
+        TupleDataCache.DataEntry<String, Long, String> entry = cache.get("key")
+
+        then:
+        entry.value == "value"
+        0 * sharedCache.get(_)
+    }
+
+    def "Shared cache hits are promoted into the local cache"() {
+        when:
+        TupleDataCache.DataEntry<String, Long, String> entry = cache.get("key", { it == 1L })
+
+        then:
+        1 * sharedCache.get("key") >> new MemTupleDataCache.DataEntry("key", 1L, "value")
+        entry.value == "value"
+        localCache.getDataValue("key") == "value"
+    }
+
+    def "Stale local entries are dropped in favor of the shared cache"() {
+        setup:
+        localCache.set("key", 1L, "old")
+
+        when:
+        TupleDataCache.DataEntry<String, Long, String> entry = cache.get("key", { it == 2L })
+
+        then:
+        1 * sharedCache.get("key") >> new MemTupleDataCache.DataEntry("key", 2L, "new")
+        entry.value == "new"
+        localCache.get("key").meta == 2L
+    }
+
+    def "Stale shared entries are returned but not promoted"() {
+        when:
+        TupleDataCache.DataEntry<String, Long, String> entry = cache.get("key", { it == 2L })
+
+        then:
+        1 * sharedCache.get("key") >> new MemTupleDataCache.DataEntry("key", 1L, "old")
+        entry.meta == 1L
+        localCache.get("key") == null
+    }
+}
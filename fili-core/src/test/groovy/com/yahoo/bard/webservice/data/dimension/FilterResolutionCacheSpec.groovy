@@ -0,0 +1,114 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
+import com.yahoo.bard.webservice.web.ApiFilter
+import com.yahoo.bard.webservice.web.DefaultFilterOperation
+
+import spock.lang.Specification
+
+class FilterResolutionCacheSpec extends Specification {
+
+    FilterResolutionCache cache = new FilterResolutionCache(100, 60000)
+    SearchProvider searchProvider = Mock(SearchProvider)
+    long rowVersion = 0
+    Dimension dimension = Mock(Dimension) {
+        getSearchProvider() >> searchProvider
+        getRowVersion() >> { rowVersion }
+    }
+
+    Set<ApiFilter> filters(List<String> ids) {
+        [new ApiFilter(dimension, BardDimensionField.ID, DefaultFilterOperation.in, ids)] as Set
+    }
+
+    def "Filters with the same values in any order are resolved once"() {
+        setup:
+        long hits = cache.hits.count
+        long misses = cache.misses.count
+
+        when:
+        List<String> first = cache.getKeyValues(dimension, filters(["1", "2"]))
+        List<String> second = cache.getKeyValues(dimension, filters(["2", "1", "2"]))
+
+        then:
+        1 * searchProvider.findFilteredDimensionKeys(_) >> ["1", "2"]
+        first == ["1", "2"]
+        second.is(first)
+        cache.hits.count == hits + 1
+        cache.misses.count == misses + 1
+    }
+
+    def "Filters are resolved again once the rows of the dimension are written"() {
+        when:
+        cache.getKeyValues(dimension, filters(["1"]))
+        rowVersion++
+        List<String> values = cache.getKeyValues(dimension, filters(["1"]))
+
+        then:
+        2 * searchProvider.findFilteredDimensionKeys(_) >>> [["1"], []]
+        values == []
+    }
+
+    def "Filters matching no rows match a row added to the dimension"() {
+        setup:
+        LinkedHashSet<DimensionField> fields = [BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet
+        KeyValueStoreDimension added = new KeyValueStoreDimension(
+                "filterResolution",
+                "filterResolution",
+                fields,
+                MapStoreManager.getInstance("filterResolution"),
+                ScanSearchProviderManager.getInstance("filterResolution")
+        )
+        Set<ApiFilter> filters = [new ApiFilter(added, BardDimensionField.ID, DefaultFilterOperation.in, ["1"])]
+
+        when:
+        List<String> missing = cache.getKeyValues(added, filters)
+        List<String> cached = cache.getKeyValues(added, filters)
+        added.addDimensionRow(BardDimensionField.makeDimensionRow(added, "1", "one"))
+        List<String> found = cache.getKeyValues(added, filters)
+
+        then:
+        missing == []
+        cached.is(missing)
+        found == ["1"]
+    }
+
+    def "Filters on a dimension which does not track its row version are not cached"() {
+        setup:
+        rowVersion = -1
+
+        when:
+        cache.getKeyValues(dimension, filters(["1"]))
+        cache.getKeyValues(dimension, filters(["1"]))
+
+        then:
+        2 * searchProvider.findFilteredDimensionKeys(_) >> ["1"]
+        cache.size() == 0
+    }
+
+    def "A cache without capacity resolves every time"() {
+        setup:
+        cache = new FilterResolutionCache(0, 60000)
+
+        when:
+        cache.getKeyValues(dimension, filters(["1"]))
+        cache.getKeyValues(dimension, filters(["1"]))
+
+        then:
+        2 * searchProvider.findFilteredDimensionKeys(_) >> ["1"]
+        0 * dimension.getRowVersion()
+    }
+
+    def "The cache is bounded by the number of cached values"() {
+        setup:
+        searchProvider.findFilteredDimensionKeys(_) >> (1..30).collect { it.toString() }
+
+        when:
+        (1..10).each { cache.getKeyValues(dimension, filters([it.toString()])) }
+
+        then:
+        cache.size() <= 3
+    }
+}
@@ -0,0 +1,213 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import com.yahoo.bard.webservice.config.SystemConfigProvider
+import com.yahoo.bard.webservice.util.Utils
+
+import spock.lang.Requires
+import spock.lang.Shared
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+@Requires({ SystemConfigProvider.getInstance().getStringProperty(
+        SystemConfigProvider.getInstance().getPackageVariableName("key_value_store_tests"), "memory").contains("mapped") })
+class MappedFileStoreSpec extends BaseKeyValueStoreSpec {
+
+    static final int SEGMENT_BYTES = 1024
+
+    @Shared
+    Path root = Files.createTempDirectory("mappedFileStoreSpec")
+
+    Path directory = root.resolve(UUID.randomUUID().toString())
+
+    def KeyValueStore getInstance(String storeName) {
+        return MapStoreManager.getMappedFileInstance(storeName);
+    }
+
+    def void removeInstance(String storeName) {
+        MapStoreManager.removeInstance(storeName);
+    }
+
+    def cleanupSpec() {
+        Utils.deleteFiles(root.toString())
+    }
+
+    def "Entries survive closing and reopening the store"() {
+        setup:
+        MappedFileStore store = new MappedFileStore(directory, SEGMENT_BYTES)
+        (1..100).each { store.put("key" + it, "value" + it) }
+        store.remove("key7")
+        store.put("", "")
+
+        when:
+        store.close()
+        store = new MappedFileStore(directory, SEGMENT_BYTES)
+
+        then:
+        store.get("key1") == "value1"
+        store.get("key100") == "value100"
+        store.get("key7") == null
+        store.get("") == ""
+        store.size() == 100
+
+        cleanup:
+        store.close()
+    }
+
+    def "The index is rebuilt from the log if the store was not closed"() {
+        setup:
+        MappedFileStore crashed = new MappedFileStore(directory, SEGMENT_BYTES)
+        (1..100).each { crashed.put("key" + it, "value" + it) }
+        crashed.put("key1", "updated")
+        crashed.remove("key2")
+
+        when: "The store is opened again without closing it first"
+        MappedFileStore store = new MappedFileStore(directory, SEGMENT_BYTES)
+
+        then:
+        store.get("key1") == "updated"
+        store.get("key2") == null
+        store.get("key100") == "value100"
+        store.size() == 99
+
+        cleanup:
+        store.close()
+    }
+
+    def "A torn record at the end of the log is dropped and overwritten"() {
+        setup:
+        MappedFileStore crashed = new MappedFileStore(directory, SEGMENT_BYTES)
+        crashed.put("key1", "value1")
+        crashed.put("key2", "value2")
+        Path segment = directory.resolve("segment-0-0.bin")
+
+        // Corrupt the last byte of the value of the second record
+        int offset = 8 + (12 + 4 + 6) + (12 + 4 + 6) - 1
+        FileChannel.open(segment, StandardOpenOption.WRITE).withCloseable {
+            it.write(ByteBuffer.wrap("!".bytes), offset)
+        }
+
+        when:
+        MappedFileStore store = new MappedFileStore(directory, SEGMENT_BYTES)
+
+        then:
+        store.get("key1") == "value1"
+        store.get("key2") == null
+
+        when:
+        store.put("key3", "value3")
+        store.close()
+        store = new MappedFileStore(directory, SEGMENT_BYTES)
+
+        then:
+        store.get("key1") == "value1"
+        store.get("key2") == null
+        store.get("key3") == "value3"
+
+        cleanup:
+        store.close()
+    }
+
+    def "Compaction drops stale records and keeps live entries"() {
+        setup:
+        // Large enough for the stale records not to be compacted automatically
+        MappedFileStore store = new MappedFileStore(directory, 4 * SEGMENT_BYTES)
+        (1..50).each { store.put("key" + it, "value" + it) }
+        (1..50).each { store.put("key" + it, "updated" + it) }
+        (1..25).each { store.remove("key" + it) }
+
+        when:
+        store.compact()
+
+        then: "The next generation replaced the first one"
+        Files.exists(directory.resolve("segment-1-0.bin"))
+        !Files.exists(directory.resolve("segment-0-0.bin"))
+        !Files.exists(directory.resolve("segment-0-1.bin"))
+        store.get("key1") == null
+        store.get("key26") == "updated26"
+        store.size() == 25
+
+        when: "The compacted store is reopened"
+        store.put("key1", "value1")
+        store.close()
+        store = new MappedFileStore(directory, 4 * SEGMENT_BYTES)
+
+        then:
+        store.get("key1") == "value1"
+        store.get("key50") == "updated50"
+        store.size() == 26
+
+        cleanup:
+        store.close()
+    }
+
+    def "Stale records are compacted automatically"() {
+        setup:
+        MappedFileStore store = new MappedFileStore(directory, SEGMENT_BYTES)
+
+        when:
+        (1..200).each { store.put("key", "value" + it) }
+
+        then:
+        store.get("key") == "value200"
+        directory.toFile().list().count { it.startsWith("segment-") } <= 2
+
+        cleanup:
+        store.close()
+    }
+
+    def "Files of another generation are deleted when the store is opened"() {
+        setup:
+        new MappedFileStore(directory, SEGMENT_BYTES).with {
+            put("key1", "value1")
+            close()
+        }
+        Files.createFile(directory.resolve("segment-1-0.bin"))
+        Files.createFile(directory.resolve("index-1.bin"))
+
+        when:
+        MappedFileStore store = new MappedFileStore(directory, SEGMENT_BYTES)
+
+        then:
+        !Files.exists(directory.resolve("segment-1-0.bin"))
+        !Files.exists(directory.resolve("index-1.bin"))
+        store.get("key1") == "value1"
+
+        cleanup:
+        store.close()
+    }
+
+    def "Entries larger than a segment are rejected"() {
+        setup:
+        MappedFileStore store = new MappedFileStore(directory, SEGMENT_BYTES)
+
+        when:
+        store.put("key", "x" * SEGMENT_BYTES)
+
+        then:
+        thrown(IllegalArgumentException)
+        store.get("key") == null
+
+        cleanup:
+        store.close()
+    }
+
+    def "A closed store cannot be read"() {
+        setup:
+        MappedFileStore store = new MappedFileStore(directory, SEGMENT_BYTES)
+        store.close()
+
+        when:
+        store.get("key")
+
+        then:
+        thrown(IllegalStateException)
+        !store.isOpen()
+        !store.isHealthy()
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl
+
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+
+import spock.lang.Specification
+
+import java.util.function.Function
+
+class DimensionRowCacheSpec extends Specification {
+
+    DimensionRowCache cache = new DimensionRowCache("rowCacheSpec", BardDimensionField.ID, 2)
+    Function<String, DimensionRow> loader = Mock(Function)
+
+    DimensionRow makeRow(String id) {
+        new DimensionRow(
+                BardDimensionField.ID,
+                [(BardDimensionField.ID): id, (BardDimensionField.DESC): id + " desc"] as LinkedHashMap
+        )
+    }
+
+    def "Rows and missing rows are loaded once and counted as hits afterwards"() {
+        setup:
+        long hits = cache.hits.count
+        long misses = cache.misses.count
+
+        when:
+        DimensionRow first = cache.get("a", loader)
+        DimensionRow second = cache.get("a", loader)
+        cache.get("missing", loader)
+        DimensionRow missing = cache.get("missing", loader)
+
+        then:
+        1 * loader.apply("a") >> makeRow("a")
+        1 * loader.apply("missing") >> null
+        first == makeRow("a")
+        second.is(first)
+        missing == null
+        cache.hits.count == hits + 2
+        cache.misses.count == misses + 2
+    }
+
+    def "Invalidated keys are loaded again"() {
+        when:
+        cache.get("a", loader)
+        cache.get("b", loader)
+        cache.invalidate(["a"])
+        cache.get("a", loader)
+        cache.get("b", loader)
+
+        then:
+        2 * loader.apply("a") >> makeRow("a")
+        1 * loader.apply("b") >> makeRow("b")
+
+        when:
+        cache.invalidateAll()
+        cache.get("b", loader)
+
+        then:
+        1 * loader.apply("b") >> makeRow("b")
+    }
+
+    def "A row loaded while its key is invalidated is not kept"() {
+        when: "The key is written while the old row is being loaded"
+        cache.get("a", { key -> cache.invalidate([key]); makeRow("a") } as Function)
+        cache.get("a", loader)
+
+        then:
+        1 * loader.apply("a") >> makeRow("a")
+    }
+
+    def "Cached rows cannot be modified but can be copied"() {
+        setup:
+        loader.apply("a") >> makeRow("a")
+        DimensionRow row = cache.get("a", loader)
+
+        when:
+        row.put(BardDimensionField.DESC, "changed")
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        DimensionRow copy = DimensionRow.copyWithReplace(row, { field, value -> value + "!" })
+
+        then:
+        copy.get(BardDimensionField.DESC) == "a desc!"
+        row.get(BardDimensionField.DESC) == "a desc"
+    }
+
+    def "The cache is bounded"() {
+        setup:
+        loader.apply(_) >> { String key -> makeRow(key) }
+
+        when:
+        ["a", "b", "c", "d"].each { cache.get(it, loader) }
+
+        then:
+        cache.size() <= 2
+    }
+}
@@ -9,6 +9,7 @@ import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.SearchProvider
+import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
 import com.yahoo.bard.webservice.web.ApiFilter
 import com.yahoo.bard.webservice.web.DefaultFilterOperation
 
@@ -71,6 +72,27 @@ class KeyValueStoreDimensionSpec extends Specification {
         searchProvider = kvsDimension.getSearchProvider()
     }
 
+    def "Writing rows changes the row version of the dimension"() {
+        setup:
+        DimensionRow row = BardDimensionField.makeDimensionRow(kvsDimension, "versioned", "a versioned row")
+        long initial = kvsDimension.getRowVersion()
+
+        when:
+        kvsDimension.addDimensionRow(row)
+        long added = kvsDimension.getRowVersion()
+        kvsDimension.addDimensionRow(row)
+        long unchanged = kvsDimension.getRowVersion()
+        kvsDimension.removeDimensionRows(["versioned"])
+        long removed = kvsDimension.getRowVersion()
+        kvsDimension.setLastUpdated(lastUpdated)
+
+        then:
+        added > initial
+        unchanged == added
+        removed > added
+        kvsDimension.getRowVersion() > removed
+    }
+
     def "Parse partial dimension row succeeds"() {
         setup:
         Map m = ["id": "rowPartial"]
@@ -150,6 +172,56 @@ class KeyValueStoreDimensionSpec extends Specification {
         then:
         kvsDimension.getLastUpdated() == null
     }
+    def "Found rows are cached and cannot be modified"() {
+        when:
+        DimensionRow found = kvsDimension.findDimensionRowByKeyValue("row1")
+
+        then:
+        found == dimensionRow1
+        kvsDimension.findDimensionRowByKeyValue("row1").is(found)
+
+        when:
+        found.put(BardDimensionField.DESC, "changed")
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "Cached rows and missing rows are dropped when rows are added"() {
+        setup:
+        DimensionRow dimensionRow7 = BardDimensionField.makeDimensionRow(kvsDimension, "row7", "seven")
+        DimensionRow updatedRow1 = BardDimensionField.makeDimensionRow(kvsDimension, "row1", "updated")
+
+        expect: "The lookups are cached"
+        kvsDimension.findDimensionRowByKeyValue("row7") == null
+        kvsDimension.findDimensionRowByKeyValue("row1") == dimensionRow1
+
+        when:
+        kvsDimension.addAllDimensionRows([dimensionRow7, updatedRow1] as Set)
+
+        then:
+        kvsDimension.findDimensionRowByKeyValue("row7") == dimensionRow7
+        kvsDimension.findDimensionRowByKeyValue("row1") == updatedRow1
+    }
+
+    def "Rows written directly to the store are found once the last updated time is set"() {
+        setup:
+        DimensionRow dimensionRow8 = BardDimensionField.makeDimensionRow(kvsDimension, "row8", "eight")
+        String rowKey = DimensionStoreKeyUtils.getRowKey(BardDimensionField.ID.getName(), "row8")
+
+        when: "A missing row is looked up and then written behind the dimension's back"
+        kvsDimension.findDimensionRowByKeyValue("row8")
+        kvsDimension.getKeyValueStore().put(rowKey, '{"id":"row8","desc":"eight"}')
+
+        then: "The missing lookup is cached"
+        kvsDimension.findDimensionRowByKeyValue("row8") == null
+
+        when:
+        kvsDimension.setLastUpdated(lastUpdated)
+
+        then:
+        kvsDimension.findDimensionRowByKeyValue("row8") == dimensionRow8
+    }
 
     class TestThread extends Thread {
         Throwable cause = null
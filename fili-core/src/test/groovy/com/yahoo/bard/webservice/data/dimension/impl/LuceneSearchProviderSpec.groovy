@@ -5,8 +5,11 @@ package com.yahoo.bard.webservice.data.dimension.impl
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.TimeoutException
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
+import com.yahoo.bard.webservice.util.Pagination
+import com.yahoo.bard.webservice.web.ApiFilter
 import com.yahoo.bard.webservice.web.ErrorMessageFormat
 import com.yahoo.bard.webservice.web.RowLimitReachedException
 import com.yahoo.bard.webservice.web.util.PaginationParameters
@@ -16,9 +19,11 @@ import org.apache.lucene.store.FSDirectory
 
 import spock.lang.Ignore
 import spock.lang.Timeout
+import spock.lang.Unroll
 
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.CountDownLatch
 
 /**
  * Specification for behavior specific to the LuceneSearchProvider
@@ -70,6 +75,8 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
     void childCleanup() {
         searchProvider.maxResults = rowLimit
         searchProvider.searchTimeout = searchTimeout
+        searchProvider.setNGramIndexed(false)
+        searchProvider.setStoredFieldHydration(false)
 
         FileUtils.deleteDirectory(new File(sourceDir))
     }
@@ -209,16 +216,31 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
         !Files.exists(file4)
     }
 
+    /**
+     * Start a thread which holds the write lock of the search provider until the returned latch is counted down.
+     *
+     * @return the latch releasing the write lock
+     */
+    CountDownLatch holdWriteLock() {
+        CountDownLatch locked = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        Thread.start {
+            searchProvider.writeLock()
+            locked.countDown()
+            release.await()
+            searchProvider.writeUnlock()
+        }
+        locked.await()
+        return release
+    }
+
     @Timeout(5)
-    def "If time waiting for write lock exceeds timeout fail query"() {
+    def "If time waiting for write lock exceeds timeout fail the write"() {
         setup:
         searchProvider.@searchTimeout = 2000
+        CountDownLatch release = holdWriteLock()
 
         when:
-        // thread that just gets read lock and holds it
-        Thread t = new Thread({searchProvider.readLock()})
-        t.start()
-        t.join()
         searchProvider.writeLock()
 
         then:
@@ -227,26 +249,221 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
                 ErrorMessageFormat.LUCENE_LOCK_TIMEOUT.getMessageFormat(),
                 searchProvider.getDimension().getApiName()
         )
+
+        cleanup:
+        release.countDown()
     }
 
     @Timeout(5)
-    def "If time waiting for read lock exceeds timeout fail query"() {
+    def "Searches do not wait for writers"() {
         setup:
-        searchProvider.@searchTimeout = 2000
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        CountDownLatch release = holdWriteLock()
+
+        expect:
+        searchProvider.findAllDimensionRows() == dimensionRows as Set
+
+        cleanup:
+        release.countDown()
+    }
+
+    def "Written rows are searchable before they are committed"() {
+        setup:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        DimensionRow newRow = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "heron", "a wader")
 
         when:
-        // thread that just gets write lock and holds it
-        Thread t = new Thread({searchProvider.writeLock()})
-        t.start()
-        t.join()
-        searchProvider.readLock()
+        keyValueStoreDimension.addDimensionRow(newRow)
 
         then:
-        Exception e = thrown(IllegalStateException)
-        e.getMessage() == String.format(
-                ErrorMessageFormat.LUCENE_LOCK_TIMEOUT.getMessageFormat(),
-                searchProvider.getDimension().getApiName()
+        searchProvider.findAllDimensionRows() == (dimensionRows + newRow) as Set
+        searchProvider.dimensionCardinality == dimensionRows.size() + 1
+    }
+
+    def "findAllDimensionKeys reads the keys of more rows than fit in a page"() {
+        setup:
+        searchProvider.maxResults = 3
+
+        expect:
+        searchProvider.findAllDimensionKeys() == dimensionRows.collect { it.getKeyValue() } as Set
+    }
+
+    def "Rows written before closing are read back when the index is opened again"() {
+        setup:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+
+        when:
+        searchProvider.close()
+
+        then:
+        searchProvider.findAllDimensionRows() == dimensionRows as Set
+    }
+
+    @Unroll
+    def "Filter #filterQuery matches the same rows when answered from n-grams"() {
+        setup:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        Set<ApiFilter> filters = [buildFilter(filterQuery)]
+        Set<DimensionRow> expectedRows = searchProvider.findFilteredDimensionRows(filters) as Set
+
+        when:
+        searchProvider.setNGramIndexed(true)
+        searchProvider.rebuildIndex()
+
+        then:
+        searchProvider.findFilteredDimensionRows(filters) as Set == expectedRows
+        searchProvider.findAllDimensionRows() == dimensionRows as Set
+        searchProvider.dimensionCardinality == dimensionRows.size()
+
+        where:
+        filterQuery                                 | _
+        "animal|desc-contains[raptor]"              | _
+        "animal|desc-contains[have]"                | _
+        "animal|id-contains[on]"                    | _
+        "animal|id-contains[o]"                     | _
+        "animal|id-contains[spider]"                | _
+        "animal|id-contains[关卡]"                   | _
+        "animal|id-contains[absent]"                | _
+        "animal|desc-startswith[this is a]"         | _
+        "animal|id-startswith[b]"                   | _
+        "animal|id-startswith[wolfspider]"          | _
+        "animal|id-startswith[spider]"              | _
+        "animal|desc-contains[raptor,teeth]"        | _
+        "animal|id-contains[sp?der]"                | _
+        "animal|id-contains[o*o]"                   | _
+        "animal|desc-startswith[this*]"             | _
+    }
+
+    def "An index without n-grams is rebuilt with them when bound to a dimension configured with n-grams"() {
+        setup:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        Set<ApiFilter> filters = [buildFilter("animal|id-contains[spider]")]
+        Set<DimensionRow> expectedRows = searchProvider.findFilteredDimensionRows(filters) as Set
+
+        expect:
+        !searchProvider.hasCompleteNGramIndex()
+
+        when:
+        new KeyValueStoreDimension(
+                "ngram_animal",
+                "animal-description",
+                [BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet,
+                MapStoreManager.getInstance("animal"),
+                searchProvider
+        )
+
+        then:
+        searchProvider.isNGramIndexed()
+        searchProvider.hasCompleteNGramIndex()
+        searchProvider.findFilteredDimensionRows(filters) as Set == expectedRows
+        searchProvider.dimensionCardinality == dimensionRows.size()
+    }
+
+    def "Filters fall back to wildcard queries until an index without n-grams is rebuilt"() {
+        setup:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        Set<ApiFilter> filters = [buildFilter("animal|id-contains[gull]")]
+        DimensionRow newRow = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "seagull", "a gull")
+
+        when: "Only the new row is indexed with n-grams"
+        searchProvider.setNGramIndexed(true)
+        keyValueStoreDimension.addDimensionRow(newRow)
+
+        then:
+        searchProvider.findFilteredDimensionRows([buildFilter("animal|id-contains[spider]")] as Set) as Set ==
+                dimensionRows.findAll { it.get(BardDimensionField.ID).contains("spider") } as Set
+        searchProvider.findFilteredDimensionRows(filters) as Set == [newRow] as Set
+
+        when:
+        searchProvider.rebuildIndex()
+
+        then:
+        searchProvider.findFilteredDimensionRows([buildFilter("animal|id-contains[spider]")] as Set) as Set ==
+                dimensionRows.findAll { it.get(BardDimensionField.ID).contains("spider") } as Set
+        searchProvider.findFilteredDimensionRows(filters) as Set == [newRow] as Set
+        searchProvider.dimensionCardinality == dimensionRows.size() + 1
+    }
+
+    def "Following the cursors of next pages returns the same pages as page numbers"() {
+        setup:
+        int perPage = 3
+        List<List<DimensionRow>> pagesByNumber = (1..5).collect {
+            searchProvider.findAllDimensionRowsPaged(new PaginationParameters(perPage, it)).pageOfData
+        }
+
+        when:
+        List<List<DimensionRow>> pagesByCursor = []
+        Optional<String> cursor = Optional.empty()
+        for (int page = 1; page <= 5; page++) {
+            PaginationParameters parameters = new PaginationParameters(perPage, page).withCursor(cursor.orElse(null))
+            Pagination<DimensionRow> rows = searchProvider.findAllDimensionRowsPaged(parameters)
+            pagesByCursor.add(rows.pageOfData)
+            cursor = rows.nextPageCursor
+        }
+
+        then:
+        pagesByCursor == pagesByNumber
+        !cursor.isPresent()
+        pagesByCursor.flatten() as Set == dimensionRows as Set
+    }
+
+    @Unroll
+    def "A cursor which does not lead to the page (#reason) is ignored"() {
+        setup:
+        PaginationParameters firstPage = new PaginationParameters(3, 1)
+        String cursor = searchProvider.findAllDimensionRowsPaged(firstPage).nextPageCursor.get()
+        PaginationParameters parameters = new PaginationParameters(perPage, page).withCursor(useCursor ? cursor : bad)
+
+        expect:
+        searchProvider.findAllDimensionRowsPaged(parameters).pageOfData ==
+                searchProvider.findAllDimensionRowsPaged(new PaginationParameters(perPage, page)).pageOfData
+
+        where:
+        reason               | perPage | page | useCursor | bad
+        "other page"         | 3       | 3    | true      | null
+        "other page size"    | 2       | 2    | true      | null
+        "malformed"          | 3       | 2    | false     | "not a cursor"
+        "not base 64"        | 3       | 2    | false     | "%%%"
+    }
+
+    def "A cursor is ignored once the index changed"() {
+        setup:
+        PaginationParameters firstPage = new PaginationParameters(3, 1)
+        String cursor = searchProvider.findAllDimensionRowsPaged(firstPage).nextPageCursor.get()
+        keyValueStoreDimension.addDimensionRow(
+                BardDimensionField.makeDimensionRow(keyValueStoreDimension, "heron", "a wader")
         )
+        PaginationParameters secondPage = new PaginationParameters(3, 2)
+
+        expect:
+        searchProvider.findAllDimensionRowsPaged(secondPage.withCursor(cursor)).pageOfData ==
+                searchProvider.findAllDimensionRowsPaged(secondPage).pageOfData
+    }
+
+    def "Rows are built from the stored fields in index order"() {
+        setup:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        DimensionRow newRow = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "aardvark", "an anteater")
+
+        when: "Rows written before their fields were stored are read from the dimension"
+        searchProvider.setStoredFieldHydration(true)
+        keyValueStoreDimension.addDimensionRow(newRow)
+        List<DimensionRow> rows = searchProvider
+                .findAllDimensionRowsPaged(PaginationParameters.EVERYTHING_IN_ONE_PAGE)
+                .pageOfData
+
+        then: "The row written last is found last rather than first"
+        rows as Set == (dimensionRows + newRow) as Set
+        rows.size() == dimensionRows.size() + 1
+        rows.last() == newRow
+
+        when:
+        searchProvider.rebuildIndex()
+
+        then:
+        searchProvider.findAllDimensionRowsPaged(PaginationParameters.EVERYTHING_IN_ONE_PAGE).pageOfData == rows
+        searchProvider.findFilteredDimensionRows([buildFilter("animal|desc-contains[anteater]")] as Set) ==
+                [newRow] as Set
     }
 
     @Ignore("This test is currently not valid because the replacement index is invalid.")
@@ -2,6 +2,15 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl
 
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.DESC
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.ID
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.makeDimensionRow
+
+import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.KeyValueStore
+import com.yahoo.bard.webservice.data.dimension.MapStore
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
 
 /**
@@ -25,4 +34,73 @@ class ScanSearchProviderSpec extends SearchProviderSpec<ScanSearchProvider> {
                 searchProvider.keyValueStore[DimensionStoreKeyUtils.getCardinalityKey()] == "0" &&
                 searchProvider.keyValueStore[DimensionStoreKeyUtils.getAllValuesKey()] == "[]"
     }
+
+    def "A batch of changed rows reads and writes each index key once"() {
+        setup:
+        KeyValueStore store = Spy(MapStore)
+        ScanSearchProvider provider = new ScanSearchProvider()
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "bulk",
+                "bulk-description",
+                [ID, DESC] as LinkedHashSet<DimensionField>,
+                store,
+                provider
+        )
+        DimensionRow oldHawk = makeDimensionRow(dimension, "hawk", "a raptor")
+        provider.refreshIndex("hawk", oldHawk, null)
+        long batches = ScanSearchProvider.INDEX_REFRESH_TIMER.count
+
+        Map<String, Pair<DimensionRow, DimensionRow>> changedRows = [
+                owl: new Pair<>(makeDimensionRow(dimension, "owl", "a raptor"), null),
+                eagle: new Pair<>(makeDimensionRow(dimension, "eagle", "a raptor"), null),
+                hawk: new Pair<>(makeDimensionRow(dimension, "hawk", "a bird"), oldHawk)
+        ]
+
+        when:
+        provider.refreshIndex(changedRows)
+
+        then: "Each index key is read at most once and all are written together"
+        1 * store.get(DimensionStoreKeyUtils.getAllValuesKey())
+        1 * store.get(DimensionStoreKeyUtils.getRowKey("desc", "a raptor"))
+        1 * store.get(DimensionStoreKeyUtils.getRowKey("desc", "a bird"))
+        // MapStore.putAll puts each entry in turn, so the batch is checked on the putAll argument
+        1 * store.putAll({ Map<String, String> entries ->
+            entries.keySet() == [
+                    DimensionStoreKeyUtils.getRowKey("desc", "a raptor"),
+                    DimensionStoreKeyUtils.getRowKey("desc", "a bird"),
+                    DimensionStoreKeyUtils.getAllValuesKey(),
+                    DimensionStoreKeyUtils.getCardinalityKey()
+            ] as Set
+        })
+
+        and:
+        store.get(DimensionStoreKeyUtils.getAllValuesKey()) == '["hawk","owl","eagle"]'
+        store.get(DimensionStoreKeyUtils.getRowKey("desc", "a raptor")) == '["owl","eagle"]'
+        store.get(DimensionStoreKeyUtils.getRowKey("desc", "a bird")) == '["hawk"]'
+        provider.dimensionCardinality == 3
+        ScanSearchProvider.INDEX_REFRESH_TIMER.count == batches + 1
+    }
+
+    def "Secondary keys left without rows are removed"() {
+        setup:
+        KeyValueStore store = new MapStore()
+        ScanSearchProvider provider = new ScanSearchProvider()
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "bulk",
+                "bulk-description",
+                [ID, DESC] as LinkedHashSet<DimensionField>,
+                store,
+                provider
+        )
+        DimensionRow oldHawk = makeDimensionRow(dimension, "hawk", "a raptor")
+        provider.refreshIndex("hawk", oldHawk, null)
+
+        when:
+        provider.refreshIndex("hawk", makeDimensionRow(dimension, "hawk", "a bird"), oldHawk)
+
+        then:
+        store.get(DimensionStoreKeyUtils.getRowKey("desc", "a raptor")) == null
+        store.get(DimensionStoreKeyUtils.getRowKey("desc", "a bird")) == '["hawk"]'
+        provider.dimensionCardinality == 1
+    }
 }
@@ -147,6 +147,11 @@ abstract class SearchProviderSpec<T extends SearchProvider> extends Specificatio
         searchProvider.getDimensionCardinality() == dimensionRows.size()
     }
 
+    def "findAllDimensionKeys returns the keys of all the rows"() {
+        expect:
+        searchProvider.findAllDimensionKeys() == dimensionRows.collect { it.getKeyValue() } as Set
+    }
+
     def "findAllDimensionRows reflects all rows when adding and updating dimension rows"() {
         given: "Some dimension fields"
         LinkedHashSet<DimensionField> dimensionUserCountryFields = [ID, DESC, FIELD1, FIELD2]
@@ -0,0 +1,70 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.client.impl
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+import com.fasterxml.jackson.databind.node.ObjectNode
+
+import org.asynchttpclient.Response
+
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class RawJsonResponseNodeSpec extends Specification {
+
+    static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
+    static final String BODY = '[{"timestamp":"2012-01-01T00:00:00.000Z","event":{"pageViews":1}}]'
+
+    RawJsonResponseNode node = new RawJsonResponseNode(BODY.getBytes(StandardCharsets.UTF_8))
+
+    def "The raw builder strategy keeps the response body unparsed"() {
+        given:
+        Response response = Mock(Response)
+        response.getResponseBodyAsBytes() >> BODY.getBytes(StandardCharsets.UTF_8)
+
+        when:
+        JsonNode json = AsyncDruidWebServiceImpl.RAW_JSON_NODE_BUILDER_STRATEGY.apply(response)
+
+        then:
+        json instanceof RawJsonResponseNode
+        new String((json as RawJsonResponseNode).getBody(), StandardCharsets.UTF_8) == BODY
+    }
+
+    def "Serializing a raw node writes the original JSON"() {
+        expect:
+        MAPPER.writeValueAsString(node) == BODY
+        MAPPER.readTree(MAPPER.writeValueAsString(node)) == MAPPER.readTree(BODY)
+    }
+
+    def "Materializing a raw node builds its JSON tree"() {
+        expect:
+        RawJsonResponseNode.materialize(node) == MAPPER.readTree(BODY)
+    }
+
+    def "Materializing a header nested response replaces the nested raw body with its tree"() {
+        given:
+        ObjectNode nested = JsonNodeFactory.instance.objectNode()
+        nested.set("response", node)
+        nested.put("status-code", 200)
+
+        when:
+        JsonNode materialized = RawJsonResponseNode.materialize(nested)
+
+        then:
+        materialized.get("response") == MAPPER.readTree(BODY)
+        materialized.get("status-code").asInt() == 200
+    }
+
+    def "Materializing a JSON tree returns it unchanged"() {
+        given:
+        JsonNode tree = MAPPER.readTree(BODY)
+
+        expect:
+        RawJsonResponseNode.materialize(tree).is(tree)
+    }
+}
@@ -96,4 +96,25 @@ class DataSourceMetadataServiceSpec extends BaseDataSourceMetadataSpec {
         IllegalStateException e = thrown()
         e.message == "Datasource 'InvalidTable' is not available in the metadata service"
     }
+
+    def "Every update of a data source increases its version"() {
+        setup:
+        DataSourceMetadataService metadataService = new DataSourceMetadataService()
+        DataSourceName dataSourceName = DataSourceName.of(tableName)
+        DataSourceName otherName = DataSourceName.of("other")
+
+        expect: "Data sources which were never updated have version 0"
+        metadataService.getVersion(dataSourceName) == 0
+
+        when:
+        metadataService.update(dataSourceName, metadata)
+        long first = metadataService.getVersion(dataSourceName)
+        metadataService.update(otherName, metadata)
+        metadataService.update(dataSourceName, metadata)
+
+        then:
+        first > 0
+        metadataService.getVersion(dataSourceName) > metadataService.getVersion(otherName)
+        metadataService.getVersion(otherName) > first
+    }
 }
@@ -0,0 +1,117 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.metadata
+
+import com.yahoo.bard.webservice.data.config.names.DataSourceName
+
+import org.joda.time.DateTime
+import org.joda.time.Interval
+
+import spock.lang.Unroll
+
+import java.util.concurrent.ConcurrentSkipListMap
+
+class SegmentHashIndexSpec extends BaseDataSourceMetadataSpec {
+
+    ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>> segmentsByTime
+    SegmentHashIndex index
+
+    @Override
+    def childSetupSpec() {
+        tableName = generateTableName()
+        intervals = generateIntervals()
+        dimensions = generateDimensions()
+        metrics = generateMetrics()
+        segments = generateSegments()
+    }
+
+    def setup() {
+        segmentsByTime = DataSourceMetadataService.groupSegmentByTime(
+                new DataSourceMetadata(tableName, [:], segments.values().toList())
+        )
+        index = new SegmentHashIndex(segmentsByTime, 1)
+    }
+
+    @Unroll
+    def "The segment hash of #interval is the hash code of the segments starting in it"() {
+        expect:
+        index.getSegmentHash(interval) == segmentsByTime.subMap(interval.start, interval.end).hashCode()
+
+        where:
+        interval << [
+                intervals.interval1,
+                intervals.interval2,
+                intervals.interval12,
+                new Interval(intervals.interval2.end, intervals.interval2.end.plusDays(1)),
+                new Interval(intervals.interval1.start.minusDays(1), intervals.interval1.start)
+        ]
+    }
+
+    def "The segments starting before an interval and extending into it are part of its hash"() {
+        setup:
+        Interval bucket = new Interval(intervals.interval1.start.plusHours(6), intervals.interval1.start.plusHours(12))
+
+        expect:
+        index.getSegmentHash(bucket) == [(intervals.interval1.start): segmentsByTime[intervals.interval1.start]]
+                .hashCode()
+        !index.getRange(bucket).empty
+    }
+
+    def "A coarse segment reaching past later finer segments into an interval is part of its hash"() {
+        setup:
+        DateTime month = new DateTime("2021-01-01")
+        DateTime day = new DateTime("2021-01-14")
+        Interval bucket = new Interval(new DateTime("2021-01-20"), new DateTime("2021-01-21"))
+        TreeMap<DateTime, Map<String, SegmentInfo>> mixed = [
+                (month): [month: Mock(SegmentInfo) { getInterval() >> new Interval(month, month.plusMonths(1)) }],
+                (day): [day: Mock(SegmentInfo) { getInterval() >> new Interval(day, day.plusDays(1)) }]
+        ] as TreeMap
+        int hash = new SegmentHashIndex(mixed, 1).getSegmentHash(bucket)
+
+        when: "the month segment is reprocessed"
+        mixed[month] = [month: Mock(SegmentInfo) { getInterval() >> new Interval(month, month.plusMonths(1)) }]
+
+        then:
+        new SegmentHashIndex(mixed, 2).getSegmentHash(bucket) != hash
+        new SegmentHashIndex(mixed, 2).getSegmentHash(bucket) == mixed.hashCode()
+    }
+
+    def "Ranges of the same segments are equal and all empty ranges are equal"() {
+        setup:
+        DateTime start = intervals.interval1.start
+        Interval morning = new Interval(start.plusHours(6), start.plusHours(12))
+        Interval evening = new Interval(start.plusHours(18), start.plusHours(24))
+        Interval later = new Interval(intervals.interval2.end, intervals.interval2.end.plusDays(1))
+        Interval earlier = new Interval(start.minusDays(1), start)
+
+        expect:
+        index.getRange(morning) == index.getRange(evening)
+        index.getRange(later) == index.getRange(earlier)
+        index.getRange(later).empty
+        index.getRange(morning) != index.getRange(intervals.interval2)
+    }
+
+    def "The metadata service versions the index of every update"() {
+        setup:
+        DataSourceMetadataService metadataService = new DataSourceMetadataService()
+        DataSourceName dataSourceName = DataSourceName.of(tableName)
+        DataSourceMetadata metadata = new DataSourceMetadata(tableName, [:], segments.values().toList())
+
+        when:
+        metadataService.update(dataSourceName, metadata)
+        SegmentHashIndex first = metadataService.getSegmentHashIndex(dataSourceName)
+
+        then:
+        metadataService.getSegmentHashIndex(dataSourceName).is(first)
+        first.size() == 2
+        first.segments.is(metadataService.getSegments([dataSourceName] as Set).first())
+
+        when:
+        metadataService.update(dataSourceName, metadata)
+
+        then:
+        metadataService.getSegmentHashIndex(dataSourceName).version > first.version
+        metadataService.getSegmentHashIndexes([dataSourceName, DataSourceName.of("unknown")] as Set).size() == 1
+        metadataService.getSegmentHashIndex(DataSourceName.of("unknown")) == null
+    }
+}
@@ -132,42 +132,45 @@ class SegmentIntervalsHashIdGeneratorSpec extends BaseDataSourceMetadataSpec {
         jtb.tearDown()
     }
 
-    def "test metadata service returns valid segment ids"() {
-        setup:
+    DruidAggregationQuery<?> buildQuery(List<Interval> queryIntervals) {
         DataSource dataSource = Mock(DataSource)
         dataSource.physicalTable >> Mock(ConstrainedTable) {
             getDataSourceNames() >> ([DataSourceName.of(tableName)] as Set)
         }
 
         DruidAggregationQuery<?> query = Mock(DruidAggregationQuery)
-        query.intervals >> [interval1, interval2]
+        query.intervals >> queryIntervals
         query.innermostQuery >> query
         query.dataSource >> dataSource
+        return query
+    }
 
+    def "test metadata service returns valid segment ids"() {
         when:
-        Optional<Long> hashCode = segmentSetIdGenerator.getSegmentSetId(query)
+        Optional<Long> hashCode = segmentSetIdGenerator.getSegmentSetId(buildQuery([interval1, interval2]))
 
         then:
         hashCode.present && hashCode.get() == availabilityList1.hashCode() as Long
     }
 
     @Unroll
-    def "test getSegmentHash produces the #expectedHash for #requestedSegment"() {
+    def "test getSegmentSetId produces the #expectedHash for #queryIntervals"() {
         expect:
-        segmentSetIdGenerator.getSegmentHash(requestedSegment.stream()) == expectedHash
+        segmentSetIdGenerator.getSegmentSetId(buildQuery(queryIntervals)) == expectedHash
 
         where:
-        requestedSegment                                | expectedValue
-        [] as Set                                       | null
-        [availabilityList1] as Set                      | availabilityList1.hashCode()
-        [availabilityList2, availabilityList1] as Set   | availabilityList2.hashCode() + availabilityList1.hashCode()
+        queryIntervals         | expectedValue
+        []                     | null
+        [interval1, interval2] | availabilityList1.hashCode()
+        [interval2]            | availabilityList2.hashCode()
 
         expectedHash = !expectedValue ? Optional.empty() : Optional.of(expectedValue as long)
     }
 
     def "test different segments have different hashcodes"() {
         expect:
-        segmentSetIdGenerator.getSegmentHash([availabilityList1].stream()).get() != segmentSetIdGenerator.getSegmentHash([availabilityList2].stream()).get()
+        segmentSetIdGenerator.getSegmentSetId(buildQuery([interval1])).get() !=
+                segmentSetIdGenerator.getSegmentSetId(buildQuery([interval2])).get()
     }
 
     @Unroll
@@ -0,0 +1,169 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.table.availability
+
+import com.yahoo.bard.webservice.data.config.names.DataSourceName
+import com.yahoo.bard.webservice.data.dimension.Dimension
+import com.yahoo.bard.webservice.table.resolver.BaseDataSourceConstraint
+import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint
+import com.yahoo.bard.webservice.table.resolver.DataSourceFilter
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList
+import com.yahoo.bard.webservice.web.filters.ApiFilters
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+
+class AvailabilityCacheSpec extends Specification {
+
+    DataSourceName name1 = DataSourceName.of("source1")
+    DataSourceName name2 = DataSourceName.of("source2")
+    long version1 = 1
+    long version2 = 2
+
+    Availability availability1 = Mock(Availability) {
+        getDataSourceNames() >> ([name1] as Set)
+        getDataSourceVersions() >> { Optional.of([(name1): version1]) }
+        getExpectedStartDate(_) >> Optional.empty()
+        getExpectedEndDate(_) >> Optional.empty()
+    }
+    Availability availability2 = Mock(Availability) {
+        getDataSourceNames() >> ([name2] as Set)
+        getDataSourceVersions() >> { Optional.of([(name2): version2]) }
+    }
+
+    MetricUnionAvailability metricUnionAvailability = new MetricUnionAvailability(
+            [availability1, availability2] as Set,
+            [(availability1): ["metric1"] as Set, (availability2): ["metric2"] as Set]
+    )
+
+    DataSourceConstraint constraint(List<String> metricNames) {
+        new BaseDataSourceConstraint(
+                [] as Set,
+                [] as Set,
+                [] as Set,
+                metricNames as Set,
+                [] as Set,
+                [] as Set,
+                metricNames as Set,
+                new ApiFilters()
+        )
+    }
+
+    SimplifiedIntervalList intervals(String interval) {
+        new SimplifiedIntervalList([new Interval(interval)])
+    }
+
+    def "Composite availability is merged once per constraint columns and versions"() {
+        setup:
+        long hits = AvailabilityCache.HITS.count
+        long misses = AvailabilityCache.MISSES.count
+
+        when:
+        def first = metricUnionAvailability.getAvailableIntervals(constraint(["metric1", "metric2"]))
+        def second = metricUnionAvailability.getAvailableIntervals(constraint(["metric2", "metric1"]))
+
+        then:
+        1 * availability1.getAvailableIntervals(_) >> intervals("2017/2019")
+        1 * availability2.getAvailableIntervals(_) >> intervals("2018/2020")
+        first == intervals("2018/2019")
+        second == first
+        AvailabilityCache.HITS.count == hits + 1
+        AvailabilityCache.MISSES.count == misses + 1
+    }
+
+    def "Callers get copies of the cached availability"() {
+        setup:
+        availability1.getAvailableIntervals(_) >> intervals("2017/2019")
+
+        when:
+        SimplifiedIntervalList first = metricUnionAvailability.getAvailableIntervals(constraint(["metric1"]))
+        first.clear()
+        SimplifiedIntervalList second = metricUnionAvailability.getAvailableIntervals(constraint(["metric1"]))
+        second.clear()
+
+        then:
+        metricUnionAvailability.getAvailableIntervals(constraint(["metric1"])) == intervals("2017/2019")
+    }
+
+    def "Constraints are keyed on the row versions of their filtered dimensions"() {
+        setup:
+        long rowVersion = 3
+        Dimension dimension = Mock(Dimension) {
+            getRowVersion() >> { rowVersion }
+        }
+        ApiFilters apiFilters = new ApiFilters([(dimension): [] as Set])
+        DataSourceConstraint filtered = new BaseDataSourceConstraint(
+                [] as Set,
+                [dimension] as Set,
+                [] as Set,
+                [] as Set,
+                [dimension] as Set,
+                [] as Set,
+                [] as Set,
+                apiFilters
+        )
+
+        when:
+        Object before = AvailabilityCache.constraintKey(filtered)
+        Object same = AvailabilityCache.constraintKey(filtered)
+        rowVersion++
+        Object written = AvailabilityCache.constraintKey(filtered)
+        rowVersion = -1
+        Object untracked = AvailabilityCache.constraintKey(filtered)
+
+        then:
+        same == before
+        written != before
+        untracked == null
+    }
+
+    def "Cached availability is dropped when a data source version changes"() {
+        when:
+        metricUnionAvailability.getAvailableIntervals(constraint(["metric1"]))
+        version1++
+        SimplifiedIntervalList updated = metricUnionAvailability.getAvailableIntervals(constraint(["metric1"]))
+
+        then:
+        2 * availability1.getAvailableIntervals(_) >>> [intervals("2017/2019"), intervals("2017/2020")]
+        updated == intervals("2017/2020")
+    }
+
+    def "Availabilities which are not versioned are not cached"() {
+        setup:
+        Availability unversioned = Mock(Availability) {
+            getDataSourceNames() >> ([DataSourceName.of("source3")] as Set)
+            getDataSourceVersions() >> Optional.empty()
+        }
+        PartitionAvailability partitionAvailability = new PartitionAvailability(
+                [(availability1): { true } as DataSourceFilter, (unversioned): { false } as DataSourceFilter]
+        )
+
+        when:
+        partitionAvailability.getAvailableIntervals(constraint(["metric1"]))
+        partitionAvailability.getAvailableIntervals(constraint(["metric1"]))
+
+        then:
+        partitionAvailability.getDataSourceVersions() == Optional.empty()
+        // Each merge reads the availability of the participating partition for its available and missing intervals
+        4 * availability1.getAvailableIntervals(_) >> intervals("2017/2019")
+    }
+
+    def "Versions of the sources are merged into a version vector"() {
+        expect:
+        metricUnionAvailability.getDataSourceVersions() == Optional.of([(name1): 1L, (name2): 2L])
+    }
+
+    def "A cache without capacity computes every time"() {
+        setup:
+        AvailabilityCache<String> cache = new AvailabilityCache<>(0)
+        int loads = 0
+
+        when:
+        2.times { cache.get(null, Optional.of([(name1): 1L]), { "value" + loads++ }) }
+
+        then:
+        loads == 2
+        cache.size() == 0
+    }
+}
@@ -0,0 +1,86 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.table.resolver
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.data.PartialDataHandler
+import com.yahoo.bard.webservice.data.volatility.VolatileIntervalsService
+import com.yahoo.bard.webservice.table.PhysicalTable
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+
+class TableResolutionContextSpec extends Specification {
+
+    static final long ONE_DAY = 24 * 3600 * 1000L
+
+    QueryPlanningConstraint constraint = Mock(QueryPlanningConstraint) {
+        getIntervals() >> [new Interval("2017-01-01/2017-01-11")]
+        getRequestGranularity() >> DAY
+    }
+    VolatileIntervalsService volatileIntervalsService = Mock(VolatileIntervalsService)
+    TableResolutionContext context = new TableResolutionContext(
+            constraint,
+            new PartialDataHandler(),
+            volatileIntervalsService
+    )
+
+    PhysicalTable complete = Mock(PhysicalTable)
+    PhysicalTable partial = Mock(PhysicalTable)
+    PhysicalTable sparse = Mock(PhysicalTable)
+
+    def "Each table's availability is computed once however many comparisons use it"() {
+        setup:
+        List<PhysicalTable> tables = [complete, partial, sparse]
+        PartialTimeComparator comparator = new PartialTimeComparator(context)
+
+        when:
+        PhysicalTable best = tables.stream().reduce { left, right ->
+            comparator.compare(left, right) <= 0 ? left : right
+        }.get()
+        tables.each { left -> tables.each { right -> comparator.compare(left, right) } }
+
+        then:
+        1 * complete.getAvailableIntervals(constraint) >> intervals("2016-12-01/2017-02-01")
+        1 * partial.getAvailableIntervals(constraint) >> intervals("2017-01-01/2017-01-09T12")
+        1 * sparse.getAvailableIntervals(constraint) >> intervals("2017-01-03/2017-01-05")
+        best.is(complete)
+        context.getMissingDuration(complete) == 0
+        context.getMissingDuration(partial) == 2 * ONE_DAY
+        context.getMissingDuration(sparse) == 8 * ONE_DAY
+    }
+
+    def "Volatile durations share the availability used for missing durations"() {
+        setup:
+        SimplifiedIntervalList volatileIntervals = intervals("2017-01-09/2017-01-11")
+
+        when:
+        long missing = context.getMissingDuration(partial)
+        long availableVolatile = context.getAvailableVolatileDuration(partial)
+        context.getAvailableVolatileDuration(partial)
+
+        then:
+        1 * partial.getAvailableIntervals(constraint) >> intervals("2017-01-01/2017-01-09T12")
+        1 * volatileIntervalsService.getVolatileIntervals(DAY, _, partial) >> volatileIntervals
+        missing == 2 * ONE_DAY
+        availableVolatile == ONE_DAY / 2
+    }
+
+    def "Volatile durations cannot be computed without a volatile intervals service"() {
+        setup:
+        context = new TableResolutionContext(constraint, new PartialDataHandler(), null)
+
+        when:
+        context.getAvailableVolatileDuration(partial)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    SimplifiedIntervalList intervals(String interval) {
+        new SimplifiedIntervalList([new Interval(interval)])
+    }
+}
@@ -47,7 +47,8 @@ class ClassScannerSpec extends Specification {
                  new DateTime(20000),
                  new Interval(1, 2),
                  Days.days(1),
-                 DateTimeZone.UTC
+                 DateTimeZone.UTC,
+                 new TreeMap<>()
                 ])
         classScanner.putInArgumentValueCache(ObjectWriter.class, new ObjectMapper().writer())
     }
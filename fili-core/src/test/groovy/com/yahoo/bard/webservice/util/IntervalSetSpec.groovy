@@ -0,0 +1,108 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.util
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class IntervalSetSpec extends Specification {
+
+    static final int DOMAIN = 60
+
+    IntervalSet build(List<List<Long>> times) {
+        IntervalSet.of(times.collect { new Interval(it[0], it[1]) })
+    }
+
+    List<List<Long>> endpoints(IntervalSet set) {
+        (0..<set.size()).collect { [set.getStartMillis(it), set.getEndMillis(it)] }
+    }
+
+    @Unroll
+    def "Intervals #input are simplified to #expected"() {
+        expect:
+        endpoints(build(input)) == expected
+
+        where:
+        input                          | expected
+        []                             | []
+        [[5, 5]]                       | []
+        [[15, 16], [13, 14]]           | [[13, 14], [15, 16]]
+        [[14, 17], [15, 20]]           | [[14, 20]]
+        [[15, 16], [16, 17], [12, 13]] | [[12, 13], [15, 17]]
+        [[10, 20], [12, 14], [1, 2]]   | [[1, 2], [10, 20]]
+    }
+
+    def "Set operations match the instants of the operands"() {
+        setup:
+        Random random = new Random(7)
+
+        expect:
+        (1..200).every {
+            IntervalSet left = randomSet(random)
+            IntervalSet right = randomSet(random)
+            IntervalSet union = left.union(right)
+            IntervalSet intersection = left.intersect(right)
+            IntervalSet difference = left.subtract(right)
+            (0..<DOMAIN).every { long instant ->
+                union.contains(instant) == (left.contains(instant) || right.contains(instant)) &&
+                        intersection.contains(instant) == (left.contains(instant) && right.contains(instant)) &&
+                        difference.contains(instant) == (left.contains(instant) && !right.contains(instant))
+            } && [union, intersection, difference].every { isSimplified(it) }
+        }
+    }
+
+    def "Set operations agree with the simplified interval list"() {
+        setup:
+        SimplifiedIntervalList left = new SimplifiedIntervalList([new Interval(2, 4), new Interval(6, 10)])
+        SimplifiedIntervalList right = new SimplifiedIntervalList([new Interval(3, 7)])
+
+        expect:
+        left.union(right).asIntervalSet() == left.asIntervalSet().union(right.asIntervalSet())
+        left.intersect(right) == [new Interval(3, 4), new Interval(6, 7)]
+        left.subtract(right) == [new Interval(2, 3), new Interval(7, 10)]
+        left.asIntervalSet().toSimplifiedIntervalList() == left
+    }
+
+    @Unroll
+    def "Containment of #start to #end is #contained and overlap is #overlapped"() {
+        setup:
+        IntervalSet set = build([[2, 4], [6, 10], [14, 30]])
+
+        expect:
+        set.contains(start, end) == contained
+        set.overlaps(start, end) == overlapped
+
+        where:
+        start | end | contained | overlapped
+        0     | 2   | false     | false
+        2     | 4   | true      | true
+        3     | 7   | false     | true
+        4     | 6   | false     | false
+        6     | 6   | true      | false
+        10    | 14  | false     | false
+        15    | 30  | true      | true
+        29    | 31  | false     | true
+        30    | 40  | false     | false
+    }
+
+    def "Total duration sums the intervals"() {
+        expect:
+        build([[2, 4], [6, 10], [14, 30]]).totalDurationMillis == 22
+        IntervalSet.EMPTY.totalDurationMillis == 0
+    }
+
+    IntervalSet randomSet(Random random) {
+        build((0..<random.nextInt(6)).collect {
+            long start = random.nextInt(DOMAIN)
+            [start, Math.min(start + random.nextInt(12), DOMAIN)]
+        })
+    }
+
+    boolean isSimplified(IntervalSet set) {
+        List<List<Long>> intervals = endpoints(set)
+        intervals.every { it[0] < it[1] } &&
+                (1..<Math.max(intervals.size(), 1)).every { intervals[it - 1][1] < intervals[it][0] }
+    }
+}
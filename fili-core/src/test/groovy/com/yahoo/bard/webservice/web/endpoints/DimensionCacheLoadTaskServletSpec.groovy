@@ -21,6 +21,8 @@ import org.joda.time.DateTimeZone
 
 import spock.lang.Specification
 
+import java.nio.charset.StandardCharsets
+
 import javax.ws.rs.client.Entity
 import javax.ws.rs.core.Response
 import javax.ws.rs.core.Response.Status
@@ -37,6 +39,8 @@ class DimensionCacheLoadTaskServletSpec extends Specification {
     DimensionRow dimensionRowFemale
     Set<DimensionRow> dimensionRowsGender
 
+    Dimension dimensionLuceneGender
+
     Dimension dimensionUserCountry
     DimensionRow dimensionRowUSA
     DimensionRow dimensionRowIndia
@@ -77,6 +81,19 @@ class DimensionCacheLoadTaskServletSpec extends Specification {
         dimensionGender.addAllDimensionRows(dimensionRowsGender)
         dimensions << dimensionGender
 
+        dimensionLuceneGender = new KeyValueStoreDimension(
+                "lucene_gender",
+                "lucene_gender-description",
+                dimensionGenderFields,
+                MapStoreManager.getInstance("lucene_gender"),
+                LuceneSearchProviderManager.getInstance("lucene_gender")
+        )
+        dimensionLuceneGender.addAllDimensionRows([
+                BardDimensionField.makeDimensionRow(dimensionLuceneGender, "m", "male"),
+                BardDimensionField.makeDimensionRow(dimensionLuceneGender, "f", "female")
+        ] as Set)
+        dimensions << dimensionLuceneGender
+
         dimensionUserCountry = new KeyValueStoreDimension(
                 "user_country",
                 "user_country-description",
@@ -102,6 +119,7 @@ class DimensionCacheLoadTaskServletSpec extends Specification {
         DateTimeZone.setDefault(originalTimeZone)
         dimensionGender.searchProvider.clearDimension()
         dimensionUserCountry.searchProvider.clearDimension()
+        dimensionLuceneGender.searchProvider.clearDimension()
     }
 
     def "UpdateDimensionLastUpdated works as expected"() {
@@ -244,6 +262,86 @@ class DimensionCacheLoadTaskServletSpec extends Specification {
                 .containsAll(dimensionUserCountry.searchProvider.findAllDimensionRows())
     }
 
+    InputStream stream(String rows) {
+        new ByteArrayInputStream(rows.getBytes(StandardCharsets.UTF_8))
+    }
+
+    def "Streamed json rows are added to the dimension in #mode mode"() {
+        setup:
+        String rows = """{"id": "usa", "description": "United_States_of_America", "field1": "foo"}
+                         {"id": "can", "description": "Canada", "field2": "can2"}"""
+
+        when:
+        Response r = dimensionCacheLoaderServlet.streamJsonDimensionRows("user_country", mode, stream(rows))
+
+        then:
+        r.getStatusInfo() == Status.OK
+        MAPPERS.mapper.readTree(r.entity as String).get("rows").asInt() == 2
+        dimensionUserCountry.findDimensionRowByKeyValue("usa") == BardDimensionField.makeDimensionRow(
+                dimensionUserCountry,
+                "usa",
+                "United_States_of_America",
+                "foo",
+                usaField2
+        )
+        dimensionUserCountry.findDimensionRowByKeyValue("can") == BardDimensionField.makeDimensionRow(
+                dimensionUserCountry,
+                "can",
+                "Canada",
+                "",
+                "can2"
+        )
+        dimensionUserCountry.findDimensionRowByKeyValue("ind") == dimensionRowIndia
+
+        where:
+        mode     | usaField2
+        "add"    | ""
+        "update" | "usa2"
+    }
+
+    def "Replacing the rows of a dimension with streamed csv removes the rows not streamed on #dimensionName"() {
+        setup:
+        Dimension dimension = dimensionCacheLoaderServlet.dimensionDictionary.findByApiName(dimensionName)
+        String rows = "id,description\nf,Female\nx,Other\n"
+
+        when:
+        Response r = dimensionCacheLoaderServlet.streamCsvDimensionRows(dimensionName, "replace", stream(rows))
+
+        then:
+        r.getStatusInfo() == Status.OK
+        MAPPERS.mapper.readTree(r.entity as String).get("removedRows").asInt() == 1
+        dimension.searchProvider.findAllDimensionRows()*.getKeyValue() as Set == ["f", "x"] as Set
+        dimension.findDimensionRowByKeyValue("m") == null
+        dimension.findDimensionRowByKeyValue("f").get(BardDimensionField.DESC) == "Female"
+        dimension.searchProvider.dimensionCardinality == 2
+
+        where:
+        dimensionName << ["gender", "lucene_gender"]
+    }
+
+    def "A stream which fails part way through removes no rows"() {
+        setup:
+        String rows = """{"id": "x", "description": "Other"}
+                         {"id": "y", "description": """
+
+        when:
+        Response r = dimensionCacheLoaderServlet.streamJsonDimensionRows("gender", "replace", stream(rows))
+
+        then:
+        r.getStatusInfo() == Status.BAD_REQUEST
+        dimensionGender.searchProvider.findAllDimensionRows() == dimensionRowsGender
+    }
+
+    def "Streamed rows with an unknown mode or without a key are rejected"() {
+        expect:
+        dimensionCacheLoaderServlet.streamJsonDimensionRows("gender", "merge", stream("")).statusInfo ==
+                Status.BAD_REQUEST
+        dimensionCacheLoaderServlet.streamCsvDimensionRows("gender", "add", stream("description\nmale\n"))
+                .statusInfo == Status.BAD_REQUEST
+        dimensionCacheLoaderServlet.streamCsvDimensionRows("unknown", "add", stream("id\nm\n")).statusInfo ==
+                Status.NOT_FOUND
+    }
+
     def "Check servlet getDimensionLastUpdated"() {
         setup:
         String expected = """{"name":"gender","lastUpdated":"$lastUpdated"}"""
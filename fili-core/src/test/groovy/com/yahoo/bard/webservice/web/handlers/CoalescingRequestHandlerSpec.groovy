@@ -0,0 +1,136 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.druid.client.FailureCallback
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.metadata.QuerySigningService
+import com.yahoo.bard.webservice.web.RequestUtils
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+
+class CoalescingRequestHandlerSpec extends Specification {
+    private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
+
+    DataRequestHandler next = Mock(DataRequestHandler)
+    QuerySigningService<Long> querySigningService = Mock(QuerySigningService)
+    DataApiRequest request = Mock(DataApiRequest)
+    ResponseProcessor leaderResponse = Mock(ResponseProcessor)
+    ResponseProcessor followerResponse = Mock(ResponseProcessor)
+    RequestContext leaderContext = new RequestContext(null, true)
+    RequestContext followerContext = new RequestContext(null, true)
+    GroupByQuery leaderQuery = RequestUtils.buildGroupByQuery()
+    GroupByQuery followerQuery = RequestUtils.buildGroupByQuery()
+    JsonNode json = MAPPER.readTree('[{"version":"v1","timestamp":"2014-06-10T00:00:00.000Z","event":{"m":1}}]')
+
+    CoalescingRequestHandler handler = new CoalescingRequestHandler(next, querySigningService, 1, MAPPER)
+
+    ResponseProcessor leaderProcessor
+
+    def setup() {
+        querySigningService.getSegmentSetId(_) >> Optional.of(1234L)
+    }
+
+    def "Identical queries in flight are sent once and the response is delivered to every request"() {
+        when: "The leader and then an identical follower are handled"
+        handler.handleRequest(leaderContext, request, leaderQuery, leaderResponse)
+        handler.handleRequest(followerContext, request, followerQuery, followerResponse)
+
+        then: "Only the leader is sent on"
+        1 * next.handleRequest(leaderContext, request, leaderQuery, _) >> { leaderProcessor = it[3]; true }
+        0 * next.handleRequest(followerContext, *_)
+        followerContext.numberOfOutgoing.get() == 0
+        handler.inFlightCount == 1
+
+        when: "The leader's response arrives"
+        leaderProcessor.processResponse(json, leaderQuery, new LoggingContext(null))
+
+        then: "Both requests process a copy of it"
+        1 * leaderResponse.processResponse(json, leaderQuery, _)
+        1 * followerResponse.processResponse(json, followerQuery, _ as LoggingContext)
+        followerContext.numberOfIncoming.get() == 0
+        handler.inFlightCount == 0
+    }
+
+    def "Requests beyond the follower bound and requests after completion run on their own"() {
+        setup:
+        RequestContext otherContext = new RequestContext(null, true)
+
+        when:
+        handler.handleRequest(leaderContext, request, leaderQuery, leaderResponse)
+        handler.handleRequest(followerContext, request, followerQuery, followerResponse)
+        handler.handleRequest(otherContext, request, RequestUtils.buildGroupByQuery(), Mock(ResponseProcessor))
+
+        then:
+        1 * next.handleRequest(leaderContext, *_) >> { leaderProcessor = it[3]; true }
+        1 * next.handleRequest(otherContext, *_) >> true
+
+        when:
+        leaderProcessor.processResponse(json, leaderQuery, new LoggingContext(null))
+        handler.handleRequest(otherContext, request, RequestUtils.buildGroupByQuery(), Mock(ResponseProcessor))
+
+        then: "A new leader is sent once the first completed"
+        1 * next.handleRequest(otherContext, *_) >> true
+    }
+
+    def "Queries with different segment sets are not coalesced"() {
+        setup:
+        QuerySigningService<Long> signingService = Mock(QuerySigningService)
+        signingService.getSegmentSetId(leaderQuery) >> Optional.of(1L)
+        signingService.getSegmentSetId(followerQuery) >> Optional.of(2L)
+        handler = new CoalescingRequestHandler(next, signingService, 1, MAPPER)
+
+        when:
+        handler.handleRequest(leaderContext, request, leaderQuery, leaderResponse)
+        handler.handleRequest(followerContext, request, followerQuery, followerResponse)
+
+        then:
+        2 * next.handleRequest(*_) >> true
+    }
+
+    def "Errors and failures of the leader are delivered to the followers"() {
+        setup:
+        HttpErrorCallback leaderError = Mock(HttpErrorCallback)
+        HttpErrorCallback followerError = Mock(HttpErrorCallback)
+        leaderResponse.getErrorCallback(leaderQuery) >> leaderError
+        followerResponse.getErrorCallback(followerQuery) >> followerError
+        leaderResponse.getFailureCallback(_) >> Mock(FailureCallback)
+        next.handleRequest(leaderContext, *_) >> { leaderProcessor = it[3]; true }
+
+        when:
+        handler.handleRequest(leaderContext, request, leaderQuery, leaderResponse)
+        handler.handleRequest(followerContext, request, followerQuery, followerResponse)
+        leaderProcessor.getErrorCallback(leaderQuery).invoke(500, "Internal Server Error", "body")
+
+        then:
+        1 * leaderError.invoke(500, "Internal Server Error", "body")
+        1 * followerError.invoke(500, "Internal Server Error", "body")
+        handler.inFlightCount == 0
+    }
+
+    def "Followers get the response even if the leader fails to process it"() {
+        setup:
+        next.handleRequest(leaderContext, *_) >> { leaderProcessor = it[3]; true }
+        handler.handleRequest(leaderContext, request, leaderQuery, leaderResponse)
+        handler.handleRequest(followerContext, request, followerQuery, followerResponse)
+
+        when:
+        leaderProcessor.processResponse(json, leaderQuery, new LoggingContext(null))
+
+        then: "The follower is served before the leader"
+        1 * followerResponse.processResponse(json, followerQuery, _ as LoggingContext)
+
+        then:
+        1 * leaderResponse.processResponse(json, leaderQuery, _) >> { throw new IllegalStateException("leader") }
+        thrown(IllegalStateException)
+        handler.inFlightCount == 0
+    }
+}
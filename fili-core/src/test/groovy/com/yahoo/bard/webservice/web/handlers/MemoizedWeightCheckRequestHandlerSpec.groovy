@@ -0,0 +1,133 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.druid.client.DruidWebService
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
+import com.yahoo.bard.webservice.druid.client.SuccessCallback
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.druid.model.query.WeightEvaluationQuery
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfoUtils
+import com.yahoo.bard.webservice.metadata.QuerySigningService
+import com.yahoo.bard.webservice.web.RequestUtils
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
+import com.yahoo.bard.webservice.web.util.QueryWeightUtil
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+
+class MemoizedWeightCheckRequestHandlerSpec extends Specification {
+    private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
+
+    DataRequestHandler next = Mock(DataRequestHandler)
+    DruidWebService webService = Mock(DruidWebService)
+    QueryWeightUtil queryWeightUtil = Mock(QueryWeightUtil)
+    QuerySigningService<Long> querySigningService = Mock(QuerySigningService)
+    RequestContext context = new RequestContext(null, true)
+    DataApiRequest request = Mock(DataApiRequest)
+    ResponseProcessor response = Mock(ResponseProcessor)
+    GroupByQuery groupByQuery = RequestUtils.buildGroupByQuery()
+
+    MemoizedWeightCheckRequestHandler handler = new MemoizedWeightCheckRequestHandler(
+            next,
+            webService,
+            queryWeightUtil,
+            querySigningService,
+            10,
+            MAPPER
+    )
+
+    BardQueryInfo bardQueryInfo
+
+    def setup() {
+        bardQueryInfo = BardQueryInfoUtils.initializeBardQueryInfo()
+        queryWeightUtil.skipWeightCheckQuery(_) >> false
+        queryWeightUtil.makeWeightEvaluationQuery(_) >> { Mock(WeightEvaluationQuery) }
+        queryWeightUtil.getQueryWeightThreshold(_) >> 100
+    }
+
+    def cleanup() {
+        BardQueryInfoUtils.resetBardQueryInfo()
+    }
+
+    JsonNode weightResult(int count) {
+        MAPPER.readTree("""[{"version":"v1","timestamp":"2014-06-10T00:00:00.000Z","event":{"count":$count}}]""")
+    }
+
+    def "A measured weight check is reused for the same segment set"() {
+        setup:
+        querySigningService.getSegmentSetId(_) >> Optional.of(1234L)
+        SuccessCallback success
+        long hits = MemoizedWeightCheckRequestHandler.WEIGHT_CHECK_CACHE_HITS.count
+
+        when: "The first request is weighed by druid"
+        handler.handleRequest(context, request, groupByQuery, response)
+        success.invoke(weightResult(50))
+
+        then:
+        1 * webService.postDruidQuery(context, _, _, _, _) >> { success = it[1]; null }
+        1 * next.handleRequest(context, request, groupByQuery, _) >> true
+
+        when: "An identical request is handled"
+        handler.handleRequest(context, request, RequestUtils.buildGroupByQuery(), response)
+
+        then: "It is sent on without building or sending a weight check query"
+        0 * queryWeightUtil.makeWeightEvaluationQuery(_)
+        0 * webService.postDruidQuery(*_)
+        1 * next.handleRequest(context, request, _, _) >> true
+        MemoizedWeightCheckRequestHandler.WEIGHT_CHECK_CACHE_HITS.count == hits + 1
+        bardQueryInfo.queryCounter.get(BardQueryInfo.WEIGHT_CHECK).get() == 2
+    }
+
+    def "A request measured too heavy is refused again without a weight check query"() {
+        setup:
+        querySigningService.getSegmentSetId(_) >> Optional.of(1234L)
+        HttpErrorCallback ec = Mock(HttpErrorCallback)
+        response.getErrorCallback(_) >> ec
+        SuccessCallback success
+
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+        success.invoke(weightResult(200))
+        handler.handleRequest(context, request, RequestUtils.buildGroupByQuery(), response)
+
+        then:
+        1 * webService.postDruidQuery(context, _, _, _, _) >> { success = it[1]; null }
+        0 * next.handleRequest(*_)
+        2 * ec.invoke(507, _, _)
+    }
+
+    def "Weight checks are measured again for a new segment set"() {
+        setup:
+        querySigningService.getSegmentSetId(_) >>> [Optional.of(1234L), Optional.of(5678L)]
+        SuccessCallback success
+
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+        success.invoke(weightResult(50))
+        handler.handleRequest(context, request, RequestUtils.buildGroupByQuery(), response)
+
+        then:
+        2 * webService.postDruidQuery(context, _, _, _, _) >> { success = it[1]; null }
+    }
+
+    def "Queries without a segment set id are measured every time"() {
+        setup:
+        querySigningService.getSegmentSetId(_) >> Optional.empty()
+        SuccessCallback success
+
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+        success.invoke(weightResult(50))
+        handler.handleRequest(context, request, RequestUtils.buildGroupByQuery(), response)
+
+        then:
+        2 * webService.postDruidQuery(context, _, _, _, _) >> { success = it[1]; null }
+        1 * next.handleRequest(*_) >> true
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.druid.client.DruidWebService
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
+import com.yahoo.bard.webservice.druid.client.SuccessCallback
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.druid.model.query.WeightEvaluationQuery
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfoUtils
+import com.yahoo.bard.webservice.web.RequestUtils
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
+import com.yahoo.bard.webservice.web.util.QueryWeightUtil
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+
+class SpeculativeWeightCheckRequestHandlerSpec extends Specification {
+    private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
+
+    DataRequestHandler next = Mock(DataRequestHandler)
+    DruidWebService webService = Mock(DruidWebService)
+    QueryWeightUtil queryWeightUtil = Mock(QueryWeightUtil)
+    RequestContext context = new RequestContext(null, true)
+    DataApiRequest request = Mock(DataApiRequest)
+    ResponseProcessor response = Mock(ResponseProcessor)
+    GroupByQuery groupByQuery = RequestUtils.buildGroupByQuery()
+    WeightEvaluationQuery weightQuery = Mock(WeightEvaluationQuery)
+    JsonNode json = MAPPER.readTree('[{"version":"v1","timestamp":"2014-06-10T00:00:00.000Z","event":{"m":1}}]')
+    LoggingContext metadata = new LoggingContext(null)
+
+    SpeculativeWeightCheckRequestHandler handler = new SpeculativeWeightCheckRequestHandler(
+            next,
+            webService,
+            queryWeightUtil,
+            MAPPER
+    )
+
+    SuccessCallback weightSuccess
+    HttpErrorCallback weightError
+    ResponseProcessor speculativeResponse
+
+    BardQueryInfo bardQueryInfo
+
+    def setup() {
+        bardQueryInfo = BardQueryInfoUtils.initializeBardQueryInfo()
+        queryWeightUtil.skipWeightCheckQuery(groupByQuery) >> false
+        queryWeightUtil.makeWeightEvaluationQuery(groupByQuery) >> weightQuery
+        queryWeightUtil.getQueryWeightThreshold(_) >> 100
+    }
+
+    def cleanup() {
+        BardQueryInfoUtils.resetBardQueryInfo()
+    }
+
+    JsonNode weightResult(int count) {
+        MAPPER.readTree("""[{"version":"v1","timestamp":"2014-06-10T00:00:00.000Z","event":{"count":$count}}]""")
+    }
+
+    def "Requests passing the quick weight check are sent on without a weight check query"() {
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+
+        then:
+        1 * queryWeightUtil.skipWeightCheckQuery(groupByQuery) >> true
+        0 * webService.postDruidQuery(*_)
+        1 * next.handleRequest(context, request, groupByQuery, response) >> true
+        bardQueryInfo.queryCounter.get(BardQueryInfo.WEIGHT_CHECK).get() == 0
+    }
+
+    def "The data query is sent with the weight check query and its response is held until the check passes"() {
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+
+        then: "Both queries are sent at once"
+        1 * webService.postDruidQuery(context, _, _, _, weightQuery) >> { weightSuccess = it[1]; null }
+        1 * next.handleRequest(context, request, groupByQuery, _) >> { speculativeResponse = it[3]; true }
+        bardQueryInfo.queryCounter.get(BardQueryInfo.WEIGHT_CHECK).get() == 1
+
+        when: "The data response arrives first"
+        speculativeResponse.processResponse(json, groupByQuery, metadata)
+
+        then: "It is held back"
+        0 * response.processResponse(*_)
+
+        when: "The weight check passes"
+        weightSuccess.invoke(weightResult(50))
+
+        then: "The held response is delivered"
+        1 * response.processResponse(json, groupByQuery, metadata)
+    }
+
+    def "The data response is delivered right away once the weight check has passed"() {
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+        weightSuccess.invoke(weightResult(50))
+        speculativeResponse.processResponse(json, groupByQuery, metadata)
+
+        then:
+        1 * webService.postDruidQuery(context, _, _, _, weightQuery) >> { weightSuccess = it[1]; null }
+        1 * next.handleRequest(context, request, groupByQuery, _) >> { speculativeResponse = it[3]; true }
+        1 * response.processResponse(json, groupByQuery, metadata)
+    }
+
+    def "Requests too heavy to process fail and the data response is discarded"() {
+        setup:
+        HttpErrorCallback ec = Mock(HttpErrorCallback)
+        long discards = SpeculativeWeightCheckRequestHandler.SPECULATIVE_DISCARDS.count
+
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+        speculativeResponse.processResponse(json, groupByQuery, metadata)
+        weightSuccess.invoke(weightResult(200))
+
+        then:
+        1 * webService.postDruidQuery(context, _, _, _, weightQuery) >> { weightSuccess = it[1]; null }
+        1 * next.handleRequest(context, request, groupByQuery, _) >> { speculativeResponse = it[3]; true }
+        1 * response.getErrorCallback(groupByQuery) >> ec
+        1 * ec.invoke(507, _, _)
+        0 * response.processResponse(*_)
+        SpeculativeWeightCheckRequestHandler.SPECULATIVE_DISCARDS.count == discards + 1
+    }
+
+    def "A failed weight check fails the request and the later data response is discarded"() {
+        setup:
+        HttpErrorCallback ec = Mock(HttpErrorCallback)
+
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+        weightError.invoke(500, "Internal Server Error", "")
+        speculativeResponse.processResponse(json, groupByQuery, metadata)
+
+        then:
+        1 * webService.postDruidQuery(context, _, _, _, weightQuery) >> { weightError = it[2]; null }
+        1 * next.handleRequest(context, request, groupByQuery, _) >> { speculativeResponse = it[3]; true }
+        1 * response.getErrorCallback(groupByQuery) >> ec
+        1 * ec.invoke(500, "Internal Server Error", "")
+        0 * response.processResponse(*_)
+    }
+}
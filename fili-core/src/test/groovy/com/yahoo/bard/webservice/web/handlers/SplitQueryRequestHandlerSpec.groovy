@@ -14,6 +14,8 @@ import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
 import com.yahoo.bard.webservice.web.responseprocessors.SplitQueryResponseProcessor
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+
 import org.joda.time.DateTime
 import org.joda.time.Duration
 import org.joda.time.Interval
@@ -111,6 +113,42 @@ class SplitQueryRequestHandlerSpec extends Specification {
         0 * _._
     }
 
+    def "A scheduled handler sends at most a window of sub-queries and drops the waiting ones on error"() {
+        setup:
+        SplitQueryRequestHandler scheduledHandler = new SplitQueryRequestHandler(
+                next,
+                new SplitQueryScheduler(2, 0, SplitQueryScheduler.Priority.CHRONOLOGICAL)
+        )
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [week]
+        groupByQuery.withAllIntervals(_) >> groupByQuerySplit
+        groupByQuerySplit.intervals >> [new Interval(startInstant, startInstant.plusDays(1))]
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+        HttpErrorCallback hec = Mock(HttpErrorCallback)
+        response.getErrorCallback(_) >> hec
+        List<ResponseProcessor> sent = []
+
+        when: "the week is split into seven days"
+        scheduledHandler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then: "only the window is sent"
+        2 * next.handleRequest(rc, apiRequest, groupByQuerySplit, _) >> { sent << it[3]; true }
+
+        when: "a sub-query completes"
+        sent[0].processResponse(JsonNodeFactory.instance.arrayNode(), groupByQuerySplit, null)
+
+        then: "the next one is sent"
+        1 * next.handleRequest(rc, apiRequest, groupByQuerySplit, _) >> { sent << it[3]; true }
+
+        when: "a sub-query fails"
+        sent[1].getErrorCallback(groupByQuerySplit).invoke(500, "reason", "body")
+
+        then: "the error is reported and no further sub-queries are sent"
+        1 * hec.invoke(500, "reason", "body")
+        0 * next.handleRequest(*_)
+    }
+
     SimplifiedIntervalList buildIntervals(List<String> intervals) {
         intervals.collect({ new Interval(it) }) as SimplifiedIntervalList
     }
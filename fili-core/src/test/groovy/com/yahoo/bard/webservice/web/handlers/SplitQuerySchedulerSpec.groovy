@@ -0,0 +1,130 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery
+
+import com.codahale.metrics.Gauge
+import com.codahale.metrics.MetricRegistry
+
+import org.joda.time.DateTime
+import org.joda.time.Interval
+
+import spock.lang.Specification
+
+class SplitQuerySchedulerSpec extends Specification {
+
+    static DateTime start = new DateTime(2021, 1, 1, 0, 0)
+
+    List<DruidAggregationQuery<?>> sent = []
+    List<SplitQueryScheduler.Batch> batches = []
+
+    List<DruidAggregationQuery<?>> buildQueries(int days) {
+        (0..<days).collect { int day ->
+            Mock(DruidAggregationQuery) {
+                getIntervals() >> [new Interval(start.plusDays(day), start.plusDays(day + 1))]
+            }
+        }
+    }
+
+    def "At most a window of sub-queries of a batch are in flight, the most recent first"() {
+        setup:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(2, 0, SplitQueryScheduler.Priority.MOST_RECENT_FIRST)
+        List<DruidAggregationQuery<?>> queries = buildQueries(5)
+
+        when:
+        scheduler.schedule(queries, { query, batch -> sent << query; batches << batch })
+
+        then:
+        sent == [queries[4], queries[3]]
+        batches[0].pendingCount == 3
+
+        when:
+        batches[0].complete()
+
+        then:
+        sent == [queries[4], queries[3], queries[2]]
+        batches[0].pendingCount == 2
+    }
+
+    def "The budget bounds the sub-queries of all batches in flight and batches take turns"() {
+        setup:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 2, SplitQueryScheduler.Priority.CHRONOLOGICAL)
+        List<DruidAggregationQuery<?>> first = buildQueries(4)
+        List<DruidAggregationQuery<?>> second = buildQueries(3)
+
+        when:
+        SplitQueryScheduler.Batch firstBatch = scheduler.schedule(first, { query, batch -> sent << query })
+        SplitQueryScheduler.Batch secondBatch = scheduler.schedule(second, { query, batch -> sent << query })
+
+        then: "the first batch takes the whole budget"
+        sent == [first[0], first[1]]
+
+        when: "slots are freed"
+        firstBatch.complete()
+        firstBatch.complete()
+
+        then: "the batches alternate"
+        sent == [first[0], first[1], first[2], second[0]]
+        firstBatch.pendingCount == 1
+        secondBatch.pendingCount == 2
+    }
+
+    def "Cancelling a batch drops its waiting sub-queries"() {
+        setup:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(1, 0, SplitQueryScheduler.Priority.CHRONOLOGICAL)
+        SplitQueryScheduler.Batch batch = scheduler.schedule(buildQueries(4), { query, b -> sent << query })
+        long cancelled = SplitQueryScheduler.SPLIT_QUERIES_CANCELLED.count
+
+        when:
+        batch.cancel()
+        batch.complete()
+
+        then:
+        sent.size() == 1
+        batch.pendingCount == 0
+        SplitQueryScheduler.SPLIT_QUERIES_CANCELLED.count == cancelled + 3
+    }
+
+    def "Sub-queries answered synchronously are sent without nesting"() {
+        setup:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(1, 1, SplitQueryScheduler.Priority.CHRONOLOGICAL)
+        int answered = 0
+
+        when:
+        scheduler.schedule(buildQueries(2000), { query, batch -> answered++; batch.complete() })
+
+        then:
+        answered == 2000
+    }
+
+    def "Each scheduler counts and reports its own queued and in flight sub-queries"() {
+        setup:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(2, 0, SplitQueryScheduler.Priority.CHRONOLOGICAL)
+        SplitQueryScheduler other = new SplitQueryScheduler(1, 0, SplitQueryScheduler.Priority.CHRONOLOGICAL)
+        MetricRegistry registry = new MetricRegistry()
+        scheduler.registerGauges(registry, "scheduler.")
+        other.registerGauges(registry, "other.")
+
+        when:
+        SplitQueryScheduler.Batch batch = scheduler.schedule(buildQueries(5), { query, b -> sent << query })
+        other.schedule(buildQueries(2), { query, b -> sent << query })
+
+        then:
+        scheduler.queuedCount == 3
+        scheduler.inFlightCount == 2
+        other.queuedCount == 1
+        other.inFlightCount == 1
+        (registry.gauges["scheduler.queued"] as Gauge).value == 3
+        (registry.gauges["other.in_flight"] as Gauge).value == 1
+
+        when:
+        batch.complete()
+        batch.cancel()
+
+        then:
+        scheduler.queuedCount == 0
+        scheduler.inFlightCount == 2
+        other.queuedCount == 1
+    }
+}
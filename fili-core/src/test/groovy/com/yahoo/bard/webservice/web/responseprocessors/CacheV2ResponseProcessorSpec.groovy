@@ -176,6 +176,32 @@ class CacheV2ResponseProcessorSpec extends Specification {
         numCache = simplifiedIntervalList.empty ? 1 : 0
     }
 
+    @Unroll
+    def "A split bucket for #bucket #is cached when #volatileInterval is volatile"() {
+        setup:
+        CACHE_PARTIAL_DATA.setOn(false)
+        GroupByQuery bucketQuery = Mock(GroupByQuery) {
+            getIntervals() >> [new Interval(bucket)]
+        }
+        next.getResponseContext() >> createResponseContext(
+                [(VOLATILE_INTERVALS_CONTEXT_KEY.name): new SimplifiedIntervalList([new Interval(volatileInterval)])]
+        )
+
+        when:
+        crp.processResponse(json, bucketQuery, null)
+
+        then:
+        numCache * dataCache.set(*_)
+        1 * next.processResponse(json, bucketQuery, null)
+
+        where:
+        bucket                  | volatileInterval        | numCache
+        "2021-01-01/2021-01-02" | "2021-01-03/2021-01-04" | 1
+        "2021-01-03/2021-01-04" | "2021-01-03/2021-01-04" | 0
+
+        is = numCache ? "is" : "is not"
+    }
+
     def "Overly long data doesn't cache and then continues"() {
         setup: "Save the old max-length-to-cache so we can restore it later"
         String max_druid_response_length_to_cache_key = SYSTEM_CONFIG.getPackageVariableName(
@@ -140,6 +140,19 @@ class PaginationParametersSpec extends Specification {
         invalidPerPage << ["0", "-1", "1.0", "2.3", "$Long.MAX_VALUE", "1a", "AndrewIsMostlyHarmless."]
     }
 
+    def "A cursor is kept until the page changes"() {
+        given:
+        PaginationParameters parameters = new PaginationParameters(1, 3).withCursor("abc")
+
+        expect:
+        parameters.cursor == Optional.of("abc")
+        parameters != new PaginationParameters(1, 3)
+        parameters.withCursor("") == new PaginationParameters(1, 3)
+        parameters.withCursor(null).cursor == Optional.empty()
+        parameters.withPage("2") == new PaginationParameters(1, 2)
+        parameters.withPerPage("2").cursor == Optional.empty()
+    }
+
     String missingParamMessage(String missingParam) {
         "Missing parameter '$missingParam.' Both 'perPage' and 'page' are required for pagination."
     }
@@ -0,0 +1,36 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.util
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.web.RequestUtils
+import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+
+class QueryFingerprintSpec extends Specification {
+    private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
+
+    String canonicalQuery = """{"aggregations":[],"context":{},"dataSource":{"name":"dataSource","type":"table"},"dimensions":[],"granularity":{"period":"P1D","type":"period"},"intervals":[],"postAggregations":[],"queryType":"groupBy"}"""
+
+    def "The fingerprint holds the canonical query and its checksum"() {
+        when:
+        QueryFingerprint fingerprint = QueryFingerprint.of(RequestUtils.buildGroupByQuery(), MAPPER)
+
+        then:
+        fingerprint.canonicalQuery == canonicalQuery
+        fingerprint.checksum == CacheV2ResponseProcessor.getMD5Checksum(canonicalQuery)
+    }
+
+    def "Equal queries have equal fingerprints and the context does not contribute"() {
+        setup:
+        GroupByQuery query = RequestUtils.buildGroupByQuery()
+
+        expect:
+        QueryFingerprint.of(query, MAPPER) == QueryFingerprint.of(RequestUtils.buildGroupByQuery(), MAPPER)
+        QueryFingerprint.of(query.withContext(query.context.withTimeout(5)), MAPPER) == QueryFingerprint.of(query, MAPPER)
+    }
+}
@@ -0,0 +1,48 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.util
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.web.RequestUtils
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+
+class QueryFingerprinterSpec extends Specification {
+    private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
+
+    def "The fingerprint is computed once per query instance"() {
+        setup:
+        QueryFingerprinter fingerprinter = new QueryFingerprinter(MAPPER)
+        GroupByQuery query = RequestUtils.buildGroupByQuery()
+
+        expect: "The same fingerprint instance is returned for the same query"
+        fingerprinter.getFingerprint(query).is(fingerprinter.getFingerprint(query))
+        fingerprinter.getFingerprint(query) == QueryFingerprint.of(query, MAPPER)
+
+        and: "An equal but distinct query is fingerprinted separately"
+        !fingerprinter.getFingerprint(query).is(fingerprinter.getFingerprint(RequestUtils.buildGroupByQuery()))
+    }
+
+    def "Fingerprints are remembered by each fingerprinter separately"() {
+        setup:
+        ObjectMapper mapper = Spy(ObjectMapper, constructorArgs: [MAPPER])
+        QueryFingerprinter fingerprinter = new QueryFingerprinter(mapper)
+        QueryFingerprinter otherFingerprinter = new QueryFingerprinter(mapper)
+        GroupByQuery query = RequestUtils.buildGroupByQuery()
+
+        when:
+        QueryFingerprint fingerprint = fingerprinter.getFingerprint(query)
+        fingerprinter.getFingerprint(query)
+        QueryFingerprint otherFingerprint = otherFingerprinter.getFingerprint(query)
+
+        then: "The query is serialized once by each fingerprinter"
+        2 * mapper.valueToTree(query)
+
+        and:
+        !otherFingerprint.is(fingerprint)
+        otherFingerprint == fingerprint
+    }
+}
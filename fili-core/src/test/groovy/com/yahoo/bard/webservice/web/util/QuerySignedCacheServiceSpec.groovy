@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
 import com.yahoo.bard.webservice.data.cache.MemTupleDataCache
 import com.yahoo.bard.webservice.data.cache.TupleDataCache
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfoUtils
@@ -90,6 +91,26 @@ class QuerySignedCacheServiceSpec extends Specification {
         false    | "missing and volatile intervals are present and empty" | createResponseContext([(MISSING_INTERVALS_CONTEXT_KEY.name): new SimplifiedIntervalList(), (VOLATILE_INTERVALS_CONTEXT_KEY.name): nonEmptyIntervals])
     }
 
+    @Unroll
+    def "A query for #queryInterval with volatile #volatileInterval is cacheable is #expected"() {
+        setup:
+        response.getResponseContext() >> createResponseContext(
+                [(VOLATILE_INTERVALS_CONTEXT_KEY.name): new SimplifiedIntervalList([new Interval(volatileInterval)])]
+        )
+        DruidAggregationQuery<?> query = Mock(DruidAggregationQuery)
+        query.getIntervals() >> [new Interval(queryInterval)]
+
+        expect:
+        cacheService.isCacheable(response, query) == expected
+
+        where:
+        expected | queryInterval           | volatileInterval
+        true     | "2021-01-01/2021-01-02" | "2021-01-03/2021-01-04"
+        true     | "2021-01-02/2021-01-03" | "2021-01-03/2021-01-04"
+        false    | "2021-01-03/2021-01-04" | "2021-01-03/2021-01-04"
+        false    | "2021-01-01/2021-01-05" | "2021-01-03/2021-01-04"
+    }
+
     def "Get key from druid query to check match with cache"() {
         setup:
         String expectedResponse = """{"aggregations":[],"context":{},"dataSource":{"name":"dataSource","type":"table"},"dimensions":[],"granularity":{"period":"P1D","type":"period"},"intervals":[],"postAggregations":[],"queryType":"groupBy"}"""
@@ -106,7 +127,7 @@ class QuerySignedCacheServiceSpec extends Specification {
         String cachedValue = cacheService.readCache(requestContext, groupByQuery)
 
         then: "Check the cache and return valid json"
-        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 1234L, "value")
+        1 * dataCache.get(_, _) >> new MemTupleDataCache.DataEntry<String>("key1", 1234L, "value")
 
         then: "The cahed value is retrieved"
         cachedValue == "value"
@@ -123,7 +144,7 @@ class QuerySignedCacheServiceSpec extends Specification {
         String cachedValue = cacheService.readCache(requestContext, groupByQuery)
 
         then: "The cache is checked for a match and misses"
-        1 * dataCache.get(_) >> null
+        1 * dataCache.get(_, _) >> null
 
         then: "The cache read returns null"
         cachedValue == null
@@ -140,7 +161,7 @@ class QuerySignedCacheServiceSpec extends Specification {
         String cachedValue = cacheService.readCache(requestContext, groupByQuery)
 
         then: "Check the cache and return a stale entry"
-        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 5678L, "[]")
+        1 * dataCache.get(_, _) >> new MemTupleDataCache.DataEntry<String>("key1", 5678L, "[]")
 
         then: "We delegate to the next handler, wrapping in a CacheV2ResponseProcessor"
         cachedValue == null
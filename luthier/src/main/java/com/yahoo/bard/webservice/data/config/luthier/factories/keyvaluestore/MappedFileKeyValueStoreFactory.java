@@ -0,0 +1,41 @@
+// Copyright 2021 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.config.luthier.factories.keyvaluestore;
+
+import com.yahoo.bard.webservice.application.luthier.LuthierConfigNode;
+import com.yahoo.bard.webservice.data.config.luthier.Factory;
+import com.yahoo.bard.webservice.data.config.luthier.LuthierIndustrialPark;
+import com.yahoo.bard.webservice.data.config.luthier.LuthierValidationUtils;
+import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
+import com.yahoo.bard.webservice.data.dimension.MappedFileStore;
+
+import java.nio.file.Paths;
+
+/**
+ * A factory that is used to support the memory mapped file KeyValueStore.
+ * <p>
+ * Each store keeps its files in a directory named after the store under the configured store path.
+ */
+public class MappedFileKeyValueStoreFactory implements Factory<KeyValueStore> {
+
+    private static final String ENTITY_TYPE = "KeyValueStore";
+    private static final String STORE_PATH = "storePath";
+
+    /**
+     * Build a MappedFileStore instance.
+     *
+     * @param name  the config dictionary name (normally the apiName)
+     * @param configTable  LuthierConfigNode that points to the value of corresponding table entry in config file
+     * @param resourceFactories  the source for locating dependent objects
+     *
+     * @return  A newly constructed config instance for the name and config provided
+     */
+    @Override
+    public KeyValueStore build(String name, LuthierConfigNode configTable, LuthierIndustrialPark resourceFactories) {
+        LuthierValidationUtils.validateFields(configTable, ENTITY_TYPE, name, STORE_PATH);
+
+        String storePath = configTable.get(STORE_PATH).textValue();
+
+        return new MappedFileStore(Paths.get(storePath, name));
+    }
+}
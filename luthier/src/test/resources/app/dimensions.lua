@@ -120,6 +120,8 @@ local FIELDSETS = {
             Requires setup of a Redis cluster.
         memory - Backed by an in-memory map data structure.
             Recommended for smallish (<10K values) dimensions
+        mapped - Backed by memory mapped files, which survive restarts.
+            Suited to large dimensions which should not be reloaded on startup.
 ]]
 -------------------------------------------------------------------------------
 
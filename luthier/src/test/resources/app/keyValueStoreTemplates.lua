@@ -13,13 +13,16 @@ local M = {}
 -- This is just to provide an insight about which class you will actually invoke.
 local FULLY_QUALIFIED_NAME = {
     map = "com.yahoo.bard.webservice.data.dimension.MapStore",
-    redis = "com.yahoo.bard.webservice.data.dimension.RedisStore"
+    redis = "com.yahoo.bard.webservice.data.dimension.RedisStore",
+    mapped = "com.yahoo.bard.webservice.data.dimension.MappedFileStore"
 }
 
 --- For RedisStore config
 -- config arguments TO BE DETERMINED
 --- For mapStore config
 -- <currently there is no argument needed>
+--- For MappedFileStore config
+-- storePath: the directory holding a directory of memory mapped files for each store
 M = {
     redis = {
         type = FULLY_QUALIFIED_NAME.redis,
@@ -28,6 +31,10 @@ M = {
     memory = {
         type = FULLY_QUALIFIED_NAME.map,
     },
+    mapped = {
+        type = FULLY_QUALIFIED_NAME.mapped,
+        storePath = "./target/tmp/keyValueStores/",
+    },
 }
 
 return M